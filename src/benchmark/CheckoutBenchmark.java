@@ -0,0 +1,240 @@
+package benchmark;
+
+import database.ConnectionPool;
+import rental.AvailabilityIndex;
+import rental.QuotaExceededException;
+import rental.QuotaManager;
+import rental.RentalService;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+/**
+ * Checkout/return throughput of RentalService under N concurrent threads. Each thread
+ * picks a film and a client at random (one client per thread without --quota), checks out
+ * a copy and returns its oldest one once it holds three, for --operations operations in
+ * total. With --quota N every client of a pool of --nombre-clients may hold N rentals, so
+ * the threads contend on the QuotaManager counters and some checkouts are refused.
+ *
+ * By default the service writes to NoOpDataSource, with --latence-commit-us simulating the
+ * round trip of a commit, and the index is filled with --films x --copies-par-film synthetic
+ * copies: this measures the index and the group commit, not the database. --oracle runs
+ * against the schema of ConnectionPool instead (index rebuilt from Copie/Location; rows
+ * are really written).
+ *
+ * Parameters: --clients 1,8,64 (threads) --lots 1,64 (operations per transaction),
+ * --operations N, --films N, --copies-par-film N, --latence-commit-us N, --quota N,
+ * --nombre-clients N, --oracle (quotas then come from Client/Forfait).
+ */
+public class CheckoutBenchmark {
+
+    private final int[] clients;
+    private final int[] lots;
+    private final int operations;
+    private final int films;
+    private final int copiesParFilm;
+    private final long latenceCommitUs;
+    private final boolean oracle;
+    private final int quota;
+    private final int nombreClients;
+
+    private CheckoutBenchmark(String[] args) {
+        int[] clients = {1, 8, 64}, lots = {1, 64};
+        int operations = 100_000, films = 1_000, copiesParFilm = 20;
+        long latenceCommitUs = 500;
+        boolean oracle = false;
+        int quota = 0, nombreClients = 1_000;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients" -> clients = LoaderBenchmark.entiers(args[++i]);
+                case "--lots" -> lots = LoaderBenchmark.entiers(args[++i]);
+                case "--operations" -> operations = Integer.parseInt(args[++i]);
+                case "--films" -> films = Integer.parseInt(args[++i]);
+                case "--copies-par-film" -> copiesParFilm = Integer.parseInt(args[++i]);
+                case "--latence-commit-us" -> latenceCommitUs = Long.parseLong(args[++i]);
+                case "--oracle" -> oracle = true;
+                case "--quota" -> quota = Integer.parseInt(args[++i]);
+                case "--nombre-clients" -> nombreClients = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        this.clients = clients;
+        this.lots = lots;
+        this.operations = operations;
+        this.films = films;
+        this.copiesParFilm = copiesParFilm;
+        this.latenceCommitUs = latenceCommitUs;
+        this.oracle = oracle;
+        this.quota = quota;
+        this.nombreClients = nombreClients;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new CheckoutBenchmark(args).executer();
+    }
+
+    private void executer() throws Exception {
+        DataSource dataSource = oracle ? ConnectionPool.getInstance() : avecLatence(new NoOpDataSource(), latenceCommitUs);
+        List<String> idFilms = new ArrayList<>();
+        List<String> idClients = new ArrayList<>();
+        if (oracle) {
+            lire(dataSource, "SELECT \"idFilm\" FROM \"Film\"", idFilms);
+            lire(dataSource, "SELECT \"idUser\" FROM \"Client\"", idClients);
+        } else {
+            for (int f = 0; f < films; f++) {
+                idFilms.add(Integer.toString(100_000 + f));
+            }
+            for (int c = 0; c < nombreClients; c++) {
+                idClients.add("U" + c);
+            }
+        }
+
+        System.out.printf("%8s %6s %10s %12s %10s %10s %s%n", "clients", "lot", "ops", "ops/s", "refus %", "quota %", "service");
+        for (int lot : lots) {
+            for (int n : clients) {
+                RentalService service;
+                if (oracle) {
+                    service = RentalService.demarrer(dataSource, lot);
+                } else {
+                    QuotaManager quotas = null;
+                    if (quota > 0) {
+                        quotas = new QuotaManager(null, Long.MAX_VALUE);
+                        for (String idClient : idClients) {
+                            quotas.definir(idClient, quota, 14);
+                        }
+                    }
+                    service = new RentalService(dataSource, indexSynthetique(idFilms), quotas, lot);
+                }
+                try (service) {
+                    long[] resultat = mesurer(service, idFilms, oracle || quota > 0 ? idClients : null, n);
+                    System.out.printf("%8d %6d %10d %12.0f %10.1f %10.1f %s%n", n, lot, resultat[0],
+                            resultat[0] * 1e9 / resultat[1], 100.0 * resultat[2] / resultat[0],
+                            100.0 * resultat[3] / resultat[0], service.rapport());
+                }
+            }
+        }
+        if (oracle) {
+            ConnectionPool.getInstance().close();
+        }
+    }
+
+    private static void lire(DataSource dataSource, String sql, List<String> valeurs) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                valeurs.add(rs.getString(1));
+            }
+        }
+    }
+
+    private AvailabilityIndex indexSynthetique(List<String> idFilms) {
+        long debut = System.nanoTime();
+        AvailabilityIndex index = new AvailabilityIndex();
+        for (String idFilm : idFilms) {
+            for (int c = 0; c < copiesParFilm; c++) {
+                index.ajouter(AvailabilityIndex.code(idFilm, c), true);
+            }
+        }
+        System.out.printf("Index: %d copies en %.1f ms%n", (long) idFilms.size() * copiesParFilm,
+                (System.nanoTime() - debut) / 1e6);
+        return index;
+    }
+
+    // {operations, elapsed ns, checkouts refused for lack of copies, checkouts refused by quota}
+    private long[] mesurer(RentalService service, List<String> idFilms, List<String> idClients, int nombreClients)
+            throws Exception {
+        int parClient = operations / nombreClients;
+        long[] refus = new long[nombreClients];
+        long[] horsQuota = new long[nombreClients];
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        long debut = System.nanoTime();
+        for (int c = 0; c < nombreClients; c++) {
+            int numero = c;
+            Thread t = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Deque<String> empruntees = new ArrayDeque<>();
+                try {
+                    for (int i = 0; i < parClient; i++) {
+                        if (empruntees.size() >= 3) {
+                            service.retourner(empruntees.removeFirst());
+                            continue;
+                        }
+                        String idClient = idClients == null ? "U" + numero : idClients.get(random.nextInt(idClients.size()));
+                        RentalService.Location location;
+                        try {
+                            location = service.emprunter(idFilms.get(random.nextInt(idFilms.size())), idClient, 7);
+                        } catch (QuotaExceededException e) {
+                            horsQuota[numero]++;
+                            continue;
+                        }
+                        if (location == null) {
+                            refus[numero]++;
+                        } else {
+                            empruntees.addLast(location.codeCopie());
+                        }
+                    }
+                    for (String code : empruntees) {
+                        service.retourner(code);
+                    }
+                } catch (Exception e) {
+                    erreur.compareAndSet(null, e);
+                }
+            }, "client-" + c);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long duree = System.nanoTime() - debut;
+        if (erreur.get() != null) {
+            throw erreur.get();
+        }
+        return new long[]{(long) parClient * nombreClients, duree, Arrays.stream(refus).sum(),
+                Arrays.stream(horsQuota).sum()};
+    }
+
+    // Delays every commit by latenceUs, to stand in for the round trip NoOpDataSource does not have
+    private static DataSource avecLatence(DataSource dataSource, long latenceUs) {
+        return (DataSource) Proxy.newProxyInstance(CheckoutBenchmark.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+                    Object resultat = invoquer(dataSource, method, args);
+                    if (!method.getName().equals("getConnection")) {
+                        return resultat;
+                    }
+                    Connection conn = (Connection) resultat;
+                    return Proxy.newProxyInstance(CheckoutBenchmark.class.getClassLoader(),
+                            new Class<?>[]{Connection.class}, (p, m, a) -> {
+                                if (m.getName().equals("commit") && latenceUs > 0) {
+                                    TimeUnit.MICROSECONDS.sleep(latenceUs);
+                                }
+                                return invoquer(conn, m, a);
+                            });
+                });
+    }
+
+    private static Object invoquer(Object cible, Method methode, Object[] args) throws Throwable {
+        try {
+            return methode.invoke(cible, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.SplittableRandom;
+
+/**
+ * Writes clients_latin1.xml, personnes_latin1.xml and films_latin1.xml of any size, in the
+ * exact layout RecordDecoder and LectureXml read, to load test the inserter well past the
+ * sample files: MainInserter --donnees <dossier> loads them.
+ *
+ * Every record draws from its own SplittableRandom, seeded from the seed, the record type
+ * and the id: the output is the same byte for byte for a given seed whatever the sizes of
+ * the other files, and records are streamed one by one, so tens of millions of them need
+ * no more memory than one. The data stays loadable:
+ * - personnes have ids 1..P and every realisateur / acteur of a film is one of them, drawn
+ *   with a power law so a few people appear in many films, as in the real catalog;
+ * - the actors of a film are distinct, courriel and card numbers are unique (derived from
+ *   the client id), and every value fits its column;
+ * - texts mix accented French and English words and XML special characters, so the
+ *   latin1 decoding and the entities are exercised.
+ *
+ * Parameters: --films N, --personnes N (default: 5 per film), --clients N (default: 10 per
+ * film), --graine S, --dossier repertoire (default donnees-generees), --textes-longs P (P% of
+ * the bios and resumes are 3 to 65 thousand characters long, the other fields unchanged: a
+ * text-heavy variant of the same dataset for the CLOB paths of LectureBD).
+ */
+public class DatasetGenerator {
+
+    private static final long TYPE_PERSONNE = 0x5045_5253L, TYPE_FILM = 0x4649_4c4dL, TYPE_CLIENT = 0x434c_4945L;
+
+    private static final String[] PRENOMS = {"Jean", "Marie", "Hélène", "François", "Élodie", "Jérôme",
+            "Chloé", "André", "Zoé", "Noël", "Agnès", "Benoît", "Céline", "Loïc", "Anaïs", "Michael",
+            "Sarah", "John", "Emma", "David", "Laura", "Thomas", "Julia", "Peter", "Grace", "Ève"};
+    private static final String[] NOMS = {"Tremblay", "Gagnon", "Roy", "Côté", "Bouchard", "Gauthier",
+            "Morin", "Lavoie", "Fortin", "Gagné", "Ouellet", "Pelletier", "Bélanger", "Lévesque", "Bergeron",
+            "Leblanc", "Paquette", "Girard", "Simard", "Boucher", "Caron", "Beaulieu", "Cloutier", "Dubé",
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis", "O'Connor", "García"};
+    private static final String[] MOTS = {"amour", "nuit", "été", "rivière", "forêt", "château", "rêve",
+            "mémoire", "lumière", "hiver", "fenêtre", "cœur", "étoile", "océan", "frère", "sœur", "île",
+            "secret", "dernier", "premier", "ombre", "ville", "voyage", "retour", "guerre", "paix",
+            "night", "river", "house", "shadow", "storm", "dream", "king", "queen", "road", "fire", "glass",
+            "silence", "garden", "empire", "legend", "ghost", "winter", "summer", "heart", "star", "Québec"};
+    private static final String[] LIAISONS = {"de la", "du", "et", "sans", "pour", "of the", "and", "in the",
+            "&", "contre", "après", "under"};
+    private static final String[] PAYS = {"USA", "Canada", "France", "UK", "Germany", "Italy", "Spain",
+            "Japan", "Mexico", "Belgium", "Switzerland", "Australia", "Sweden", "Brazil", "India", "South Korea"};
+    private static final String[] LANGUES = {"English", "French", "Spanish", "German", "Italian", "Japanese",
+            "Korean", "Hindi", "Portuguese", "Swedish"};
+    private static final String[] GENRES = {"Action", "Adventure", "Animation", "Comedy", "Crime",
+            "Documentary", "Drama", "Family", "Fantasy", "Horror", "Musical", "Mystery", "Romance",
+            "Sci-Fi", "Thriller", "War", "Western"};
+    private static final String[] VILLES = {"Montréal", "Québec", "Trois-Rivières", "Sherbrooke", "Gatineau",
+            "Toronto", "Ottawa", "Vancouver", "Paris", "Lyon", "New York", "Los Angeles", "London"};
+    private static final String[] PROVINCES = {"QC", "ON", "BC", "AB", "NB", "NS", "MB"};
+    private static final String[] RUES = {"rue Principale", "boulevard René-Lévesque", "avenue du Parc",
+            "rue Sainte-Catherine", "chemin de la Côte", "rue King", "Main Street"};
+    private static final String[] CARTES = {"VISA", "MasterCard", "AMEX"};
+    private static final String[] FORFAITS = {"D", "I", "A"};
+    private static final String LETTRES_POSTALES = "ABCEGHJKLMNPRSTVXY";
+
+    private long films = 1000;
+    private long personnes = -1;
+    private long clients = -1;
+    private long graine = 42;
+    private String dossier = "donnees-generees";
+    private int textesLongs = 0;
+
+    public static void main(String[] args) throws IOException {
+        DatasetGenerator g = new DatasetGenerator();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--films" -> g.films = Long.parseLong(args[++i]);
+                case "--personnes" -> g.personnes = Long.parseLong(args[++i]);
+                case "--clients" -> g.clients = Long.parseLong(args[++i]);
+                case "--graine" -> g.graine = Long.parseLong(args[++i]);
+                case "--dossier" -> g.dossier = args[++i];
+                case "--textes-longs" -> g.textesLongs = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        if (g.personnes < 0) {
+            g.personnes = Math.max(1, g.films * 5);
+        }
+        if (g.clients < 0) {
+            g.clients = g.films * 10;
+        }
+        g.generer();
+    }
+
+    public void generer() throws IOException {
+        if (personnes < 1 && films > 0) {
+            throw new IllegalArgumentException("Des films sans personnes n'auraient pas de réalisateur");
+        }
+        new File(dossier).mkdirs();
+        ecrire("personnes", personnes, this::personne);
+        ecrire("films", films, this::film);
+        ecrire("clients", clients, this::client);
+    }
+
+    private interface Generateur {
+        void ecrire(Writer out, long id) throws IOException;
+    }
+
+    private void ecrire(String type, long nombre, Generateur generateur) throws IOException {
+        File fichier = new File(dossier, type + "_latin1.xml");
+        long debut = System.nanoTime();
+        long palier = Math.max(1, nombre / 10);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fichier),
+                StandardCharsets.ISO_8859_1), 1 << 20)) {
+            out.write("<" + type + ">\n");
+            for (long id = 1; id <= nombre; id++) {
+                generateur.ecrire(out, id);
+                if (id % palier == 0 && nombre >= 100_000) {
+                    System.out.printf("  %s: %d / %d%n", type, id, nombre);
+                }
+            }
+            out.write("</" + type + ">\n");
+        }
+        double secondes = Math.max(1, System.nanoTime() - debut) / 1e9;
+        System.out.printf("%s: %d enregistrements, %.1f Mo en %.1f s%n", fichier, nombre,
+                fichier.length() / (double) (1 << 20), secondes);
+    }
+
+    // Same stream for the same (seed, type, id), independent of everything else
+    private SplittableRandom aleatoire(long type, long id) {
+        return new SplittableRandom(new SplittableRandom(graine ^ type).nextLong() + id * 0x9E37_79B9_7F4A_7C15L);
+    }
+
+    private void personne(Writer out, long id) throws IOException {
+        SplittableRandom r = aleatoire(TYPE_PERSONNE, id);
+        out.write("<personne id=\"" + id + "\">\n");
+        element(out, "\t", "nom", nomPersonne(id));
+        element(out, "\t", "anniversaire", date(r, 1920, 2005));
+        element(out, "\t", "lieu", choisir(r, VILLES) + ", " + choisir(r, PAYS));
+        if (r.nextInt(4) > 0) {
+            element(out, "\t", "photo", "http://images.example.com/personnes/" + id + ".jpg");
+        }
+        element(out, "\t", "bio", texteLong(TYPE_PERSONNE, id, phrases(r, 1 + r.nextInt(4))));
+        out.write("</personne>\n\n");
+    }
+
+    // A person's name depends on the id only, so a film citing that id can repeat it
+    private String nomPersonne(long id) {
+        SplittableRandom r = aleatoire(TYPE_PERSONNE ^ 1, id);
+        return choisir(r, PRENOMS) + " " + choisir(r, NOMS);
+    }
+
+    private void film(Writer out, long id) throws IOException {
+        SplittableRandom r = aleatoire(TYPE_FILM, id);
+        out.write("<film id=\"" + id + "\">\n");
+        element(out, "\t", "titre", titre(r));
+        element(out, "\t", "annee", Integer.toString(1920 + r.nextInt(105)));
+        int nPays = 1 + (r.nextInt(5) == 0 ? 1 + r.nextInt(2) : 0);
+        int premierPays = r.nextInt(PAYS.length);
+        for (int i = 0; i < nPays; i++) {
+            element(out, "\t", "pays", PAYS[(premierPays + i) % PAYS.length]);
+        }
+        element(out, "\t", "langue", choisir(r, LANGUES));
+        element(out, "\t", "duree", Integer.toString(70 + r.nextInt(110)));
+        element(out, "\t", "resume", texteLong(TYPE_FILM, id, phrases(r, 1 + r.nextInt(3))));
+        int nGenres = 1 + r.nextInt(4);
+        int premierGenre = r.nextInt(GENRES.length);
+        for (int i = 0; i < nGenres; i++) {
+            element(out, "\t", "genre", GENRES[(premierGenre + i * 3) % GENRES.length]);
+        }
+        long realisateur = personneTiree(r);
+        out.write("\t<realisateur id=\"" + realisateur + "\">");
+        texte(out, nomPersonne(realisateur));
+        out.write("</realisateur>\n");
+        // Distinct scenaristes, (idFilm, idScenariste) is the key of FilmScenariste
+        int nScenaristes = r.nextInt(4);
+        long[] scenaristes = new long[nScenaristes];
+        for (int i = 0; i < nScenaristes; i++) {
+            long scenariste;
+            do {
+                scenariste = (long) r.nextInt(PRENOMS.length) * NOMS.length + r.nextInt(NOMS.length);
+            } while (contient(scenaristes, i, scenariste));
+            scenaristes[i] = scenariste;
+            element(out, "\t", "scenariste", PRENOMS[(int) (scenariste / NOMS.length)] + " "
+                    + NOMS[(int) (scenariste % NOMS.length)]);
+        }
+        // Distinct actors: at most as many as there are people
+        int nRoles = (int) Math.min(personnes, r.nextInt(13));
+        long[] acteurs = new long[nRoles];
+        for (int i = 0; i < nRoles; i++) {
+            long acteur;
+            do {
+                acteur = personneTiree(r);
+            } while (contient(acteurs, i, acteur));
+            acteurs[i] = acteur;
+            out.write("\t<role>\n\t\t<acteur id=\"" + acteur + "\">");
+            texte(out, nomPersonne(acteur));
+            out.write("</acteur>\n");
+            element(out, "\t\t", "personnage", r.nextInt(6) == 0 ? choisir(r, PRENOMS)
+                    : choisir(r, PRENOMS) + " " + choisir(r, NOMS));
+            out.write("\t</role>\n");
+        }
+        if (r.nextInt(5) > 0) {
+            element(out, "\t", "poster", "http://images.example.com/films/" + id + ".jpg");
+        }
+        int nAnnonces = r.nextInt(3);
+        for (int i = 0; i < nAnnonces; i++) {
+            element(out, "\t", "annonce", "http://videos.example.com/films/" + id + "/" + (i + 1) + ".mp4");
+        }
+        out.write("</film>\n\n");
+    }
+
+    // Power law over 1..P: the lowest ids are cast again and again, the tail rarely
+    private long personneTiree(SplittableRandom r) {
+        double u = r.nextDouble();
+        return 1 + Math.min(personnes - 1, (long) (personnes * u * u * u));
+    }
+
+    private static boolean contient(long[] valeurs, int n, long valeur) {
+        for (int i = 0; i < n; i++) {
+            if (valeurs[i] == valeur) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void client(Writer out, long id) throws IOException {
+        SplittableRandom r = aleatoire(TYPE_CLIENT, id);
+        String prenom = choisir(r, PRENOMS);
+        String nom = choisir(r, NOMS);
+        out.write("<client id=\"" + id + "\">\n");
+        element(out, "\t", "nom-famille", nom);
+        element(out, "\t", "prenom", prenom);
+        element(out, "\t", "courriel", ascii(prenom) + "." + ascii(nom) + "." + id + "@example.com");
+        element(out, "\t", "tel", String.format("%03d-%03d-%04d", 200 + r.nextInt(800), r.nextInt(1000), r.nextInt(10_000)));
+        element(out, "\t", "anniversaire", date(r, 1940, 2008));
+        element(out, "\t", "adresse", (1 + r.nextInt(9999)) + " " + choisir(r, RUES));
+        element(out, "\t", "ville", choisir(r, VILLES));
+        element(out, "\t", "province", choisir(r, PROVINCES));
+        element(out, "\t", "code-postal", "" + lettrePostale(r) + r.nextInt(10) + lettrePostale(r) + " "
+                + r.nextInt(10) + lettrePostale(r) + r.nextInt(10));
+        String carte = choisir(r, CARTES);
+        element(out, "\t", "carte", carte);
+        // Unique per client: the id, zero-padded, after a prefix of the card's network
+        element(out, "\t", "no", (carte.equals("AMEX") ? "37" : carte.equals("VISA") ? "4" : "51")
+                + String.format("%014d", id));
+        element(out, "\t", "exp-mois", Integer.toString(1 + r.nextInt(12)));
+        element(out, "\t", "exp-annee", Integer.toString(2025 + r.nextInt(8)));
+        element(out, "\t", "mot-de-passe", Long.toHexString(r.nextLong()));
+        element(out, "\t", "forfait", FORFAITS[r.nextInt(10) < 6 ? 0 : r.nextInt(10) < 7 ? 1 : 2]);
+        out.write("</client>\n\n");
+    }
+
+    private static String titre(SplittableRandom r) {
+        String titre = capitaliser(choisir(r, MOTS));
+        if (r.nextInt(3) > 0) {
+            titre += " " + choisir(r, LIAISONS) + " " + choisir(r, MOTS);
+        }
+        if (r.nextInt(8) == 0) {
+            titre += " " + (2 + r.nextInt(4));
+        }
+        return titre;
+    }
+
+    // From a stream of its own, so the rest of the record is the same with or without --textes-longs
+    private String texteLong(long type, long id, String court) {
+        if (textesLongs <= 0) {
+            return court;
+        }
+        SplittableRandom r = aleatoire(type ^ 2, id);
+        if (r.nextInt(100) >= textesLongs) {
+            return court;
+        }
+        // 40 to 800 sentences, across the in-line, streamed and deferred thresholds of ClobWriter
+        return phrases(r, 40 + r.nextInt(761));
+    }
+
+    private static String phrases(SplittableRandom r, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < n; p++) {
+            if (p > 0) {
+                sb.append(' ');
+            }
+            int mots = 6 + r.nextInt(14);
+            for (int m = 0; m < mots; m++) {
+                String mot = r.nextInt(6) == 0 ? choisir(r, LIAISONS) : choisir(r, MOTS);
+                sb.append(m == 0 ? capitaliser(mot) : mot).append(m == mots - 1 ? "." : " ");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String date(SplittableRandom r, int anneeMin, int anneeMax) {
+        return String.format("%04d-%02d-%02d", anneeMin + r.nextInt(anneeMax - anneeMin + 1),
+                1 + r.nextInt(12), 1 + r.nextInt(28));
+    }
+
+    private static char lettrePostale(SplittableRandom r) {
+        return LETTRES_POSTALES.charAt(r.nextInt(LETTRES_POSTALES.length()));
+    }
+
+    private static String choisir(SplittableRandom r, String[] valeurs) {
+        return valeurs[r.nextInt(valeurs.length)];
+    }
+
+    private static String capitaliser(String mot) {
+        return mot.isEmpty() ? mot : Character.toUpperCase(mot.charAt(0)) + mot.substring(1);
+    }
+
+    // Letters only, for the local part of an address
+    private static String ascii(String s) {
+        StringBuilder sb = new StringBuilder();
+        for (char c : Normalizer.normalize(s, Normalizer.Form.NFD).toCharArray()) {
+            if (c < 128 && Character.isLetter(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void element(Writer out, String indentation, String tag, String valeur) throws IOException {
+        out.write(indentation);
+        out.write('<');
+        out.write(tag);
+        out.write('>');
+        texte(out, valeur);
+        out.write("</");
+        out.write(tag);
+        out.write(">\n");
+    }
+
+    // Escapes the XML special characters and replaces what latin1 cannot encode
+    private static void texte(Writer out, String valeur) throws IOException {
+        for (int i = 0; i < valeur.length(); i++) {
+            char c = valeur.charAt(i);
+            switch (c) {
+                case '&' -> out.write("&amp;");
+                case '<' -> out.write("&lt;");
+                case '>' -> out.write("&gt;");
+                case 'œ' -> out.write("oe");
+                default -> out.write(c < 256 ? c : '?');
+            }
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package benchmark;
+
+import database.ConnectionPool;
+import inserter.KeyGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Cost of the KeyGenerator strategies for the Role / BandeAnnonce keys of a load of --films
+ * films with --enfants rows each, plus "aleatoire" (UUID.randomUUID(), what uuid gives a new
+ * Scenariste) as the baseline.
+ *
+ * Two measures per strategy:
+ *   generation : keys/s with N threads, one generator per thread as one per LectureBD;
+ *                the sequence blocks come from a shared counter paying --latence-sequence-us
+ *                per NEXTVAL, like a round trip to the database;
+ *   index      : the keys of a single-threaded load inserted, in load order, into a model of
+ *                the leaf level of the primary key B-tree (8 KB blocks, entries sized like
+ *                Oracle's: VARCHAR2 or NUMBER bytes plus rowid and row header). A full leaf
+ *                splits 50/50, except on the right edge where Oracle opens a new leaf (the
+ *                "90/10" split) and leaves the full one packed. Reported: inserts/s into the
+ *                model, splits per 1000 keys, share of right-edge splits, leaf fill.
+ *
+ * Keys ordered like the load (deterministe, temporel, sequence) only ever split on the right
+ * edge and leave full leaves; UUIDs land anywhere, split in the middle and leave leaves about
+ * 70% full, which is as many more blocks to write and cache.
+ *
+ * --oracle also inserts the keys into a scratch table "BancCles" with a primary key through
+ * ConnectionPool (batches of 1000, dropped afterwards) and reports rows/s; the sequence
+ * strategy then draws real blocks from a "seq_BancCles" sequence.
+ *
+ * Parameters: --strategies aleatoire,uuid,deterministe,temporel,sequence, --threads 1,8,
+ * --films N, --enfants N, --bloc-sequence N, --latence-sequence-us N, --iterations N,
+ * --csv path, --oracle.
+ */
+public class KeyBenchmark {
+
+    private static final String TABLE = "BancCles";
+    private static final int TAILLE_BLOC_INDEX = 8192 - 200;
+
+    private final String[] strategies;
+    private final int[] threads;
+    private final int films;
+    private final int enfants;
+    private final int blocSequence;
+    private final long latenceSequenceUs;
+    private final int iterations;
+    private final String csv;
+    private final boolean oracle;
+
+    private KeyBenchmark(String[] args) {
+        String[] strategies = {"aleatoire", "uuid", "deterministe", "temporel", "sequence"};
+        int[] threads = {1, 8};
+        int films = 50_000, enfants = 10, blocSequence = 1000, iterations = 3;
+        long latenceSequenceUs = 500;
+        String csv = null;
+        boolean oracle = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--strategies" -> strategies = args[++i].split(",");
+                case "--threads" -> threads = LoaderBenchmark.entiers(args[++i]);
+                case "--films" -> films = Integer.parseInt(args[++i]);
+                case "--enfants" -> enfants = Integer.parseInt(args[++i]);
+                case "--bloc-sequence" -> blocSequence = Integer.parseInt(args[++i]);
+                case "--latence-sequence-us" -> latenceSequenceUs = Long.parseLong(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--csv" -> csv = args[++i];
+                case "--oracle" -> oracle = true;
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        this.strategies = strategies;
+        this.threads = threads;
+        this.films = films;
+        this.enfants = enfants;
+        this.blocSequence = blocSequence;
+        this.latenceSequenceUs = latenceSequenceUs;
+        this.iterations = iterations;
+        this.csv = csv;
+        this.oracle = oracle;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new KeyBenchmark(args).executer();
+    }
+
+    private void executer() throws Exception {
+        List<String> lignes = new ArrayList<>();
+        lignes.add("strategie,threads,cles,generationParSeconde,indexParSeconde,separationsPour1000,bordPourcent,remplissagePourcent,oracleParSeconde");
+        System.out.printf("%-13s %7s %9s %14s %12s %12s %7s %12s %12s%n", "strategie", "threads", "cles",
+                "generation/s", "index/s", "splits/1000", "bord %", "remplissage", "oracle/s");
+        for (String strategie : strategies) {
+            ModeleIndex modele = modeler(strategie);
+            double oracleParSeconde = oracle ? insererOracle(strategie) : Double.NaN;
+            for (int n : threads) {
+                double generation = mesurerGeneration(strategie, n);
+                System.out.printf("%-13s %7d %9d %14.0f %12.0f %12.1f %7.1f %11.1f%% %12s%n", strategie, n,
+                        (long) films * enfants, generation, modele.parSeconde, modele.separationsPour1000(),
+                        modele.bordPourcent(), modele.remplissagePourcent(),
+                        Double.isNaN(oracleParSeconde) ? "-" : String.format("%.0f", oracleParSeconde));
+                lignes.add(String.join(",", strategie, Integer.toString(n), Long.toString((long) films * enfants),
+                        String.format("%.0f", generation), String.format("%.0f", modele.parSeconde),
+                        String.format("%.2f", modele.separationsPour1000()), String.format("%.1f", modele.bordPourcent()),
+                        String.format("%.1f", modele.remplissagePourcent()),
+                        Double.isNaN(oracleParSeconde) ? "" : String.format("%.0f", oracleParSeconde)));
+            }
+        }
+        if (csv != null) {
+            Files.write(Paths.get(csv), lignes, StandardCharsets.UTF_8);
+            System.out.println("Résultats écrits dans " + csv);
+        }
+        if (oracle) {
+            ConnectionPool.getInstance().close();
+        }
+    }
+
+    // Shared across the threads of one measure, like the database sequence
+    private KeyGenerator generateur(String strategie, AtomicLong sequence) {
+        if (strategie.equals("aleatoire")) {
+            return new KeyGenerator() {
+                @Override
+                public String cleEnfant(String table, String idFilm, int index) {
+                    return UUID.randomUUID().toString();
+                }
+
+                @Override
+                public String cleDimension(String table, String nom) {
+                    return UUID.randomUUID().toString();
+                }
+            };
+        }
+        return switch (KeyGenerator.Strategie.de(strategie)) {
+            case UUID -> new KeyGenerator.Uuid();
+            case DETERMINISTE -> new KeyGenerator.Deterministe();
+            case TEMPOREL -> new KeyGenerator.Temporel(1);
+            case SEQUENCE -> new KeyGenerator.Sequence(nom -> {
+                if (latenceSequenceUs > 0) {
+                    LockSupport.parkNanos(latenceSequenceUs * 1000);
+                }
+                return sequence.getAndAdd(blocSequence) + 1;
+            }, blocSequence);
+        };
+    }
+
+    private double mesurerGeneration(String strategie, int n) throws Exception {
+        double[] debits = new double[iterations];
+        for (int it = -1; it < iterations; it++) {
+            AtomicLong sequence = new AtomicLong();
+            ExecutorService executeur = Executors.newFixedThreadPool(n);
+            try {
+                List<Future<Long>> taches = new ArrayList<>();
+                long debut = System.nanoTime();
+                for (int t = 0; t < n; t++) {
+                    int premier = t;
+                    taches.add(executeur.submit(() -> {
+                        KeyGenerator cles = generateur(strategie, sequence);
+                        long total = 0;
+                        for (int film = premier + 1; film <= films; film += n) {
+                            String idFilm = Integer.toString(film);
+                            for (int i = 0; i < enfants; i++) {
+                                total += cles.cleEnfant(TABLE, idFilm, i).length();
+                            }
+                        }
+                        return total;
+                    }));
+                }
+                for (Future<Long> tache : taches) {
+                    tache.get();
+                }
+                if (it >= 0) {
+                    debits[it] = (double) films * enfants / ((System.nanoTime() - debut) / 1e9);
+                }
+            } finally {
+                executeur.shutdown();
+            }
+        }
+        Arrays.sort(debits);
+        return debits[iterations / 2];
+    }
+
+    private ModeleIndex modeler(String strategie) throws SQLException {
+        boolean numerique = !strategie.equals("aleatoire") && KeyGenerator.Strategie.de(strategie).numerique();
+        KeyGenerator cles = generateur(strategie, new AtomicLong());
+        List<Comparable<Object>> sequence = new ArrayList<>(films * enfants);
+        long octets = 0;
+        for (int film = 1; film <= films; film++) {
+            String idFilm = Integer.toString(film);
+            for (int i = 0; i < enfants; i++) {
+                String cle = cles.cleEnfant(TABLE, idFilm, i);
+                octets += numerique ? (cle.length() + 1) / 2 + 1 : cle.length();
+                sequence.add(cle(numerique, cle));
+            }
+        }
+        // Key length byte, key, rowid (6 bytes), row header and slot (4 bytes)
+        int entree = (int) (octets / sequence.size()) + 1 + 6 + 4;
+        // The first pass warms up the model for this key type and is not timed
+        ModeleIndex modele = null;
+        for (int passe = 0; passe < 2; passe++) {
+            modele = new ModeleIndex(TAILLE_BLOC_INDEX / entree);
+            long debut = System.nanoTime();
+            for (Comparable<Object> cle : sequence) {
+                modele.inserer(cle);
+            }
+            modele.parSeconde = sequence.size() / ((System.nanoTime() - debut) / 1e9);
+        }
+        return modele;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> cle(boolean numerique, String cle) {
+        return (Comparable<Object>) (Comparable<?>) (numerique ? (Object) Long.parseLong(cle) : cle);
+    }
+
+    /** Leaf level of a B+tree: lowest key of each leaf -> its sorted keys. */
+    private static final class ModeleIndex {
+        private final int capacite;
+        private final TreeMap<Comparable<Object>, List<Comparable<Object>>> feuilles = new TreeMap<>();
+        private long cles, separations, separationsBord;
+        double parSeconde;
+
+        ModeleIndex(int capacite) {
+            this.capacite = Math.max(4, capacite);
+        }
+
+        void inserer(Comparable<Object> cle) {
+            Map.Entry<Comparable<Object>, List<Comparable<Object>>> e = feuilles.floorEntry(cle);
+            if (e == null) {
+                if (feuilles.isEmpty()) {
+                    List<Comparable<Object>> feuille = new ArrayList<>(capacite);
+                    feuille.add(cle);
+                    feuilles.put(cle, feuille);
+                    cles++;
+                    return;
+                }
+                // Below every key: the first leaf now starts with it
+                feuilles.put(cle, feuilles.remove(feuilles.firstKey()));
+                e = feuilles.firstEntry();
+            }
+            List<Comparable<Object>> feuille = e.getValue();
+            int position = Collections.binarySearch(feuille, cle);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (feuille.size() == capacite) {
+                separations++;
+                if (position == capacite && e.getKey() == feuilles.lastKey()) {
+                    separationsBord++;
+                    List<Comparable<Object>> nouvelle = new ArrayList<>(capacite);
+                    nouvelle.add(cle);
+                    feuilles.put(cle, nouvelle);
+                    cles++;
+                    return;
+                }
+                int milieu = capacite / 2;
+                List<Comparable<Object>> droite = new ArrayList<>(capacite);
+                droite.addAll(feuille.subList(milieu, capacite));
+                feuille.subList(milieu, capacite).clear();
+                feuilles.put(droite.get(0), droite);
+                if (position >= milieu) {
+                    feuille = droite;
+                    position -= milieu;
+                }
+            }
+            feuille.add(position, cle);
+            cles++;
+        }
+
+        double separationsPour1000() {
+            return 1000.0 * separations / Math.max(1, cles);
+        }
+
+        double bordPourcent() {
+            return 100.0 * separationsBord / Math.max(1, separations);
+        }
+
+        double remplissagePourcent() {
+            return 100.0 * cles / Math.max(1, (long) feuilles.size() * capacite);
+        }
+    }
+
+    // Rows/s of the keys of a single-threaded load into a table keyed like the schema
+    private double insererOracle(String strategie) {
+        boolean numerique = !strategie.equals("aleatoire") && KeyGenerator.Strategie.de(strategie).numerique();
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            executerDdl(conn, "DROP TABLE \"" + TABLE + "\"");
+            executerDdl(conn, "CREATE TABLE \"" + TABLE + "\" (\"cle\" " + (numerique ? "NUMBER(19)" : "VARCHAR2(36)")
+                    + " PRIMARY KEY, \"idFilm\" VARCHAR2(10) NOT NULL)");
+            String sequence = KeyGenerator.Sequence.nomSequence(TABLE);
+            executerDdl(conn, "DROP SEQUENCE \"" + sequence + "\"");
+            executerDdl(conn, "CREATE SEQUENCE \"" + sequence + "\" INCREMENT BY " + blocSequence);
+            KeyGenerator cles = strategie.equals("sequence")
+                    ? new KeyGenerator.Sequence(KeyGenerator.Sequence.oracle(conn), blocSequence)
+                    : generateur(strategie, new AtomicLong());
+            long debut = System.nanoTime();
+            try (cles; PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO \"" + TABLE + "\" (\"cle\", \"idFilm\") VALUES (?, ?)")) {
+                int lignes = 0;
+                for (int film = 1; film <= films; film++) {
+                    String idFilm = Integer.toString(film);
+                    for (int i = 0; i < enfants; i++) {
+                        ps.setString(1, cles.cleEnfant(TABLE, idFilm, i));
+                        ps.setString(2, idFilm);
+                        ps.addBatch();
+                        if (++lignes % 1000 == 0) {
+                            ps.executeBatch();
+                            conn.commit();
+                        }
+                    }
+                }
+                ps.executeBatch();
+                conn.commit();
+            }
+            double debit = (double) films * enfants / ((System.nanoTime() - debut) / 1e9);
+            executerDdl(conn, "DROP TABLE \"" + TABLE + "\"");
+            executerDdl(conn, "DROP SEQUENCE \"" + sequence + "\"");
+            return debit;
+        } catch (SQLException e) {
+            System.err.println(strategie + ": insertion Oracle impossible: " + e.getMessage());
+            return Double.NaN;
+        }
+    }
+
+    // The DROP of a first run finds nothing to drop
+    private static void executerDdl(Connection conn, String sql) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            if (!sql.startsWith("DROP")) {
+                System.err.println(sql + ": " + e.getMessage());
+            }
+        }
+    }
+}
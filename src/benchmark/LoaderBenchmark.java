@@ -0,0 +1,336 @@
+package benchmark;
+
+import creator.TableCreator;
+import inserter.LectureBD;
+import inserter.LectureXml;
+import inserter.LoaderConfig;
+import inserter.ParallelLoader;
+import inserter.RecordDecoder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Throughput benchmark of the XML -> JDBC load path, in the spirit of a JMH harness
+ * (warm-up iterations, measured iterations, one line per parameter combination) but
+ * runnable from the IDE without a build tool.
+ *
+ * Suites:
+ *   decodage : XML decoding alone, LectureXml (XmlPullParser) against RecordDecoder
+ *   parse : LectureBD / ParallelLoader against NoOpDataSource, i.e. parse + bind cost only
+ *   h2    : end-to-end against an in-memory H2 database in Oracle mode (H2 jar on the
+ *           classpath; skipped otherwise). Runs with --sans-bulk semantics since H2 has no
+ *           CREATE TYPE, and with referential integrity off since no Personne rows are loaded.
+ *
+ * Parameters: --echelles 1,4 (copies of the input file, ids shifted per copy),
+ * --lots 100,1000 (fixed batch size), --ecrivains 0,2 (0 = single-threaded LectureBD),
+ * --type films|clients|personnes, --fichier path, --iterations N, --echauffement N, --csv path,
+ * --xmlpull (parse and h2 suites decode with LectureXml instead of RecordDecoder),
+ * --clobs 4000/32767,4000/0 (CLOB thresholds, --clob-en-ligne/--clob-differe of each run: on
+ * a DatasetGenerator --textes-longs file this compares in-line, streamed and deferred binds).
+ *
+ * Reported: records/s (median of the measured iterations) and bytes allocated per record
+ * over all threads (mean), so allocation regressions show up next to throughput ones.
+ */
+public class LoaderBenchmark {
+
+    private static final int DECALAGE_ID = 10_000_000;
+
+    private final String suite;
+    private final String type;
+    private final String fichier;
+    private final int[] echelles;
+    private final int[] lots;
+    private final int[] ecrivains;
+    private final int iterations;
+    private final int echauffement;
+    private final String csv;
+    private final boolean xmlPull;
+    private final String[] clobs;
+
+    private final PrintStream sortie = System.out;
+    private int baseH2 = 0;
+
+    private LoaderBenchmark(String[] args) {
+        String suite = "parse", type = "films", fichier = null, csv = null;
+        int[] echelles = {1}, lots = {100, 1000}, ecrivains = {0, 2};
+        int iterations = 5, echauffement = 2;
+        boolean xmlPull = false;
+        String[] clobs = {"4000/32767"};
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--suite" -> suite = args[++i];
+                case "--type" -> type = args[++i];
+                case "--fichier" -> fichier = args[++i];
+                case "--echelles" -> echelles = entiers(args[++i]);
+                case "--lots" -> lots = entiers(args[++i]);
+                case "--ecrivains" -> ecrivains = entiers(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--echauffement" -> echauffement = Integer.parseInt(args[++i]);
+                case "--csv" -> csv = args[++i];
+                case "--xmlpull" -> xmlPull = true;
+                case "--clobs" -> clobs = args[++i].split(",");
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        this.suite = suite;
+        this.type = type;
+        this.fichier = fichier != null ? fichier : "src/data/" + type + "_latin1.xml";
+        this.echelles = echelles;
+        this.lots = lots;
+        this.ecrivains = ecrivains;
+        this.iterations = iterations;
+        this.echauffement = echauffement;
+        this.csv = csv;
+        this.xmlPull = xmlPull;
+        this.clobs = clobs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoaderBenchmark(args).executer();
+    }
+
+    private void executer() throws Exception {
+        List<String> lignes = new ArrayList<>();
+        lignes.add("suite,type,echelle,lot,ecrivains,clobs,records,recordsParSeconde,octetsParRecord");
+        sortie.printf("%-16s %-9s %7s %6s %9s %12s %9s %14s %12s%n",
+                "suite", "type", "echelle", "lot", "ecrivains", "clobs", "records", "records/s", "B/record");
+
+        for (String s : suite.equals("tout") ? List.of("decodage", "parse", "h2") : List.of(suite)) {
+            if (s.equals("h2") && !h2Disponible()) {
+                sortie.println("h2: org.h2.Driver absent du classpath, suite ignorée.");
+                continue;
+            }
+            for (int echelle : echelles) {
+                Path donnees = echelle == 1 ? Paths.get(fichier) : multiplier(Paths.get(fichier), echelle);
+                int records = decoder(donnees.toString(), true);
+                if (s.equals("decodage")) {
+                    for (boolean avecXmlPull : new boolean[]{true, false}) {
+                        Mesure m = mesurerDecodage(donnees.toString(), avecXmlPull, records);
+                        String nom = avecXmlPull ? "decodage-xmlpull" : "decodage-direct";
+                        sortie.printf("%-16s %-9s %7d %6s %9s %12s %9d %14.0f %12.0f%n",
+                                nom, type, echelle, "-", "-", "-", records, m.recordsParSeconde, m.octetsParRecord);
+                        lignes.add(String.join(",", nom, type, Integer.toString(echelle), "", "", "",
+                                Integer.toString(records),
+                                String.format("%.0f", m.recordsParSeconde), String.format("%.0f", m.octetsParRecord)));
+                    }
+                    if (echelle != 1) {
+                        Files.deleteIfExists(donnees);
+                    }
+                    continue;
+                }
+                for (int lot : lots) {
+                    for (int n : ecrivains) {
+                        for (String c : clobs) {
+                            Mesure m = mesurer(s, donnees.toString(), lot, n, c, records);
+                            sortie.printf("%-16s %-9s %7d %6d %9d %12s %9d %14.0f %12.0f%n",
+                                    s, type, echelle, lot, n, c, records, m.recordsParSeconde, m.octetsParRecord);
+                            lignes.add(String.join(",", s, type, Integer.toString(echelle), Integer.toString(lot),
+                                    Integer.toString(n), c, Integer.toString(records),
+                                    String.format("%.0f", m.recordsParSeconde), String.format("%.0f", m.octetsParRecord)));
+                        }
+                    }
+                }
+                if (echelle != 1) {
+                    Files.deleteIfExists(donnees);
+                }
+            }
+        }
+
+        if (csv != null) {
+            Files.write(Paths.get(csv), lignes, StandardCharsets.UTF_8);
+            sortie.println("Résultats écrits dans " + csv);
+        }
+    }
+
+    private record Mesure(double recordsParSeconde, double octetsParRecord) {
+    }
+
+    // clobs: "enLigne/differe", the ClobWriter thresholds
+    private Mesure mesurer(String s, String donnees, int lot, int n, String clobs, int records) throws Exception {
+        String[] seuils = clobs.split("/");
+        double[] debits = new double[iterations];
+        double octets = 0;
+        for (int i = -echauffement; i < iterations; i++) {
+            // No checkpoint file: its writes would count in the measure
+            LoaderConfig config = new LoaderConfig().setTailleLot(lot).setLotFixe(true).setEcrivains(n)
+                    .setDecodeurXmlPull(xmlPull).setFichierCheckpoint(null)
+                    .setClobEnLigneMax(Integer.parseInt(seuils[0])).setClobDiffereMin(Integer.parseInt(seuils[1]));
+            if (s.equals("h2")) {
+                config.setDataSource(preparerH2()).setModeBulk(false);
+            } else {
+                config.setDataSource(new NoOpDataSource());
+            }
+
+            long allouesAvant = octetsAlloues();
+            long debut = System.nanoTime();
+            charger(config, donnees);
+            long duree = System.nanoTime() - debut;
+            long alloues = octetsAlloues() - allouesAvant;
+
+            if (i >= 0) {
+                debits[i] = records / (duree / 1e9);
+                octets += alloues / (double) records;
+            }
+        }
+        Arrays.sort(debits);
+        return new Mesure(debits[iterations / 2], octets / iterations);
+    }
+
+    // LectureBD and ParallelLoader report on System.out; keep the result table readable
+    private void charger(LoaderConfig config, String donnees) {
+        PrintStream muet = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(muet);
+        try {
+            if (config.getEcrivains() > 0) {
+                ParallelLoader loader = new ParallelLoader(config);
+                try {
+                    switch (type) {
+                        case "clients" -> loader.lectureClients(donnees);
+                        case "personnes" -> loader.lecturePersonnes(donnees);
+                        default -> loader.lectureFilms(donnees);
+                    }
+                } finally {
+                    loader.closeAll();
+                }
+            } else {
+                LectureBD lectureBD = new LectureBD(config);
+                try {
+                    switch (type) {
+                        case "clients" -> lectureBD.lectureClients(donnees);
+                        case "personnes" -> lectureBD.lecturePersonnes(donnees);
+                        default -> lectureBD.lectureFilms(donnees);
+                    }
+                } finally {
+                    lectureBD.closeAll();
+                }
+            }
+        } finally {
+            System.setOut(sortie);
+        }
+    }
+
+    private Mesure mesurerDecodage(String donnees, boolean avecXmlPull, int records) throws Exception {
+        double[] debits = new double[iterations];
+        double octets = 0;
+        for (int i = -echauffement; i < iterations; i++) {
+            long allouesAvant = octetsAlloues();
+            long debut = System.nanoTime();
+            decoder(donnees, avecXmlPull);
+            long duree = System.nanoTime() - debut;
+            long alloues = octetsAlloues() - allouesAvant;
+            if (i >= 0) {
+                debits[i] = records / (duree / 1e9);
+                octets += alloues / (double) records;
+            }
+        }
+        Arrays.sort(debits);
+        return new Mesure(debits[iterations / 2], octets / iterations);
+    }
+
+    // Records are dropped as soon as they are decoded; also used to count them
+    private int decoder(String donnees, boolean avecXmlPull) throws Exception {
+        if (avecXmlPull) {
+            return switch (type) {
+                case "clients" -> LectureXml.lireClients(donnees, r -> { });
+                case "personnes" -> LectureXml.lirePersonnes(donnees, r -> { });
+                default -> LectureXml.lireFilms(donnees, r -> { });
+            };
+        }
+        return switch (type) {
+            case "clients" -> RecordDecoder.lireClients(donnees, r -> { });
+            case "personnes" -> RecordDecoder.lirePersonnes(donnees, r -> { });
+            default -> RecordDecoder.lireFilms(donnees, r -> { });
+        };
+    }
+
+    private static long octetsAlloues() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getTotalThreadAllocatedBytes();
+    }
+
+    private static boolean h2Disponible() {
+        try {
+            Class.forName("org.h2.Driver");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // Fresh in-memory database per iteration, so primary keys never collide between runs
+    private DataSource preparerH2() throws SQLException {
+        DataSource ds = new UrlDataSource("jdbc:h2:mem:log660_bench_" + (baseH2++) + ";MODE=Oracle;DB_CLOSE_DELAY=-1", "sa", "");
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            TableCreator tableCreator = new TableCreator(ds, false);
+            try {
+                tableCreator.resetAndCreateTables();
+            } finally {
+                tableCreator.close();
+            }
+        } finally {
+            System.setOut(sortie);
+        }
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+        return ds;
+    }
+
+    /**
+     * Writes echelle copies of the records of a latin1 file, shifting the record id of copy
+     * c by c * DECALAGE_ID so primary keys stay unique.
+     */
+    private Path multiplier(Path source, int echelle) throws IOException {
+        String contenu = Files.readString(source, StandardCharsets.ISO_8859_1);
+        String element = type.equals("clients") ? "client" : type.equals("personnes") ? "personne" : "film";
+        int debut = contenu.indexOf("<" + element + " ");
+        int fin = contenu.lastIndexOf("</" + element + ">") + element.length() + 3;
+        String entete = contenu.substring(0, debut);
+        String corps = contenu.substring(debut, fin);
+        String pied = contenu.substring(fin);
+        Pattern id = Pattern.compile("<" + element + " id=\"(\\d+)\"");
+
+        Path cible = Files.createTempFile("log660_" + type + "_x" + echelle, ".xml");
+        try (Writer w = new PrintWriter(new FileOutputStream(cible.toFile()), false, StandardCharsets.ISO_8859_1)) {
+            w.write(entete);
+            for (int c = 0; c < echelle; c++) {
+                long decalage = (long) c * DECALAGE_ID;
+                Matcher m = id.matcher(corps);
+                StringBuilder sb = new StringBuilder(corps.length() + 1024);
+                while (m.find()) {
+                    m.appendReplacement(sb, "<" + element + " id=\"" + (Long.parseLong(m.group(1)) + decalage) + "\"");
+                }
+                m.appendTail(sb);
+                w.write(sb.toString());
+                w.write('\n');
+            }
+            w.write(pied);
+        }
+        return cible;
+    }
+
+    static int[] entiers(String liste) {
+        return Arrays.stream(liste.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,134 @@
+package benchmark;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * JDBC sink that accepts every call and sends nothing: statements count their pending
+ * batch rows and return them from executeBatch(), queries return no rows. Used to
+ * measure the parse + bind cost of LectureBD without a database.
+ */
+public class NoOpDataSource implements DataSource {
+
+    @Override
+    public Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(NoOpDataSource.class.getClassLoader(),
+                new Class<?>[]{OracleConnection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "prepareStatement", "prepareCall", "createStatement" -> statement();
+                    case "createOracleArray" -> tableau((Object[]) args[1]);
+                    case "getAutoCommit", "isClosed" -> false;
+                    case "isValid", "isWrapperFor" -> true;
+                    case "unwrap" -> proxy;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "NoOpConnection";
+                    default -> valeurParDefaut(method.getReturnType());
+                });
+    }
+
+    private static Object statement() {
+        int[] enAttente = {0};
+        return Proxy.newProxyInstance(NoOpDataSource.class.getClassLoader(),
+                new Class<?>[]{CallableStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "addBatch" -> {
+                        enAttente[0]++;
+                        yield null;
+                    }
+                    case "executeBatch" -> {
+                        int[] resultat = new int[enAttente[0]];
+                        Arrays.fill(resultat, 1);
+                        enAttente[0] = 0;
+                        yield resultat;
+                    }
+                    case "executeQuery" -> resultatVide();
+                    case "execute" -> false;
+                    case "executeUpdate" -> 1;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "NoOpStatement";
+                    default -> valeurParDefaut(method.getReturnType());
+                });
+    }
+
+    private static ResultSet resultatVide() {
+        return (ResultSet) Proxy.newProxyInstance(NoOpDataSource.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> false;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> valeurParDefaut(method.getReturnType());
+                });
+    }
+
+    private static Array tableau(Object[] elements) {
+        return (Array) Proxy.newProxyInstance(NoOpDataSource.class.getClassLoader(),
+                new Class<?>[]{Array.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getArray" -> elements;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> valeurParDefaut(method.getReturnType());
+                });
+    }
+
+    private static Object valeurParDefaut(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return null;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) {
+        return getConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException("Pas un wrapper");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return false;
+    }
+}
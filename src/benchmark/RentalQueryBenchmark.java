@@ -0,0 +1,220 @@
+package benchmark;
+
+import creator.TableCreator;
+import database.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency of the typical rental-history queries under the three Location layouts of
+ * TableCreator, against the Oracle schema of ConnectionPool (the tables are reset):
+ *
+ *   heap      : plain tables, no index besides the primary keys
+ *   index     : plain tables, foreign key columns indexed (--index-fk)
+ *   partition : Location partitioned by month of dateDebut with local indexes, plus the
+ *               foreign key indexes (--location-partitionnee --index-fk)
+ *
+ * Copie and Location are filled with synthetic rows (INSERT ... SELECT over CONNECT BY,
+ * no parent rows: the schema is created with deferred constraints and only its keys and
+ * indexes are built). Rentals started within the last 30 days are still out.
+ *
+ * The active rentals of a client are measured as the application asks for them, with no
+ * bound on dateDebut, so every partition is visited. The "-borne" line keeps only rentals
+ * started in the last 90 days: it prunes, but it is a different query that misses older
+ * overdue rentals.
+ *
+ * Every query is also run through EXPLAIN PLAN so the report shows whether the index is
+ * used and how many partitions are visited: a "KEY"/"KEY" or numeric pstart/pstop range
+ * means pruning, "1"/"1048575" means every partition.
+ *
+ * Parameters: --lignes N (rentals), --clients N, --copies N, --films N, --jours N (history
+ * depth), --iterations N, --echauffement N, --dispositions heap,index,partition.
+ */
+public class RentalQueryBenchmark {
+
+    private record Requete(String nom, String sql, boolean parClient) {
+    }
+
+    // Start-date window of the bounded variant of the active rentals query, so the partitioned layout can prune
+    private static final int FENETRE_ACTIVE_JOURS = 90;
+
+    private static final String LOCATIONS_ACTIVES =
+            "SELECT \"idLocation\", \"idCopie\", \"dateDebut\", \"dateFin\" FROM \"Location\""
+                    + " WHERE \"idClient\" = ? AND \"dateRetourEffectif\" IS NULL";
+
+    private static final List<Requete> REQUETES = List.of(
+            new Requete("locations-actives-client", LOCATIONS_ACTIVES, true),
+            // A different query, not a rewrite: a rental still open after FENETRE_ACTIVE_JOURS is left out
+            // (nothing caps Forfait.dureeMaxJours), in exchange for partition pruning
+            new Requete("actives-client-" + FENETRE_ACTIVE_JOURS + "j-borne",
+                    LOCATIONS_ACTIVES + " AND \"dateDebut\" >= TRUNC(SYSDATE) - " + FENETRE_ACTIVE_JOURS, true),
+            new Requete("historique-client-annee",
+                    "SELECT \"idLocation\", \"idCopie\", \"dateDebut\" FROM \"Location\""
+                            + " WHERE \"idClient\" = ? AND \"dateDebut\" >= ADD_MONTHS(TRUNC(SYSDATE), -12)", true),
+            new Requete("copies-film",
+                    "SELECT \"code\", \"etat\" FROM \"Copie\" WHERE \"idFilm\" = ?", false)
+    );
+
+    private final int lignes;
+    private final int clients;
+    private final int copies;
+    private final int films;
+    private final int jours;
+    private final int iterations;
+    private final int echauffement;
+    private final List<String> dispositions;
+
+    private RentalQueryBenchmark(String[] args) {
+        int lignes = 1_000_000, clients = 20_000, copies = 50_000, films = 5_000, jours = 3650;
+        int iterations = 500, echauffement = 100;
+        List<String> dispositions = List.of("heap", "index", "partition");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--lignes" -> lignes = Integer.parseInt(args[++i]);
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--copies" -> copies = Integer.parseInt(args[++i]);
+                case "--films" -> films = Integer.parseInt(args[++i]);
+                case "--jours" -> jours = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--echauffement" -> echauffement = Integer.parseInt(args[++i]);
+                case "--dispositions" -> dispositions = Arrays.asList(args[++i].split(","));
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        this.lignes = lignes;
+        this.clients = clients;
+        this.copies = copies;
+        this.films = films;
+        this.jours = jours;
+        this.iterations = iterations;
+        this.echauffement = echauffement;
+        this.dispositions = dispositions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new RentalQueryBenchmark(args).executer();
+    }
+
+    private void executer() throws SQLException {
+        System.out.printf("%-10s %-26s %10s %10s %8s  %s%n", "layout", "requete", "med. us", "p95 us", "lignes", "plan");
+        for (String disposition : dispositions) {
+            preparer(disposition);
+            try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+                for (Requete requete : REQUETES) {
+                    mesurer(conn, disposition, requete);
+                }
+            }
+        }
+        ConnectionPool.getInstance().close();
+    }
+
+    private void preparer(String disposition) throws SQLException {
+        TableCreator creator = new TableCreator(null, true, true, 4)
+                .setIndexClesEtrangeres(!disposition.equals("heap"))
+                .setPartitionnementLocation(disposition.equals("partition"));
+        try {
+            creator.resetAndCreateTables();
+            remplir();
+            creator.construireClesPrimaires();
+            creator.construireIndexSecondaires();
+        } finally {
+            creator.close();
+        }
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("BEGIN DBMS_STATS.GATHER_TABLE_STATS(USER, 'Location');"
+                    + " DBMS_STATS.GATHER_TABLE_STATS(USER, 'Copie'); END;");
+        }
+    }
+
+    private void remplir() throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT /*+ APPEND */ INTO \"Copie\" (\"code\", \"idFilm\", \"etat\")"
+                            + " SELECT 'C' || LEVEL, 'F' || MOD(LEVEL, ?), 'NEUVE' FROM dual CONNECT BY LEVEL <= ?")) {
+                stmt.setInt(1, films);
+                stmt.setInt(2, copies);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            // Start dates spread over the history; the last 30 days are not returned yet
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT /*+ APPEND */ INTO \"Location\" (\"idLocation\", \"dateDebut\", \"dateFin\","
+                            + " \"dateRetourEffectif\", \"idClient\", \"idCopie\")"
+                            + " SELECT 'L' || n, d, d + 14, CASE WHEN d > TRUNC(SYSDATE) - 30 THEN NULL"
+                            + " ELSE d + MOD(n, 14) END, 'U' || MOD(n, ?), 'C' || MOD(n, ?)"
+                            + " FROM (SELECT LEVEL n, TRUNC(SYSDATE) - MOD(LEVEL * 7919, ?) d FROM dual CONNECT BY LEVEL <= ?)")) {
+                stmt.setInt(1, clients);
+                stmt.setInt(2, copies);
+                stmt.setInt(3, jours);
+                stmt.setInt(4, lignes);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+
+    private void mesurer(Connection conn, String disposition, Requete requete) throws SQLException {
+        Random random = new Random(42);
+        long[] durees = new long[iterations];
+        long lignesLues = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(requete.sql())) {
+            for (int i = 0; i < echauffement + iterations; i++) {
+                stmt.setString(1, parametre(requete, random));
+                long debut = System.nanoTime();
+                int n = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        n++;
+                    }
+                }
+                if (i >= echauffement) {
+                    durees[i - echauffement] = System.nanoTime() - debut;
+                    lignesLues += n;
+                }
+            }
+        }
+        Arrays.sort(durees);
+        System.out.printf("%-10s %-26s %10d %10d %8.1f  %s%n", disposition, requete.nom(),
+                durees[durees.length / 2] / 1000, durees[(int) (durees.length * 0.95)] / 1000,
+                (double) lignesLues / iterations, plan(conn, requete.sql().replace("?", "'" + parametre(requete, random) + "'")));
+    }
+
+    private String parametre(Requete requete, Random random) {
+        return requete.parClient() ? "U" + random.nextInt(clients) : "F" + random.nextInt(films);
+    }
+
+    // Access paths of the plan, e.g. "PARTITION RANGE ITERATOR[KEY-KEY] > INDEX RANGE SCAN ix_location_client"
+    private static String plan(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM plan_table WHERE statement_id = 'rental'");
+            stmt.execute("EXPLAIN PLAN SET STATEMENT_ID = 'rental' FOR " + sql);
+        }
+        List<String> operations = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT operation, options, object_name, partition_start, partition_stop"
+                     + " FROM plan_table WHERE statement_id = 'rental' ORDER BY id")) {
+            while (rs.next()) {
+                String operation = rs.getString(1);
+                if (!operation.startsWith("PARTITION") && !operation.equals("INDEX") && !operation.equals("TABLE ACCESS")) {
+                    continue;
+                }
+                StringBuilder s = new StringBuilder(operation);
+                if (rs.getString(2) != null) s.append(' ').append(rs.getString(2));
+                if (rs.getString(3) != null) s.append(' ').append(rs.getString(3));
+                if (operation.startsWith("PARTITION")) s.append('[').append(rs.getString(4)).append('-').append(rs.getString(5)).append(']');
+                operations.add(s.toString());
+            }
+        }
+        conn.rollback();
+        return String.join(" > ", operations);
+    }
+}
@@ -0,0 +1,126 @@
+package benchmark;
+
+import database.ConnectionPool;
+import inserter.RecordDecoder;
+import search.SearchIndex;
+import search.Tokenizer;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency of SearchIndex against what a LIKE '%mot%' does: a scan of every titre and
+ * resume. The index is built from the XML files (or from Film/Personne with --oracle),
+ * saved, then reopened from its file so the queries run on the mapped segment. Queries
+ * are one or two words drawn from the film titles, the last one truncated to a prefix
+ * every other time; the scan baseline runs over the folded texts kept in memory, so it
+ * is a lower bound of the database's cost.
+ *
+ * Parameters: --films fichier, --personnes fichier (indexed when it exists),
+ * --fichier index, --requetes N, --oracle.
+ */
+public class SearchBenchmark {
+
+    private String films = "src/data/films_latin1.xml";
+    private String personnes = "src/data/personnes_latin1.xml";
+    private String fichier = "recherche.idx";
+    private int requetes = 10_000;
+    private boolean oracle = false;
+
+    public static void main(String[] args) throws Exception {
+        SearchBenchmark b = new SearchBenchmark();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--films" -> b.films = args[++i];
+                case "--personnes" -> b.personnes = args[++i];
+                case "--fichier" -> b.fichier = args[++i];
+                case "--requetes" -> b.requetes = Integer.parseInt(args[++i]);
+                case "--oracle" -> b.oracle = true;
+                default -> throw new IllegalArgumentException("Option inconnue: " + args[i]);
+            }
+        }
+        b.executer();
+    }
+
+    private void executer() throws Exception {
+        List<String> titres = new ArrayList<>();
+        List<String> textes = new ArrayList<>();
+        RecordDecoder.lireFilms(films, f -> {
+            titres.add(f.titre());
+            textes.add(Tokenizer.plier(f.titre() + " " + (f.resume() == null ? "" : f.resume())));
+        });
+
+        long debut = System.currentTimeMillis();
+        SearchIndex index;
+        if (oracle) {
+            try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+                index = SearchIndex.construire(conn);
+            }
+        } else {
+            index = new SearchIndex();
+            index.indexerFilms(films);
+            if (new File(personnes).exists()) {
+                index.indexerPersonnes(personnes);
+            }
+        }
+        System.out.println("Construction: " + (System.currentTimeMillis() - debut) + " ms");
+        index.sauvegarder(Path.of(fichier));
+        index = SearchIndex.ouvrir(Path.of(fichier));
+
+        Random random = new Random(42);
+        String[] requetesTirees = new String[requetes];
+        for (int i = 0; i < requetes; i++) {
+            List<String> mots = Tokenizer.termes(titres.get(random.nextInt(titres.size())));
+            if (mots.isEmpty()) {
+                requetesTirees[i] = "film";
+                continue;
+            }
+            String requete = mots.get(random.nextInt(mots.size()));
+            if (mots.size() > 1 && random.nextBoolean()) {
+                requete = mots.get(random.nextInt(mots.size())) + " " + requete;
+            }
+            if (i % 2 == 1 && requete.length() > 4) {
+                requete = requete.substring(0, requete.length() - 2);
+            }
+            requetesTirees[i] = requete;
+        }
+
+        long[] index10 = new long[requetes];
+        long trouves = 0;
+        for (int i = 0; i < requetes; i++) {
+            long t = System.nanoTime();
+            trouves += index.chercher(requetesTirees[i], null, 10).size();
+            index10[i] = System.nanoTime() - t;
+        }
+        // The scan is much slower: a tenth of the queries is enough
+        int nScan = Math.max(1, requetes / 10);
+        long[] scan = new long[nScan];
+        for (int i = 0; i < nScan; i++) {
+            long t = System.nanoTime();
+            String mot = Tokenizer.plier(requetesTirees[i].split(" ")[0]);
+            int n = 0;
+            for (String texte : textes) {
+                if (texte.contains(mot)) {
+                    n++;
+                }
+            }
+            trouves += n > 0 ? 0 : 1;
+            scan[i] = System.nanoTime() - t;
+        }
+        System.out.printf("%-10s %10s %12s %12s%n", "methode", "requetes", "p50 us", "p99 us");
+        afficher("index", index10);
+        afficher("scan", scan);
+        System.out.println("(" + trouves + " résultats)");
+    }
+
+    private static void afficher(String nom, long[] latences) {
+        Arrays.sort(latences);
+        System.out.printf("%-10s %10d %12.1f %12.1f%n", nom, latences.length,
+                latences[latences.length / 2] / 1000.0, latences[(int) (latences.length * 0.99)] / 1000.0);
+    }
+}
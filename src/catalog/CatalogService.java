@@ -0,0 +1,262 @@
+package catalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Read side of the film catalog: the full FilmDetail of a film (Film, its director and
+ * actors from Personne, FilmGenre, FilmPays, FilmScenariste, Role, BandeAnnonce) in one
+ * round trip, behind an LruCache.
+ *
+ * The aggregate comes from a single UNION ALL query, one branch per child table, whose
+ * rows are tagged with their kind and sorted by film; several films are loaded by the
+ * same query with an IN list. IN lists are padded to a few fixed sizes so the statement
+ * cache only ever sees four SQL texts.
+ *
+ * invalider() is the hook for writers (LoaderConfig.setInvalidationFilm): an aggregate
+ * loaded while an invalidation happened is returned but not cached, so a load racing
+ * with a write cannot put the old rows back.
+ */
+public class CatalogService {
+
+    private static final int[] TAILLES_IN = {1, 8, 32, 128};
+
+    private static final int FILM = 0, GENRE = 1, PAYS = 2, SCENARISTE = 3, ROLE = 4, BANDE_ANNONCE = 5;
+
+    private final DataSource dataSource;
+    private final LruCache<String, FilmDetail> cache;
+    private final Map<Integer, String> requetes = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Latences latences = new Latences(10_000);
+    private final Latences latencesBase = new Latences(10_000);
+    private final AtomicLong allersRetours = new AtomicLong();
+
+    public CatalogService(DataSource dataSource, int tailleCache, long ttlMs) {
+        this.dataSource = dataSource;
+        this.cache = new LruCache<>(tailleCache, ttlMs, 16);
+    }
+
+    /** The film, or null when it does not exist. */
+    public FilmDetail film(String idFilm) throws SQLException {
+        return films(List.of(idFilm)).get(idFilm);
+    }
+
+    /** The films found among idFilms, in the order asked; cached ones cost no round trip. */
+    public Map<String, FilmDetail> films(Collection<String> idFilms) throws SQLException {
+        long debut = System.nanoTime();
+        Map<String, FilmDetail> resultat = new LinkedHashMap<>();
+        List<String> manquants = new ArrayList<>();
+        for (String idFilm : new LinkedHashSet<>(idFilms)) {
+            FilmDetail f = cache.get(idFilm);
+            if (f != null) {
+                resultat.put(idFilm, f);
+            } else {
+                manquants.add(idFilm);
+            }
+        }
+        if (!manquants.isEmpty()) {
+            long avant = generation.get();
+            long debutBase = System.nanoTime();
+            Map<String, FilmDetail> charges = charger(manquants);
+            latencesBase.ajouter(System.nanoTime() - debutBase);
+            boolean cachable = generation.get() == avant;
+            for (FilmDetail f : charges.values()) {
+                if (cachable) {
+                    cache.put(f.idFilm(), f);
+                }
+            }
+            // Keep the order asked for
+            Map<String, FilmDetail> ordonne = new LinkedHashMap<>();
+            for (String idFilm : idFilms) {
+                FilmDetail f = resultat.containsKey(idFilm) ? resultat.get(idFilm) : charges.get(idFilm);
+                if (f != null) {
+                    ordonne.put(idFilm, f);
+                }
+            }
+            resultat = ordonne;
+        }
+        latences.ajouter(System.nanoTime() - debut);
+        return resultat;
+    }
+
+    /** Drops a film from the cache; call once its new rows are committed. */
+    public void invalider(String idFilm) {
+        generation.incrementAndGet();
+        cache.invalider(idFilm);
+    }
+
+    public void invaliderTout() {
+        generation.incrementAndGet();
+        cache.invaliderTout();
+    }
+
+    public LruCache<String, FilmDetail> getCache() {
+        return cache;
+    }
+
+    public String rapport() {
+        return "Catalogue: " + cache.rapport() + "\n"
+                + "  lectures: " + latences.rapport() + "\n"
+                + "  chargements (" + allersRetours.get() + " allers-retours): " + latencesBase.rapport();
+    }
+
+    private Map<String, FilmDetail> charger(List<String> idFilms) throws SQLException {
+        Map<String, FilmDetail> resultat = new LinkedHashMap<>();
+        try (Connection conn = dataSource.getConnection()) {
+            for (int i = 0; i < idFilms.size(); i += TAILLES_IN[TAILLES_IN.length - 1]) {
+                List<String> lot = idFilms.subList(i, Math.min(idFilms.size(), i + TAILLES_IN[TAILLES_IN.length - 1]));
+                int taille = TAILLES_IN[TAILLES_IN.length - 1];
+                for (int t : TAILLES_IN) {
+                    if (t >= lot.size()) {
+                        taille = t;
+                        break;
+                    }
+                }
+                try (PreparedStatement ps = conn.prepareStatement(requetes.computeIfAbsent(taille, CatalogService::requete))) {
+                    int p = 1;
+                    for (int branche = 0; branche <= BANDE_ANNONCE; branche++) {
+                        for (int j = 0; j < taille; j++) {
+                            // Padding repeats the last id: same rows, no extra work
+                            ps.setString(p++, lot.get(Math.min(j, lot.size() - 1)));
+                        }
+                    }
+                    ps.setFetchSize(500);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        lire(rs, resultat);
+                    }
+                    allersRetours.incrementAndGet();
+                }
+            }
+        }
+        return resultat;
+    }
+
+    private static final class Agregat {
+        String titre, langue, resume, affiche, idRealisateur, nomRealisateur;
+        int annee, duree;
+        final List<String> genres = new ArrayList<>();
+        final List<String> pays = new ArrayList<>();
+        final List<String> scenaristes = new ArrayList<>();
+        final List<FilmDetail.Role> roles = new ArrayList<>();
+        final List<String> bandesAnnonces = new ArrayList<>();
+    }
+
+    // Columns: idFilm, kind, then the kind's values (see requete())
+    private static void lire(ResultSet rs, Map<String, FilmDetail> resultat) throws SQLException {
+        String courant = null;
+        Agregat a = null;
+        while (rs.next()) {
+            String idFilm = rs.getString(1);
+            if (!idFilm.equals(courant)) {
+                ajouter(courant, a, resultat);
+                courant = idFilm;
+                a = new Agregat();
+            }
+            switch (rs.getInt(2)) {
+                case FILM -> {
+                    a.titre = rs.getString(3);
+                    a.langue = rs.getString(4);
+                    a.affiche = rs.getString(5);
+                    a.idRealisateur = rs.getString(6);
+                    a.nomRealisateur = rs.getString(7);
+                    a.annee = rs.getInt(8);
+                    a.duree = rs.getInt(9);
+                    a.resume = rs.getString(10);
+                }
+                case GENRE -> a.genres.add(rs.getString(3));
+                case PAYS -> a.pays.add(rs.getString(3));
+                case SCENARISTE -> a.scenaristes.add(rs.getString(3));
+                case ROLE -> a.roles.add(new FilmDetail.Role(new FilmDetail.Personne(rs.getString(3), rs.getString(4)),
+                        rs.getString(5)));
+                case BANDE_ANNONCE -> a.bandesAnnonces.add(rs.getString(3));
+                default -> throw new SQLException("Type de ligne inconnu: " + rs.getInt(2));
+            }
+        }
+        ajouter(courant, a, resultat);
+    }
+
+    private static void ajouter(String idFilm, Agregat a, Map<String, FilmDetail> resultat) {
+        // Child rows of a film that has no Film row (deleted meanwhile) are dropped
+        if (idFilm == null || a.titre == null) {
+            return;
+        }
+        resultat.put(idFilm, new FilmDetail(idFilm, a.titre, a.annee, a.langue, a.duree, a.resume, a.affiche,
+                a.idRealisateur == null ? null : new FilmDetail.Personne(a.idRealisateur, a.nomRealisateur),
+                List.copyOf(a.genres), List.copyOf(a.pays), List.copyOf(a.scenaristes), List.copyOf(a.roles),
+                List.copyOf(a.bandesAnnonces)));
+    }
+
+    private static String requete(int taille) {
+        String in = " IN (" + String.join(", ", Collections.nCopies(taille, "?")) + ")";
+        return "SELECT f.\"idFilm\", " + FILM + " AS genre, f.\"titre\", f.\"langue\", f.\"affiche\", f.\"idRealisateur\","
+                + " p.\"nom\", f.\"anneeSortie\", f.\"dureeFilm\", f.\"resume\""
+                + " FROM \"Film\" f LEFT JOIN \"Personne\" p ON p.\"idPersonne\" = f.\"idRealisateur\""
+                + " WHERE f.\"idFilm\"" + in
+                + " UNION ALL SELECT \"idFilm\", " + GENRE + ", \"nomGenre\", NULL, NULL, NULL, NULL, NULL, NULL, TO_CLOB(NULL)"
+                + " FROM \"FilmGenre\" WHERE \"idFilm\"" + in
+                + " UNION ALL SELECT \"idFilm\", " + PAYS + ", \"nomPays\", NULL, NULL, NULL, NULL, NULL, NULL, TO_CLOB(NULL)"
+                + " FROM \"FilmPays\" WHERE \"idFilm\"" + in
+                + " UNION ALL SELECT fs.\"idFilm\", " + SCENARISTE + ", s.\"nom\", NULL, NULL, NULL, NULL, NULL, NULL, TO_CLOB(NULL)"
+                + " FROM \"FilmScenariste\" fs JOIN \"Scenariste\" s ON s.\"idScenariste\" = fs.\"idScenariste\""
+                + " WHERE fs.\"idFilm\"" + in
+                + " UNION ALL SELECT r.\"idFilm\", " + ROLE + ", r.\"idActeur\", p.\"nom\", r.\"personnage\", NULL, NULL, NULL, NULL, TO_CLOB(NULL)"
+                + " FROM \"Role\" r LEFT JOIN \"Personne\" p ON p.\"idPersonne\" = r.\"idActeur\" WHERE r.\"idFilm\"" + in
+                + " UNION ALL SELECT \"idFilm\", " + BANDE_ANNONCE + ", \"url\", NULL, NULL, NULL, NULL, NULL, NULL, TO_CLOB(NULL)"
+                + " FROM \"BandeAnnonce\" WHERE \"idFilm\"" + in
+                + " ORDER BY 1, 2, 3";
+    }
+
+    /** Last n latencies in a ring; percentiles are computed on demand from a sorted copy. */
+    static final class Latences {
+        private final long[] anneau;
+        private long total = 0;
+
+        Latences(int n) {
+            anneau = new long[n];
+        }
+
+        synchronized void ajouter(long nanos) {
+            anneau[(int) (total++ % anneau.length)] = nanos;
+        }
+
+        synchronized long[] trie() {
+            long[] copie = Arrays.copyOf(anneau, (int) Math.min(total, anneau.length));
+            Arrays.sort(copie);
+            return copie;
+        }
+
+        /** Percentile p (0-100) in microseconds over the last n calls, 0 when none. */
+        double percentile(double p) {
+            long[] t = trie();
+            if (t.length == 0) {
+                return 0;
+            }
+            int rang = Math.max(0, Math.min(t.length - 1, (int) Math.ceil(p / 100 * t.length) - 1));
+            return t[rang] / 1000.0;
+        }
+
+        String rapport() {
+            return String.format("%d appels, p50 %.0f us, p99 %.0f us", total, percentile(50), percentile(99));
+        }
+    }
+
+    /** Latency percentile in microseconds over the last 10 000 reads (cache hits included). */
+    public double percentileLecture(double p) {
+        return latences.percentile(p);
+    }
+}
@@ -0,0 +1,15 @@
+package catalog;
+
+import java.util.List;
+
+/** Everything the film detail view shows: the Film row and its child rows, with names resolved. */
+public record FilmDetail(String idFilm, String titre, int annee, String langue, int duree, String resume,
+                         String affiche, Personne realisateur, List<String> genres, List<String> pays,
+                         List<String> scenaristes, List<Role> roles, List<String> bandesAnnonces) {
+
+    public record Personne(String idPersonne, String nom) {
+    }
+
+    public record Role(Personne acteur, String personnage) {
+    }
+}
@@ -0,0 +1,115 @@
+package catalog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache with a time to live, split into segments so concurrent readers of
+ * different keys do not share a lock. Each segment is an access-ordered LinkedHashMap (as
+ * in inserter.DimensionCache) holding tailleMax / segments entries; an entry older than
+ * ttlMs is treated as absent and dropped on access.
+ */
+public class LruCache<K, V> {
+
+    private record Entree<V>(V valeur, long expiration) {
+    }
+
+    private final List<Map<K, Entree<V>>> segments;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public LruCache(int tailleMax, long ttlMs, int nombreSegments) {
+        if (tailleMax < 1 || nombreSegments < 1) {
+            throw new IllegalArgumentException("tailleMax et nombreSegments doivent être positifs");
+        }
+        int parSegment = Math.max(1, tailleMax / nombreSegments);
+        this.ttlNanos = ttlMs * 1_000_000;
+        this.segments = new ArrayList<>(nombreSegments);
+        for (int i = 0; i < nombreSegments; i++) {
+            segments.add(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entree<V>> eldest) {
+                    if (size() > parSegment) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            });
+        }
+    }
+
+    private Map<K, Entree<V>> segment(K cle) {
+        int h = cle.hashCode();
+        return segments.get(Math.floorMod(h ^ (h >>> 16), segments.size()));
+    }
+
+    /** The cached value, or null when absent or expired. */
+    public V get(K cle) {
+        Map<K, Entree<V>> segment = segment(cle);
+        synchronized (segment) {
+            Entree<V> e = segment.get(cle);
+            if (e != null && System.nanoTime() - e.expiration() > 0) {
+                segment.remove(cle);
+                expirations.incrementAndGet();
+                e = null;
+            }
+            (e != null ? hits : misses).incrementAndGet();
+            return e != null ? e.valeur() : null;
+        }
+    }
+
+    public void put(K cle, V valeur) {
+        Map<K, Entree<V>> segment = segment(cle);
+        synchronized (segment) {
+            segment.put(cle, new Entree<>(valeur, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public void invalider(K cle) {
+        Map<K, Entree<V>> segment = segment(cle);
+        synchronized (segment) {
+            if (segment.remove(cle) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void invaliderTout() {
+        for (Map<K, Entree<V>> segment : segments) {
+            synchronized (segment) {
+                invalidations.addAndGet(segment.size());
+                segment.clear();
+            }
+        }
+    }
+
+    public int taille() {
+        int total = 0;
+        for (Map<K, Entree<V>> segment : segments) {
+            synchronized (segment) {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+
+    public double tauxSucces() {
+        long h = hits.get(), total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public String rapport() {
+        return String.format("%d entrées, %d hits, %d misses (%.1f%% de succès), %d évictions, %d expirations, %d invalidations",
+                taille(), hits.get(), misses.get(), 100 * tauxSucces(), evictions.get(), expirations.get(),
+                invalidations.get());
+    }
+}
@@ -0,0 +1,66 @@
+package creator;
+
+/**
+ * One PRIMARY KEY, UNIQUE or FOREIGN KEY constraint of the schema, kept apart from the
+ * CREATE TABLE statements so a bulk load can add it after the rows are in.
+ *
+ * colonnes and colonnesParentes are unquoted, comma-separated column names.
+ */
+public record Contrainte(String table, String nom, Type type, String colonnes,
+                         String tableParente, String colonnesParentes, String options) {
+
+    public enum Type { PRIMARY_KEY, UNIQUE, FOREIGN_KEY }
+
+    public static Contrainte clePrimaire(String table, String colonnes) {
+        return new Contrainte(table, "pk_" + table.toLowerCase(), Type.PRIMARY_KEY, colonnes, null, null, "");
+    }
+
+    public static Contrainte unique(String table, String nom, String colonnes) {
+        return new Contrainte(table, nom, Type.UNIQUE, colonnes, null, null, "");
+    }
+
+    public static Contrainte cleEtrangere(String table, String nom, String colonnes,
+                                          String tableParente, String colonnesParentes) {
+        return new Contrainte(table, nom, Type.FOREIGN_KEY, colonnes, tableParente, colonnesParentes, "");
+    }
+
+    public Contrainte enCascade() {
+        return new Contrainte(table, nom, type, colonnes, tableParente, colonnesParentes, " ON DELETE CASCADE");
+    }
+
+    /** Constraint clause, as in ALTER TABLE ... ADD <definition>. */
+    public String definition() {
+        return switch (type) {
+            case PRIMARY_KEY -> "CONSTRAINT \"" + nom + "\" PRIMARY KEY (" + quoter(colonnes, "") + ")";
+            case UNIQUE -> "CONSTRAINT \"" + nom + "\" UNIQUE (" + quoter(colonnes, "") + ")";
+            case FOREIGN_KEY -> "CONSTRAINT \"" + nom + "\" FOREIGN KEY (" + quoter(colonnes, "") + ") REFERENCES \""
+                    + tableParente + "\" (" + quoter(colonnesParentes, "") + ")" + options;
+        };
+    }
+
+    /** Rows that would violate the constraint: duplicate keys, or child keys without a parent. */
+    public String requeteViolations() {
+        if (type == Type.FOREIGN_KEY) {
+            String[] enfant = colonnes.split(",");
+            String[] parent = colonnesParentes.split(",");
+            StringBuilder jointure = new StringBuilder();
+            StringBuilder nonNul = new StringBuilder();
+            for (int i = 0; i < enfant.length; i++) {
+                jointure.append(i > 0 ? " AND " : "").append("p.\"").append(parent[i]).append("\" = c.\"").append(enfant[i]).append('"');
+                nonNul.append(i > 0 ? " AND " : "").append("c.\"").append(enfant[i]).append("\" IS NOT NULL");
+            }
+            return "SELECT " + quoter(colonnes, "c.") + " FROM \"" + table + "\" c WHERE " + nonNul
+                    + " AND NOT EXISTS (SELECT 1 FROM \"" + tableParente + "\" p WHERE " + jointure + ")";
+        }
+        return "SELECT " + quoter(colonnes, "") + ", COUNT(*) FROM \"" + table + "\" GROUP BY "
+                + quoter(colonnes, "") + " HAVING COUNT(*) > 1";
+    }
+
+    static String quoter(String colonnes, String prefixe) {
+        StringBuilder sb = new StringBuilder();
+        for (String colonne : colonnes.split(",")) {
+            sb.append(sb.length() > 0 ? ", " : "").append(prefixe).append('"').append(colonne.trim()).append('"');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package creator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency DAG of the schema, built from the foreign keys: a table depends on every
+ * table it references. niveaux() groups the tables by depth, so the tables of one level
+ * only reference earlier levels and can be created at the same time; dropping walks the
+ * levels backwards.
+ */
+final class SchemaGraph {
+
+    private SchemaGraph() {
+    }
+
+    /**
+     * Levels of the DAG (Kahn's algorithm), each in the order the tables are listed.
+     * References to a table outside the list, or to itself, are ignored.
+     */
+    static List<List<String>> niveaux(List<String> tables, List<Contrainte> contraintes) {
+        Map<String, Set<String>> parents = new LinkedHashMap<>();
+        for (String table : tables) {
+            parents.put(table, new HashSet<>());
+        }
+        for (Contrainte c : contraintes) {
+            if (c.type() == Contrainte.Type.FOREIGN_KEY && parents.containsKey(c.table())
+                    && parents.containsKey(c.tableParente()) && !c.table().equals(c.tableParente())) {
+                parents.get(c.table()).add(c.tableParente());
+            }
+        }
+
+        List<List<String>> niveaux = new ArrayList<>();
+        Map<String, Integer> restants = new HashMap<>();
+        parents.forEach((table, p) -> restants.put(table, p.size()));
+        Set<String> places = new HashSet<>();
+        while (places.size() < tables.size()) {
+            List<String> niveau = new ArrayList<>();
+            for (String table : tables) {
+                if (!places.contains(table) && restants.get(table) == 0) {
+                    niveau.add(table);
+                }
+            }
+            if (niveau.isEmpty()) {
+                List<String> cycle = new ArrayList<>(tables);
+                cycle.removeAll(places);
+                throw new IllegalStateException("Cycle de clés étrangères entre " + cycle);
+            }
+            places.addAll(niveau);
+            for (Map.Entry<String, Set<String>> e : parents.entrySet()) {
+                for (String parent : niveau) {
+                    if (e.getValue().contains(parent)) {
+                        restants.merge(e.getKey(), -1, Integer::sum);
+                    }
+                }
+            }
+            niveaux.add(niveau);
+        }
+        return niveaux;
+    }
+}
@@ -1,26 +1,302 @@
 package creator;
 
+import database.ConnectionPool;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import creator.Contrainte.Type;
 
 public class TableCreator {
 
+    record Table(String nom, String ddl) {
+    }
+
+    // Non-unique index on the column(s) of a foreign key; local to each partition of a partitioned table
+    record Index(String nom, String table, String colonnes) {
+    }
+
+    // Every table of the schema; creation order comes from the foreign keys in CONTRAINTES (SchemaGraph)
+    static final List<Table> TABLES = List.of(
+            // Domain Tables (Lookup/Reference Tables)
+            new Table("DomaineCarteCredit", """
+                CREATE TABLE "DomaineCarteCredit" (
+                    "carteCreditType" VARCHAR2(10)
+                )
+                """),
+            new Table("DomaineForfait", """
+                CREATE TABLE "DomaineForfait" (
+                    "type" VARCHAR2(10)
+                )
+                """),
+            new Table("DomaineCopie", """
+                CREATE TABLE "DomaineCopie" (
+                    "etat" VARCHAR2(10)
+                )
+                """),
+            new Table("PaysProduction", """
+                CREATE TABLE "PaysProduction" (
+                    "nomPays" VARCHAR2(60)
+                )
+                """),
+            new Table("Genre", """
+                CREATE TABLE "Genre" (
+                    "nomGenre" VARCHAR2(20)
+                )
+                """),
+            // Core Entity Tables
+            new Table("Personne", """
+                CREATE TABLE "Personne" (
+                    "idPersonne" VARCHAR2(10),
+                    "nom" VARCHAR2(255) NOT NULL,
+                    "dateNaissance" DATE,
+                    "lieuNaissance" VARCHAR2(255),
+                    "photo" VARCHAR2(255),
+                    "biographie" CLOB
+                )
+                """),
+            new Table("Scenariste", """
+                CREATE TABLE "Scenariste" (
+                    "idScenariste" VARCHAR2(36),
+                    "nom" VARCHAR2(255) NOT NULL
+                )
+                """),
+            new Table("Utilisateur", """
+                CREATE TABLE "Utilisateur" (
+                    "idUser" VARCHAR2(10),
+                    "prenom" VARCHAR2(255) NOT NULL,
+                    "nom" VARCHAR2(255) NOT NULL,
+                    "courriel" VARCHAR2(255) NOT NULL,
+                    "motDePasse" VARCHAR2(50) NOT NULL,
+                    "telephone" VARCHAR2(20) NOT NULL,
+                    "adresse" VARCHAR2(255) NOT NULL,
+                    "ville" VARCHAR2(255) NOT NULL,
+                    "province" VARCHAR2(20) NOT NULL,
+                    "codePostal" VARCHAR2(10) NOT NULL,
+                    "dateNaissance" DATE NOT NULL
+                )
+                """),
+            // Core Media Table
+            new Table("Film", """
+                CREATE TABLE "Film" (
+                    "idFilm" VARCHAR2(10),
+                    "titre" VARCHAR2(255) NOT NULL,
+                    "anneeSortie" NUMBER(4) NOT NULL,
+                    "langue" VARCHAR2(50),
+                    "dureeFilm" NUMBER NOT NULL,
+                    "resume" CLOB,
+                    "affiche" VARCHAR2(255),
+                    "idRealisateur" VARCHAR2(10) NOT NULL
+                )
+                """),
+            // Financial/Subscription Tables
+            new Table("Forfait", """
+                CREATE TABLE "Forfait" (
+                    "codeForfait" VARCHAR2(10),
+                    "coûtMensuel" NUMBER(10, 2) NOT NULL,
+                    "locationsMax" NUMBER NOT NULL,
+                    "dureeMaxJours" NUMBER NOT NULL,
+                    "type" VARCHAR2(10) NOT NULL
+                )
+                """),
+            // User Role Tables
+            new Table("Employe", """
+                CREATE TABLE "Employe" (
+                    "idUser" VARCHAR2(10),
+                    "matricule" NUMBER NOT NULL
+                )
+                """),
+            new Table("Client", """
+                CREATE TABLE "Client" (
+                    "idUser" VARCHAR2(10),
+                    "carteCreditNumero" VARCHAR2(19) NOT NULL,
+                    "carteCreditExpMois" NUMBER(2) NOT NULL,
+                    "carteCreditExpAnnee" NUMBER(4) NOT NULL,
+                    "carteCreditCVV" NUMBER(4) NOT NULL,
+                    "carteCreditType" VARCHAR2(10) NOT NULL,
+                    "codeForfait" VARCHAR2(10) NOT NULL
+                )
+                """),
+            // Media Instance and Related Tables
+            new Table("Copie", """
+                CREATE TABLE "Copie" (
+                    "code" VARCHAR2(255),
+                    "idFilm" VARCHAR2(10) NOT NULL,
+                    "etat" VARCHAR2(10) NOT NULL
+                )
+                """),
+            new Table("BandeAnnonce", """
+                CREATE TABLE "BandeAnnonce" (
+                    "idBandeAnnonce" VARCHAR2(36),
+                    "url" VARCHAR2(255) NOT NULL,
+                    "idFilm" VARCHAR2(10) NOT NULL
+                )
+                """),
+            // Junction Tables
+            new Table("FilmPays", """
+                CREATE TABLE "FilmPays" (
+                    "idFilm" VARCHAR2(10),
+                    "nomPays" VARCHAR2(60)
+                )
+                """),
+            new Table("FilmGenre", """
+                CREATE TABLE "FilmGenre" (
+                    "idFilm" VARCHAR2(10),
+                    "nomGenre" VARCHAR2(20)
+                )
+                """),
+            new Table("FilmScenariste", """
+                CREATE TABLE "FilmScenariste" (
+                    "idFilm" VARCHAR2(10),
+                    "idScenariste" VARCHAR2(36)
+                )
+                """),
+            new Table("Role", """
+                CREATE TABLE "Role" (
+                    "idRole" VARCHAR2(36),
+                    "personnage" VARCHAR2(255),
+                    "idFilm" VARCHAR2(10) NOT NULL,
+                    "idActeur" VARCHAR2(10) NOT NULL
+                )
+                """),
+            // Transactional Table
+            new Table("Location", """
+                CREATE TABLE "Location" (
+                    "idLocation" VARCHAR2(10),
+                    "dateDebut" DATE NOT NULL,
+                    "dateFin" DATE NOT NULL,
+                    "dateRetourEffectif" DATE,
+                    "idClient" VARCHAR2(10) NOT NULL,
+                    "idCopie" VARCHAR2(255) NOT NULL
+                )
+                """)
+    );
+
+    // Keys and references of every table. Added right after each CREATE TABLE, or by
+    // construireContraintes() once a bulk load is done when contraintesDifferees is set.
+    static final List<Contrainte> CONTRAINTES = List.of(
+            Contrainte.clePrimaire("DomaineCarteCredit", "carteCreditType"),
+            Contrainte.clePrimaire("DomaineForfait", "type"),
+            Contrainte.clePrimaire("DomaineCopie", "etat"),
+            Contrainte.clePrimaire("PaysProduction", "nomPays"),
+            Contrainte.clePrimaire("Genre", "nomGenre"),
+            Contrainte.clePrimaire("Personne", "idPersonne"),
+            Contrainte.clePrimaire("Scenariste", "idScenariste"),
+            Contrainte.clePrimaire("Utilisateur", "idUser"),
+            Contrainte.unique("Utilisateur", "uq_utilisateur_courriel", "courriel"),
+            Contrainte.clePrimaire("Film", "idFilm"),
+            Contrainte.cleEtrangere("Film", "fk_film_realisateur", "idRealisateur", "Personne", "idPersonne"),
+            Contrainte.clePrimaire("Forfait", "codeForfait"),
+            Contrainte.cleEtrangere("Forfait", "fk_forfait_domaine", "type", "DomaineForfait", "type"),
+            Contrainte.clePrimaire("Employe", "idUser"),
+            Contrainte.unique("Employe", "uq_employe_matricule", "matricule"),
+            Contrainte.cleEtrangere("Employe", "fk_employe_utilisateur", "idUser", "Utilisateur", "idUser").enCascade(),
+            Contrainte.clePrimaire("Client", "idUser"),
+            Contrainte.unique("Client", "uq_client_carte_credit", "carteCreditNumero"),
+            Contrainte.cleEtrangere("Client", "fk_client_utilisateur", "idUser", "Utilisateur", "idUser").enCascade(),
+            Contrainte.cleEtrangere("Client", "fk_client_domaine_carte", "carteCreditType", "DomaineCarteCredit", "carteCreditType"),
+            Contrainte.cleEtrangere("Client", "fk_client_forfait", "codeForfait", "Forfait", "codeForfait"),
+            Contrainte.clePrimaire("Copie", "code"),
+            Contrainte.cleEtrangere("Copie", "fk_copie_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.cleEtrangere("Copie", "fk_copie_domaine_etat", "etat", "DomaineCopie", "etat"),
+            Contrainte.clePrimaire("BandeAnnonce", "idBandeAnnonce"),
+            Contrainte.cleEtrangere("BandeAnnonce", "fk_bandeannonce_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.clePrimaire("FilmPays", "idFilm,nomPays"),
+            Contrainte.cleEtrangere("FilmPays", "fk_filmpays_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.cleEtrangere("FilmPays", "fk_filmpays_pays", "nomPays", "PaysProduction", "nomPays").enCascade(),
+            Contrainte.clePrimaire("FilmGenre", "idFilm,nomGenre"),
+            Contrainte.cleEtrangere("FilmGenre", "fk_filmgenre_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.cleEtrangere("FilmGenre", "fk_filmgenre_genre", "nomGenre", "Genre", "nomGenre").enCascade(),
+            Contrainte.clePrimaire("FilmScenariste", "idFilm,idScenariste"),
+            Contrainte.cleEtrangere("FilmScenariste", "fk_filmscenariste_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.cleEtrangere("FilmScenariste", "fk_filmscenariste_scenariste", "idScenariste", "Scenariste", "idScenariste").enCascade(),
+            Contrainte.clePrimaire("Role", "idRole"),
+            Contrainte.cleEtrangere("Role", "fk_role_film", "idFilm", "Film", "idFilm").enCascade(),
+            Contrainte.cleEtrangere("Role", "fk_role_acteur", "idActeur", "Personne", "idPersonne").enCascade(),
+            Contrainte.clePrimaire("Location", "idLocation"),
+            Contrainte.cleEtrangere("Location", "fk_location_client", "idClient", "Client", "idUser"),
+            Contrainte.cleEtrangere("Location", "fk_location_copie", "idCopie", "Copie", "code")
+    );
+
+    // Foreign key columns that are not the leading column of a key. Oracle does not index them by
+    // itself; without an index, lookups by film/client/copy scan the whole child table and a
+    // delete of the parent locks it.
+    static final List<Index> INDEX_CLES_ETRANGERES = List.of(
+            new Index("ix_film_realisateur", "Film", "idRealisateur"),
+            new Index("ix_copie_film", "Copie", "idFilm"),
+            new Index("ix_bandeannonce_film", "BandeAnnonce", "idFilm"),
+            new Index("ix_filmpays_pays", "FilmPays", "nomPays"),
+            new Index("ix_filmgenre_genre", "FilmGenre", "nomGenre"),
+            new Index("ix_filmscenariste_scenariste", "FilmScenariste", "idScenariste"),
+            new Index("ix_role_film", "Role", "idFilm"),
+            new Index("ix_role_acteur", "Role", "idActeur"),
+            new Index("ix_location_client", "Location", "idClient"),
+            new Index("ix_location_copie", "Location", "idCopie")
+    );
+
+    // Rental history grows without bound: one partition per month of "dateDebut", added by Oracle
+    // as rows arrive. Queries bounded on dateDebut only visit the matching partitions.
+    private static final String PARTITIONNEMENT_LOCATION = """
+            PARTITION BY RANGE ("dateDebut") INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))
+            (PARTITION "p_location_initiale" VALUES LESS THAN (DATE '2000-01-01'))
+            """;
+
+    // Generated keys (inserter.KeyGenerator): VARCHAR2(36) for UUIDs, NUMBER(19) with clesNumeriques,
+    // and the sequences of its "sequence" strategy, one per table, named seq_<table>
+    private static final Pattern COLONNES_CLES_GENEREES =
+            Pattern.compile("(\"(?:idRole|idBandeAnnonce|idScenariste)\") VARCHAR2\\(36\\)");
+    static final List<String> TABLES_SEQUENCES = List.of("Role", "BandeAnnonce", "Scenariste");
+
+    // ORA-00955 name already used, ORA-02260/02261 key already exists, ORA-02275 FK already exists
+    private static final List<Integer> DEJA_PRESENTE = List.of(955, 2260, 2261, 2275);
+    private static final int EXEMPLES_VIOLATIONS = 10;
+
     private Connection conn;
+    private DataSource dataSource;
+    // Tables of one dependency level are created/dropped concurrently over this many connections
+    private int connexionsDdl = 1;
+    private boolean partitionnementLocation = false;
+    private boolean indexClesEtrangeres = false;
+    private boolean clesNumeriques = false;
+    // INCREMENT BY of the key sequences; 0 creates none
+    private int blocSequence = 0;
+    // false where CREATE TYPE is not available (e.g. the H2 benchmark database)
+    private final boolean typesBulk;
+    // Bulk-load schema: tables created bare, keys and references added by construireContraintes()
+    private final boolean contraintesDifferees;
+    private final int degreParallele;
 
     public TableCreator() {
-        connectionBD();
+        this(null, true);
     }
 
-    private void connectionBD() {
+    public TableCreator(DataSource dataSource, boolean typesBulk) {
+        this(dataSource, typesBulk, false, 1);
+    }
+
+    public TableCreator(DataSource dataSource, boolean typesBulk, boolean contraintesDifferees, int degreParallele) {
+        this.typesBulk = typesBulk;
+        this.contraintesDifferees = contraintesDifferees;
+        this.degreParallele = degreParallele;
+        connectionBD(dataSource);
+    }
+
+    private void connectionBD(DataSource dataSource) {
         try {
-            Class.forName("oracle.jdbc.OracleDriver");
-            conn = DriverManager.getConnection(
-                    "jdbc:oracle:thin:@//bdlog660.ens.ad.etsmtl.ca:1521/ORCLPDB.ens.ad.etsmtl.ca",
-                    "EQUIPE206",
-                    "NulxJFxU"
-            );
+            this.dataSource = dataSource != null ? dataSource : ConnectionPool.getInstance();
+            conn = this.dataSource.getConnection();
             conn.setAutoCommit(false);
             System.out.println("Connexion réussie à la base de données.");
         } catch (Exception e) {
@@ -30,43 +306,75 @@ public class TableCreator {
         }
     }
 
+    /** Connections used per dependency level by resetAndCreateTables(); 1 runs the DDL on one connection. */
+    public TableCreator setConnexionsDdl(int connexionsDdl) {
+        this.connexionsDdl = Math.max(1, connexionsDdl);
+        return this;
+    }
+
+    /** Location partitioned by month of dateDebut, with local indexes on idClient and idCopie. */
+    public TableCreator setPartitionnementLocation(boolean partitionnementLocation) {
+        this.partitionnementLocation = partitionnementLocation;
+        return this;
+    }
+
+    /** Index every foreign key column listed in INDEX_CLES_ETRANGERES. */
+    public TableCreator setIndexClesEtrangeres(boolean indexClesEtrangeres) {
+        this.indexClesEtrangeres = indexClesEtrangeres;
+        return this;
+    }
+
+    /** NUMBER(19) generated keys (Role, BandeAnnonce, Scenariste) instead of VARCHAR2(36) UUIDs. */
+    public TableCreator setClesNumeriques(boolean clesNumeriques) {
+        this.clesNumeriques = clesNumeriques;
+        return this;
+    }
+
+    /** Recreates the seq_<table> sequences with INCREMENT BY bloc: one NEXTVAL reserves bloc keys. */
+    public TableCreator setSequencesCles(int bloc) {
+        this.blocSequence = bloc;
+        return this;
+    }
+
+    // Returns the connection to the pool
+    public void close() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Erreur lors de la fermeture de la connexion BD: " + e.getMessage());
+            }
+            conn = null;
+        }
+    }
+
     public void resetAndCreateTables() throws SQLException {
+        long debut = System.currentTimeMillis();
         dropAllTables();
         createAllTables();
         conn.commit();
-        System.out.println("All tables reset and created successfully (case-sensitive).");
+        System.out.println("All tables reset and created successfully (case-sensitive) in "
+                + (System.currentTimeMillis() - debut) + " ms.");
     }
 
     public void dropAllTables() {
         System.out.println("Starting to drop tables (case-sensitive)...");
-        // Drop in reverse order of creation dependencies
-        // Note: The tableName parameter to dropTable should match the exact case used in CREATE TABLE
-        dropTable("Location");
-        dropTable("Role");
-        dropTable("FilmScenariste");
-        dropTable("FilmGenre");
-        dropTable("FilmPays");
-        dropTable("BandeAnnonce");
-        dropTable("Copie");
-        dropTable("Client");
-        dropTable("Forfait");
-        dropTable("Employe");
-        dropTable("Film");
-        dropTable("Utilisateur");
-        dropTable("Scenariste");
-        dropTable("Personne");
-        dropTable("Genre");
-        dropTable("PaysProduction");
-        dropTable("DomaineCopie");
-        dropTable("DomaineForfait");
-        dropTable("DomaineCarteCredit");
+        // Children before parents: the levels of the full FK graph, last level first
+        List<List<String>> niveaux = SchemaGraph.niveaux(nomsTables(), CONTRAINTES);
+        for (int i = niveaux.size() - 1; i >= 0; i--) {
+            try {
+                executerNiveau(niveaux.get(i), this::dropTable);
+            } catch (SQLException e) {
+                System.err.println("Error dropping tables " + niveaux.get(i) + ": " + e.getMessage());
+            }
+        }
         System.out.println("Finished dropping tables (case-sensitive).");
     }
 
-    private void dropTable(String tableName) {
+    private void dropTable(Connection c, String tableName) {
         // Enclose table name in double quotes for case-sensitivity
         String sql = "DROP TABLE \"" + tableName + "\" CASCADE CONSTRAINTS";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
             stmt.executeUpdate();
             System.out.println("Table \"" + tableName + "\" dropped successfully.");
         } catch (SQLException e) {
@@ -82,292 +390,332 @@ public class TableCreator {
 
     private void createAllTables() throws SQLException {
         System.out.println("Starting to create tables (case-sensitive)...");
-        // Create tables in order of dependency
-        createDomaineCarteCreditTable();
-        createDomaineForfaitTable();
-        createDomaineCopieTable();
-        createPaysProductionTable();
-        createGenreTable();
-        createPersonneTable();
-        createScenaristeTable();
-        createUtilisateurTable();
-
-        createFilmTable(); // Depends on Realisateur
-
-        createForfaitTable(); // Depends on DomaineForfait
-        createEmployeTable(); // Depends on Utilisateur
-
-        createClientTable(); // Depends on Utilisateur, DomaineCarteCredit, Forfait
-
-        createCopieTable(); // Depends on Film, DomaineCopie
-        createBandeAnnonceTable(); // Depends on Film
-        createFilmPaysTable(); // Depends on Film, PaysProduction
-        createFilmGenreTable(); // Depends on Film, Genre
-        createFilmScenaristeTable(); // Depends on Film, Scenariste
-
-        createRoleTable(); // Depends on Film, Acteur
-        createLocationTable(); // Depends on Client, Copie
-        System.out.println("Finished creating tables (case-sensitive).");
-    }
-
-    // Domain Tables (Lookup/Reference Tables)
-    private void createDomaineCarteCreditTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "DomaineCarteCredit" (
-                "carteCreditType" VARCHAR2(10) PRIMARY KEY
-            )
-        """;
-        executeUpdate(sql, "DomaineCarteCredit");
-    }
-
-    private void createDomaineForfaitTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "DomaineForfait" (
-                "type" VARCHAR2(10) PRIMARY KEY
-            )
-        """;
-        executeUpdate(sql, "DomaineForfait");
-    }
-
-    private void createDomaineCopieTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "DomaineCopie" (
-                "etat" VARCHAR2(10) PRIMARY KEY
-            )
-        """;
-        executeUpdate(sql, "DomaineCopie");
-    }
+        // Parents before children; bare tables (deferred constraints) have no dependencies at all
+        List<List<String>> niveaux = SchemaGraph.niveaux(nomsTables(),
+                contraintesDifferees ? List.of() : CONTRAINTES);
+        for (List<String> niveau : niveaux) {
+            executerNiveau(niveau, this::createTable);
+        }
 
-    private void createPaysProductionTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "PaysProduction" (
-                "nomPays" VARCHAR2(60) PRIMARY KEY
-            )
-        """;
-        executeUpdate(sql, "PaysProduction");
+        if (typesBulk) {
+            createBulkTypes();
+        }
+        if (blocSequence > 0) {
+            createSequences();
+        }
+        System.out.println("Finished creating tables (case-sensitive).");
     }
 
-    private void createGenreTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Genre" (
-                "nomGenre" VARCHAR2(20) PRIMARY KEY
-            )
-        """;
-        executeUpdate(sql, "Genre");
+    private static List<String> nomsTables() {
+        List<String> noms = new ArrayList<>();
+        for (Table t : TABLES) {
+            noms.add(t.nom());
+        }
+        return noms;
     }
 
-    // Core Entity Tables
-    private void createPersonneTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Personne" (
-                "idPersonne" VARCHAR2(10) PRIMARY KEY,
-                "nom" VARCHAR2(255) NOT NULL,
-                "dateNaissance" DATE,
-                "lieuNaissance" VARCHAR2(255),
-                "photo" VARCHAR2(255),
-                "biographie" CLOB
-            )
-        """;
-        executeUpdate(sql, "Personne");
+    @FunctionalInterface
+    private interface OperationTable {
+        void executer(Connection c, String tableName) throws SQLException;
     }
 
-    private void createScenaristeTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Scenariste" (
-                "idScenariste" VARCHAR2(36) PRIMARY KEY,
-                "nom" VARCHAR2(255) NOT NULL
-            )
-        """;
-        executeUpdate(sql, "Scenariste");
+    /**
+     * Runs op on every table of one DAG level. With more than one DDL connection the tables
+     * are handled concurrently, each on a connection of its own borrowed from the DataSource;
+     * the first failure is re-thrown once the whole level is done.
+     */
+    private void executerNiveau(List<String> niveau, OperationTable op) throws SQLException {
+        long debut = System.nanoTime();
+        int threads = Math.min(connexionsDdl, niveau.size());
+        if (threads <= 1) {
+            for (String table : niveau) {
+                op.executer(conn, table);
+            }
+        } else {
+            ExecutorService executeur = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> taches = new ArrayList<>();
+                for (String table : niveau) {
+                    taches.add(executeur.submit(() -> {
+                        try (Connection c = dataSource.getConnection()) {
+                            op.executer(c, table);
+                            c.commit();
+                        }
+                        return null;
+                    }));
+                }
+                SQLException erreur = null;
+                for (Future<?> tache : taches) {
+                    try {
+                        tache.get();
+                    } catch (ExecutionException e) {
+                        if (erreur == null) {
+                            erreur = e.getCause() instanceof SQLException se ? se : new SQLException(e.getCause());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("DDL interrompu", e);
+                    }
+                }
+                if (erreur != null) {
+                    throw erreur;
+                }
+            } finally {
+                executeur.shutdown();
+            }
+        }
+        System.out.println("  " + niveau + ": " + (System.nanoTime() - debut) / 1_000_000 + " ms ("
+                + Math.max(threads, 1) + " connexion(s))");
     }
 
-    private void createUtilisateurTable() throws SQLException {
+    // Collection type bound by inserter.BulkInserter (one array per column). Not dropped with
+    // the tables: CREATE OR REPLACE keeps it idempotent across resets.
+    private void createBulkTypes() throws SQLException {
         String sql = """
-            CREATE TABLE "Utilisateur" (
-                "idUser" VARCHAR2(10) PRIMARY KEY,
-                "prenom" VARCHAR2(255) NOT NULL,
-                "nom" VARCHAR2(255) NOT NULL,
-                "courriel" VARCHAR2(255) NOT NULL UNIQUE,
-                "motDePasse" VARCHAR2(50) NOT NULL,
-                "telephone" VARCHAR2(20) NOT NULL,
-                "adresse" VARCHAR2(255) NOT NULL,
-                "ville" VARCHAR2(255) NOT NULL,
-                "province" VARCHAR2(20) NOT NULL,
-                "codePostal" VARCHAR2(10) NOT NULL,
-                "dateNaissance" DATE NOT NULL
-            )
+            CREATE OR REPLACE TYPE "T_VARCHAR2_TAB" AS TABLE OF VARCHAR2(4000)
         """;
-        executeUpdate(sql, "Utilisateur");
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.executeUpdate();
+            System.out.println("Type \"T_VARCHAR2_TAB\" created successfully.");
+        } catch (SQLException e) {
+            System.err.println("Error creating type \"T_VARCHAR2_TAB\": " + e.getMessage());
+            throw e;
+        }
     }
 
-    // Core Media Table
-    private void createFilmTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Film" (
-                "idFilm" VARCHAR2(10) PRIMARY KEY,
-                "titre" VARCHAR2(255) NOT NULL,
-                "anneeSortie" NUMBER(4) NOT NULL,
-                "langue" VARCHAR2(50),
-                "dureeFilm" NUMBER NOT NULL,
-                "resume" CLOB,
-                "affiche" VARCHAR2(255),
-                "idRealisateur" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_film_realisateur" FOREIGN KEY ("idRealisateur") REFERENCES "Personne"("idPersonne")
-            )
-        """;
-        executeUpdate(sql, "Film");
+    // Dropped and created again, so a new load starts its keys from 1
+    private void createSequences() throws SQLException {
+        for (String table : TABLES_SEQUENCES) {
+            String sequence = "seq_" + table;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP SEQUENCE \"" + sequence + "\"");
+            } catch (SQLException e) {
+                // ORA-02289: sequence does not exist
+                if (e.getErrorCode() != 2289) {
+                    System.err.println("Error dropping sequence \"" + sequence + "\": " + e.getMessage());
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE SEQUENCE \"" + sequence + "\" START WITH 1 INCREMENT BY " + blocSequence + " NOCYCLE");
+                System.out.println("Sequence \"" + sequence + "\" created successfully (increment " + blocSequence + ").");
+            } catch (SQLException e) {
+                System.err.println("Error creating sequence \"" + sequence + "\": " + e.getMessage());
+                throw e;
+            }
+        }
     }
 
-    // Financial/Subscription Tables
-    private void createForfaitTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Forfait" (
-                "codeForfait" VARCHAR2(10) PRIMARY KEY,
-                "coûtMensuel" NUMBER(10, 2) NOT NULL,
-                "locationsMax" NUMBER NOT NULL,
-                "dureeMaxJours" NUMBER NOT NULL,
-                "type" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_forfait_domaine" FOREIGN KEY ("type") REFERENCES "DomaineForfait"("type")
-            )
-        """;
-        executeUpdate(sql, "Forfait");
+    // Creates one table, plus its keys and references unless they are deferred
+    private void createTable(Connection c, String tableName) throws SQLException {
+        Table table = null;
+        for (Table t : TABLES) {
+            if (t.nom().equals(tableName)) {
+                table = t;
+            }
+        }
+        String ddl = table.ddl();
+        if (partitionnementLocation && tableName.equals("Location")) {
+            ddl = ddl.stripTrailing() + "\n" + PARTITIONNEMENT_LOCATION;
+        }
+        if (clesNumeriques) {
+            ddl = COLONNES_CLES_GENEREES.matcher(ddl).replaceAll("$1 NUMBER(19)");
+        }
+        try (PreparedStatement stmt = c.prepareStatement(ddl)) {
+            stmt.executeUpdate();
+            // Use double quotes for printing the table name to reflect its actual case-sensitive name
+            System.out.println("Table \"" + tableName + "\" created successfully.");
+        } catch (SQLException e) {
+            System.err.println("Error creating table \"" + tableName + "\": " + e.getMessage());
+            throw e; // Re-throw to be handled by the caller, potentially rolling back
+        }
+        if (!contraintesDifferees) {
+            for (Contrainte contrainte : CONTRAINTES) {
+                if (contrainte.table().equals(tableName)) {
+                    try (Statement stmt = c.createStatement()) {
+                        stmt.execute("ALTER TABLE \"" + tableName + "\" ADD " + contrainte.definition());
+                    }
+                }
+            }
+            for (Index index : indexActifs()) {
+                if (index.table().equals(tableName)) {
+                    try (Statement stmt = c.createStatement()) {
+                        stmt.execute(creationIndex(index));
+                    }
+                }
+            }
+        }
     }
 
-    // User Role Tables
-    private void createEmployeTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Employe" (
-                "idUser" VARCHAR2(10) PRIMARY KEY,
-                "matricule" NUMBER NOT NULL UNIQUE,
-                CONSTRAINT "fk_employe_utilisateur" FOREIGN KEY ("idUser") REFERENCES "Utilisateur"("idUser") ON DELETE CASCADE
-            )
-        """;
-        executeUpdate(sql, "Employe");
+    // Location's indexes come with its partitioned layout; the others with indexClesEtrangeres
+    private List<Index> indexActifs() {
+        List<Index> actifs = new ArrayList<>();
+        for (Index index : INDEX_CLES_ETRANGERES) {
+            if (indexClesEtrangeres || (partitionnementLocation && index.table().equals("Location"))) {
+                actifs.add(index);
+            }
+        }
+        return actifs;
     }
 
-    private void createClientTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Client" (
-                "idUser" VARCHAR2(10) PRIMARY KEY,
-                "carteCreditNumero" VARCHAR2(19) NOT NULL UNIQUE,
-                "carteCreditExpMois" NUMBER(2) NOT NULL,
-                "carteCreditExpAnnee" NUMBER(4) NOT NULL,
-                "carteCreditCVV" NUMBER(4) NOT NULL,
-                "carteCreditType" VARCHAR2(10) NOT NULL,
-                "codeForfait" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_client_utilisateur" FOREIGN KEY ("idUser") REFERENCES "Utilisateur"("idUser") ON DELETE CASCADE,
-                CONSTRAINT "fk_client_domaine_carte" FOREIGN KEY ("carteCreditType") REFERENCES "DomaineCarteCredit"("carteCreditType"),
-                CONSTRAINT "fk_client_forfait" FOREIGN KEY ("codeForfait") REFERENCES "Forfait"("codeForfait")
-            )
-        """;
-        executeUpdate(sql, "Client");
+    private String creationIndex(Index index) {
+        return "CREATE INDEX \"" + index.nom() + "\" ON \"" + index.table() + "\" ("
+                + Contrainte.quoter(index.colonnes(), "") + ")"
+                + (partitionnementLocation && index.table().equals("Location") ? " LOCAL" : "");
     }
 
-    // Media Instance and Related Tables
-    private void createCopieTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Copie" (
-                "code" VARCHAR2(255) PRIMARY KEY,
-                "idFilm" VARCHAR2(10) NOT NULL,
-                "etat" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_copie_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE,
-                CONSTRAINT "fk_copie_domaine_etat" FOREIGN KEY ("etat") REFERENCES "DomaineCopie"("etat")
-            )
-        """;
-        executeUpdate(sql, "Copie");
+    private void executer(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
     }
 
-    private void createBandeAnnonceTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "BandeAnnonce" (
-                "idBandeAnnonce" VARCHAR2(36) PRIMARY KEY,
-                "url" VARCHAR2(255) NOT NULL,
-                "idFilm" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_bandeannonce_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE
-            )
-        """;
-        executeUpdate(sql, "BandeAnnonce");
-    }
+    // Deferred constraints (bulk-load schema)
 
-    // Junction Tables
-    private void createFilmPaysTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "FilmPays" (
-                "idFilm" VARCHAR2(10),
-                "nomPays" VARCHAR2(60),
-                PRIMARY KEY ("idFilm", "nomPays"),
-                CONSTRAINT "fk_filmpays_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE,
-                CONSTRAINT "fk_filmpays_pays" FOREIGN KEY ("nomPays") REFERENCES "PaysProduction"("nomPays") ON DELETE CASCADE
-            )
-        """;
-        executeUpdate(sql, "FilmPays");
+    /** Primary keys only, for a resumed load: its idempotent inserts need the key indexes. */
+    public void construireClesPrimaires() {
+        for (Contrainte c : CONTRAINTES) {
+            if (c.type() == Type.PRIMARY_KEY) {
+                construireIndex(c);
+            }
+        }
     }
 
-    private void createFilmGenreTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "FilmGenre" (
-                "idFilm" VARCHAR2(10),
-                "nomGenre" VARCHAR2(20),
-                PRIMARY KEY ("idFilm", "nomGenre"),
-                CONSTRAINT "fk_filmgenre_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE,
-                CONSTRAINT "fk_filmgenre_genre" FOREIGN KEY ("nomGenre") REFERENCES "Genre"("nomGenre") ON DELETE CASCADE
-            )
-        """;
-        executeUpdate(sql, "FilmGenre");
+    /**
+     * Adds every key and reference after a bulk load and reports the rows violating them.
+     * PRIMARY KEY / UNIQUE: the unique index is built first (PARALLEL, NOLOGGING), then the
+     * constraint is attached to it. FOREIGN KEY: enabled NOVALIDATE (no scan), then
+     * validated when valider is set. A constraint that cannot be built is listed with
+     * up to ten offending keys and left out (keys) or left NOVALIDATE (references).
+     * Returns the number of constraints with violations.
+     */
+    public int construireContraintes(boolean valider) throws SQLException {
+        System.out.println("Construction des contraintes (parallélisme " + degreParallele
+                + (valider ? ", VALIDATE" : ", NOVALIDATE") + ")...");
+        long debut = System.nanoTime();
+        int enErreur = 0;
+        long cles = 0, index = 0, references = 0;
+
+        executer("ALTER SESSION FORCE PARALLEL DDL PARALLEL " + degreParallele);
+        executer("ALTER SESSION FORCE PARALLEL QUERY PARALLEL " + degreParallele);
+        try {
+            for (Contrainte c : CONTRAINTES) {
+                if (c.type() == Type.FOREIGN_KEY) continue;
+                long t = System.nanoTime();
+                if (!construireIndex(c)) enErreur++;
+                cles += System.nanoTime() - t;
+            }
+            long debutIndex = System.nanoTime();
+            construireIndexSecondaires();
+            index = System.nanoTime() - debutIndex;
+            for (Contrainte c : CONTRAINTES) {
+                if (c.type() != Type.FOREIGN_KEY) continue;
+                long t = System.nanoTime();
+                if (!construireReference(c, valider)) enErreur++;
+                references += System.nanoTime() - t;
+            }
+        } finally {
+            executer("ALTER SESSION ENABLE PARALLEL DDL");
+            executer("ALTER SESSION ENABLE PARALLEL QUERY");
+        }
+        conn.commit();
+        System.out.printf("Contraintes construites en %d ms (clés %d ms, index %d ms, références %d ms), %d en violation.%n",
+                (System.nanoTime() - debut) / 1_000_000, cles / 1_000_000, index / 1_000_000,
+                references / 1_000_000, enErreur);
+        return enErreur;
     }
 
-    private void createFilmScenaristeTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "FilmScenariste" (
-                "idFilm" VARCHAR2(10),
-                "idScenariste" VARCHAR2(36),
-                PRIMARY KEY ("idFilm", "idScenariste"),
-                CONSTRAINT "fk_filmscenariste_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE,
-                CONSTRAINT "fk_filmscenariste_scenariste" FOREIGN KEY ("idScenariste") REFERENCES "Scenariste"("idScenariste") ON DELETE CASCADE
-            )
-        """;
-        executeUpdate(sql, "FilmScenariste");
+    /** Builds the foreign key indexes of a bulk-load schema (PARALLEL, NOLOGGING). */
+    public void construireIndexSecondaires() {
+        for (Index index : indexActifs()) {
+            long debut = System.nanoTime();
+            try {
+                executer(creationIndex(index) + " PARALLEL " + degreParallele + " NOLOGGING");
+                executer("ALTER INDEX \"" + index.nom() + "\" NOPARALLEL LOGGING");
+                System.out.println("  " + index.nom() + ": " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+            } catch (SQLException e) {
+                if (DEJA_PRESENTE.contains(e.getErrorCode())) {
+                    System.out.println("  " + index.nom() + ": déjà présent");
+                } else {
+                    System.err.println("  " + index.nom() + " non construit: " + e.getMessage());
+                }
+            }
+        }
     }
 
-    private void createRoleTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Role" (
-                "idRole" VARCHAR2(36) PRIMARY KEY,
-                "personnage" VARCHAR2(255),
-                "idFilm" VARCHAR2(10) NOT NULL,
-                "idActeur" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_role_film" FOREIGN KEY ("idFilm") REFERENCES "Film"("idFilm") ON DELETE CASCADE,
-                CONSTRAINT "fk_role_acteur" FOREIGN KEY ("idActeur") REFERENCES "Personne"("idPersonne") ON DELETE CASCADE            )
-        """;
-        executeUpdate(sql, "Role");
+    private boolean construireIndex(Contrainte c) {
+        long debut = System.nanoTime();
+        try {
+            executer("CREATE UNIQUE INDEX \"" + c.nom() + "\" ON \"" + c.table() + "\" ("
+                    + Contrainte.quoter(c.colonnes(), "") + ") PARALLEL " + degreParallele + " NOLOGGING");
+            executer("ALTER TABLE \"" + c.table() + "\" ADD " + c.definition() + " USING INDEX \"" + c.nom() + "\"");
+            // Parallel degree and NOLOGGING were for the build only
+            executer("ALTER INDEX \"" + c.nom() + "\" NOPARALLEL LOGGING");
+            System.out.println("  " + c.nom() + ": " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+            return true;
+        } catch (SQLException e) {
+            if (DEJA_PRESENTE.contains(e.getErrorCode())) {
+                System.out.println("  " + c.nom() + ": déjà présente");
+                return true;
+            }
+            System.err.println("  " + c.nom() + " non construite: " + e.getMessage());
+            rapporterViolations(c);
+            return false;
+        }
     }
 
-    // Transactional Table
-    private void createLocationTable() throws SQLException {
-        String sql = """
-            CREATE TABLE "Location" (
-                "idLocation" VARCHAR2(10) PRIMARY KEY,
-                "dateDebut" DATE NOT NULL,
-                "dateFin" DATE NOT NULL,
-                "dateRetourEffectif" DATE,
-                "idClient" VARCHAR2(10) NOT NULL,
-                "idCopie" VARCHAR2(10) NOT NULL,
-                CONSTRAINT "fk_location_client" FOREIGN KEY ("idClient") REFERENCES "Client"("idUser"),
-                CONSTRAINT "fk_location_copie" FOREIGN KEY ("idCopie") REFERENCES "Copie"("code")
-            )
-        """;
-        executeUpdate(sql, "Location");
+    private boolean construireReference(Contrainte c, boolean valider) {
+        long debut = System.nanoTime();
+        try {
+            executer("ALTER TABLE \"" + c.table() + "\" ADD " + c.definition() + " ENABLE NOVALIDATE");
+        } catch (SQLException e) {
+            if (DEJA_PRESENTE.contains(e.getErrorCode())) {
+                System.out.println("  " + c.nom() + ": déjà présente");
+                return true;
+            }
+            System.err.println("  " + c.nom() + " non ajoutée: " + e.getMessage());
+            return false;
+        }
+        if (!valider) {
+            // Not checked by Oracle: the existing rows are still scanned here so violations get reported
+            long violations = rapporterViolations(c);
+            System.out.println("  " + c.nom() + " (NOVALIDATE): " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+            return violations == 0;
+        }
+        try {
+            executer("ALTER TABLE \"" + c.table() + "\" MODIFY CONSTRAINT \"" + c.nom() + "\" VALIDATE");
+            System.out.println("  " + c.nom() + ": " + (System.nanoTime() - debut) / 1_000_000 + " ms");
+            return true;
+        } catch (SQLException e) {
+            System.err.println("  " + c.nom() + " laissée NOVALIDATE: " + e.getMessage());
+            rapporterViolations(c);
+            return false;
+        }
     }
 
-    // Helper method to execute SQL updates and print messages
-    private void executeUpdate(String sql, String tableName) throws SQLException {
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.executeUpdate();
-            // Use double quotes for printing the table name to reflect its actual case-sensitive name
-            System.out.println("Table \"" + tableName + "\" created successfully.");
+    // Prints how many rows violate c and the first few offending keys; returns the count
+    private long rapporterViolations(Contrainte c) {
+        String requete = c.requeteViolations();
+        long total = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(requete)) {
+            int colonnes = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                if (total++ < EXEMPLES_VIOLATIONS) {
+                    StringBuilder ligne = new StringBuilder("    ").append(c.table()).append(": ");
+                    for (int i = 1; i <= colonnes; i++) {
+                        ligne.append(i > 1 ? ", " : "").append(rs.getMetaData().getColumnLabel(i)).append('=').append(rs.getString(i));
+                    }
+                    System.err.println(ligne);
+                }
+            }
         } catch (SQLException e) {
-            System.err.println("Error creating table \"" + tableName + "\": " + e.getMessage());
-            throw e; // Re-throw to be handled by the caller, potentially rolling back
+            System.err.println("  Vérification de " + c.nom() + " impossible: " + e.getMessage());
+            return -1;
+        }
+        if (total > 0) {
+            System.err.println("  " + c.nom() + ": " + total + (c.type() == Type.FOREIGN_KEY
+                    ? " ligne(s) sans parent" : " clé(s) en double"));
         }
+        return total;
     }
 }
@@ -0,0 +1,412 @@
+package database;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * Pool of Oracle connections shared by the creator and inserter packages, so the
+ * URL and credentials live in one place and parallel loaders reuse logons.
+ *
+ * Connections handed out are proxies: close() rolls back whatever was left
+ * uncommitted and returns the physical connection to the pool. Their statements and
+ * metadata are proxied too, so getConnection() on them never leaks the physical one.
+ * Idle connections are validated before being lent again, and Oracle's implicit
+ * statement cache is enabled on each physical connection so re-preparing the same SQL
+ * reuses its cursor.
+ */
+public class ConnectionPool implements DataSource {
+
+    private static final String DB_URL = "jdbc:oracle:thin:@//bdlog660.ens.ad.etsmtl.ca:1521/ORCLPDB.ens.ad.etsmtl.ca";
+    private static final String DB_USER = "EQUIPE206";
+    private static final String DB_PASSWORD = "NulxJFxU";
+
+    private static final int VALIDATION_TIMEOUT_S = 2;
+
+    private static int tailleMinDefaut = 1;
+    private static int tailleMaxDefaut = 8;
+    private static ConnectionPool instance;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int tailleMin;
+    private final int tailleMax;
+    private final int tailleCacheStatements;
+    private final long attenteMaxMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition disponible = lock.newCondition();
+    private final Deque<Connection> libres = new ArrayDeque<>();
+    private int actives = 0;
+    private boolean ferme = false;
+
+    // Metrics
+    private long emprunts = 0;
+    private long creations = 0;
+    private long invalidees = 0;
+    private long attenteTotaleNanos = 0;
+    private long attenteMaxNanos = 0;
+
+    /** Sizes used when the shared pool is first created; call before getInstance(). */
+    public static synchronized void configurer(int tailleMin, int tailleMax) {
+        if (instance != null) {
+            System.err.println("Pool déjà créé, configuration ignorée.");
+            return;
+        }
+        tailleMinDefaut = tailleMin;
+        tailleMaxDefaut = tailleMax;
+    }
+
+    public static synchronized ConnectionPool getInstance() throws SQLException {
+        if (instance == null) {
+            instance = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD, tailleMinDefaut, tailleMaxDefaut, 50, 30_000);
+        }
+        return instance;
+    }
+
+    public ConnectionPool(String url, String user, String password, int tailleMin, int tailleMax,
+                          int tailleCacheStatements, long attenteMaxMs) throws SQLException {
+        if (tailleMin < 0 || tailleMax < 1 || tailleMin > tailleMax) {
+            throw new IllegalArgumentException("Tailles de pool invalides: min=" + tailleMin + ", max=" + tailleMax);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.tailleMin = tailleMin;
+        this.tailleMax = tailleMax;
+        this.tailleCacheStatements = tailleCacheStatements;
+        this.attenteMaxMs = attenteMaxMs;
+
+        try {
+            Class.forName("oracle.jdbc.OracleDriver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Oracle JDBC Driver not found. Make sure ojdbcX.jar is in your classpath.", e);
+        }
+        for (int i = 0; i < tailleMin; i++) {
+            libres.push(ouvrir());
+        }
+    }
+
+    private Connection ouvrir() throws SQLException {
+        Connection physique = DriverManager.getConnection(url, user, password);
+        lock.lock();
+        try {
+            creations++;
+        } finally {
+            lock.unlock();
+        }
+        if (tailleCacheStatements > 0 && physique.isWrapperFor(OracleConnection.class)) {
+            OracleConnection oconn = physique.unwrap(OracleConnection.class);
+            oconn.setImplicitCachingEnabled(true);
+            oconn.setStatementCacheSize(tailleCacheStatements);
+        }
+        return physique;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long debut = System.nanoTime();
+        while (true) {
+            Connection physique = null;
+            // The slot is reserved (actives) under the lock; logon and validation run outside of it
+            lock.lock();
+            try {
+                if (ferme) {
+                    throw new SQLException("Pool de connexions fermé");
+                }
+                if (!libres.isEmpty()) {
+                    physique = libres.pop();
+                } else if (actives + libres.size() >= tailleMax) {
+                    long resteNanos = TimeUnit.MILLISECONDS.toNanos(attenteMaxMs) - (System.nanoTime() - debut);
+                    if (resteNanos <= 0) {
+                        throw new SQLException("Aucune connexion disponible après " + attenteMaxMs + " ms (max " + tailleMax + ")");
+                    }
+                    disponible.awaitNanos(resteNanos);
+                    continue;
+                }
+                actives++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrompu en attendant une connexion", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (physique == null) {
+                // A connection just opened needs no validation
+                try {
+                    physique = ouvrir();
+                } catch (SQLException e) {
+                    liberer(false);
+                    throw e;
+                }
+            } else if (!valider(physique)) {
+                liberer(true);
+                continue;
+            }
+            lock.lock();
+            try {
+                emprunts++;
+                long attente = System.nanoTime() - debut;
+                attenteTotaleNanos += attente;
+                attenteMaxNanos = Math.max(attenteMaxNanos, attente);
+            } finally {
+                lock.unlock();
+            }
+            return envelopper(physique);
+        }
+    }
+
+    // Gives back a slot reserved by getConnection() that ended without a connection
+    private void liberer(boolean invalidee) {
+        lock.lock();
+        try {
+            actives--;
+            if (invalidee) {
+                invalidees++;
+            }
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called without the lock (a round trip of up to VALIDATION_TIMEOUT_S); a dead connection is closed
+    private boolean valider(Connection physique) {
+        try {
+            if (physique.isValid(VALIDATION_TIMEOUT_S)) {
+                return true;
+            }
+        } catch (SQLException e) {
+            // treated as invalid
+        }
+        try {
+            physique.close();
+        } catch (SQLException e) {
+            // already broken
+        }
+        return false;
+    }
+
+    private void rendre(Connection physique) {
+        boolean reutilisable = true;
+        try {
+            if (!physique.getAutoCommit()) {
+                physique.rollback();
+            }
+            physique.setAutoCommit(true);
+        } catch (SQLException e) {
+            reutilisable = false;
+        }
+        lock.lock();
+        try {
+            actives--;
+            if (reutilisable && !ferme && libres.size() < tailleMax) {
+                libres.push(physique);
+                physique = null;
+            }
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (physique != null) {
+            try {
+                physique.close();
+            } catch (SQLException e) {
+                System.err.println("Erreur lors de la fermeture d'une connexion du pool: " + e.getMessage());
+            }
+        }
+    }
+
+    private Connection envelopper(Connection physique) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean rendue = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!rendue) {
+                            rendue = true;
+                            rendre(physique);
+                        }
+                        return null;
+                    case "isClosed":
+                        return rendue || physique.isClosed();
+                    case "unwrap":
+                        return ((Class<?>) args[0]).isInstance(proxy) ? proxy : physique.unwrap((Class<?>) args[0]);
+                    case "isWrapperFor":
+                        return ((Class<?>) args[0]).isInstance(proxy) || physique.isWrapperFor((Class<?>) args[0]);
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled[" + physique + "]";
+                    default:
+                        if (rendue) {
+                            throw new SQLException("Connexion déjà rendue au pool");
+                        }
+                        try {
+                            return envelopperEnfant(method.invoke(physique, args), (Connection) proxy);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Statements and metadata of a pooled connection answer getConnection() with the proxy,
+     * so closing that connection returns it to the pool. unwrap() and ResultSet.getStatement()
+     * still reach the driver's objects: what they lead to must not be closed by the caller.
+     */
+    private static Object envelopperEnfant(Object objet, Connection connexion) {
+        Class<?> type;
+        if (objet instanceof CallableStatement) {
+            type = CallableStatement.class;
+        } else if (objet instanceof PreparedStatement) {
+            type = PreparedStatement.class;
+        } else if (objet instanceof Statement) {
+            type = Statement.class;
+        } else if (objet instanceof DatabaseMetaData) {
+            type = DatabaseMetaData.class;
+        } else {
+            return objet;
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return connexion;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + objet + "]";
+                default:
+                    try {
+                        return method.invoke(objet, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        };
+        return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            ferme = true;
+            while (!libres.isEmpty()) {
+                try {
+                    libres.pop().close();
+                } catch (SQLException e) {
+                    System.err.println("Erreur lors de la fermeture d'une connexion du pool: " + e.getMessage());
+                }
+            }
+            disponible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActives() {
+        lock.lock();
+        try {
+            return actives;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLibres() {
+        lock.lock();
+        try {
+            return libres.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String rapport() {
+        lock.lock();
+        try {
+            return String.format("Pool: %d actives, %d libres (min %d, max %d), %d emprunts, %d connexions ouvertes, %d invalidées, attente moy. %.2f ms, max %.2f ms",
+                    actives, libres.size(), tailleMin, tailleMax, emprunts, creations, invalidees,
+                    emprunts == 0 ? 0.0 : attenteTotaleNanos / 1e6 / emprunts, attenteMaxNanos / 1e6);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Remaining DataSource methods: credentials are fixed by the pool
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Les identifiants sont fixés par le pool");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return DriverManager.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        DriverManager.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Pas un wrapper de " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,197 @@
+package inserter;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Per-statement batch controller. Counts the rows and (estimated) bytes bound since the
+ * last executeBatch(), times each execution and moves the row limit toward the size that
+ * would take config.getLatenceCibleMs(), without letting a pending batch grow past
+ * config.getBudgetBatchOctets(). The limit changes by at most x2 per batch so a single
+ * slow round trip does not collapse it.
+ *
+ * With config.isLotFixe() the limit stays at its initial value (benchmarks, comparisons).
+ * Every execution can be appended to a CSV trace (see activerTrace) to compare the sizes
+ * chosen on links of different latency, and is recorded in LoadMetrics under the batcher's name.
+ */
+public class AdaptiveBatcher {
+
+    @FunctionalInterface
+    public interface Action {
+        void executer() throws SQLException;
+    }
+
+    private static final int LIMITE_MIN = 10;
+    private static PrintWriter trace;
+
+    private final String nom;
+    private final Action ajout;
+    private final Action envoi;
+    private final Action annulation;
+    private final long latenceCibleNanos;
+    private final long budgetOctets;
+    private final int limiteMax;
+    private final boolean fixe;
+    private final LoadMetrics.TableMetrics metriques;
+
+    private int limite;
+    private int lignes = 0;
+    private long octets = 0;
+
+    // Statistics since creation
+    private long batches = 0;
+    private long totalLignes = 0;
+    private long totalOctets = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+    private int plusPetiteLimite;
+    private int plusGrandeLimite;
+
+    public AdaptiveBatcher(String nom, Action ajout, Action envoi, LoaderConfig config,
+                           int limiteInitiale, int limiteMax) {
+        this(nom, ajout, envoi, null, config, limiteInitiale, limiteMax);
+    }
+
+    /** annulation discards the rows added since the last execution (e.g. clearBatch), see annuler(). */
+    public AdaptiveBatcher(String nom, Action ajout, Action envoi, Action annulation, LoaderConfig config,
+                           int limiteInitiale, int limiteMax) {
+        this.nom = nom;
+        this.ajout = ajout;
+        this.envoi = envoi;
+        this.annulation = annulation;
+        this.latenceCibleNanos = config.getLatenceCibleMs() * 1_000_000L;
+        this.budgetOctets = config.getBudgetBatchOctets();
+        this.limiteMax = limiteMax;
+        this.fixe = config.isLotFixe();
+        this.limite = Math.max(LIMITE_MIN, Math.min(limiteInitiale, limiteMax));
+        this.plusPetiteLimite = limite;
+        this.plusGrandeLimite = limite;
+        this.metriques = LoadMetrics.global().table(nom);
+    }
+
+    public static AdaptiveBatcher pour(String nom, PreparedStatement ps, LoaderConfig config,
+                                       int limiteInitiale, int limiteMax) {
+        return new AdaptiveBatcher(nom, ps::addBatch, ps::executeBatch, ps::clearBatch, config, limiteInitiale, limiteMax);
+    }
+
+    /** Adds the row whose parameters are currently bound, accounting octetsLigne bytes for it. */
+    public void ajouter(long octetsLigne) throws SQLException {
+        if (ajout != null) {
+            ajout.executer();
+        }
+        lignes++;
+        octets += octetsLigne;
+    }
+
+    public boolean estPlein() {
+        return lignes >= limite || octets >= budgetOctets;
+    }
+
+    public int lignes() {
+        return lignes;
+    }
+
+    public String getNom() {
+        return nom;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public int executer() throws SQLException {
+        if (lignes == 0) {
+            return 0;
+        }
+        int n = lignes;
+        long o = octets;
+        long debut = System.nanoTime();
+        envoi.executer();
+        long duree = System.nanoTime() - debut;
+        lignes = 0;
+        octets = 0;
+
+        batches++;
+        totalLignes += n;
+        totalOctets += o;
+        totalNanos += duree;
+        maxNanos = Math.max(maxNanos, duree);
+        LoadMetrics.global().batch(metriques, n, o, duree);
+
+        // A batch flushed early (parent of a full child, end of file) says little about the link
+        if (!fixe && n >= limite / 2) {
+            adapter(n, o, duree);
+        }
+        tracer(n, o, duree);
+        return n;
+    }
+
+    /**
+     * Drops the pending rows without sending them, after the transaction was rolled back.
+     * Also called after a failed executer(), whose rows stay counted as pending.
+     */
+    public void annuler() throws SQLException {
+        if (annulation != null) {
+            annulation.executer();
+        }
+        lignes = 0;
+        octets = 0;
+    }
+
+    private void adapter(int n, long o, long duree) {
+        double nanosParLigne = Math.max(1L, duree) / (double) n;
+        long ideal = (long) (latenceCibleNanos / nanosParLigne);
+        long octetsParLigne = o / n;
+        if (octetsParLigne > 0) {
+            ideal = Math.min(ideal, budgetOctets / octetsParLigne);
+        }
+        ideal = Math.max(limite / 2, Math.min(ideal, 2L * limite));
+        limite = (int) Math.max(LIMITE_MIN, Math.min(ideal, limiteMax));
+        plusPetiteLimite = Math.min(plusPetiteLimite, limite);
+        plusGrandeLimite = Math.max(plusGrandeLimite, limite);
+    }
+
+    public String rapport() {
+        if (batches == 0) {
+            return nom + ": aucun batch";
+        }
+        return String.format("%s: %d batches, %d lignes (%.0f/batch, %d Ko), latence moy. %.1f ms, max %.1f ms, limite %d..%d (finale %d)",
+                nom, batches, totalLignes, totalLignes / (double) batches, totalOctets / 1024,
+                totalNanos / 1e6 / batches, maxNanos / 1e6, plusPetiteLimite, plusGrandeLimite, limite);
+    }
+
+    /** Rough size of the bound values: two bytes per char, as Java holds them before conversion. */
+    public static long octets(String... valeurs) {
+        long total = 0;
+        for (String v : valeurs) {
+            if (v != null) {
+                total += 2L * v.length();
+            }
+        }
+        return total;
+    }
+
+    public static synchronized void activerTrace(String fichier) throws IOException {
+        fermerTrace();
+        trace = new PrintWriter(new FileWriter(fichier));
+        trace.println("statement,lignes,octets,latenceMs,limiteSuivante,thread");
+    }
+
+    public static synchronized void fermerTrace() {
+        if (trace != null) {
+            trace.close();
+            trace = null;
+        }
+    }
+
+    private void tracer(int n, long o, long duree) {
+        synchronized (AdaptiveBatcher.class) {
+            if (trace != null) {
+                trace.printf("%s,%d,%d,%.3f,%d,%s%n", nom, n, o, duree / 1e6, limite, Thread.currentThread().getName());
+            }
+        }
+    }
+}
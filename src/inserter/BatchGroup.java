@@ -0,0 +1,64 @@
+package inserter;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batchers of statements that reference each other (e.g. Film and its Copie rows).
+ * Each batcher fills at its own pace, but flushing one also flushes whatever its rows
+ * reference, parents first, so a foreign key never points to a row still in a batch.
+ * Batchers must be registered after their parents.
+ */
+public class BatchGroup {
+
+    private final List<AdaptiveBatcher> batchers = new ArrayList<>();
+    private final List<int[]> parents = new ArrayList<>();
+
+    public void ajouter(AdaptiveBatcher batcher, AdaptiveBatcher... parentsDuBatcher) {
+        int[] indices = new int[parentsDuBatcher.length];
+        for (int i = 0; i < parentsDuBatcher.length; i++) {
+            indices[i] = batchers.indexOf(parentsDuBatcher[i]);
+            if (indices[i] < 0) {
+                throw new IllegalArgumentException(parentsDuBatcher[i].getNom() + " doit être ajouté avant " + batcher.getNom());
+            }
+        }
+        batchers.add(batcher);
+        parents.add(indices);
+    }
+
+    /** Executes every full batcher, preceded by the batchers it depends on. */
+    public void executerSiPlein() throws SQLException {
+        boolean[] aExecuter = new boolean[batchers.size()];
+        boolean unPlein = false;
+        for (int i = batchers.size() - 1; i >= 0; i--) {
+            if (batchers.get(i).estPlein()) {
+                aExecuter[i] = true;
+                unPlein = true;
+            }
+            if (aExecuter[i]) {
+                for (int p : parents.get(i)) {
+                    aExecuter[p] = true;
+                }
+            }
+        }
+        if (!unPlein) {
+            return;
+        }
+        for (int i = 0; i < batchers.size(); i++) {
+            if (aExecuter[i]) {
+                batchers.get(i).executer();
+            }
+        }
+    }
+
+    public void executerTout() throws SQLException {
+        for (AdaptiveBatcher batcher : batchers) {
+            batcher.executer();
+        }
+    }
+
+    public List<AdaptiveBatcher> getBatchers() {
+        return batchers;
+    }
+}
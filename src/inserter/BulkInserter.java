@@ -0,0 +1,135 @@
+package inserter;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import oracle.jdbc.OracleConnection;
+
+/**
+ * Array-bound insert for the high-cardinality child tables (Copie, Role, FilmGenre,
+ * FilmPays, FilmScenariste). Rows are buffered column by column and sent as one
+ * FORALL block per flush: each column is bound once as a "T_VARCHAR2_TAB" collection
+ * instead of one bind set per row as with addBatch.
+ *
+ * With directPath the insert carries the APPEND_VALUES hint. Oracle then refuses any
+ * further access to the table in the same transaction (ORA-12838), so the connection
+ * is committed after each flush. Note that Oracle silently falls back to a conventional
+ * insert while foreign keys are enabled on the table.
+ *
+ * Direct path commits on its own, so LectureBD does not bisect failed chunks with it
+ * (see RejectFile).
+ *
+ * With --resume the insert instead skips rows whose primary key (the first nombreCles
+ * columns) already exists, and direct path is not used since Oracle refuses both hints together.
+ */
+public class BulkInserter implements AutoCloseable {
+
+    // Created by TableCreator.createBulkTypes()
+    public static final String TYPE_COLONNE = "T_VARCHAR2_TAB";
+
+    private final Connection conn;
+    private final String table;
+    private final boolean directPath;
+    private final List<List<String>> colonnes = new ArrayList<>();
+    private final CallableStatement cs;
+    private final AdaptiveBatcher batcher;
+
+    public BulkInserter(Connection conn, String table, String[] nomsColonnes, int nombreCles, LoaderConfig config)
+            throws SQLException {
+        this.conn = conn;
+        this.table = table;
+        this.directPath = config.isDirectPath() && !config.isInsertionsIdempotentes();
+        for (int i = 0; i < nomsColonnes.length; i++) {
+            colonnes.add(new ArrayList<>());
+        }
+        this.cs = conn.prepareCall(construireBloc(table, nomsColonnes, directPath,
+                config.isInsertionsIdempotentes() ? nombreCles : 0));
+        this.batcher = new AdaptiveBatcher(table + " (bulk)", null, this::envoyer, this::vider, config,
+                config.getSeuilBulk(), 10 * config.getSeuilBulk());
+    }
+
+    private static String construireBloc(String table, String[] nomsColonnes, boolean directPath, int nombreCles) {
+        StringBuilder declare = new StringBuilder("DECLARE\n");
+        StringBuilder cols = new StringBuilder();
+        StringBuilder vals = new StringBuilder();
+        String hint = directPath ? "/*+ APPEND_VALUES */ " : "";
+        if (nombreCles > 0) {
+            StringBuilder cles = new StringBuilder();
+            for (int i = 0; i < nombreCles; i++) {
+                cles.append(i > 0 ? ", " : "").append('"').append(nomsColonnes[i]).append('"');
+            }
+            hint = "/*+ IGNORE_ROW_ON_DUPKEY_INDEX(\"" + table + "\" (" + cles + ")) */ ";
+        }
+        for (int i = 0; i < nomsColonnes.length; i++) {
+            declare.append("  c").append(i).append(" \"").append(TYPE_COLONNE).append("\" := ?;\n");
+            if (i > 0) {
+                cols.append(", ");
+                vals.append(", ");
+            }
+            cols.append('"').append(nomsColonnes[i]).append('"');
+            vals.append('c').append(i).append("(i)");
+        }
+        return declare
+                + "BEGIN\n"
+                + "  FORALL i IN 1 .. c0.COUNT\n"
+                + "    INSERT " + hint
+                + "INTO \"" + table + "\" (" + cols + ") VALUES (" + vals + ");\n"
+                + "END;";
+    }
+
+    public void ajouter(String... valeurs) throws SQLException {
+        for (int i = 0; i < valeurs.length; i++) {
+            colonnes.get(i).add(valeurs[i]);
+        }
+        batcher.ajouter(AdaptiveBatcher.octets(valeurs));
+    }
+
+    /**
+     * Controls when the buffered rows are sent (one round trip per execution). Registered in
+     * LectureBD's film BatchGroup so the parent Film batch is always executed first.
+     */
+    public AdaptiveBatcher batcher() {
+        return batcher;
+    }
+
+    private void envoyer() throws SQLException {
+        if (colonnes.get(0).isEmpty()) {
+            return;
+        }
+        OracleConnection oconn = conn.unwrap(OracleConnection.class);
+        Array[] tableaux = new Array[colonnes.size()];
+        try {
+            for (int i = 0; i < colonnes.size(); i++) {
+                tableaux[i] = oconn.createOracleArray(TYPE_COLONNE, colonnes.get(i).toArray(new String[0]));
+                cs.setArray(i + 1, tableaux[i]);
+            }
+            cs.execute();
+        } catch (SQLException e) {
+            System.err.println("Erreur insertion bulk \"" + table + "\": " + e.getMessage());
+            throw e;
+        } finally {
+            for (Array a : tableaux) {
+                if (a != null) a.free();
+            }
+        }
+        vider();
+        if (directPath) {
+            conn.commit();
+        }
+    }
+
+    private void vider() {
+        for (List<String> colonne : colonnes) {
+            colonne.clear();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        cs.close();
+    }
+}
@@ -0,0 +1,89 @@
+package inserter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Local record of how far each input file has been loaded, written after every commit
+ * of LectureBD. For each file: records committed, byte offset just past the last of them
+ * (-1 when the XmlPullParser path was used), its id, and the file's size and modification
+ * time so a checkpoint is not applied to a file that has changed since.
+ *
+ * The file is rewritten through a temporary file and an atomic rename, so a crash leaves
+ * either the previous or the new checkpoint. A crash between a commit and the rename
+ * replays the records of that commit; LectureBD's --resume inserts make the replay harmless.
+ */
+public class Checkpoint {
+
+    public record Etat(long enregistrements, long octets, String dernierId, boolean termine) {
+        static final Etat DEBUT = new Etat(0, 0, null, false);
+    }
+
+    private final Path chemin;
+    private final Properties proprietes = new Properties();
+
+    public Checkpoint(String chemin) {
+        this.chemin = Paths.get(chemin);
+        if (Files.exists(this.chemin)) {
+            try (Reader r = Files.newBufferedReader(this.chemin, StandardCharsets.UTF_8)) {
+                proprietes.load(r);
+            } catch (IOException e) {
+                System.err.println("Checkpoint illisible, ignoré: " + e.getMessage());
+                proprietes.clear();
+            }
+        }
+    }
+
+    /** Where to resume nomFichier; the start of the file when unknown or when the file changed. */
+    public synchronized Etat etat(String nomFichier) {
+        String n = proprietes.getProperty(nomFichier + ".enregistrements");
+        if (n == null) {
+            return Etat.DEBUT;
+        }
+        Path fichier = Paths.get(nomFichier);
+        try {
+            if (Files.size(fichier) != Long.parseLong(proprietes.getProperty(nomFichier + ".taille"))
+                    || Files.getLastModifiedTime(fichier).toMillis() != Long.parseLong(proprietes.getProperty(nomFichier + ".modifie"))) {
+                System.err.println("Checkpoint ignoré pour " + nomFichier + ": le fichier a changé depuis");
+                return Etat.DEBUT;
+            }
+        } catch (IOException | NumberFormatException e) {
+            return Etat.DEBUT;
+        }
+        return new Etat(Long.parseLong(n),
+                Long.parseLong(proprietes.getProperty(nomFichier + ".octets", "-1")),
+                proprietes.getProperty(nomFichier + ".dernierId"),
+                Boolean.parseBoolean(proprietes.getProperty(nomFichier + ".termine")));
+    }
+
+    /** Call only once the records up to dernierId are committed. */
+    public synchronized void enregistrer(String nomFichier, long enregistrements, long octets, String dernierId,
+                                         boolean termine) throws IOException {
+        Path fichier = Paths.get(nomFichier);
+        proprietes.setProperty(nomFichier + ".enregistrements", Long.toString(enregistrements));
+        proprietes.setProperty(nomFichier + ".octets", Long.toString(octets));
+        proprietes.setProperty(nomFichier + ".dernierId", dernierId == null ? "" : dernierId);
+        proprietes.setProperty(nomFichier + ".termine", Boolean.toString(termine));
+        proprietes.setProperty(nomFichier + ".taille", Long.toString(Files.size(fichier)));
+        proprietes.setProperty(nomFichier + ".modifie", Long.toString(Files.getLastModifiedTime(fichier).toMillis()));
+
+        Path temporaire = chemin.resolveSibling(chemin.getFileName() + ".tmp");
+        try (Writer w = Files.newBufferedWriter(temporaire, StandardCharsets.UTF_8)) {
+            proprietes.store(w, "LectureBD checkpoint");
+        }
+        Files.move(temporaire, chemin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Forgets every file; used when a load starts over from an empty schema. */
+    public synchronized void effacer() throws IOException {
+        proprietes.clear();
+        Files.deleteIfExists(chemin);
+    }
+}
@@ -0,0 +1,29 @@
+package inserter;
+
+/**
+ * Immutable snapshot of one <client> element, as emitted by the XML reader.
+ */
+public record ClientRecord(String id, String nomFamille, String prenom, String courriel, String tel,
+                           String anniv, String adresse, String ville, String province,
+                           String codePostal, String carte, String noCarte,
+                           int expMois, int expAnnee, String motDePasse, String forfait) {
+
+    // Ends up in the reject file: the card number and the password stay out of it
+    @Override
+    public String toString() {
+        return "ClientRecord[id=" + id + ", nomFamille=" + nomFamille + ", prenom=" + prenom
+                + ", courriel=" + courriel + ", tel=" + tel + ", anniv=" + anniv + ", adresse=" + adresse
+                + ", ville=" + ville + ", province=" + province + ", codePostal=" + codePostal
+                + ", carte=" + carte + ", noCarte=" + masquer(noCarte) + ", expMois=" + expMois
+                + ", expAnnee=" + expAnnee + ", motDePasse=" + (motDePasse == null ? null : "***")
+                + ", forfait=" + forfait + "]";
+    }
+
+    // Last four digits only
+    private static String masquer(String noCarte) {
+        if (noCarte == null) {
+            return null;
+        }
+        return noCarte.length() <= 4 ? "***" : "***" + noCarte.substring(noCarte.length() - 4);
+    }
+}
@@ -0,0 +1,82 @@
+package inserter;
+
+import java.io.StringReader;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * How LectureBD binds the CLOB columns, Film.resume and Personne.biographie, by text length:
+ *
+ *   up to enLigneMax chars : setString, an in-line bind that stays in the array of the batch;
+ *   up to differeMin chars : setCharacterStream, streamed into the row by the driver;
+ *   beyond differeMin      : NULL in the insert, the text written afterwards by an UPDATE of
+ *                            its own batch (a "LOB pass"), so the long texts, which Oracle
+ *                            writes through temporary LOBs row by row, do not slow down the
+ *                            array insert of the short ones.
+ *
+ * differeMin 0 never defers. LectureBD registers the UPDATE with the inserted row as parent
+ * in its BatchGroup: the LOB pass runs after the insert, within the same transaction, and is
+ * replayed with it after a rollback. One instance per LectureBD (not thread-safe).
+ */
+public final class ClobWriter {
+
+    public enum Mode { EN_LIGNE, FLUX, DIFFERE }
+
+    private final int enLigneMax;
+    private final int differeMin;
+    private long enLigne, flux, differes;
+    private long caracteresFlux, caracteresDifferes;
+
+    public ClobWriter(int enLigneMax, int differeMin) {
+        this.enLigneMax = enLigneMax;
+        this.differeMin = differeMin;
+    }
+
+    public Mode mode(String texte) {
+        if (texte == null || texte.length() <= enLigneMax) {
+            return Mode.EN_LIGNE;
+        }
+        return differeMin > 0 && texte.length() > differeMin ? Mode.DIFFERE : Mode.FLUX;
+    }
+
+    /** Binds texte as parameter index of ps; false when it is deferred (NULL bound), see differer(). */
+    public boolean lier(PreparedStatement ps, int index, String texte) throws SQLException {
+        switch (mode(texte)) {
+            case EN_LIGNE -> {
+                ps.setString(index, texte);
+                enLigne++;
+                return true;
+            }
+            case FLUX -> {
+                ps.setCharacterStream(index, new StringReader(texte), texte.length());
+                flux++;
+                caracteresFlux += texte.length();
+                return true;
+            }
+            default -> {
+                ps.setNull(index, Types.CLOB);
+                return false;
+            }
+        }
+    }
+
+    /** Binds the LOB pass: psLob is "UPDATE table SET colonne = ? WHERE cle = ?". */
+    public void differer(PreparedStatement psLob, String texte, String id) throws SQLException {
+        psLob.setCharacterStream(1, new StringReader(texte), texte.length());
+        psLob.setString(2, id);
+        differes++;
+        caracteresDifferes += texte.length();
+    }
+
+    /** Bytes of the bind for AdaptiveBatcher: a deferred text weighs on the LOB pass, not on the insert. */
+    public long octets(String texte) {
+        return mode(texte) == Mode.DIFFERE ? 0 : AdaptiveBatcher.octets(texte);
+    }
+
+    public String rapport() {
+        return String.format("CLOB: %d en ligne (<= %d car.), %d en flux (%.1f M car.), %d différés (%.1f M car., > %s car.)",
+                enLigne, enLigneMax, flux, caracteresFlux / 1e6, differes, caracteresDifferes / 1e6,
+                differeMin > 0 ? Integer.toString(differeMin) : "∞");
+    }
+}
@@ -0,0 +1,212 @@
+package inserter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprint of every client, personne and film loaded so far, by id, so a new dump can
+ * be applied as a delta (MainInserter --delta) instead of a drop and full reload.
+ *
+ * The fingerprint is a 64-bit hash of the record's canonical binary form, the one
+ * StagingStore's codecs write: every field of the <film> element (child lists included)
+ * takes part, so a changed genre or role changes it. LectureBD compares each parsed
+ * record with comparer(): a new id is inserted, a different fingerprint updated, an
+ * equal one skipped. Ids of the previous load never seen by the end of a file are the
+ * records to delete (absents()).
+ *
+ * The index only moves on commit: LectureBD hands the fingerprints of a transaction to
+ * valider() once it is committed, so a rolled back or rejected record keeps its old
+ * fingerprint and is retried by the next delta. Full loads run with --empreintes rebuild
+ * the index from scratch; the others do not fingerprint at all. The file is written at
+ * the end of the run, through a temporary file and an atomic rename like Checkpoint; a
+ * delta that stops halfway leaves the previous index, and replaying it is harmless (the
+ * delta inserts skip existing keys, updates and deletes are idempotent).
+ *
+ * Thread-safe: the LoadOrchestrator and ParallelLoader instances share one index.
+ */
+public class DeltaIndex {
+
+    private static final int MAGIC = 0x44454c54;
+    private static final int VERSION = 1;
+
+    public enum Type { CLIENTS, PERSONNES, FILMS }
+
+    public enum Etat { NOUVEAU, MODIFIE, INCHANGE }
+
+    /** A fingerprint to apply on commit; empreinte is ignored for a deletion. */
+    record Changement(Type type, String id, long empreinte, boolean suppression) {
+    }
+
+    // Per-thread hasher of one record type (the codec's buffer is not shared)
+    public static final class Empreinteur<T> {
+        private final StagingStore.Codec<T> codec;
+        private final StagingStore.Sortie sortie = new StagingStore.Sortie();
+
+        private Empreinteur(StagingStore.Codec<T> codec) {
+            this.codec = codec;
+        }
+
+        public long de(T record) {
+            sortie.vider();
+            codec.ecrire(record, sortie);
+            return sortie.empreinte();
+        }
+    }
+
+    public static Empreinteur<FilmData> empreinteurFilm() {
+        return new Empreinteur<>(StagingStore.codecFilm());
+    }
+
+    public static Empreinteur<PersonneRecord> empreinteurPersonne() {
+        return new Empreinteur<>(StagingStore.CODEC_PERSONNE);
+    }
+
+    public static Empreinteur<ClientRecord> empreinteurClient() {
+        return new Empreinteur<>(StagingStore.CODEC_CLIENT);
+    }
+
+    private static final class Table {
+        final Map<String, Long> empreintes = new HashMap<>();
+        final Set<String> vus = new HashSet<>();
+        long nouveaux, modifies, inchanges, supprimes;
+    }
+
+    private final Path chemin;
+    private final Map<Type, Table> tables = new EnumMap<>(Type.class);
+    private final boolean charge;
+
+    private DeltaIndex(Path chemin, boolean charge) {
+        this.chemin = chemin;
+        this.charge = charge;
+        for (Type type : Type.values()) {
+            tables.put(type, new Table());
+        }
+    }
+
+    /** An empty index, for a full load that writes it to chemin. */
+    public static DeltaIndex nouveau(String chemin) {
+        return new DeltaIndex(Paths.get(chemin), false);
+    }
+
+    /** The index of the previous load; empty (estCharge() false) when chemin does not exist. */
+    public static DeltaIndex ouvrir(String chemin) throws IOException {
+        DeltaIndex index = new DeltaIndex(Paths.get(chemin), Files.exists(Paths.get(chemin)));
+        if (!index.charge) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(index.chemin), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(chemin + " n'est pas un index d'empreintes de cette version");
+            }
+            for (int t = in.readInt(); t > 0; t--) {
+                Table table = index.tables.get(Type.valueOf(in.readUTF()));
+                for (long n = in.readLong(); n > 0; n--) {
+                    table.empreintes.put(in.readUTF(), in.readLong());
+                }
+            }
+        }
+        return index;
+    }
+
+    public boolean estCharge() {
+        return charge;
+    }
+
+    /** What the record is to the previous load; marks id as present in the new dump. */
+    public Etat comparer(Type type, String id, long empreinte) {
+        Table table = tables.get(type);
+        synchronized (table) {
+            boolean premiereFois = table.vus.add(id);
+            Long precedente = table.empreintes.get(id);
+            Etat etat = precedente == null ? Etat.NOUVEAU
+                    : precedente == empreinte ? Etat.INCHANGE : Etat.MODIFIE;
+            // A record replayed after a rollback is counted once
+            if (premiereFois) {
+                switch (etat) {
+                    case NOUVEAU -> table.nouveaux++;
+                    case MODIFIE -> table.modifies++;
+                    default -> table.inchanges++;
+                }
+            }
+            return etat;
+        }
+    }
+
+    /** Applies the changes of a committed transaction. */
+    void valider(List<Changement> changements) {
+        for (Changement c : changements) {
+            Table table = tables.get(c.type());
+            synchronized (table) {
+                if (c.suppression()) {
+                    if (table.empreintes.remove(c.id()) != null) {
+                        table.supprimes++;
+                    }
+                } else {
+                    table.empreintes.put(c.id(), c.empreinte());
+                }
+            }
+        }
+    }
+
+    /** Ids of the previous load not seen since: call once the whole file has been read. */
+    public List<String> absents(Type type) {
+        Table table = tables.get(type);
+        synchronized (table) {
+            List<String> absents = new ArrayList<>();
+            for (String id : table.empreintes.keySet()) {
+                if (!table.vus.contains(id)) {
+                    absents.add(id);
+                }
+            }
+            return absents;
+        }
+    }
+
+    public synchronized void enregistrer() throws IOException {
+        Path temporaire = chemin.resolveSibling(chemin.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaire), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tables.size());
+            for (Map.Entry<Type, Table> e : tables.entrySet()) {
+                Table table = e.getValue();
+                synchronized (table) {
+                    out.writeUTF(e.getKey().name());
+                    out.writeLong(table.empreintes.size());
+                    for (Map.Entry<String, Long> empreinte : table.empreintes.entrySet()) {
+                        out.writeUTF(empreinte.getKey());
+                        out.writeLong(empreinte.getValue());
+                    }
+                }
+            }
+        }
+        Files.move(temporaire, chemin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String rapport() {
+        StringBuilder sb = new StringBuilder("Empreintes (" + chemin + "):");
+        for (Map.Entry<Type, Table> e : tables.entrySet()) {
+            Table t = e.getValue();
+            synchronized (t) {
+                sb.append(String.format("%n  %-9s %d nouveaux, %d modifiés, %d inchangés, %d supprimés (%d connus)",
+                        e.getKey().name().toLowerCase(), t.nouveaux, t.modifies, t.inchanges, t.supprimes,
+                        t.empreintes.size()));
+            }
+        }
+        return sb.toString();
+    }
+}
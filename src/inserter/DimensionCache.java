@@ -0,0 +1,144 @@
+package inserter;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keys already present in one lookup table (Genre, PaysProduction, Scenariste...), so the
+ * loader only merges the keys it has never seen instead of one MERGE per row.
+ *
+ * The value is what the rows referencing the table need: the key itself for most tables,
+ * the generated idScenariste for Scenariste. With tailleMax > 0 the cache is an LRU; a key
+ * evicted from it is looked up again through the Source given to get(). Keys added since
+ * the last confirmer() are kept aside and never evicted, since they are not in the
+ * database yet. Keys registered since the last valider() are forgotten by annuler(), when
+ * the transaction that merged them is rolled back. All methods are synchronized: the ParallelLoader writers read the cache
+ * the coordinator fills.
+ */
+public class DimensionCache<V> {
+
+    @FunctionalInterface
+    public interface Source<V> {
+        V chercher(String cle) throws SQLException;
+    }
+
+    private final String nom;
+    private final int tailleMax;
+    private final Map<String, V> valeurs;
+    private final Map<String, V> enAttente = new HashMap<>();
+    private final Map<String, V> nonCommitees = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long nouvelles = 0;
+    private long evictions = 0;
+    private long lectures = 0;
+
+    public DimensionCache(String nom, int tailleMax) {
+        this.nom = nom;
+        this.tailleMax = tailleMax;
+        if (tailleMax > 0) {
+            this.valeurs = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    if (size() > DimensionCache.this.tailleMax) {
+                        evictions++;
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        } else {
+            this.valeurs = new HashMap<>();
+        }
+    }
+
+    /** Key loaded from the database at startup: not counted as a miss, not to be inserted. */
+    public synchronized void precharger(String cle, V valeur) {
+        valeurs.put(cle, valeur);
+    }
+
+    /**
+     * Returns the value of a key, or registers the one nouvelle builds for it. The caller inserts
+     * the row only when it got back the value nouvelle built (identity check).
+     */
+    public synchronized V resoudre(String cle, Source<V> nouvelle, Source<V> source) throws SQLException {
+        V valeur = trouver(cle, source);
+        if (valeur != null) {
+            return valeur;
+        }
+        valeur = nouvelle.chercher(cle);
+        enregistrer(cle, valeur);
+        return valeur;
+    }
+
+    /** True when cle was not known yet and has been registered; the caller then inserts it. */
+    public synchronized boolean estNouvelle(String cle, V valeur) throws SQLException {
+        if (trouver(cle, null) != null) {
+            return false;
+        }
+        enregistrer(cle, valeur);
+        return true;
+    }
+
+    private void enregistrer(String cle, V valeur) {
+        valeurs.put(cle, valeur);
+        enAttente.put(cle, valeur);
+        nonCommitees.put(cle, valeur);
+        nouvelles++;
+    }
+
+    public synchronized V get(String cle, Source<V> source) throws SQLException {
+        return trouver(cle, source);
+    }
+
+    private V trouver(String cle, Source<V> source) throws SQLException {
+        V valeur = valeurs.get(cle);
+        if (valeur == null) {
+            valeur = enAttente.get(cle);
+        }
+        if (valeur != null) {
+            hits++;
+            return valeur;
+        }
+        misses++;
+        // Only an evicted key can be in the database without being in the cache
+        if (source != null && evictions > 0) {
+            lectures++;
+            valeur = source.chercher(cle);
+            if (valeur != null) {
+                valeurs.put(cle, valeur);
+            }
+        }
+        return valeur;
+    }
+
+    /** The keys registered so far have been written: they may now be evicted. */
+    public synchronized void confirmer() {
+        enAttente.clear();
+    }
+
+    /** The keys registered so far are committed. */
+    public synchronized void valider() {
+        nonCommitees.clear();
+    }
+
+    /** The transaction merging the keys registered since valider() was rolled back: forget them. */
+    public synchronized void annuler() {
+        for (String cle : nonCommitees.keySet()) {
+            valeurs.remove(cle);
+            enAttente.remove(cle);
+        }
+        nouvelles -= nonCommitees.size();
+        nonCommitees.clear();
+    }
+
+    public synchronized String rapport() {
+        long total = hits + misses;
+        return String.format("%s: %d clés, %d hits / %d misses (%.1f%% hits), %d nouvelles, %d évictions, %d lectures BD",
+                nom, valeurs.size(), hits, misses, total == 0 ? 0.0 : 100.0 * hits / total,
+                nouvelles, evictions, lectures);
+    }
+}
@@ -0,0 +1,81 @@
+package inserter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * The lookup-table caches of one load. A single instance is shared by the LectureBD
+ * instances of a ParallelLoader, so a key merged by the coordinator is known to the writers.
+ */
+public class DimensionCaches {
+
+    public final DimensionCache<String> cartesCredit;
+    public final DimensionCache<String> domainesForfait;
+    public final DimensionCache<String> forfaits;
+    public final DimensionCache<String> domainesCopie;
+    public final DimensionCache<String> pays;
+    public final DimensionCache<String> genres;
+    // nom -> idScenariste
+    public final DimensionCache<String> scenaristes;
+
+    public DimensionCaches(int tailleMax) {
+        cartesCredit = new DimensionCache<>("DomaineCarteCredit", tailleMax);
+        domainesForfait = new DimensionCache<>("DomaineForfait", tailleMax);
+        forfaits = new DimensionCache<>("Forfait", tailleMax);
+        domainesCopie = new DimensionCache<>("DomaineCopie", tailleMax);
+        pays = new DimensionCache<>("PaysProduction", tailleMax);
+        genres = new DimensionCache<>("Genre", tailleMax);
+        scenaristes = new DimensionCache<>("Scenariste", tailleMax);
+    }
+
+    /** Loads the keys already in the database, so a reload does not merge them again. */
+    public void precharger(Connection conn) throws SQLException {
+        precharger(conn, cartesCredit, "SELECT \"carteCreditType\", \"carteCreditType\" FROM \"DomaineCarteCredit\"");
+        precharger(conn, domainesForfait, "SELECT \"type\", \"type\" FROM \"DomaineForfait\"");
+        precharger(conn, forfaits, "SELECT \"codeForfait\", \"codeForfait\" FROM \"Forfait\"");
+        precharger(conn, domainesCopie, "SELECT \"etat\", \"etat\" FROM \"DomaineCopie\"");
+        precharger(conn, pays, "SELECT \"nomPays\", \"nomPays\" FROM \"PaysProduction\"");
+        precharger(conn, genres, "SELECT \"nomGenre\", \"nomGenre\" FROM \"Genre\"");
+        precharger(conn, scenaristes, "SELECT \"nom\", \"idScenariste\" FROM \"Scenariste\"");
+    }
+
+    private static void precharger(Connection conn, DimensionCache<String> cache, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                cache.precharger(rs.getString(1), rs.getString(2));
+            }
+        }
+    }
+
+    public List<DimensionCache<String>> toutes() {
+        return List.of(cartesCredit, domainesForfait, forfaits, domainesCopie, pays, genres, scenaristes);
+    }
+
+    public void confirmer() {
+        for (DimensionCache<String> cache : toutes()) {
+            cache.confirmer();
+        }
+    }
+
+    public void valider() {
+        for (DimensionCache<String> cache : toutes()) {
+            cache.valider();
+        }
+    }
+
+    public void annuler() {
+        for (DimensionCache<String> cache : toutes()) {
+            cache.annuler();
+        }
+    }
+
+    public void afficherStatistiques() {
+        for (DimensionCache<String> cache : toutes()) {
+            System.out.println("  " + cache.rapport());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package inserter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mutable holder refilled by {@link RecordDecoder} for every <film> element, so the
+ * single-threaded path allocates no record, list or Role per film. Only valid until the
+ * sink returns; call {@link #figer()} to keep a copy or hand it to another thread.
+ */
+public final class FilmBuffer implements FilmData {
+
+    String id;
+    String titre;
+    int annee = -1;
+    final ArrayList<String> pays = new ArrayList<>();
+    String langue;
+    int duree = -1;
+    String resume;
+    final ArrayList<String> genres = new ArrayList<>();
+    String realisateurNom;
+    int realisateurId = -1;
+    final ArrayList<String> scenaristes = new ArrayList<>();
+    String poster;
+    final ArrayList<String> annonces = new ArrayList<>();
+
+    private int nombreRoles = 0;
+    private int[] roleIds = new int[16];
+    private String[] roleNoms = new String[16];
+    private String[] rolePersonnages = new String[16];
+
+    void ajouterRole(int id, String nom, String personnage) {
+        if (nombreRoles == roleIds.length) {
+            int taille = 2 * nombreRoles;
+            roleIds = Arrays.copyOf(roleIds, taille);
+            roleNoms = Arrays.copyOf(roleNoms, taille);
+            rolePersonnages = Arrays.copyOf(rolePersonnages, taille);
+        }
+        roleIds[nombreRoles] = id;
+        roleNoms[nombreRoles] = nom;
+        rolePersonnages[nombreRoles] = personnage;
+        nombreRoles++;
+    }
+
+    void vider() {
+        id = null;
+        titre = null;
+        annee = -1;
+        pays.clear();
+        langue = null;
+        duree = -1;
+        resume = null;
+        genres.clear();
+        realisateurNom = null;
+        realisateurId = -1;
+        scenaristes.clear();
+        poster = null;
+        annonces.clear();
+        // Drop the references so the previous film's strings can be collected
+        Arrays.fill(roleNoms, 0, nombreRoles, null);
+        Arrays.fill(rolePersonnages, 0, nombreRoles, null);
+        nombreRoles = 0;
+    }
+
+    /** Immutable copy of the current film. */
+    public FilmRecord figer() {
+        List<FilmRecord.Role> roles = new ArrayList<>(nombreRoles);
+        for (int i = 0; i < nombreRoles; i++) {
+            roles.add(new FilmRecord.Role(roleIds[i], roleNoms[i], rolePersonnages[i]));
+        }
+        return new FilmRecord(id, titre, annee, pays, langue, duree, resume, genres,
+                realisateurNom, realisateurId, scenaristes, roles, poster, annonces);
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String titre() {
+        return titre;
+    }
+
+    @Override
+    public int annee() {
+        return annee;
+    }
+
+    @Override
+    public List<String> pays() {
+        return pays;
+    }
+
+    @Override
+    public String langue() {
+        return langue;
+    }
+
+    @Override
+    public int duree() {
+        return duree;
+    }
+
+    @Override
+    public String resume() {
+        return resume;
+    }
+
+    @Override
+    public List<String> genres() {
+        return genres;
+    }
+
+    @Override
+    public String realisateurNom() {
+        return realisateurNom;
+    }
+
+    @Override
+    public int realisateurId() {
+        return realisateurId;
+    }
+
+    @Override
+    public List<String> scenaristes() {
+        return scenaristes;
+    }
+
+    @Override
+    public int nombreRoles() {
+        return nombreRoles;
+    }
+
+    @Override
+    public int roleId(int i) {
+        return roleIds[i];
+    }
+
+    @Override
+    public String roleNom(int i) {
+        return roleNoms[i];
+    }
+
+    @Override
+    public String rolePersonnage(int i) {
+        return rolePersonnages[i];
+    }
+
+    @Override
+    public String poster() {
+        return poster;
+    }
+
+    @Override
+    public List<String> annonces() {
+        return annonces;
+    }
+}
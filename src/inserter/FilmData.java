@@ -0,0 +1,48 @@
+package inserter;
+
+import java.util.List;
+
+/**
+ * Read-only view of one film, as consumed by LectureBD. Implemented by the immutable
+ * {@link FilmRecord} (handed across threads) and by the reusable {@link FilmBuffer}
+ * that {@link RecordDecoder} refills for every <film> element.
+ *
+ * Roles are exposed by index so the buffer can keep them in flat arrays.
+ */
+public interface FilmData {
+
+    String id();
+
+    String titre();
+
+    int annee();
+
+    List<String> pays();
+
+    String langue();
+
+    int duree();
+
+    String resume();
+
+    List<String> genres();
+
+    String realisateurNom();
+
+    int realisateurId();
+
+    List<String> scenaristes();
+
+    int nombreRoles();
+
+    // Actor's id (Personne)
+    int roleId(int i);
+
+    String roleNom(int i);
+
+    String rolePersonnage(int i);
+
+    String poster();
+
+    List<String> annonces();
+}
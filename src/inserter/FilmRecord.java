@@ -0,0 +1,45 @@
+package inserter;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of one <film> element, as emitted by the XML reader.
+ * Lists are copied on construction so a record can safely cross threads.
+ */
+public record FilmRecord(String id, String titre, int annee, List<String> pays, String langue,
+                         int duree, String resume, List<String> genres, String realisateurNom,
+                         int realisateurId, List<String> scenaristes, List<Role> roles,
+                         String poster, List<String> annonces) implements FilmData {
+
+    public FilmRecord {
+        pays = List.copyOf(pays);
+        genres = List.copyOf(genres);
+        scenaristes = List.copyOf(scenaristes);
+        roles = List.copyOf(roles);
+        annonces = List.copyOf(annonces);
+    }
+
+    @Override
+    public int nombreRoles() {
+        return roles.size();
+    }
+
+    @Override
+    public int roleId(int i) {
+        return roles.get(i).id();
+    }
+
+    @Override
+    public String roleNom(int i) {
+        return roles.get(i).nom();
+    }
+
+    @Override
+    public String rolePersonnage(int i) {
+        return roles.get(i).personnage();
+    }
+
+    // id is the actor's id (Personne), nom is only informative
+    public record Role(int id, String nom, String personnage) {
+    }
+}
@@ -0,0 +1,243 @@
+package inserter;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Surrogate keys of the rows the dump gives no key to: Role and BandeAnnonce (the n-th
+ * role or trailer of a film) and Scenariste (a name). Chosen with --cles:
+ *
+ *   uuid         : name-based UUIDs of (table, film, position) for Role and BandeAnnonce,
+ *                  a random UUID for a new Scenariste; 36 characters, spread over the whole
+ *                  primary key index. The historical keys, for schemas loaded with them.
+ *   deterministe : film id * ENFANTS_MAX + position for Role and BandeAnnonce, so keys grow
+ *                  with the film ids; a 63-bit hash of the name for Scenariste (a small
+ *                  table). Same keys on every run.
+ *   temporel     : 64-bit time-ordered ids (milliseconds, node, counter), one CAS per key,
+ *                  shared by every thread of the JVM. Loaders writing into one schema at
+ *                  the same time need distinct nodes (--noeud): without it the node is the
+ *                  pid modulo 1024, which two processes may share.
+ *   sequence     : ranges of TableCreator's "seq_<table>" sequences, INCREMENT BY the block
+ *                  size: one NEXTVAL round trip hands out a whole block.
+ *
+ * The numeric strategies give decimal strings: they fit the VARCHAR2(36) columns, and the
+ * NUMBER(19) ones of TableCreator.setClesNumeriques(). Only uuid and deterministe are
+ * reproductible(), which --resume and --delta need: their replayed inserts must hit the
+ * keys already there. One generator per LectureBD (the sequence blocks are per connection).
+ */
+public interface KeyGenerator extends AutoCloseable {
+
+    enum Strategie {
+        UUID, DETERMINISTE, TEMPOREL, SEQUENCE;
+
+        public static Strategie de(String nom) {
+            return valueOf(nom.toUpperCase());
+        }
+
+        /** Same dump, same keys. */
+        public boolean reproductible() {
+            return this == UUID || this == DETERMINISTE;
+        }
+
+        public boolean numerique() {
+            return this != UUID;
+        }
+    }
+
+    /** Key of the index-th row of table (Role, BandeAnnonce) of film idFilm. */
+    String cleEnfant(String table, String idFilm, int index) throws SQLException;
+
+    /** Key of a new row of table (Scenariste) for nom. */
+    String cleDimension(String table, String nom) throws SQLException;
+
+    @Override
+    default void close() throws SQLException {
+    }
+
+    static KeyGenerator pour(LoaderConfig config, Connection conn) {
+        return switch (config.getStrategieCles()) {
+            case UUID -> new Uuid();
+            case DETERMINISTE -> new Deterministe();
+            case TEMPOREL -> new Temporel(config.getNoeudCles() >= 0 ? config.getNoeudCles() : Temporel.noeudProcessus());
+            case SEQUENCE -> new Sequence(Sequence.oracle(conn), config.getBlocSequence());
+        };
+    }
+
+    final class Uuid implements KeyGenerator {
+        @Override
+        public String cleEnfant(String table, String idFilm, int index) {
+            return UUID.nameUUIDFromBytes((table + ":" + idFilm + ":" + index).getBytes(StandardCharsets.UTF_8)).toString();
+        }
+
+        @Override
+        public String cleDimension(String table, String nom) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    final class Deterministe implements KeyGenerator {
+        public static final int ENFANTS_MAX = 10_000;
+
+        private final StagingStore.Sortie sortie = new StagingStore.Sortie();
+
+        @Override
+        public String cleEnfant(String table, String idFilm, int index) {
+            long film;
+            try {
+                film = Long.parseLong(idFilm);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("--cles deterministe: id de film non numérique " + idFilm, e);
+            }
+            if (index >= ENFANTS_MAX) {
+                throw new IllegalArgumentException("--cles deterministe: plus de " + ENFANTS_MAX + " " + table
+                        + " pour le film " + idFilm);
+            }
+            return Long.toString(film * ENFANTS_MAX + index);
+        }
+
+        // Positive and never 0; two names colliding on 63 bits is out of reach of a catalog
+        @Override
+        public String cleDimension(String table, String nom) {
+            sortie.vider();
+            sortie.chaine(table);
+            sortie.chaine(nom);
+            return Long.toString((sortie.empreinte() & Long.MAX_VALUE) | 1);
+        }
+    }
+
+    final class Temporel implements KeyGenerator {
+        // 2020-01-01T00:00Z: 41 bits of milliseconds last until 2089
+        static final long EPOQUE = 1_577_836_800_000L;
+        static final int BITS_NOEUD = 10, BITS_COMPTEUR = 12;
+
+        // Milliseconds << BITS_COMPTEUR | counter of the last key; a full counter borrows the next millisecond
+        private static final AtomicLong DERNIER = new AtomicLong();
+
+        private final long noeud;
+
+        public static final int NOEUDS = 1 << BITS_NOEUD;
+
+        public Temporel(long noeud) {
+            this.noeud = (noeud & (NOEUDS - 1)) << BITS_COMPTEUR;
+        }
+
+        // Default node when none is configured: not unique, two pids equal modulo NOEUDS collide
+        static long noeudProcessus() {
+            return ProcessHandle.current().pid();
+        }
+
+        public long suivant() {
+            long instant = (System.currentTimeMillis() - EPOQUE) << BITS_COMPTEUR;
+            long dernier, suivant;
+            do {
+                dernier = DERNIER.get();
+                suivant = Math.max(instant, dernier + 1);
+            } while (!DERNIER.compareAndSet(dernier, suivant));
+            long compteur = suivant & ((1 << BITS_COMPTEUR) - 1);
+            return (suivant >>> BITS_COMPTEUR) << (BITS_NOEUD + BITS_COMPTEUR) | noeud | compteur;
+        }
+
+        @Override
+        public String cleEnfant(String table, String idFilm, int index) {
+            return Long.toString(suivant());
+        }
+
+        @Override
+        public String cleDimension(String table, String nom) {
+            return Long.toString(suivant());
+        }
+    }
+
+    final class Sequence implements KeyGenerator {
+
+        /** First value of the next block of sequence (its NEXTVAL). */
+        @FunctionalInterface
+        public interface SourceBlocs extends AutoCloseable {
+            long premier(String sequence) throws SQLException;
+
+            @Override
+            default void close() throws SQLException {
+            }
+        }
+
+        private final SourceBlocs source;
+        private final int taille;
+        // table -> {next key, end of the block}
+        private final Map<String, long[]> blocs = new HashMap<>();
+        private long blocsLus = 0;
+
+        public Sequence(SourceBlocs source, int taille) {
+            this.source = source;
+            this.taille = taille;
+        }
+
+        public static String nomSequence(String table) {
+            return "seq_" + table;
+        }
+
+        // One statement per sequence, closed with the generator
+        public static SourceBlocs oracle(Connection conn) {
+            Map<String, PreparedStatement> requetes = new HashMap<>();
+            return new SourceBlocs() {
+                @Override
+                public long premier(String sequence) throws SQLException {
+                    PreparedStatement ps = requetes.get(sequence);
+                    if (ps == null) {
+                        ps = conn.prepareStatement("SELECT \"" + sequence + "\".NEXTVAL FROM dual");
+                        requetes.put(sequence, ps);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("Séquence \"" + sequence + "\" sans valeur");
+                        }
+                        return rs.getLong(1);
+                    }
+                }
+
+                @Override
+                public void close() throws SQLException {
+                    for (PreparedStatement ps : requetes.values()) {
+                        ps.close();
+                    }
+                    requetes.clear();
+                }
+            };
+        }
+
+        public long suivant(String table) throws SQLException {
+            long[] bloc = blocs.computeIfAbsent(table, t -> new long[2]);
+            if (bloc[0] == bloc[1]) {
+                bloc[0] = source.premier(nomSequence(table));
+                bloc[1] = bloc[0] + taille;
+                blocsLus++;
+            }
+            return bloc[0]++;
+        }
+
+        public long blocsLus() {
+            return blocsLus;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            source.close();
+        }
+
+        @Override
+        public String cleEnfant(String table, String idFilm, int index) throws SQLException {
+            return Long.toString(suivant(table));
+        }
+
+        @Override
+        public String cleDimension(String table, String nom) throws SQLException {
+            return Long.toString(suivant(table));
+        }
+    }
+}
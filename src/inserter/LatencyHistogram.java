@@ -0,0 +1,108 @@
+package inserter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the manner of HdrHistogram:
+ * values under 128 ns have a bucket each, larger ones fall into 64 buckets per power of
+ * two, so a percentile is within 1.6% of the recorded value whatever its magnitude.
+ * Every long fits in 3776 counters (30 KB); recording is one array increment.
+ */
+public class LatencyHistogram {
+
+    private static final int SOUS_BITS = 7;
+    private static final int SOUS = 1 << SOUS_BITS;
+    private static final int DEMI = SOUS / 2;
+    private static final int TAILLE = SOUS + (63 - SOUS_BITS + 1) * DEMI;
+
+    private final AtomicLongArray compteurs = new AtomicLongArray(TAILLE);
+    private final LongAdder nombre = new LongAdder();
+    private final LongAdder somme = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void enregistrer(long nanos) {
+        long v = Math.max(0, nanos);
+        compteurs.incrementAndGet(indice(v));
+        nombre.increment();
+        somme.add(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    static int indice(long v) {
+        if (v < SOUS) {
+            return (int) v;
+        }
+        int decalage = 63 - Long.numberOfLeadingZeros(v) - (SOUS_BITS - 1);
+        return SOUS + (decalage - 1) * DEMI + (int) (v >>> decalage) - DEMI;
+    }
+
+    // Middle of the bucket: at most half a bucket away from any value it holds
+    static long valeur(int indice) {
+        if (indice < SOUS) {
+            return indice;
+        }
+        int k = indice - SOUS;
+        int decalage = k / DEMI + 1;
+        long bas = (long) (k % DEMI + DEMI) << decalage;
+        return bas + (1L << decalage) / 2;
+    }
+
+    public long nombre() {
+        return nombre.sum();
+    }
+
+    public long sommeNanos() {
+        return somme.sum();
+    }
+
+    public long maxNanos() {
+        return max.get();
+    }
+
+    public double moyenneNanos() {
+        long n = nombre.sum();
+        return n == 0 ? 0 : (double) somme.sum() / n;
+    }
+
+    /** Percentile p (0-100) in nanoseconds, 0 when nothing was recorded. */
+    public long percentile(double p) {
+        long n = 0;
+        long[] copie = new long[TAILLE];
+        for (int i = 0; i < TAILLE; i++) {
+            copie[i] = compteurs.get(i);
+            n += copie[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long cumul = 0;
+        for (int i = 0; i < TAILLE; i++) {
+            cumul += copie[i];
+            if (cumul >= rang) {
+                return Math.min(valeur(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reinitialiser() {
+        for (int i = 0; i < TAILLE; i++) {
+            compteurs.set(i, 0);
+        }
+        nombre.reset();
+        somme.reset();
+        max.set(0);
+    }
+
+    public String rapport() {
+        if (nombre() == 0) {
+            return "aucune mesure";
+        }
+        return String.format("%d mesures, moy. %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                nombre(), moyenneNanos() / 1e6, percentile(50) / 1e6, percentile(90) / 1e6,
+                percentile(99) / 1e6, maxNanos() / 1e6);
+    }
+}
@@ -1,24 +1,24 @@
 package inserter;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-
-import java.io.InputStream;
+import database.ConnectionPool;
 
+import java.io.File;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
+import javax.sql.DataSource;
 
 public class LectureBD {
     private Connection conn;
     private Random random = new Random();
-    private static final int BATCH_SIZE = 100;
+    // Upper bound of a statement batcher (starting limit is config.getTailleLot())
+    private static final int BATCH_SIZE_MAX = 10_000;
 
     private PreparedStatement psPersonne;
     private PreparedStatement psUtilisateur;
@@ -37,37 +37,147 @@ public class LectureBD {
     private PreparedStatement psRole;
     private PreparedStatement psBandeAnnonce;
     private PreparedStatement psCopie;
+    // LOB pass of the texts ClobWriter defers
+    private PreparedStatement psPersonneBiographie;
+    private PreparedStatement psFilmResume;
+
+    // --delta only: updates, and deletes of the records gone from the dump and of the child rows
+    // of an updated film (re-inserted from the new version)
+    private static final String[] ENFANTS_FILM = {"FilmPays", "FilmGenre", "FilmScenariste", "Role", "BandeAnnonce"};
+    private PreparedStatement psPersonneMaj;
+    private PreparedStatement psPersonneSuppression;
+    private PreparedStatement psUtilisateurMaj;
+    private PreparedStatement psClientMaj;
+    private PreparedStatement psUtilisateurSuppression;
+    private PreparedStatement psFilmMaj;
+    private PreparedStatement psFilmSuppression;
+    private final PreparedStatement[] psEnfantsSuppression = new PreparedStatement[ENFANTS_FILM.length];
+
+    // Array-bound path for the child tables, used instead of the ps* above when config.isModeBulk()
+    private BulkInserter bulkCopie;
+    private BulkInserter bulkRole;
+    private BulkInserter bulkFilmGenre;
+    private BulkInserter bulkFilmPays;
+    private BulkInserter bulkFilmScenariste;
+
+    // One batcher per statement, grouped by parent/child dependencies
+    private final BatchGroup personneBatches = new BatchGroup();
+    private final BatchGroup clientBatches = new BatchGroup();
+    private final BatchGroup filmBatches = new BatchGroup();
+    private AdaptiveBatcher bPersonne;
+    private AdaptiveBatcher bUtilisateur;
+    private AdaptiveBatcher bClient;
+    private AdaptiveBatcher bFilm;
+    private AdaptiveBatcher bBandeAnnonce;
+    private AdaptiveBatcher bDomaineCarteCredit;
+    private AdaptiveBatcher bDomaineForfait;
+    private AdaptiveBatcher bForfait;
+    private AdaptiveBatcher bDomaineCopie;
+    private AdaptiveBatcher bPaysProduction;
+    private AdaptiveBatcher bGenre;
+    private AdaptiveBatcher bScenariste;
+    private AdaptiveBatcher bFilmPays;
+    private AdaptiveBatcher bFilmGenre;
+    private AdaptiveBatcher bFilmScenariste;
+    private AdaptiveBatcher bRole;
+    private AdaptiveBatcher bCopie;
+    private AdaptiveBatcher bPersonneBiographie;
+    private AdaptiveBatcher bFilmResume;
+    private AdaptiveBatcher bPersonneMaj;
+    private AdaptiveBatcher bPersonneSuppression;
+    private AdaptiveBatcher bUtilisateurMaj;
+    private AdaptiveBatcher bClientMaj;
+    private AdaptiveBatcher bUtilisateurSuppression;
+    private AdaptiveBatcher bFilmMaj;
+    private AdaptiveBatcher bFilmSuppression;
+    private final AdaptiveBatcher[] bEnfantsSuppression = new AdaptiveBatcher[ENFANTS_FILM.length];
+
+    private static final String ETAT_COPIE = "Disponible";
+
+    // Keys already in the lookup tables (and nom -> idScenariste). Shared in the parallel loader.
+    private final DimensionCaches caches;
+    // false for ParallelLoader writers: lookup tables are merged by the coordinator instead
+    private final boolean fusionDimensions;
+    private PreparedStatement psScenaristeLookup;
+    private final LoaderConfig config;
+    // Synchronous commits on this connection; batch executions are counted by the batchers
+    private long commits = 0;
+    // Position of the lecture* methods in their input files; null when disabled
+    private final Checkpoint checkpoint;
+    // Films written since the last commit, handed to config.getInvalidationFilm() once committed
+    private final List<String> filmsNonCommites = new ArrayList<>();
+    // Same for config.getIndexationFilm() / getIndexationPersonne(); films are copied out of the reused buffer
+    private final List<FilmRecord> filmsAIndexer = new ArrayList<>();
+    private final List<PersonneRecord> personnesAIndexer = new ArrayList<>();
+    // Quarantine of the records refused by the database; null when a failure should stop the file
+    private final RejectFile rejets;
+    // Fingerprints of the loaded records, null when not tracked; with --delta unchanged records are skipped
+    private final DeltaIndex empreintes;
+    private final boolean delta;
+    private final DeltaIndex.Empreinteur<FilmData> empreinteurFilm = DeltaIndex.empreinteurFilm();
+    private final DeltaIndex.Empreinteur<PersonneRecord> empreinteurPersonne = DeltaIndex.empreinteurPersonne();
+    private final DeltaIndex.Empreinteur<ClientRecord> empreinteurClient = DeltaIndex.empreinteurClient();
+    // Fingerprints of the open transaction, handed to the index once committed
+    private final List<DeltaIndex.Changement> changementsNonCommites = new ArrayList<>();
+    private final ClobWriter clobs;
+    // Keys of Role, BandeAnnonce and new Scenariste rows (--cles)
+    private KeyGenerator cles;
 
-    // Counters for batch execution
-    private int personneBatchCount = 0;
-    private int utilisateurBatchCount = 0;
-    private int clientBatchCount = 0;
-    private int filmBatchCount = 0;
+    public LectureBD() {
+        this(new LoaderConfig());
+    }
 
+    public LectureBD(LoaderConfig config) {
+        this(config, new DimensionCaches(config.getTailleCacheDimensions()), true);
+        prechargerDimensions();
+    }
 
-    public class Role {
-        public Role(int i, String n, String p) {
-            id = i;
-            nom = n;
-            personnage = p;
-        }
+    public LectureBD(LoaderConfig config, DimensionCaches caches, boolean fusionDimensions) {
+        this(config, caches, fusionDimensions,
+                config.getFichierCheckpoint() != null ? new Checkpoint(config.getFichierCheckpoint()) : null,
+                config.getFichierRejets() != null ? new RejectFile(config.getFichierRejets(), config.getRejetsMax()) : null);
+    }
 
-        protected int id;
-        protected String nom;
-        protected String personnage;
+    // LoadOrchestrator's instances run at the same time and share one checkpoint and one reject file
+    LectureBD(LoaderConfig config, Checkpoint checkpoint, RejectFile rejets) {
+        this(config, new DimensionCaches(config.getTailleCacheDimensions()), true, checkpoint, rejets);
+        prechargerDimensions();
     }
 
-    public LectureBD() {
+    private LectureBD(LoaderConfig config, DimensionCaches caches, boolean fusionDimensions, Checkpoint checkpoint,
+                      RejectFile rejets) {
+        this.config = config;
+        this.caches = caches;
+        this.fusionDimensions = fusionDimensions;
+        this.checkpoint = checkpoint;
+        // Direct-path flushes commit by themselves: a failed chunk could not be rolled back whole
+        boolean commitsPropres = !(config.isModeBulk() && config.isDirectPath());
+        this.rejets = commitsPropres ? rejets : null;
+        this.empreintes = config.getIndexEmpreintes();
+        this.delta = config.isDelta() && empreintes != null;
+        this.clobs = new ClobWriter(config.getClobEnLigneMax(), config.getClobDiffereMin());
         connectionBD();
         initializePreparedStatements();
     }
 
+    /** Fills the shared caches from the lookup tables; called once per load, on one instance. */
+    public final void prechargerDimensions() {
+        try {
+            caches.precharger(conn);
+        } catch (SQLException e) {
+            System.err.println("Erreur préchargement des tables de référence: " + e.getMessage());
+            e.printStackTrace();
+            closeConnection();
+            System.exit(1);
+        }
+    }
+
     private void initializePreparedStatements() {
         try {
-            psPersonne = conn.prepareStatement("INSERT INTO \"Personne\" (\"idPersonne\", \"nom\", \"dateNaissance\", \"lieuNaissance\", \"photo\", \"biographie\") VALUES (?, ?, TO_DATE(?, 'YYYY-MM-DD'), ?, ?, ?)");
-            psUtilisateur = conn.prepareStatement("INSERT INTO \"Utilisateur\" (\"idUser\", \"prenom\", \"nom\", \"courriel\", \"motDePasse\", \"telephone\", \"adresse\", \"ville\", \"province\", \"codePostal\", \"dateNaissance\") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TO_DATE(?, 'YYYY-MM-DD'))");
-            psClient = conn.prepareStatement("INSERT INTO \"Client\" (\"idUser\", \"carteCreditNumero\", \"carteCreditExpMois\", \"carteCreditExpAnnee\", \"carteCreditCVV\", \"carteCreditType\", \"codeForfait\") VALUES (?, ?, ?, ?, ?, ?, ?)");
-            psFilm = conn.prepareStatement("INSERT INTO \"Film\" (\"idFilm\", \"titre\", \"anneeSortie\", \"langue\", \"dureeFilm\", \"resume\", \"affiche\", \"idRealisateur\") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            psPersonne = conn.prepareStatement(insert("Personne", "idPersonne") + " (\"idPersonne\", \"nom\", \"dateNaissance\", \"lieuNaissance\", \"photo\", \"biographie\") VALUES (?, ?, TO_DATE(?, 'YYYY-MM-DD'), ?, ?, ?)");
+            psUtilisateur = conn.prepareStatement(insert("Utilisateur", "idUser") + " (\"idUser\", \"prenom\", \"nom\", \"courriel\", \"motDePasse\", \"telephone\", \"adresse\", \"ville\", \"province\", \"codePostal\", \"dateNaissance\") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TO_DATE(?, 'YYYY-MM-DD'))");
+            psClient = conn.prepareStatement(insert("Client", "idUser") + " (\"idUser\", \"carteCreditNumero\", \"carteCreditExpMois\", \"carteCreditExpAnnee\", \"carteCreditCVV\", \"carteCreditType\", \"codeForfait\") VALUES (?, ?, ?, ?, ?, ?, ?)");
+            psFilm = conn.prepareStatement(insert("Film", "idFilm") + " (\"idFilm\", \"titre\", \"anneeSortie\", \"langue\", \"dureeFilm\", \"resume\", \"affiche\", \"idRealisateur\") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
 
             psDomaineCarteCreditMerge = conn.prepareStatement("MERGE INTO \"DomaineCarteCredit\" target USING (SELECT ? AS type FROM dual) source ON (target.\"carteCreditType\" = source.type) WHEN NOT MATCHED THEN INSERT (\"carteCreditType\") VALUES (source.type)");
             psDomaineForfaitMerge = conn.prepareStatement("MERGE INTO \"DomaineForfait\" target USING (SELECT ? AS type FROM dual) source ON (target.\"type\" = source.type) WHEN NOT MATCHED THEN INSERT (\"type\") VALUES (source.type)");
@@ -75,14 +185,43 @@ public class LectureBD {
             psDomaineCopieMerge = conn.prepareStatement("MERGE INTO \"DomaineCopie\" target USING (SELECT ? AS etat FROM dual) source ON (target.\"etat\" = source.etat) WHEN NOT MATCHED THEN INSERT (\"etat\") VALUES (source.etat)");
             psPaysProductionMerge = conn.prepareStatement("MERGE INTO \"PaysProduction\" target USING (SELECT ? AS nom FROM dual) source ON (target.\"nomPays\" = source.nom) WHEN NOT MATCHED THEN INSERT (\"nomPays\") VALUES (source.nom)");
             psGenreMerge = conn.prepareStatement("MERGE INTO \"Genre\" target USING (SELECT ? AS nom FROM dual) source ON (target.\"nomGenre\" = source.nom) WHEN NOT MATCHED THEN INSERT (\"nomGenre\") VALUES (source.nom)");
+            psScenaristeLookup = conn.prepareStatement("SELECT \"idScenariste\" FROM \"Scenariste\" WHERE \"nom\" = ?");
             psScenaristeMerge = conn.prepareStatement("MERGE INTO \"Scenariste\" target USING (SELECT ? AS id, ? AS nom FROM dual) source ON (target.\"nom\" = source.nom) WHEN NOT MATCHED THEN INSERT (\"idScenariste\", \"nom\") VALUES (source.id, source.nom)");
 
-            psFilmPays = conn.prepareStatement("INSERT INTO \"FilmPays\" (\"idFilm\", \"nomPays\") VALUES (?, ?)");
-            psFilmGenre = conn.prepareStatement("INSERT INTO \"FilmGenre\" (\"idFilm\", \"nomGenre\") VALUES (?, ?)");
-            psFilmScenariste = conn.prepareStatement("INSERT INTO \"FilmScenariste\" (\"idFilm\", \"idScenariste\") VALUES (?, ?)");
-            psRole = conn.prepareStatement("INSERT INTO \"Role\" (\"idRole\", \"personnage\", \"idFilm\", \"idActeur\") VALUES (?, ?, ?, ?)");
-            psBandeAnnonce = conn.prepareStatement("INSERT INTO \"BandeAnnonce\" (\"idBandeAnnonce\", \"url\", \"idFilm\") VALUES (?, ?, ?)");
-            psCopie = conn.prepareStatement("INSERT INTO \"Copie\" (\"code\", \"idFilm\", \"etat\") VALUES (?, ?, ?)");
+            psFilmPays = conn.prepareStatement(insert("FilmPays", "idFilm", "nomPays") + " (\"idFilm\", \"nomPays\") VALUES (?, ?)");
+            psFilmGenre = conn.prepareStatement(insert("FilmGenre", "idFilm", "nomGenre") + " (\"idFilm\", \"nomGenre\") VALUES (?, ?)");
+            psFilmScenariste = conn.prepareStatement(insert("FilmScenariste", "idFilm", "idScenariste") + " (\"idFilm\", \"idScenariste\") VALUES (?, ?)");
+            psRole = conn.prepareStatement(insert("Role", "idRole") + " (\"idRole\", \"personnage\", \"idFilm\", \"idActeur\") VALUES (?, ?, ?, ?)");
+            psBandeAnnonce = conn.prepareStatement(insert("BandeAnnonce", "idBandeAnnonce") + " (\"idBandeAnnonce\", \"url\", \"idFilm\") VALUES (?, ?, ?)");
+            psCopie = conn.prepareStatement(insert("Copie", "code") + " (\"code\", \"idFilm\", \"etat\") VALUES (?, ?, ?)");
+            psPersonneBiographie = conn.prepareStatement("UPDATE \"Personne\" SET \"biographie\" = ? WHERE \"idPersonne\" = ?");
+            psFilmResume = conn.prepareStatement("UPDATE \"Film\" SET \"resume\" = ? WHERE \"idFilm\" = ?");
+
+            if (delta) {
+                psPersonneMaj = conn.prepareStatement("UPDATE \"Personne\" SET \"nom\" = ?, \"dateNaissance\" = TO_DATE(?, 'YYYY-MM-DD'), \"lieuNaissance\" = ?, \"photo\" = ?, \"biographie\" = ? WHERE \"idPersonne\" = ?");
+                psPersonneSuppression = conn.prepareStatement("DELETE FROM \"Personne\" WHERE \"idPersonne\" = ?");
+                psUtilisateurMaj = conn.prepareStatement("UPDATE \"Utilisateur\" SET \"prenom\" = ?, \"nom\" = ?, \"courriel\" = ?, \"motDePasse\" = ?, \"telephone\" = ?, \"adresse\" = ?, \"ville\" = ?, \"province\" = ?, \"codePostal\" = ?, \"dateNaissance\" = TO_DATE(?, 'YYYY-MM-DD') WHERE \"idUser\" = ?");
+                psClientMaj = conn.prepareStatement("UPDATE \"Client\" SET \"carteCreditNumero\" = ?, \"carteCreditExpMois\" = ?, \"carteCreditExpAnnee\" = ?, \"carteCreditType\" = ?, \"codeForfait\" = ? WHERE \"idUser\" = ?");
+                // Client rows go with their Utilisateur (ON DELETE CASCADE)
+                psUtilisateurSuppression = conn.prepareStatement("DELETE FROM \"Utilisateur\" WHERE \"idUser\" = ?");
+                psFilmMaj = conn.prepareStatement("UPDATE \"Film\" SET \"titre\" = ?, \"anneeSortie\" = ?, \"langue\" = ?, \"dureeFilm\" = ?, \"resume\" = ?, \"affiche\" = ?, \"idRealisateur\" = ? WHERE \"idFilm\" = ?");
+                // Child rows and copies go with their Film (ON DELETE CASCADE)
+                psFilmSuppression = conn.prepareStatement("DELETE FROM \"Film\" WHERE \"idFilm\" = ?");
+                for (int i = 0; i < ENFANTS_FILM.length; i++) {
+                    psEnfantsSuppression[i] = conn.prepareStatement("DELETE FROM \"" + ENFANTS_FILM[i] + "\" WHERE \"idFilm\" = ?");
+                }
+            }
+
+            if (config.isModeBulk()) {
+                bulkCopie = new BulkInserter(conn, "Copie", new String[]{"code", "idFilm", "etat"}, 1, config);
+                bulkRole = new BulkInserter(conn, "Role", new String[]{"idRole", "personnage", "idFilm", "idActeur"}, 1, config);
+                bulkFilmGenre = new BulkInserter(conn, "FilmGenre", new String[]{"idFilm", "nomGenre"}, 2, config);
+                bulkFilmPays = new BulkInserter(conn, "FilmPays", new String[]{"idFilm", "nomPays"}, 2, config);
+                bulkFilmScenariste = new BulkInserter(conn, "FilmScenariste", new String[]{"idFilm", "idScenariste"}, 2, config);
+            }
+
+            cles = KeyGenerator.pour(config, conn);
+            initializeBatchers();
 
         } catch (SQLException e) {
             System.err.println("Erreur initialisation des PreparedStatement: " + e.getMessage());
@@ -93,252 +232,660 @@ public class LectureBD {
     }
 
 
-    public void lecturePersonnes(String nomFichier) {
-        int count = 0;
-        try {
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            XmlPullParser parser = factory.newPullParser();
-            InputStream is = new FileInputStream(nomFichier);
-            parser.setInput(is, null);
-
-            int eventType = parser.getEventType();
-            String tag = null, nom = null, anniversaire = null, lieu = null, photo = null, bio = null;
-            int id = -1;
-
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                if (eventType == XmlPullParser.START_TAG) {
-                    tag = parser.getName();
-                    if (tag.equals("personne") && parser.getAttributeCount() == 1)
-                        id = Integer.parseInt(parser.getAttributeValue(0));
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    tag = null;
-                    if (parser.getName().equals("personne") && id >= 0) {
-                        insertionPersonne(Integer.toString(id), nom, anniversaire, lieu, photo, bio);
-                        count++;
-                        personneBatchCount++;
-                        if (personneBatchCount % BATCH_SIZE == 0) {
-                            psPersonne.executeBatch();
-                        }
-
-                        id = -1;
-                        nom = null;
-                        anniversaire = null;
-                        lieu = null;
-                        photo = null;
-                        bio = null;
-                    }
-                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
-                    if (tag != null) {
-                        String text = parser.getText();
-                        if (tag.equals("nom")) nom = text;
-                        else if (tag.equals("anniversaire")) anniversaire = text;
-                        else if (tag.equals("lieu")) lieu = text;
-                        else if (tag.equals("photo")) photo = text;
-                        else if (tag.equals("bio")) bio = text;
-                    }
-                }
-                eventType = parser.next();
-            }
-            if (personneBatchCount % BATCH_SIZE != 0 && personneBatchCount > 0) {
-                psPersonne.executeBatch();
+    /**
+     * "INSERT INTO table", or with --resume (and --delta) an insert that skips rows whose primary
+     * key (cles) already exists, so records replayed after the last checkpoint are not duplicated.
+     */
+    private String insert(String table, String... cles) {
+        if (!config.isInsertionsIdempotentes()) {
+            return "INSERT INTO \"" + table + "\"";
+        }
+        return "INSERT /*+ IGNORE_ROW_ON_DUPKEY_INDEX(\"" + table + "\" (\"" + String.join("\", \"", cles) + "\")) */ INTO \"" + table + "\"";
+    }
+
+    private AdaptiveBatcher batcher(String nom, PreparedStatement ps) {
+        return AdaptiveBatcher.pour(nom, ps, config, config.getTailleLot(),
+                Math.max(config.getTailleLot(), BATCH_SIZE_MAX));
+    }
+
+    // Registration order is flush order: lookup tables and parents before the rows referencing them
+    private void initializeBatchers() {
+        bPersonne = batcher("Personne", psPersonne);
+        personneBatches.ajouter(bPersonne);
+        if (delta) {
+            bPersonneMaj = batcher("Personne (maj)", psPersonneMaj);
+            bPersonneSuppression = batcher("Personne (suppression)", psPersonneSuppression);
+            personneBatches.ajouter(bPersonneMaj);
+            personneBatches.ajouter(bPersonneSuppression);
+        }
+        bPersonneBiographie = batcher("Personne.biographie (LOB)", psPersonneBiographie);
+        personneBatches.ajouter(bPersonneBiographie, parents(bPersonne, bPersonneMaj));
+
+        bDomaineCarteCredit = batcher("DomaineCarteCredit", psDomaineCarteCreditMerge);
+        bDomaineForfait = batcher("DomaineForfait", psDomaineForfaitMerge);
+        bForfait = batcher("Forfait", psForfaitMerge);
+        bUtilisateur = batcher("Utilisateur", psUtilisateur);
+        bClient = batcher("Client", psClient);
+        clientBatches.ajouter(bDomaineCarteCredit);
+        clientBatches.ajouter(bDomaineForfait);
+        clientBatches.ajouter(bForfait, bDomaineForfait);
+        clientBatches.ajouter(bUtilisateur);
+        clientBatches.ajouter(bClient, bUtilisateur, bDomaineCarteCredit, bForfait);
+        if (delta) {
+            bUtilisateurMaj = batcher("Utilisateur (maj)", psUtilisateurMaj);
+            bClientMaj = batcher("Client (maj)", psClientMaj);
+            bUtilisateurSuppression = batcher("Utilisateur (suppression)", psUtilisateurSuppression);
+            clientBatches.ajouter(bUtilisateurMaj);
+            clientBatches.ajouter(bClientMaj, bDomaineCarteCredit, bForfait);
+            clientBatches.ajouter(bUtilisateurSuppression);
+        }
+
+        bFilm = batcher("Film", psFilm);
+        bBandeAnnonce = batcher("BandeAnnonce", psBandeAnnonce);
+        bPaysProduction = batcher("PaysProduction", psPaysProductionMerge);
+        bGenre = batcher("Genre", psGenreMerge);
+        bScenariste = batcher("Scenariste", psScenaristeMerge);
+        bDomaineCopie = batcher("DomaineCopie", psDomaineCopieMerge);
+        if (config.isModeBulk()) {
+            bFilmPays = bulkFilmPays.batcher();
+            bFilmGenre = bulkFilmGenre.batcher();
+            bFilmScenariste = bulkFilmScenariste.batcher();
+            bRole = bulkRole.batcher();
+            bCopie = bulkCopie.batcher();
+        } else {
+            bFilmPays = batcher("FilmPays", psFilmPays);
+            bFilmGenre = batcher("FilmGenre", psFilmGenre);
+            bFilmScenariste = batcher("FilmScenariste", psFilmScenariste);
+            bRole = batcher("Role", psRole);
+            bCopie = batcher("Copie", psCopie);
+        }
+        filmBatches.ajouter(bPaysProduction);
+        filmBatches.ajouter(bGenre);
+        filmBatches.ajouter(bScenariste);
+        filmBatches.ajouter(bDomaineCopie);
+        filmBatches.ajouter(bFilm);
+        if (delta) {
+            bFilmMaj = batcher("Film (maj)", psFilmMaj);
+            filmBatches.ajouter(bFilmMaj);
+            for (int i = 0; i < ENFANTS_FILM.length; i++) {
+                bEnfantsSuppression[i] = batcher(ENFANTS_FILM[i] + " (suppression)", psEnfantsSuppression[i]);
+                filmBatches.ajouter(bEnfantsSuppression[i]);
             }
-            conn.commit();
-            System.out.println("Total personnes inserted: " + count);
+        }
+        // An updated film's old child rows are deleted before its new ones are inserted
+        filmBatches.ajouter(bFilmPays, parents(bFilm, bPaysProduction, bEnfantsSuppression[0]));
+        filmBatches.ajouter(bFilmGenre, parents(bFilm, bGenre, bEnfantsSuppression[1]));
+        filmBatches.ajouter(bFilmScenariste, parents(bFilm, bScenariste, bEnfantsSuppression[2]));
+        filmBatches.ajouter(bRole, parents(bFilm, bEnfantsSuppression[3]));
+        filmBatches.ajouter(bBandeAnnonce, parents(bFilm, bEnfantsSuppression[4]));
+        filmBatches.ajouter(bCopie, bFilm, bDomaineCopie);
+        bFilmResume = batcher("Film.resume (LOB)", psFilmResume);
+        filmBatches.ajouter(bFilmResume, parents(bFilm, bFilmMaj));
+        if (delta) {
+            bFilmSuppression = batcher("Film (suppression)", psFilmSuppression);
+            filmBatches.ajouter(bFilmSuppression);
+        }
+    }
+
+    // The delta batchers are null outside --delta
+    private static AdaptiveBatcher[] parents(AdaptiveBatcher... parents) {
+        return Arrays.stream(parents).filter(Objects::nonNull).toArray(AdaptiveBatcher[]::new);
+    }
+
+    public boolean lecturePersonnes(String nomFichier) {
+        try {
+            long allersRetours = getAllersRetours();
+            int count = charger(nomFichier, LectureXml::lirePersonnes, RecordDecoder::lirePersonnes,
+                    this::ecrirePersonne, PersonneRecord::id, p -> p, this::terminerPersonnes);
+            System.out.println("Total personnes inserted: " + count
+                    + " (round trips: " + (getAllersRetours() - allersRetours) + ")");
+            return true;
         } catch (Exception e) {
             System.out.println("Exception while parsing " + nomFichier + ": " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
 
-    public void lectureFilms(String nomFichier) {
-        Map<String, String> scenaristToIdMap = new HashMap<>();
+    public boolean lectureFilms(String nomFichier) {
+        return lectureFilms(nomFichier, (fichier, sink) -> LectureXml.lireFilms(fichier, sink::accept),
+                (decodeur, sink) -> decodeur.lireFilms(sink::accept));
+    }
+
+    /** Writes the films of nomFichier parsed beforehand into staging (LoadOrchestrator). */
+    public boolean lectureFilms(String nomFichier, StagingStore<FilmData> staging) {
+        return lectureFilms(nomFichier, (fichier, sink) -> {
+            staging.relire(sink);
+            return (int) staging.nombre();
+        }, null);
+    }
 
-        int filmCount = 0;
+    private boolean lectureFilms(String nomFichier, LecteurXmlPull<FilmData> lecteur, Decodage<FilmData> decodage) {
         try {
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            XmlPullParser parser = factory.newPullParser();
-
-            InputStream is = new FileInputStream(nomFichier);
-            parser.setInput(is, null);
-
-            int eventType = parser.getEventType();
-
-            String tag = null, titre = null, langue = null, poster = null, roleNom = null,
-                    rolePersonnage = null, realisateurNom = null, resume = null;
-
-            ArrayList<String> pays = new ArrayList<String>();
-            ArrayList<String> genres = new ArrayList<String>();
-            ArrayList<String> scenaristes = new ArrayList<String>();
-            ArrayList<Role> roles = new ArrayList<Role>();
-            ArrayList<String> annonces = new ArrayList<String>();
-
-            int id = -1, annee = -1, duree = -1, roleId = -1, realisateurId = -1;
-
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                if (eventType == XmlPullParser.START_TAG) {
-                    tag = parser.getName();
-                    if (tag.equals("film") && parser.getAttributeCount() == 1)
-                        id = Integer.parseInt(parser.getAttributeValue(0));
-                    else if (tag.equals("realisateur") && parser.getAttributeCount() == 1)
-                        realisateurId = Integer.parseInt(parser.getAttributeValue(0));
-                    else if (tag.equals("acteur") && parser.getAttributeCount() == 1)
-                        roleId = Integer.parseInt(parser.getAttributeValue(0));
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    String currentTag = parser.getName();
-                    tag = null;
-
-                    if (currentTag.equals("film") && id >= 0) {
-                        insertionFilm(Integer.toString(id), titre, annee, pays, langue,
-                                duree, resume, genres, realisateurNom,
-                                realisateurId, scenaristes,
-                                roles, poster, annonces, scenaristToIdMap);
-                        filmCount++;
-                        filmBatchCount++;
-                        if (filmBatchCount % BATCH_SIZE == 0) {
-                            executeFilmBatches();
-                        }
-
-                        id = -1;
-                        annee = -1;
-                        duree = -1;
-                        titre = null;
-                        langue = null;
-                        poster = null;
-                        resume = null;
-                        realisateurNom = null;
-                        realisateurId = -1;
-                        pays.clear();
-                        genres.clear();
-                        scenaristes.clear();
-                        roles.clear();
-                        annonces.clear();
+            long allersRetours = getAllersRetours();
+            int filmCount = charger(nomFichier, lecteur, decodage,
+                    this::ecrireFilm, FilmData::id, LectureBD::figer, this::terminerFilms);
+            System.out.println("Total films inserted: " + filmCount
+                    + " (round trips: " + (getAllersRetours() - allersRetours) + ")");
+            return true;
+        } catch (Exception e) {
+            System.out.println("Exception while parsing " + nomFichier + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
 
-                    }
-                    if (parser.getName().equals("role") && roleId >= 0) {
-                        roles.add(new Role(roleId, roleNom, rolePersonnage));
-                        roleId = -1;
-                        roleNom = null;
-                        rolePersonnage = null;
-                    }
-                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
-                    if (tag != null) {
-                        String text = parser.getText();
-                        if (tag.equals("titre")) titre = text;
-                        else if (tag.equals("annee")) annee = Integer.parseInt(text);
-                        else if (tag.equals("pays")) pays.add(text);
-                        else if (tag.equals("langue")) langue = text;
-                        else if (tag.equals("duree")) duree = Integer.parseInt(text);
-                        else if (tag.equals("resume")) resume = text;
-                        else if (tag.equals("genre")) genres.add(text);
-                        else if (tag.equals("realisateur")) realisateurNom = text; // Name, ID is from attribute
-                        else if (tag.equals("scenariste")) scenaristes.add(text);
-                        else if (tag.equals("acteur")) roleNom = text; // Name, ID is from attribute
-                        else if (tag.equals("personnage")) rolePersonnage = text;
-                        else if (tag.equals("poster")) poster = text;
-                        else if (tag.equals("annonce")) annonces.add(text);
-                    }
-                }
-                eventType = parser.next();
-            }
-            if (filmBatchCount % BATCH_SIZE != 0 && filmBatchCount > 0) {
-                executeFilmBatches();
-            }
-            conn.commit();
-            System.out.println("Total films inserted: " + filmCount);
+    public boolean lectureClients(String nomFichier) {
+        try {
+            long allersRetours = getAllersRetours();
+            int count = charger(nomFichier, LectureXml::lireClients, RecordDecoder::lireClients,
+                    this::ecrireClient, ClientRecord::id, c -> c, this::terminerClients);
+            System.out.println("Total clients inserted: " + count
+                    + " (round trips: " + (getAllersRetours() - allersRetours) + ")");
+            return true;
         } catch (Exception e) {
             System.out.println("Exception while parsing " + nomFichier + ": " + e.getMessage());
             e.printStackTrace();
+            return false;
         }
     }
 
-    public void lectureClients(String nomFichier) {
-        int count = 0;
+    // --delta, once nomFichier was read in full: deletes what the previous load had and the dump lost
+    public boolean suppressionFilms(String nomFichier) {
+        return suppression(nomFichier, DeltaIndex.Type.FILMS, this::supprimerFilm, this::terminerFilms);
+    }
+
+    public boolean suppressionPersonnes(String nomFichier) {
+        return suppression(nomFichier, DeltaIndex.Type.PERSONNES, this::supprimerPersonne, this::terminerPersonnes);
+    }
+
+    public boolean suppressionClients(String nomFichier) {
+        return suppression(nomFichier, DeltaIndex.Type.CLIENTS, this::supprimerClient, this::terminerClients);
+    }
+
+    private boolean suppression(String nomFichier, DeltaIndex.Type type, RecordSink<String> suppression,
+                                Terminaison terminaison) {
+        if (!delta) {
+            return true;
+        }
+        List<String> absents = empreintes.absents(type);
+        if (absents.isEmpty()) {
+            return true;
+        }
         try {
-            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-            XmlPullParser parser = factory.newPullParser();
-            InputStream is = new FileInputStream(nomFichier);
-            parser.setInput(is, null);
-
-            int eventType = parser.getEventType();
-
-            String tag = null, nomFamille = null, prenom = null, courriel = null, tel = null,
-                    anniv = null, adresse = null, ville = null, province = null, codePostal = null,
-                    carte = null, noCarte = null, motDePasse = null, forfait = null;
-
-            int id = -1, expMois = -1, expAnnee = -1, noCivique = 0;
-
-            while (eventType != XmlPullParser.END_DOCUMENT) {
-                if (eventType == XmlPullParser.START_TAG) {
-                    tag = parser.getName();
-                    if (tag.equals("client") && parser.getAttributeCount() == 1)
-                        id = Integer.parseInt(parser.getAttributeValue(0));
-                } else if (eventType == XmlPullParser.END_TAG) {
-                    tag = null;
-                    if (parser.getName().equals("client") && id >= 0) {
-                        insertionClient(Integer.toString(id), nomFamille, prenom, courriel, tel,
-                                anniv, adresse, ville, province,
-                                codePostal, carte, noCarte,
-                                expMois, expAnnee, motDePasse, forfait);
-                        count++;
-                        utilisateurBatchCount++;
-
-                        if (utilisateurBatchCount % BATCH_SIZE == 0) {
-                            executeClientBatches();
-                        }
-
-                        id = -1;
-                        nomFamille = null;
-                        prenom = null;
-                        courriel = null;
-                        tel = null;
-                        anniv = null;
-                        adresse = null;
-                        ville = null;
-                        province = null;
-                        codePostal = null;
-                        carte = null;
-                        noCarte = null;
-                        motDePasse = null;
-                        forfait = null;
-                        expMois = -1;
-                        expAnnee = -1;
+            int count = charger(nomFichier + " (suppressions)", (fichier, sink) -> {
+                for (String id : absents) {
+                    sink.accept(id);
+                }
+                return absents.size();
+            }, null, suppression, id -> id, UnaryOperator.identity(), terminaison);
+            System.out.println("Total " + type.name().toLowerCase() + " deleted: " + count);
+            return true;
+        } catch (Exception e) {
+            System.out.println("Exception while deleting from " + nomFichier + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface LecteurXmlPull<T> {
+        int lire(String nomFichier, RecordSink<T> sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Decodage<T> {
+        int lire(RecordDecoder decodeur, RecordSink<T> sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Identifiant<T> {
+        String de(T record);
+    }
+
+    @FunctionalInterface
+    private interface Terminaison {
+        void terminer() throws SQLException;
+    }
+
+    // The decoder's FilmBuffer is refilled by the next film: a transaction keeps copies
+    private static FilmData figer(FilmData f) {
+        return f instanceof FilmBuffer b ? b.figer() : f;
+    }
+
+    /**
+     * Reads nomFichier with the configured decoder (xmlPull alone when decodage is null: staged
+     * records) and writes every record. Every
+     * config.getCommitTous() records, terminaison flushes the group (parents first) and
+     * commits, and the position is recorded in the checkpoint; with --resume the records
+     * already committed are skipped, by byte offset when RecordDecoder wrote the
+     * checkpoint, by count otherwise.
+     *
+     * With a reject file, the records of the open transaction are kept (copie makes them
+     * safe to keep). When a batch or the commit fails, the transaction is rolled back and
+     * its records replayed by halves, each half committed on its own, until every record
+     * the database refuses is isolated and written to the reject file; the load then goes
+     * on. Without one, the error ends the file as before.
+     * Returns the number of records written by this call.
+     */
+    private <T> int charger(String nomFichier, LecteurXmlPull<T> xmlPull, Decodage<T> decodage,
+                            RecordSink<T> ecriture, Identifiant<T> identifiant, UnaryOperator<T> copie,
+                            Terminaison terminaison) throws Exception {
+        Checkpoint.Etat depart = checkpoint != null && config.isReprise()
+                ? checkpoint.etat(nomFichier) : Checkpoint.Etat.DEBUT;
+        if (depart.termine()) {
+            System.out.println(nomFichier + " déjà chargé d'après le checkpoint, ignoré.");
+            return 0;
+        }
+        if (depart.enregistrements() > 0) {
+            System.out.println("Reprise de " + nomFichier + " après " + depart.enregistrements()
+                    + " enregistrements (dernier id " + depart.dernierId() + ")");
+        }
+
+        long debut = System.nanoTime();
+        long baseAvant = LoadMetrics.nanosBaseThread();
+        // Without a decoding (staged records), xmlPull is the only source and positions are counts
+        boolean parDecodeur = decodage != null && !config.isDecodeurXmlPull();
+        boolean parOctets = parDecodeur && depart.octets() >= 0;
+        Progression<T> progression = new Progression<>(nomFichier, ecriture, identifiant, copie, terminaison, depart,
+                parOctets ? 0 : depart.enregistrements());
+        if (!parDecodeur) {
+            xmlPull.lire(nomFichier, progression);
+        } else {
+            try (RecordDecoder decodeur = RecordDecoder.ouvrir(nomFichier, parOctets ? depart.octets() : 0)) {
+                progression.decodeur = decodeur;
+                decodage.lire(decodeur, progression);
+            }
+        }
+        progression.valider(true);
+        if (progression.rejetes > 0) {
+            System.out.println(progression.rejetes + " enregistrements de " + nomFichier + " rejetés, voir "
+                    + config.getFichierRejets());
+        }
+        // Everything here ran on this thread: what is not database time is reading and binding
+        long mur = System.nanoTime() - debut;
+        long base = LoadMetrics.nanosBaseThread() - baseAvant;
+        long octets = progression.decodeur != null ? progression.octets() - (parOctets ? depart.octets() : 0)
+                : new File(nomFichier).length();
+        LoadMetrics.global().fichier(nomFichier, progression.ecrits, octets, mur, mur - base, base, 0);
+        return progression.ecrits - progression.rejetes;
+    }
+
+    // Sink of charger(): skips the records before the checkpoint, commits every N records
+    private final class Progression<T> implements RecordSink<T> {
+        private final String nomFichier;
+        private final RecordSink<T> ecriture;
+        private final Identifiant<T> identifiant;
+        private final UnaryOperator<T> copie;
+        private final Terminaison terminaison;
+        private long aSauter;
+        private long enregistrements;
+        private String dernierId;
+        private int ecrits = 0;
+        private int rejetes = 0;
+        private RecordDecoder decodeur;
+        // Records of the open transaction, replayed when it fails; stays empty without a reject file
+        private final List<T> transaction = new ArrayList<>();
+        private int depuisCommit = 0;
+
+        Progression(String nomFichier, RecordSink<T> ecriture, Identifiant<T> identifiant, UnaryOperator<T> copie,
+                    Terminaison terminaison, Checkpoint.Etat depart, long aSauter) {
+            this.nomFichier = nomFichier;
+            this.ecriture = ecriture;
+            this.identifiant = identifiant;
+            this.copie = copie;
+            this.terminaison = terminaison;
+            this.aSauter = aSauter;
+            this.enregistrements = depart.enregistrements();
+            this.dernierId = depart.dernierId();
+        }
+
+        @Override
+        public void accept(T record) throws Exception {
+            if (aSauter > 0) {
+                aSauter--;
+                return;
+            }
+            if (rejets != null) {
+                transaction.add(copie.apply(record));
+            }
+            ecrits++;
+            enregistrements++;
+            dernierId = identifiant.de(record);
+            try {
+                ecriture.accept(record);
+            } catch (SQLException e) {
+                reprendre(e);
+            }
+            if (config.getCommitTous() > 0 && ++depuisCommit >= config.getCommitTous()) {
+                valider(false);
+            }
+        }
+
+        // Flushes and commits the open transaction, then records the position
+        void valider(boolean termine) throws Exception {
+            try {
+                terminaison.terminer();
+            } catch (SQLException e) {
+                reprendre(e);
+            }
+            transaction.clear();
+            depuisCommit = 0;
+            if (checkpoint != null) {
+                checkpoint.enregistrer(nomFichier, enregistrements, octets(), dernierId, termine);
+            }
+        }
+
+        private void reprendre(SQLException e) throws Exception {
+            // A lost connection is not the records' fault
+            if (rejets == null || e instanceof SQLRecoverableException || e instanceof SQLTransientConnectionException) {
+                throw e;
+            }
+            annulerTransaction();
+            List<T> aRejouer = new ArrayList<>(transaction);
+            transaction.clear();
+            rejouer(aRejouer, e);
+        }
+
+        // records failed together with erreur (already rolled back): retry each half in its own transaction
+        private void rejouer(List<T> records, SQLException erreur) throws Exception {
+            if (records.size() == 1) {
+                rejets.rejeter(nomFichier, identifiant.de(records.get(0)), records.get(0), erreur);
+                rejetes++;
+                return;
+            }
+            int milieu = records.size() / 2;
+            for (List<T> moitie : List.of(records.subList(0, milieu), records.subList(milieu, records.size()))) {
+                try {
+                    for (T record : moitie) {
+                        ecriture.accept(record);
                     }
-                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
-                    if (tag != null) {
-                        String text = parser.getText();
-                        if (text != null) text = text.trim();
-                        if (tag.equals("nom-famille")) nomFamille = text;
-                        else if (tag.equals("prenom")) prenom = text;
-                        else if (tag.equals("courriel")) courriel = text;
-                        else if (tag.equals("tel")) tel = text;
-                        else if (tag.equals("anniversaire")) anniv = text;
-                        else if (tag.equals("adresse")) adresse = text; // Store full address
-                        else if (tag.equals("ville")) ville = text;
-                        else if (tag.equals("province")) province = text;
-                        else if (tag.equals("code-postal")) codePostal = text;
-                        else if (tag.equals("carte")) carte = text;
-                        else if (tag.equals("no")) noCarte = text;
-                        else if (tag.equals("exp-mois") && text != null && !text.isEmpty())
-                            expMois = Integer.parseInt(text);
-                        else if (tag.equals("exp-annee") && text != null && !text.isEmpty())
-                            expAnnee = Integer.parseInt(text);
-                        else if (tag.equals("mot-de-passe")) motDePasse = text;
-                        else if (tag.equals("forfait")) forfait = text;
+                    terminaison.terminer();
+                } catch (SQLException e) {
+                    if (e instanceof SQLRecoverableException || e instanceof SQLTransientConnectionException) {
+                        throw e;
                     }
+                    annulerTransaction();
+                    rejouer(moitie, e);
                 }
-                eventType = parser.next();
             }
-            if (utilisateurBatchCount > 0) {
-                executeClientBatches();
-                utilisateurBatchCount = 0;
+        }
+
+        // Just past the current record, or -1 when only the count can locate it (XmlPullParser)
+        long octets() {
+            return decodeur != null ? decodeur.position() : -1;
+        }
+    }
+
+    // Record-level entry points, shared by the lecture* methods above and the ParallelLoader workers
+
+    public void ecrirePersonne(PersonneRecord p) throws SQLException {
+        DeltaIndex.Etat etat = comparer(DeltaIndex.Type.PERSONNES, empreinteurPersonne, p.id(), p);
+        if (etat == DeltaIndex.Etat.INCHANGE) {
+            return;
+        }
+        if (etat == DeltaIndex.Etat.MODIFIE) {
+            miseAJourPersonne(p);
+        } else {
+            insertionPersonne(p.id(), p.nom(), p.anniversaire(), p.lieu(), p.photo(), p.bio());
+        }
+        personneBatches.executerSiPlein();
+        if (config.getIndexationPersonne() != null) {
+            personnesAIndexer.add(p);
+        }
+    }
+
+    // f may be a FilmBuffer reused for the next film: nothing here keeps a reference to it
+    public void ecrireFilm(FilmData f) throws SQLException {
+        DeltaIndex.Etat etat = comparer(DeltaIndex.Type.FILMS, empreinteurFilm, f.id(), f);
+        if (etat == DeltaIndex.Etat.INCHANGE) {
+            return;
+        }
+        if (fusionDimensions) {
+            ajouterDimensionsFilm(f);
+        }
+        if (etat == DeltaIndex.Etat.MODIFIE) {
+            miseAJourFilm(f);
+        } else {
+            insertionFilm(f.id(), f.titre(), f.annee(), f.pays(), f.langue(),
+                    f.duree(), f.resume(), f.genres(), f.realisateurNom(),
+                    f.realisateurId(), f.scenaristes(),
+                    f, f.poster(), f.annonces());
+        }
+        filmBatches.executerSiPlein();
+        confirmerDimensions();
+        if (config.getInvalidationFilm() != null) {
+            filmsNonCommites.add(f.id());
+        }
+        if (config.getIndexationFilm() != null) {
+            filmsAIndexer.add(f instanceof FilmBuffer b ? b.figer() : (FilmRecord) f);
+        }
+    }
+
+    public void ecrireClient(ClientRecord c) throws SQLException {
+        DeltaIndex.Etat etat = comparer(DeltaIndex.Type.CLIENTS, empreinteurClient, c.id(), c);
+        if (etat == DeltaIndex.Etat.INCHANGE) {
+            return;
+        }
+        if (fusionDimensions) {
+            ajouterDimensionsClient(c);
+        }
+        if (etat == DeltaIndex.Etat.MODIFIE) {
+            miseAJourClient(c);
+        } else {
+            insertionClient(c.id(), c.nomFamille(), c.prenom(), c.courriel(), c.tel(),
+                    c.anniv(), c.adresse(), c.ville(), c.province(),
+                    c.codePostal(), c.carte(), c.noCarte(),
+                    c.expMois(), c.expAnnee(), c.motDePasse(), c.forfait());
+        }
+        clientBatches.executerSiPlein();
+        confirmerDimensions();
+    }
+
+    // NOUVEAU unless --delta knows the record; its fingerprint reaches the index on commit
+    private <T> DeltaIndex.Etat comparer(DeltaIndex.Type type, DeltaIndex.Empreinteur<T> empreinteur, String id,
+                                         T record) {
+        if (empreintes == null) {
+            return DeltaIndex.Etat.NOUVEAU;
+        }
+        long empreinte = empreinteur.de(record);
+        DeltaIndex.Etat etat = delta ? empreintes.comparer(type, id, empreinte) : DeltaIndex.Etat.NOUVEAU;
+        if (etat != DeltaIndex.Etat.INCHANGE) {
+            changementsNonCommites.add(new DeltaIndex.Changement(type, id, empreinte, false));
+        }
+        return etat;
+    }
+
+    // --delta: records of the previous load missing from the new dump
+
+    public void supprimerPersonne(String id) throws SQLException {
+        psPersonneSuppression.setString(1, id);
+        bPersonneSuppression.ajouter(AdaptiveBatcher.octets(id));
+        personneBatches.executerSiPlein();
+        changementsNonCommites.add(new DeltaIndex.Changement(DeltaIndex.Type.PERSONNES, id, 0, true));
+    }
+
+    public void supprimerClient(String id) throws SQLException {
+        psUtilisateurSuppression.setString(1, id);
+        bUtilisateurSuppression.ajouter(AdaptiveBatcher.octets(id));
+        clientBatches.executerSiPlein();
+        changementsNonCommites.add(new DeltaIndex.Changement(DeltaIndex.Type.CLIENTS, id, 0, true));
+    }
+
+    public void supprimerFilm(String id) throws SQLException {
+        psFilmSuppression.setString(1, id);
+        bFilmSuppression.ajouter(AdaptiveBatcher.octets(id));
+        filmBatches.executerSiPlein();
+        changementsNonCommites.add(new DeltaIndex.Changement(DeltaIndex.Type.FILMS, id, 0, true));
+        if (config.getInvalidationFilm() != null) {
+            filmsNonCommites.add(id);
+        }
+    }
+
+    private void commit() throws SQLException {
+        long debut = System.nanoTime();
+        conn.commit();
+        LoadMetrics.global().commit(System.nanoTime() - debut);
+        commits++;
+        if (fusionDimensions) {
+            caches.valider();
+        }
+        if (!changementsNonCommites.isEmpty()) {
+            empreintes.valider(changementsNonCommites);
+            changementsNonCommites.clear();
+        }
+        if (!filmsNonCommites.isEmpty()) {
+            for (String idFilm : filmsNonCommites) {
+                config.getInvalidationFilm().accept(idFilm);
             }
+            filmsNonCommites.clear();
+        }
+        if (!filmsAIndexer.isEmpty()) {
+            filmsAIndexer.forEach(config.getIndexationFilm());
+            filmsAIndexer.clear();
+        }
+        if (!personnesAIndexer.isEmpty()) {
+            personnesAIndexer.forEach(config.getIndexationPersonne());
+            personnesAIndexer.clear();
+        }
+    }
 
-            conn.commit();
-            System.out.println("Total clients inserted: " + count);
-        } catch (Exception e) {
-            System.out.println("Exception while parsing " + nomFichier + ": " + e.getMessage());
-            e.printStackTrace();
+    // Undoes the open transaction: rows, pending batches, lookup keys merged in it, post-commit notifications
+    private void annulerTransaction() throws SQLException {
+        conn.rollback();
+        for (BatchGroup groupe : new BatchGroup[]{personneBatches, clientBatches, filmBatches}) {
+            for (AdaptiveBatcher batcher : groupe.getBatchers()) {
+                batcher.annuler();
+            }
+        }
+        if (fusionDimensions) {
+            caches.annuler();
+        }
+        filmsNonCommites.clear();
+        filmsAIndexer.clear();
+        personnesAIndexer.clear();
+        changementsNonCommites.clear();
+    }
+
+    /** Executions of every batcher plus commits; with everything batched this grows with films / batch size. */
+    public long getAllersRetours() {
+        long total = commits;
+        for (BatchGroup groupe : new BatchGroup[]{personneBatches, clientBatches, filmBatches}) {
+            for (AdaptiveBatcher batcher : groupe.getBatchers()) {
+                total += batcher.getBatches();
+            }
         }
+        return total;
+    }
+
+    public void terminerPersonnes() throws SQLException {
+        personneBatches.executerTout();
+        commit();
+    }
+
+    public void terminerFilms() throws SQLException {
+        filmBatches.executerTout();
+        confirmerDimensions();
+        commit();
+    }
+
+    public void terminerClients() throws SQLException {
+        clientBatches.executerTout();
+        confirmerDimensions();
+        commit();
+    }
+
+    // Lookup tables (Genre, PaysProduction, Scenariste, DomaineCopie, DomaineCarteCredit,
+    // DomaineForfait, Forfait). In the parallel loader only one coordinator instance merges
+    // them, so the writers never race each other on the same lookup key.
+
+    public void ajouterDimensionsFilm(FilmData f) throws SQLException {
+        for (String paysNom : f.pays()) {
+            if (caches.pays.estNouvelle(paysNom, paysNom)) {
+                psPaysProductionMerge.setString(1, paysNom);
+                bPaysProduction.ajouter(AdaptiveBatcher.octets(paysNom));
+            }
+        }
+
+        for (String genre : f.genres()) {
+            if (caches.genres.estNouvelle(genre, genre)) {
+                psGenreMerge.setString(1, genre);
+                bGenre.ajouter(AdaptiveBatcher.octets(genre));
+            }
+        }
+
+        for (String scenaristeName : f.scenaristes()) {
+            //Generated id for scenariste, only if the name is not known yet
+            String[] nouvelId = {null};
+            String idScenariste = caches.scenaristes.resoudre(scenaristeName,
+                    nom -> nouvelId[0] = cles.cleDimension("Scenariste", nom), this::chercherScenariste);
+            if (idScenariste == nouvelId[0]) {
+                psScenaristeMerge.setString(1, idScenariste);
+                psScenaristeMerge.setString(2, scenaristeName);
+                bScenariste.ajouter(AdaptiveBatcher.octets(idScenariste, scenaristeName));
+            }
+        }
+
+        if (caches.domainesCopie.estNouvelle(ETAT_COPIE, ETAT_COPIE)) {
+            psDomaineCopieMerge.setString(1, ETAT_COPIE);
+            bDomaineCopie.ajouter(AdaptiveBatcher.octets(ETAT_COPIE));
+        }
+    }
+
+    public void ajouterDimensionsClient(ClientRecord c) throws SQLException {
+        // Merge for credit card type
+        if (caches.cartesCredit.estNouvelle(c.carte(), c.carte())) {
+            psDomaineCarteCreditMerge.setString(1, c.carte());
+            bDomaineCarteCredit.ajouter(AdaptiveBatcher.octets(c.carte()));
+        }
+
+        // Merge for forfait
+        if (caches.domainesForfait.estNouvelle(c.forfait(), c.forfait())) {
+            psDomaineForfaitMerge.setString(1, c.forfait());
+            bDomaineForfait.ajouter(AdaptiveBatcher.octets(c.forfait()));
+        }
+
+        // Merge for forfait with default values
+        if (caches.forfaits.estNouvelle(c.forfait(), c.forfait())) {
+            psForfaitMerge.setString(1, c.forfait());
+            psForfaitMerge.setString(2, c.forfait()); // Assuming type is same as code
+            bForfait.ajouter(AdaptiveBatcher.octets(c.forfait(), c.forfait()));
+        }
+    }
+
+    // Only reached for a name evicted from a size-bounded cache
+    private String chercherScenariste(String nom) throws SQLException {
+        psScenaristeLookup.setString(1, nom);
+        try (ResultSet rs = psScenaristeLookup.executeQuery()) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+
+    // A cache key may be evicted once its merge has been executed
+    private void confirmerDimensions() {
+        if (bDomaineCarteCredit.lignes() == 0) caches.cartesCredit.confirmer();
+        if (bDomaineForfait.lignes() == 0) caches.domainesForfait.confirmer();
+        if (bForfait.lignes() == 0) caches.forfaits.confirmer();
+        if (bDomaineCopie.lignes() == 0) caches.domainesCopie.confirmer();
+        if (bPaysProduction.lignes() == 0) caches.pays.confirmer();
+        if (bGenre.lignes() == 0) caches.genres.confirmer();
+        if (bScenariste.lignes() == 0) caches.scenaristes.confirmer();
+    }
+
+    /**
+     * Flushes and commits the pending lookup merges. Used by the ParallelLoader coordinator
+     * before handing a chunk of records to the writers, so their foreign keys are visible.
+     */
+    public void validerDimensions() throws SQLException {
+        bDomaineCarteCredit.executer();
+        bDomaineForfait.executer();
+        bForfait.executer();
+        bPaysProduction.executer();
+        bGenre.executer();
+        bScenariste.executer();
+        bDomaineCopie.executer();
+        commit();
+        caches.confirmer();
     }
 
     private void insertionPersonne(String id, String nom, String anniv, String lieu, String photo, String bio) throws SQLException {
@@ -347,100 +894,184 @@ public class LectureBD {
         psPersonne.setString(3, anniv);
         psPersonne.setString(4, lieu);
         psPersonne.setString(5, photo);
-        psPersonne.setString(6, bio);
-        psPersonne.addBatch();
+        boolean enLigne = clobs.lier(psPersonne, 6, bio);
+        bPersonne.ajouter(AdaptiveBatcher.octets(id, nom, anniv, lieu, photo) + clobs.octets(bio));
+        if (!enLigne) {
+            differerBiographie(id, bio);
+        }
+    }
+
+    private void miseAJourPersonne(PersonneRecord p) throws SQLException {
+        psPersonneMaj.setString(1, p.nom());
+        psPersonneMaj.setString(2, p.anniversaire());
+        psPersonneMaj.setString(3, p.lieu());
+        psPersonneMaj.setString(4, p.photo());
+        boolean enLigne = clobs.lier(psPersonneMaj, 5, p.bio());
+        psPersonneMaj.setString(6, p.id());
+        bPersonneMaj.ajouter(AdaptiveBatcher.octets(p.id(), p.nom(), p.anniversaire(), p.lieu(), p.photo())
+                + clobs.octets(p.bio()));
+        if (!enLigne) {
+            differerBiographie(p.id(), p.bio());
+        }
+    }
+
+    // LOB pass, queued after the row it completes (its batcher has that row's batcher as parent)
+    private void differerBiographie(String id, String bio) throws SQLException {
+        clobs.differer(psPersonneBiographie, bio, id);
+        bPersonneBiographie.ajouter(AdaptiveBatcher.octets(id, bio));
+    }
+
+    private void differerResume(String id, String resume) throws SQLException {
+        clobs.differer(psFilmResume, resume, id);
+        bFilmResume.ajouter(AdaptiveBatcher.octets(id, resume));
+    }
+
+    // The film row is updated in place (its copies, possibly rented, stay); its child rows are replaced
+    private void miseAJourFilm(FilmData f) throws SQLException {
+        String id = f.id();
+        psFilmMaj.setString(1, f.titre());
+        psFilmMaj.setInt(2, f.annee());
+        psFilmMaj.setString(3, f.langue());
+        psFilmMaj.setInt(4, f.duree());
+        boolean enLigne = clobs.lier(psFilmMaj, 5, f.resume());
+        psFilmMaj.setString(6, f.poster());
+        psFilmMaj.setString(7, f.realisateurId() != -1 ? Integer.toString(f.realisateurId()) : null);
+        psFilmMaj.setString(8, id);
+        bFilmMaj.ajouter(AdaptiveBatcher.octets(id, f.titre(), f.langue(), f.poster()) + clobs.octets(f.resume()) + 36);
+        if (!enLigne) {
+            differerResume(id, f.resume());
+        }
+        for (int i = 0; i < ENFANTS_FILM.length; i++) {
+            psEnfantsSuppression[i].setString(1, id);
+            bEnfantsSuppression[i].ajouter(AdaptiveBatcher.octets(id));
+        }
+        insertionEnfantsFilm(id, f.pays(), f.genres(), f.scenaristes(), f, f.annonces());
     }
 
     private void insertionFilm(String id, String titre, int annee,
-                               ArrayList<String> pays, String langue, int duree, String resume,
-                               ArrayList<String> genres, String realisateurNom, int realisateurId,
-                               ArrayList<String> scenaristes,
-                               ArrayList<Role> roles, String poster,
-                               ArrayList<String> annonces,
-                               Map<String, String> scenaristToIdMap
+                               List<String> pays, String langue, int duree, String resume,
+                               List<String> genres, String realisateurNom, int realisateurId,
+                               List<String> scenaristes,
+                               FilmData roles, String poster,
+                               List<String> annonces
                                ) throws SQLException {
         psFilm.setString(1, id);
         psFilm.setString(2, titre);
         psFilm.setInt(3, annee);
         psFilm.setString(4, langue);
         psFilm.setInt(5, duree);
-        psFilm.setString(6, resume);
+        boolean enLigne = clobs.lier(psFilm, 6, resume);
         psFilm.setString(7, poster);
         if (realisateurId != -1) {
             psFilm.setString(8, Integer.toString(realisateurId));
         }
-        psFilm.execute();
+        // Queued, not executed: BatchGroup flushes Film before any of the child rows below
+        bFilm.ajouter(AdaptiveBatcher.octets(id, titre, langue, poster) + clobs.octets(resume) + 36);
+        if (!enLigne) {
+            differerResume(id, resume);
+        }
 
+        insertionEnfantsFilm(id, pays, genres, scenaristes, roles, annonces);
 
-        for (String paysNom : pays) {
-            psPaysProductionMerge.setString(1, paysNom);
-            psPaysProductionMerge.addBatch();
+        // Seeded by the film id, so a film replayed by --resume gets the same copies
+        int nombreCopie = new Random(id.hashCode()).nextInt(100) + 1;
+        for (int i = 0; i < nombreCopie; i++) {
+            String codeCopie = "CP_" + id + "_" + String.format("%03d", i + 1);
+            if (config.isModeBulk()) {
+                bulkCopie.ajouter(codeCopie, id, ETAT_COPIE);
+            } else {
+                psCopie.setString(1, codeCopie);
+                psCopie.setString(2, id);
+                psCopie.setString(3, ETAT_COPIE);
+                bCopie.ajouter(AdaptiveBatcher.octets(codeCopie, id, ETAT_COPIE));
+            }
+        }
+    }
 
-            psFilmPays.setString(1, id);
-            psFilmPays.setString(2, paysNom);
-            psFilmPays.addBatch();
+    private void insertionEnfantsFilm(String id, List<String> pays, List<String> genres, List<String> scenaristes,
+                                      FilmData roles, List<String> annonces) throws SQLException {
+        for (String paysNom : pays) {
+            if (config.isModeBulk()) {
+                bulkFilmPays.ajouter(id, paysNom);
+            } else {
+                psFilmPays.setString(1, id);
+                psFilmPays.setString(2, paysNom);
+                bFilmPays.ajouter(AdaptiveBatcher.octets(id, paysNom));
+            }
         }
 
-        // ??
         for (String genre : genres) {
-            psGenreMerge.setString(1, genre);
-            psGenreMerge.addBatch();
-
-            psFilmGenre.setString(1, id);
-            psFilmGenre.setString(2, genre);
-            psFilmGenre.addBatch();
+            if (config.isModeBulk()) {
+                bulkFilmGenre.ajouter(id, genre);
+            } else {
+                psFilmGenre.setString(1, id);
+                psFilmGenre.setString(2, genre);
+                bFilmGenre.ajouter(AdaptiveBatcher.octets(id, genre));
+            }
         }
 
-        for (String scenaristeName : scenaristes) { // Renamed 'scenariste' to 'scenaristeName' for clarity
-            //Generated id for scenariste
-            String idScenariste;
-            if (scenaristToIdMap.containsKey(scenaristeName)) {
-                idScenariste = scenaristToIdMap.get(scenaristeName);
-            } else {
-                idScenariste = UUID.randomUUID().toString();
-                scenaristToIdMap.put(scenaristeName, idScenariste);
+        for (String scenaristeName : scenaristes) {
+            // Id assigned by ajouterDimensionsFilm (possibly on the coordinator's instance)
+            String idScenariste = caches.scenaristes.get(scenaristeName, this::chercherScenariste);
 
-                psScenaristeMerge.setString(1, idScenariste);
-                psScenaristeMerge.setString(2, scenaristeName); // Use the name here
-                psScenaristeMerge.addBatch();
+            if (config.isModeBulk()) {
+                bulkFilmScenariste.ajouter(id, idScenariste);
+            } else {
+                psFilmScenariste.setString(1, id);
+                psFilmScenariste.setString(2, idScenariste);
+                bFilmScenariste.ajouter(AdaptiveBatcher.octets(id, idScenariste));
             }
-
-            psFilmScenariste.setString(1, id);
-            psFilmScenariste.setString(2, idScenariste);
-            psFilmScenariste.addBatch();
         }
 
-        for (Role role : roles) {
-            String idRole = UUID.randomUUID().toString();
-            psRole.setString(1, idRole);
-            psRole.setString(2, role.personnage);
-            psRole.setString(3, id);
-
-            // role.id is the actor's ID
-            psRole.setString(4, Integer.toString(role.id));
-            psRole.addBatch();
+        for (int i = 0; i < roles.nombreRoles(); i++) {
+            String idRole = cles.cleEnfant("Role", id, i);
+            // roleId is the actor's ID
+            String idActeur = Integer.toString(roles.roleId(i));
+            String personnage = roles.rolePersonnage(i);
+            if (config.isModeBulk()) {
+                bulkRole.ajouter(idRole, personnage, id, idActeur);
+            } else {
+                psRole.setString(1, idRole);
+                psRole.setString(2, personnage);
+                psRole.setString(3, id);
+                psRole.setString(4, idActeur);
+                bRole.ajouter(AdaptiveBatcher.octets(idRole, personnage, id, idActeur));
+            }
         }
 
-        for (String annonce : annonces) {
-            String idAnnonce = UUID.randomUUID().toString();
+        for (int i = 0; i < annonces.size(); i++) {
+            String annonce = annonces.get(i);
+            String idAnnonce = cles.cleEnfant("BandeAnnonce", id, i);
             psBandeAnnonce.setString(1, idAnnonce);
             psBandeAnnonce.setString(2, annonce);
             psBandeAnnonce.setString(3, id);
-            psBandeAnnonce.execute();
+            bBandeAnnonce.ajouter(AdaptiveBatcher.octets(idAnnonce, annonce, id));
         }
+    }
 
-        int nombreCopie = random.nextInt(100) + 1;
-        String etat = "Disponible";
-        psDomaineCopieMerge.setString(1, etat);
-        psDomaineCopieMerge.addBatch();
-
-        for (int i = 0; i < nombreCopie; i++) {
-            String codeCopie = "CP_" + id + "_" + String.format("%03d", i + 1);
-            psCopie.setString(1, codeCopie);
-            psCopie.setString(2, id);
-            psCopie.setString(3, etat);
-            psCopie.addBatch();
-        }
+    // CVV is not in the dump: the one drawn at insertion stays
+    private void miseAJourClient(ClientRecord c) throws SQLException {
+        psUtilisateurMaj.setString(1, c.prenom());
+        psUtilisateurMaj.setString(2, c.nomFamille());
+        psUtilisateurMaj.setString(3, c.courriel());
+        psUtilisateurMaj.setString(4, c.motDePasse());
+        psUtilisateurMaj.setString(5, c.tel());
+        psUtilisateurMaj.setString(6, c.adresse());
+        psUtilisateurMaj.setString(7, c.ville());
+        psUtilisateurMaj.setString(8, c.province());
+        psUtilisateurMaj.setString(9, c.codePostal());
+        psUtilisateurMaj.setString(10, c.anniv());
+        psUtilisateurMaj.setString(11, c.id());
+        bUtilisateurMaj.ajouter(AdaptiveBatcher.octets(c.id(), c.prenom(), c.nomFamille(), c.courriel(), c.motDePasse(),
+                c.tel(), c.adresse(), c.ville(), c.province(), c.codePostal(), c.anniv()));
+
+        psClientMaj.setString(1, c.noCarte());
+        psClientMaj.setInt(2, c.expMois());
+        psClientMaj.setInt(3, c.expAnnee());
+        psClientMaj.setString(4, c.carte());
+        psClientMaj.setString(5, c.forfait());
+        psClientMaj.setString(6, c.id());
+        bClientMaj.ajouter(AdaptiveBatcher.octets(c.id(), c.noCarte(), c.carte(), c.forfait()) + 8);
     }
 
     private void insertionClient(String id, String nomFamille, String prenom,
@@ -460,20 +1091,8 @@ public class LectureBD {
         psUtilisateur.setString(9, province);
         psUtilisateur.setString(10, codePostal);
         psUtilisateur.setString(11, anniv);
-        psUtilisateur.addBatch();
-
-        // Merge for credit card type
-        psDomaineCarteCreditMerge.setString(1, carte);
-        psDomaineCarteCreditMerge.addBatch();
-
-        // Merge for forfait
-        psDomaineForfaitMerge.setString(1, forfait);
-        psDomaineForfaitMerge.addBatch();
-
-        // Merge for forfait with default values
-        psForfaitMerge.setString(1, forfait);
-        psForfaitMerge.setString(2, forfait); // Assuming type is same as code
-        psForfaitMerge.addBatch();
+        bUtilisateur.ajouter(AdaptiveBatcher.octets(id, prenom, nomFamille, courriel, motDePasse, tel,
+                adresse, ville, province, codePostal, anniv));
 
         psClient.setString(1, id);
         psClient.setString(2, noCarte);
@@ -484,17 +1103,13 @@ public class LectureBD {
         psClient.setInt(5, cvv);
         psClient.setString(6, carte);
         psClient.setString(7, forfait);
-        psClient.addBatch();
+        bClient.ajouter(AdaptiveBatcher.octets(id, noCarte, carte, forfait) + 12);
     }
 
     private void connectionBD() {
         try {
-            Class.forName("oracle.jdbc.OracleDriver");
-            conn = DriverManager.getConnection(
-                    "jdbc:oracle:thin:@//bdlog660.ens.ad.etsmtl.ca:1521/ORCLPDB.ens.ad.etsmtl.ca",
-                    "EQUIPE206",
-                    "NulxJFxU"
-            );
+            DataSource source = config.getDataSource() != null ? config.getDataSource() : ConnectionPool.getInstance();
+            conn = source.getConnection();
             conn.setAutoCommit(false);
             System.out.println("Connexion réussie à la base de données.");
         } catch (Exception e) {
@@ -504,6 +1119,19 @@ public class LectureBD {
         }
     }
 
+    public void afficherStatistiquesBatch() {
+        for (BatchGroup groupe : new BatchGroup[]{personneBatches, clientBatches, filmBatches}) {
+            for (AdaptiveBatcher batcher : groupe.getBatchers()) {
+                System.out.println("  " + batcher.rapport());
+            }
+        }
+        System.out.println("  " + clobs.rapport());
+    }
+
+    public void afficherStatistiquesDimensions() {
+        caches.afficherStatistiques();
+    }
+
     public void closeAll() {
         System.out.println("Fermeture des ressources JDBC...");
         try {
@@ -518,12 +1146,29 @@ public class LectureBD {
             if (psPaysProductionMerge != null) psPaysProductionMerge.close();
             if (psGenreMerge != null) psGenreMerge.close();
             if (psScenaristeMerge != null) psScenaristeMerge.close();
+            if (psScenaristeLookup != null) psScenaristeLookup.close();
             if (psFilmPays != null) psFilmPays.close();
             if (psFilmGenre != null) psFilmGenre.close();
             if (psFilmScenariste != null) psFilmScenariste.close();
             if (psRole != null) psRole.close();
             if (psBandeAnnonce != null) psBandeAnnonce.close();
             if (psCopie != null) psCopie.close();
+            if (psPersonneBiographie != null) psPersonneBiographie.close();
+            if (psFilmResume != null) psFilmResume.close();
+            if (cles != null) cles.close();
+            for (PreparedStatement ps : new PreparedStatement[]{psPersonneMaj, psPersonneSuppression, psUtilisateurMaj,
+                    psClientMaj, psUtilisateurSuppression, psFilmMaj, psFilmSuppression}) {
+                if (ps != null) ps.close();
+            }
+            for (PreparedStatement ps : psEnfantsSuppression) {
+                if (ps != null) ps.close();
+            }
+            if (bulkCopie != null) bulkCopie.close();
+            if (bulkRole != null) bulkRole.close();
+            if (bulkFilmGenre != null) bulkFilmGenre.close();
+            if (bulkFilmPays != null) bulkFilmPays.close();
+            if (bulkFilmScenariste != null) bulkFilmScenariste.close();
+            if (rejets != null) rejets.close();
 
             closeConnection();
         } catch (SQLException e) {
@@ -539,47 +1184,11 @@ public class LectureBD {
                     System.out.println("Transaction annulée.");
                 }
                 conn.setAutoCommit(true);
-                conn.close();
+                conn.close(); // back to the pool
                 System.out.println("Connexion à la base de données fermée.");
             } catch (SQLException e) {
                 System.err.println("Erreur lors de la fermeture de la connexion BD: " + e.getMessage());
             }
         }
     }
-
-    private void executeFilmBatches() throws SQLException {
-        if (filmBatchCount > 0) {
-            psFilm.executeBatch();
-            psPaysProductionMerge.executeBatch();
-            psFilmPays.executeBatch();
-            psGenreMerge.executeBatch();
-            psFilmGenre.executeBatch();
-            psScenaristeMerge.executeBatch();
-            psFilmScenariste.executeBatch();
-            psRole.executeBatch();
-            psBandeAnnonce.executeBatch();
-            psDomaineCopieMerge.executeBatch();
-            psCopie.executeBatch();
-        }
-    }
-
-    private void executeClientBatches() throws SQLException {
-        if (utilisateurBatchCount > 0) { // Check if there's anything to execute for Utilisateur
-            psUtilisateur.executeBatch();
-
-            if (psDomaineCarteCreditMerge != null) {
-                psDomaineCarteCreditMerge.executeBatch();
-            }
-            if (psDomaineForfaitMerge != null) {
-                psDomaineForfaitMerge.executeBatch();
-            }
-            if (psForfaitMerge != null) {
-                psForfaitMerge.executeBatch();
-            }
-
-            if (psClient != null) {
-                psClient.executeBatch();
-            }
-        }
-    }
 }
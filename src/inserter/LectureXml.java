@@ -0,0 +1,219 @@
+package inserter;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * XML side of the loader: walks the input files with XmlPullParser and hands every
+ * complete record to a {@link RecordSink}. No JDBC here, so the same parse loops
+ * feed both the single-threaded {@link LectureBD} and the {@link ParallelLoader}.
+ */
+public final class LectureXml {
+
+    private LectureXml() {
+    }
+
+    public static int lirePersonnes(String nomFichier, RecordSink<PersonneRecord> sink) throws Exception {
+        int count = 0;
+        try (InputStream is = new FileInputStream(nomFichier)) {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(is, null);
+
+            int eventType = parser.getEventType();
+            String tag = null, nom = null, anniversaire = null, lieu = null, photo = null, bio = null;
+            int id = -1;
+
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    tag = parser.getName();
+                    if (tag.equals("personne") && parser.getAttributeCount() == 1)
+                        id = Integer.parseInt(parser.getAttributeValue(0));
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    tag = null;
+                    if (parser.getName().equals("personne") && id >= 0) {
+                        sink.accept(new PersonneRecord(Integer.toString(id), nom, anniversaire, lieu, photo, bio));
+                        count++;
+
+                        id = -1;
+                        nom = null;
+                        anniversaire = null;
+                        lieu = null;
+                        photo = null;
+                        bio = null;
+                    }
+                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
+                    if (tag != null) {
+                        String text = parser.getText();
+                        if (tag.equals("nom")) nom = text;
+                        else if (tag.equals("anniversaire")) anniversaire = text;
+                        else if (tag.equals("lieu")) lieu = text;
+                        else if (tag.equals("photo")) photo = text;
+                        else if (tag.equals("bio")) bio = text;
+                    }
+                }
+                eventType = parser.next();
+            }
+        }
+        return count;
+    }
+
+    public static int lireFilms(String nomFichier, RecordSink<FilmRecord> sink) throws Exception {
+        int filmCount = 0;
+        try (InputStream is = new FileInputStream(nomFichier)) {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(is, null);
+
+            int eventType = parser.getEventType();
+
+            String tag = null, titre = null, langue = null, poster = null, roleNom = null,
+                    rolePersonnage = null, realisateurNom = null, resume = null;
+
+            ArrayList<String> pays = new ArrayList<String>();
+            ArrayList<String> genres = new ArrayList<String>();
+            ArrayList<String> scenaristes = new ArrayList<String>();
+            ArrayList<FilmRecord.Role> roles = new ArrayList<FilmRecord.Role>();
+            ArrayList<String> annonces = new ArrayList<String>();
+
+            int id = -1, annee = -1, duree = -1, roleId = -1, realisateurId = -1;
+
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    tag = parser.getName();
+                    if (tag.equals("film") && parser.getAttributeCount() == 1)
+                        id = Integer.parseInt(parser.getAttributeValue(0));
+                    else if (tag.equals("realisateur") && parser.getAttributeCount() == 1)
+                        realisateurId = Integer.parseInt(parser.getAttributeValue(0));
+                    else if (tag.equals("acteur") && parser.getAttributeCount() == 1)
+                        roleId = Integer.parseInt(parser.getAttributeValue(0));
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    String currentTag = parser.getName();
+                    tag = null;
+
+                    if (currentTag.equals("film") && id >= 0) {
+                        sink.accept(new FilmRecord(Integer.toString(id), titre, annee, pays, langue,
+                                duree, resume, genres, realisateurNom, realisateurId, scenaristes,
+                                roles, poster, annonces));
+                        filmCount++;
+
+                        id = -1;
+                        annee = -1;
+                        duree = -1;
+                        titre = null;
+                        langue = null;
+                        poster = null;
+                        resume = null;
+                        realisateurNom = null;
+                        realisateurId = -1;
+                        pays.clear();
+                        genres.clear();
+                        scenaristes.clear();
+                        roles.clear();
+                        annonces.clear();
+                    }
+                    if (currentTag.equals("role") && roleId >= 0) {
+                        roles.add(new FilmRecord.Role(roleId, roleNom, rolePersonnage));
+                        roleId = -1;
+                        roleNom = null;
+                        rolePersonnage = null;
+                    }
+                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
+                    if (tag != null) {
+                        String text = parser.getText();
+                        if (tag.equals("titre")) titre = text;
+                        else if (tag.equals("annee")) annee = Integer.parseInt(text);
+                        else if (tag.equals("pays")) pays.add(text);
+                        else if (tag.equals("langue")) langue = text;
+                        else if (tag.equals("duree")) duree = Integer.parseInt(text);
+                        else if (tag.equals("resume")) resume = text;
+                        else if (tag.equals("genre")) genres.add(text);
+                        else if (tag.equals("realisateur")) realisateurNom = text; // Name, ID is from attribute
+                        else if (tag.equals("scenariste")) scenaristes.add(text);
+                        else if (tag.equals("acteur")) roleNom = text; // Name, ID is from attribute
+                        else if (tag.equals("personnage")) rolePersonnage = text;
+                        else if (tag.equals("poster")) poster = text;
+                        else if (tag.equals("annonce")) annonces.add(text);
+                    }
+                }
+                eventType = parser.next();
+            }
+        }
+        return filmCount;
+    }
+
+    public static int lireClients(String nomFichier, RecordSink<ClientRecord> sink) throws Exception {
+        int count = 0;
+        try (InputStream is = new FileInputStream(nomFichier)) {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(is, null);
+
+            int eventType = parser.getEventType();
+
+            String tag = null, nomFamille = null, prenom = null, courriel = null, tel = null,
+                    anniv = null, adresse = null, ville = null, province = null, codePostal = null,
+                    carte = null, noCarte = null, motDePasse = null, forfait = null;
+
+            int id = -1, expMois = -1, expAnnee = -1;
+
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    tag = parser.getName();
+                    if (tag.equals("client") && parser.getAttributeCount() == 1)
+                        id = Integer.parseInt(parser.getAttributeValue(0));
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    tag = null;
+                    if (parser.getName().equals("client") && id >= 0) {
+                        sink.accept(new ClientRecord(Integer.toString(id), nomFamille, prenom, courriel, tel,
+                                anniv, adresse, ville, province, codePostal, carte, noCarte,
+                                expMois, expAnnee, motDePasse, forfait));
+                        count++;
+
+                        id = -1;
+                        nomFamille = null;
+                        prenom = null;
+                        courriel = null;
+                        tel = null;
+                        anniv = null;
+                        adresse = null;
+                        ville = null;
+                        province = null;
+                        codePostal = null;
+                        carte = null;
+                        noCarte = null;
+                        motDePasse = null;
+                        forfait = null;
+                        expMois = -1;
+                        expAnnee = -1;
+                    }
+                } else if (eventType == XmlPullParser.TEXT && id >= 0) {
+                    if (tag != null) {
+                        String text = parser.getText();
+                        if (text != null) text = text.trim();
+                        if (tag.equals("nom-famille")) nomFamille = text;
+                        else if (tag.equals("prenom")) prenom = text;
+                        else if (tag.equals("courriel")) courriel = text;
+                        else if (tag.equals("tel")) tel = text;
+                        else if (tag.equals("anniversaire")) anniv = text;
+                        else if (tag.equals("adresse")) adresse = text; // Store full address
+                        else if (tag.equals("ville")) ville = text;
+                        else if (tag.equals("province")) province = text;
+                        else if (tag.equals("code-postal")) codePostal = text;
+                        else if (tag.equals("carte")) carte = text;
+                        else if (tag.equals("no")) noCarte = text;
+                        else if (tag.equals("exp-mois") && text != null && !text.isEmpty())
+                            expMois = Integer.parseInt(text);
+                        else if (tag.equals("exp-annee") && text != null && !text.isEmpty())
+                            expAnnee = Integer.parseInt(text);
+                        else if (tag.equals("mot-de-passe")) motDePasse = text;
+                        else if (tag.equals("forfait")) forfait = text;
+                    }
+                }
+                eventType = parser.next();
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,345 @@
+package inserter;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of a load, shared by every LectureBD of the JVM (sequential, ParallelLoader and
+ * MappedChunkLoader writers alike):
+ * - per statement batcher: rows, bytes, batches and a histogram of executeBatch latency,
+ *   fed by AdaptiveBatcher.executer();
+ * - commits, timed by LectureBD.commit();
+ * - per input file: records, bytes read, wall time, and that time split into reading
+ *   (decoding and binding on the threads that read the file), database (executeBatch and
+ *   commit) and waiting (ParallelLoader's reader blocked on a full queue, a
+ *   MappedChunkLoader chunk on the coordinator). Times are summed over threads, so with
+ *   several writers or chunks they can exceed the wall time.
+ *
+ * A load dominated by reading is CPU bound on the parser; by database time with a low
+ * executeBatch p50, the round trips; with a high one, Oracle itself.
+ *
+ * enregistrerJmx() exposes the totals (inserter:type=LoadMetrics) and every batcher
+ * (inserter:type=Table,name=...) as MXBeans; ecrireJson() dumps the same as one JSON
+ * document at the end of the run (--metriques fichier).
+ */
+public final class LoadMetrics implements LoadMetricsMXBean {
+
+    private static final LoadMetrics GLOBAL = new LoadMetrics();
+
+    // Database time spent by the current thread, to tell reading from waiting on Oracle
+    private static final ThreadLocal<long[]> NANOS_BASE_THREAD = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Map<String, TableMetrics> tables = new ConcurrentHashMap<>();
+    private final Map<String, FichierMetrics> fichiers = new LinkedHashMap<>();
+    private final LatencyHistogram commits = new LatencyHistogram();
+    private final LongAdder nanosBase = new LongAdder();
+    private final long debut = System.nanoTime();
+    private volatile MBeanServer serveurJmx = null;
+
+    public static LoadMetrics global() {
+        return GLOBAL;
+    }
+
+    public static final class TableMetrics implements TableMetricsMXBean {
+        private final String nom;
+        private final LongAdder lignes = new LongAdder();
+        private final LongAdder octets = new LongAdder();
+        private final LatencyHistogram executions = new LatencyHistogram();
+
+        TableMetrics(String nom) {
+            this.nom = nom;
+        }
+
+        public String getNom() {
+            return nom;
+        }
+
+        public LatencyHistogram getExecutions() {
+            return executions;
+        }
+
+        @Override
+        public long getLignes() {
+            return lignes.sum();
+        }
+
+        @Override
+        public long getBatches() {
+            return executions.nombre();
+        }
+
+        @Override
+        public long getOctets() {
+            return octets.sum();
+        }
+
+        @Override
+        public double getLatenceMoyenneMs() {
+            return executions.moyenneNanos() / 1e6;
+        }
+
+        @Override
+        public double getLatenceP50Ms() {
+            return executions.percentile(50) / 1e6;
+        }
+
+        @Override
+        public double getLatenceP99Ms() {
+            return executions.percentile(99) / 1e6;
+        }
+
+        @Override
+        public double getLatenceMaxMs() {
+            return executions.maxNanos() / 1e6;
+        }
+    }
+
+    private static final class FichierMetrics {
+        long enregistrements, octets, murNanos, lectureNanos, baseNanos, attenteNanos;
+    }
+
+    /** The counters of a batcher, created (and registered with JMX when enabled) on first use. */
+    public TableMetrics table(String nom) {
+        return tables.computeIfAbsent(nom, n -> {
+            TableMetrics t = new TableMetrics(n);
+            if (serveurJmx != null) {
+                enregistrer(t, "inserter:type=Table,name=" + ObjectName.quote(n));
+            }
+            return t;
+        });
+    }
+
+    void batch(TableMetrics table, int lignes, long octets, long nanos) {
+        table.lignes.add(lignes);
+        table.octets.add(octets);
+        table.executions.enregistrer(nanos);
+        base(nanos);
+    }
+
+    void commit(long nanos) {
+        commits.enregistrer(nanos);
+        base(nanos);
+    }
+
+    private void base(long nanos) {
+        nanosBase.add(nanos);
+        NANOS_BASE_THREAD.get()[0] += nanos;
+    }
+
+    /** Database time recorded so far by the calling thread; differences give its share of a task. */
+    public static long nanosBaseThread() {
+        return NANOS_BASE_THREAD.get()[0];
+    }
+
+    /** Database time recorded so far by every thread. */
+    public long nanosBase() {
+        return nanosBase.sum();
+    }
+
+    /** Adds to the totals of an input file; several calls for the same file (chunks) add up. */
+    public void fichier(String nom, long enregistrements, long octets, long murNanos, long lectureNanos,
+                        long baseNanos, long attenteNanos) {
+        synchronized (fichiers) {
+            FichierMetrics f = fichiers.computeIfAbsent(nom, n -> new FichierMetrics());
+            f.enregistrements += enregistrements;
+            f.octets += octets;
+            f.murNanos += murNanos;
+            f.lectureNanos += lectureNanos;
+            f.baseNanos += baseNanos;
+            f.attenteNanos += attenteNanos;
+        }
+    }
+
+    private List<Map.Entry<String, FichierMetrics>> fichiers() {
+        synchronized (fichiers) {
+            return new ArrayList<>(fichiers.entrySet());
+        }
+    }
+
+    private long somme(ToLongFunction<FichierMetrics> champ) {
+        long total = 0;
+        for (Map.Entry<String, FichierMetrics> f : fichiers()) {
+            total += champ.applyAsLong(f.getValue());
+        }
+        return total;
+    }
+
+    public synchronized void enregistrerJmx() {
+        if (serveurJmx != null) {
+            return;
+        }
+        serveurJmx = ManagementFactory.getPlatformMBeanServer();
+        enregistrer(this, "inserter:type=LoadMetrics");
+        for (TableMetrics t : tables.values()) {
+            enregistrer(t, "inserter:type=Table,name=" + ObjectName.quote(t.getNom()));
+        }
+    }
+
+    private void enregistrer(Object mbean, String nom) {
+        try {
+            ObjectName objectName = new ObjectName(nom);
+            if (!serveurJmx.isRegistered(objectName)) {
+                serveurJmx.registerMBean(mbean, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Enregistrement JMX impossible pour " + nom + ": " + e.getMessage());
+        }
+    }
+
+    // MXBean attributes
+
+    @Override
+    public long getLignes() {
+        long total = 0;
+        for (TableMetrics t : tables.values()) {
+            total += t.getLignes();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBatches() {
+        long total = 0;
+        for (TableMetrics t : tables.values()) {
+            total += t.getBatches();
+        }
+        return total;
+    }
+
+    @Override
+    public long getOctetsLus() {
+        return somme(f -> f.octets);
+    }
+
+    @Override
+    public long getEnregistrements() {
+        return somme(f -> f.enregistrements);
+    }
+
+    @Override
+    public double getEnregistrementsParSeconde() {
+        long mur = somme(f -> f.murNanos);
+        return mur == 0 ? 0 : getEnregistrements() * 1e9 / mur;
+    }
+
+    @Override
+    public long getCommits() {
+        return commits.nombre();
+    }
+
+    @Override
+    public double getCommitP99Ms() {
+        return commits.percentile(99) / 1e6;
+    }
+
+    @Override
+    public double getTempsBaseMs() {
+        return nanosBase() / 1e6;
+    }
+
+    @Override
+    public double getTempsLectureMs() {
+        return somme(f -> f.lectureNanos) / 1e6;
+    }
+
+    @Override
+    public double getTempsAttenteMs() {
+        return somme(f -> f.attenteNanos) / 1e6;
+    }
+
+    @Override
+    public String[] getTables() {
+        return new TreeMap<>(tables).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public String getRapportJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append(format("  \"dureeMs\": %.1f,\n", (System.nanoTime() - debut) / 1e6));
+        sb.append(format("  \"enregistrements\": %d,\n  \"enregistrementsParSeconde\": %.1f,\n  \"octetsLus\": %d,\n",
+                getEnregistrements(), getEnregistrementsParSeconde(), getOctetsLus()));
+        sb.append(format("  \"tempsLectureMs\": %.1f,\n  \"tempsBaseMs\": %.1f,\n  \"tempsAttenteMs\": %.1f,\n",
+                getTempsLectureMs(), getTempsBaseMs(), getTempsAttenteMs()));
+        sb.append("  \"commits\": ").append(json(commits)).append(",\n");
+        sb.append("  \"fichiers\": [");
+        String separateur = "\n";
+        for (Map.Entry<String, FichierMetrics> e : fichiers()) {
+            FichierMetrics f = e.getValue();
+            double secondes = Math.max(1, f.murNanos) / 1e9;
+            sb.append(separateur).append(format("    {\"nom\": %s, \"enregistrements\": %d, \"octets\": %d,"
+                            + " \"murMs\": %.1f, \"lectureMs\": %.1f, \"baseMs\": %.1f, \"attenteMs\": %.1f,"
+                            + " \"enregistrementsParSeconde\": %.1f, \"octetsParSeconde\": %.0f}",
+                    chaine(e.getKey()), f.enregistrements, f.octets, f.murNanos / 1e6, f.lectureNanos / 1e6,
+                    f.baseNanos / 1e6, f.attenteNanos / 1e6, f.enregistrements / secondes, f.octets / secondes));
+            separateur = ",\n";
+        }
+        sb.append("\n  ],\n  \"tables\": [");
+        separateur = "\n";
+        for (TableMetrics t : new TreeMap<>(tables).values()) {
+            sb.append(separateur).append(format("    {\"nom\": %s, \"lignes\": %d, \"octets\": %d, \"executeBatch\": %s}",
+                    chaine(t.getNom()), t.getLignes(), t.getOctets(), json(t.executions)));
+            separateur = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static String json(LatencyHistogram h) {
+        return format("{\"nombre\": %d, \"totalMs\": %.3f, \"moyenneMs\": %.3f, \"p50Ms\": %.3f, \"p90Ms\": %.3f,"
+                        + " \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f}",
+                h.nombre(), h.sommeNanos() / 1e6, h.moyenneNanos() / 1e6, h.percentile(50) / 1e6,
+                h.percentile(90) / 1e6, h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.maxNanos() / 1e6);
+    }
+
+    private static String chaine(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    // JSON wants a decimal point whatever the default locale
+    private static String format(String format, Object... valeurs) {
+        return String.format(Locale.ROOT, format, valeurs);
+    }
+
+    public void ecrireJson(String fichier) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(fichier))) {
+            out.print(getRapportJson());
+        }
+    }
+
+    /** Human-readable summary, printed at the end of MainInserter. */
+    public String rapport() {
+        StringBuilder sb = new StringBuilder("Métriques du chargement:\n");
+        for (Map.Entry<String, FichierMetrics> e : fichiers()) {
+            FichierMetrics f = e.getValue();
+            double secondes = Math.max(1, f.murNanos) / 1e9;
+            sb.append(String.format("  %s: %d enregistrements, %d Ko en %.0f ms (%.0f enr/s, %.1f Mo/s);"
+                            + " lecture %.0f ms, base %.0f ms, attente %.0f ms%n",
+                    e.getKey(), f.enregistrements, f.octets / 1024, f.murNanos / 1e6, f.enregistrements / secondes,
+                    f.octets / secondes / (1 << 20), f.lectureNanos / 1e6, f.baseNanos / 1e6, f.attenteNanos / 1e6));
+        }
+        for (TableMetrics t : new TreeMap<>(tables).values()) {
+            if (t.getBatches() > 0) {
+                sb.append("  executeBatch ").append(t.getNom()).append(" (").append(t.getLignes()).append(" lignes): ")
+                        .append(t.executions.rapport()).append('\n');
+            }
+        }
+        sb.append("  commits: ").append(commits.rapport());
+        return sb.toString();
+    }
+}
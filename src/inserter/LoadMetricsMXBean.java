@@ -0,0 +1,29 @@
+package inserter;
+
+/** JMX view of the whole load (ObjectName inserter:type=LoadMetrics), see LoadMetrics. */
+public interface LoadMetricsMXBean {
+
+    long getLignes();
+
+    long getBatches();
+
+    long getOctetsLus();
+
+    long getEnregistrements();
+
+    double getEnregistrementsParSeconde();
+
+    long getCommits();
+
+    double getCommitP99Ms();
+
+    double getTempsBaseMs();
+
+    double getTempsLectureMs();
+
+    double getTempsAttenteMs();
+
+    String[] getTables();
+
+    String getRapportJson();
+}
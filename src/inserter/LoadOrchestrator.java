@@ -0,0 +1,249 @@
+package inserter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Loads the input files concurrently, each one as soon as the files it depends on are
+ * committed. standard() declares the dependencies of the schema: clients depend on
+ * nothing, films need their Personne rows (realisateur, acteurs), so clients and
+ * personnes start together and films start when personnes end.
+ *
+ * Every file runs on its own virtual thread with its own LectureBD, hence its own
+ * connection, statements, batchers and lookup-table caches (the files touch disjoint
+ * lookup tables). The instances share the checkpoint and the reject file, whose methods
+ * are synchronized. A file whose load fails is not followed by the files depending on it.
+ *
+ * The Oracle driver blocks inside synchronized methods, which pins the virtual thread to
+ * its carrier for the duration of a round trip; with one thread per file that costs
+ * nothing, the carriers outnumber the loads.
+ *
+ * A file declared with anticiper() does not wait to be parsed: its records are decoded
+ * into a StagingStore (off-heap, spilling to disk past --staging-memoire) as soon as the
+ * load starts, and only their writing waits for the dependencies. With --staging, films
+ * are parsed while personnes load and replayed once the Personne rows are committed.
+ *
+ * With --delta, suppressions() adds the deletions after the loads they depend on.
+ *
+ * At the end the report compares the wall time with the sum of the per-file times: their
+ * ratio is the overlap gained over MainInserter's sequential load.
+ */
+public class LoadOrchestrator {
+
+    @FunctionalInterface
+    public interface Lecture {
+        boolean lire(LectureBD lectureBD, String fichier);
+    }
+
+    /** Decodes fichier into staging, without any database access. */
+    @FunctionalInterface
+    public interface Stockage<T> {
+        void stocker(String fichier, StagingStore<T> staging) throws Exception;
+    }
+
+    /** Writes the records of fichier from staging. */
+    @FunctionalInterface
+    public interface Relecture<T> {
+        boolean lire(LectureBD lectureBD, String fichier, StagingStore<T> staging);
+    }
+
+    // Parsing ahead of the dependencies; null for a file read when its turn comes
+    private interface Anticipation extends AutoCloseable {
+        void preparer() throws Exception;
+
+        @Override
+        void close();
+    }
+
+    private record Tache(String nom, String fichier, Lecture lecture, List<String> dependances,
+                         Anticipation anticipation) {
+    }
+
+    private static final class Resultat {
+        volatile long debut, fin, debutAnticipation, finAnticipation;
+        volatile boolean reussi;
+    }
+
+    private final LoaderConfig config;
+    private final Map<String, Tache> taches = new LinkedHashMap<>();
+    private final Map<String, Resultat> resultats = new LinkedHashMap<>();
+
+    public LoadOrchestrator(LoaderConfig config) {
+        this.config = config;
+    }
+
+    /** The three files of the schema, from config.getDonnees(). */
+    public static LoadOrchestrator standard(LoaderConfig config) {
+        LoadOrchestrator orchestrateur = new LoadOrchestrator(config)
+                .ajouter("clients", config.fichierDonnees("clients"), LectureBD::lectureClients)
+                .ajouter("personnes", config.fichierDonnees("personnes"), LectureBD::lecturePersonnes);
+        if (!config.isStaging()) {
+            return orchestrateur.ajouter("films", config.fichierDonnees("films"), LectureBD::lectureFilms, "personnes");
+        }
+        Path dossier = Path.of(config.getStagingDossier());
+        Stockage<FilmData> stockage = config.isDecodeurXmlPull()
+                ? (fichier, staging) -> LectureXml.lireFilms(fichier, staging::ajouter)
+                : (fichier, staging) -> RecordDecoder.lireFilms(fichier, staging::ajouter);
+        return orchestrateur.anticiper("films", config.fichierDonnees("films"),
+                () -> StagingStore.films(config.getStagingMemoireOctets(), dossier), stockage,
+                LectureBD::lectureFilms, "personnes");
+    }
+
+    /**
+     * --delta: after the files of standard(), the deletions of the records they lost, each
+     * one only once its file is loaded; films first, their rows reference the personnes.
+     */
+    public LoadOrchestrator suppressions() {
+        return ajouter("-films", config.fichierDonnees("films"), LectureBD::suppressionFilms, "films")
+                .ajouter("-personnes", config.fichierDonnees("personnes"), LectureBD::suppressionPersonnes,
+                        "personnes", "-films")
+                .ajouter("-clients", config.fichierDonnees("clients"), LectureBD::suppressionClients, "clients");
+    }
+
+    /** Declares a file; its dependencies must have been declared before it. */
+    public LoadOrchestrator ajouter(String nom, String fichier, Lecture lecture, String... dependances) {
+        verifier(nom, dependances);
+        taches.put(nom, new Tache(nom, fichier, lecture, List.of(dependances), null));
+        return this;
+    }
+
+    /** Declares a file parsed into a StagingStore right away, written once its dependencies are. */
+    public <T> LoadOrchestrator anticiper(String nom, String fichier, Supplier<StagingStore<T>> fabrique,
+                                          Stockage<T> stockage, Relecture<T> relecture, String... dependances) {
+        verifier(nom, dependances);
+        StagingStore<T> staging = fabrique.get();
+        Anticipation anticipation = new Anticipation() {
+            @Override
+            public void preparer() throws Exception {
+                stockage.stocker(fichier, staging);
+                System.out.println(fichier + " en attente: " + staging.rapport());
+            }
+
+            @Override
+            public void close() {
+                staging.close();
+            }
+        };
+        taches.put(nom, new Tache(nom, fichier, (lectureBD, f) -> relecture.lire(lectureBD, f, staging),
+                List.of(dependances), anticipation));
+        return this;
+    }
+
+    private void verifier(String nom, String... dependances) {
+        for (String dependance : dependances) {
+            if (!taches.containsKey(dependance)) {
+                throw new IllegalArgumentException(nom + " dépend de " + dependance + ", qui n'est pas déclaré avant");
+            }
+        }
+    }
+    /** Runs every file and waits for all of them; returns true when each one was loaded. */
+    public boolean executer() {
+        Checkpoint checkpoint = config.getFichierCheckpoint() != null ? new Checkpoint(config.getFichierCheckpoint()) : null;
+        RejectFile rejets = config.getFichierRejets() != null
+                ? new RejectFile(config.getFichierRejets(), config.getRejetsMax()) : null;
+        long debut = System.nanoTime();
+        Map<String, CompletableFuture<Void>> futurs = new LinkedHashMap<>();
+        try (ExecutorService executeur = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("chargement-", 0).factory())) {
+            for (Tache tache : taches.values()) {
+                Resultat resultat = new Resultat();
+                resultats.put(tache.nom(), resultat);
+                List<CompletableFuture<?>> avant = new ArrayList<>();
+                for (String dependance : tache.dependances()) {
+                    avant.add(futurs.get(dependance));
+                }
+                if (tache.anticipation() != null) {
+                    avant.add(CompletableFuture.runAsync(() -> anticiper(tache, resultat), executeur));
+                }
+                futurs.put(tache.nom(), CompletableFuture.allOf(avant.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(() -> charger(tache, resultat, checkpoint, rejets), executeur));
+            }
+            for (Map.Entry<String, CompletableFuture<Void>> e : futurs.entrySet()) {
+                try {
+                    e.getValue().join();
+                } catch (CompletionException ex) {
+                    System.err.println("Chargement de " + e.getKey() + " arrêté: " + ex.getCause().getMessage());
+                }
+            }
+        } finally {
+            for (Tache tache : taches.values()) {
+                if (tache.anticipation() != null) {
+                    tache.anticipation().close();
+                }
+            }
+            if (rejets != null) {
+                rejets.close();
+            }
+        }
+        System.out.println(rapport(System.nanoTime() - debut, debut));
+        return resultats.values().stream().allMatch(r -> r.reussi);
+    }
+
+    private void anticiper(Tache tache, Resultat resultat) {
+        Thread.currentThread().setName("anticipation-" + tache.nom());
+        resultat.debutAnticipation = System.nanoTime();
+        try {
+            tache.anticipation().preparer();
+        } catch (Exception e) {
+            throw new IllegalStateException(tache.nom() + ": lecture anticipée impossible (" + e.getMessage() + ")", e);
+        } finally {
+            resultat.finAnticipation = System.nanoTime();
+        }
+    }
+
+    private void charger(Tache tache, Resultat resultat, Checkpoint checkpoint, RejectFile rejets) {
+        Thread.currentThread().setName("chargement-" + tache.nom());
+        resultat.debut = System.nanoTime();
+        LectureBD lectureBD = new LectureBD(config, checkpoint, rejets);
+        try {
+            resultat.reussi = tache.lecture().lire(lectureBD, tache.fichier());
+        } finally {
+            lectureBD.afficherStatistiquesBatch();
+            lectureBD.afficherStatistiquesDimensions();
+            lectureBD.closeAll();
+            resultat.fin = System.nanoTime();
+        }
+        if (!resultat.reussi) {
+            throw new IllegalStateException(tache.nom() + " a échoué");
+        }
+    }
+
+    private String rapport(long murNanos, long debut) {
+        StringBuilder sb = new StringBuilder("Chargement simultané des fichiers:\n");
+        long somme = 0;
+        List<String> echecs = new ArrayList<>();
+        for (Map.Entry<String, Resultat> e : resultats.entrySet()) {
+            Resultat r = e.getValue();
+            if (r.debutAnticipation != 0) {
+                sb.append(String.format("  %-10s lu d'avance de %6.0f ms à %6.0f ms%n", e.getKey(),
+                        (r.debutAnticipation - debut) / 1e6, (r.finAnticipation - debut) / 1e6));
+                somme += r.finAnticipation - r.debutAnticipation;
+            }
+            if (r.debut == 0) {
+                sb.append(String.format("  %-10s non lancé%n", e.getKey()));
+                continue;
+            }
+            long duree = r.fin - r.debut;
+            somme += duree;
+            sb.append(String.format("  %-10s de %6.0f ms à %6.0f ms (%.0f ms)%s%n", e.getKey(), (r.debut - debut) / 1e6,
+                    (r.fin - debut) / 1e6, duree / 1e6, r.reussi ? "" : ", échec"));
+            if (!r.reussi) {
+                echecs.add(e.getKey());
+            }
+        }
+        sb.append(String.format("  somme des fichiers %.0f ms, durée totale %.0f ms, recouvrement %.2fx",
+                somme / 1e6, murNanos / 1e6, (double) somme / Math.max(1, murNanos)));
+        if (!echecs.isEmpty()) {
+            sb.append("\n  en échec: ").append(String.join(", ", echecs));
+        }
+        return sb.toString();
+    }
+}
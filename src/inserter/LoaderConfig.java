@@ -0,0 +1,569 @@
+package inserter;
+
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+/**
+ * Options of a load run, shared by LectureBD, ParallelLoader and MainInserter.
+ * Defaults give a single-threaded load that:
+ *
+ *   - inserts Copie, Role and the junction tables through the array-bound FORALL path (--sans-bulk);
+ *   - commits every 1000 records (--commit-tous) and records its position in
+ *     chargement.checkpoint (--sans-checkpoint);
+ *   - bisects a failed chunk and writes the refused records to chargement.rejets, up to 1000
+ *     (--sans-rejets).
+ *
+ * Records are not fingerprinted for --delta unless --empreintes is given.
+ */
+public class LoaderConfig {
+
+    /** Fingerprint file of --delta when no --empreintes file is given. */
+    public static final String FICHIER_EMPREINTES_DEFAUT = "chargement.empreintes";
+
+    private String donnees = "src/data";
+    private int ecrivains = 0;
+    private boolean modeBulk = true;
+    private int seuilBulk = 10_000;
+    private boolean directPath = false;
+    private int clobEnLigneMax = 4000;
+    private int clobDiffereMin = 32767;
+    private long latenceCibleMs = 200;
+    private long budgetBatchOctets = 4L * 1024 * 1024;
+    private String traceBatch = null;
+    private String fichierMetriques = null;
+    private int tailleCacheDimensions = 0;
+    private int poolMin = 1;
+    private int poolMax = 8;
+    private int tailleLot = 100;
+    private boolean lotFixe = false;
+    private boolean decodeurXmlPull = false;
+    private int morceaux = 0;
+    private boolean fichiersSimultanes = false;
+    private boolean staging = false;
+    private long stagingMemoireOctets = 256L << 20;
+    private String stagingDossier = System.getProperty("java.io.tmpdir");
+    private String fichierCheckpoint = "chargement.checkpoint";
+    private int commitTous = 1000;
+    private String fichierRejets = "chargement.rejets";
+    private int rejetsMax = 1000;
+    private boolean reprise = false;
+    private String fichierEmpreintes = null;
+    private boolean delta = false;
+    private boolean contraintesDifferees = false;
+    private boolean validerContraintes = true;
+    private int paralleleIndex = 4;
+    private int connexionsDdl = 4;
+    private boolean locationPartitionnee = false;
+    private boolean indexClesEtrangeres = false;
+    private KeyGenerator.Strategie strategieCles = KeyGenerator.Strategie.UUID;
+    private int blocSequence = 1000;
+    private int noeudCles = -1;
+    private boolean clesNumeriques = false;
+    private DataSource dataSource = null;
+    private DeltaIndex indexEmpreintes = null;
+    private Consumer<String> invalidationFilm = null;
+    private Consumer<FilmRecord> indexationFilm = null;
+    private Consumer<PersonneRecord> indexationPersonne = null;
+
+    public static LoaderConfig fromArgs(String[] args) {
+        LoaderConfig config = new LoaderConfig();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                // --donnees repertoire : where the three *_latin1.xml files are (DatasetGenerator output)
+                case "--donnees" -> config.donnees = args[++i];
+                // --fichiers-simultanes : clients with personnes, then films, one virtual thread each (LoadOrchestrator)
+                case "--fichiers-simultanes" -> config.fichiersSimultanes = true;
+                // --staging : with --fichiers-simultanes, parse films off-heap while personnes load (StagingStore)
+                case "--staging" -> config.staging = config.fichiersSimultanes = true;
+                // --staging-memoire Mo : direct memory of the staging before it spills to mapped temp files
+                case "--staging-memoire" -> config.stagingMemoireOctets = Long.parseLong(args[++i]) << 20;
+                case "--staging-dossier" -> config.stagingDossier = args[++i];
+                // --ecrivains N : parse on the main thread, write with N connections (ParallelLoader)
+                case "--ecrivains" -> config.ecrivains = Integer.parseInt(args[++i]);
+                // --sans-bulk : per-row addBatch for the child tables, as before the bulk path
+                case "--sans-bulk" -> config.modeBulk = false;
+                case "--seuil-bulk" -> config.seuilBulk = Integer.parseInt(args[++i]);
+                // --direct-path : APPEND_VALUES hint on the bulk inserts (commits after each flush)
+                case "--direct-path" -> config.directPath = true;
+                // CLOB columns (ClobWriter): bound in-line up to --clob-en-ligne chars, streamed beyond,
+                // written by a separate UPDATE pass beyond --clob-differe chars (0 = never)
+                case "--clob-en-ligne" -> config.clobEnLigneMax = Integer.parseInt(args[++i]);
+                case "--clob-differe" -> config.clobDiffereMin = Integer.parseInt(args[++i]);
+                // Adaptive batching: target executeBatch() latency and max bytes pending per statement
+                case "--latence-cible" -> config.latenceCibleMs = Long.parseLong(args[++i]);
+                case "--budget-batch" -> config.budgetBatchOctets = Long.parseLong(args[++i]);
+                // --trace-batch fichier.csv : one line per executeBatch() (size, bytes, latency)
+                case "--trace-batch" -> config.traceBatch = args[++i];
+                // --metriques fichier.json : LoadMetrics report written at the end of the run
+                case "--metriques" -> config.fichierMetriques = args[++i];
+                // --taille-cache N : LRU bound of each lookup-table cache (0 = unbounded)
+                case "--taille-cache" -> config.tailleCacheDimensions = Integer.parseInt(args[++i]);
+                // Shared ConnectionPool bounds (max is raised to fit --ecrivains)
+                case "--pool-min" -> config.poolMin = Integer.parseInt(args[++i]);
+                case "--pool-max" -> config.poolMax = Integer.parseInt(args[++i]);
+                // --taille-lot N : starting rows per batch; --lot-fixe keeps it instead of adapting
+                case "--taille-lot" -> config.tailleLot = Integer.parseInt(args[++i]);
+                case "--lot-fixe" -> config.lotFixe = true;
+                // --xmlpull : parse with XmlPullParser (LectureXml) instead of RecordDecoder
+                case "--xmlpull" -> config.decodeurXmlPull = true;
+                // --morceaux N : memory-map each file and load N chunks in parallel (MappedChunkLoader)
+                case "--morceaux" -> config.morceaux = Integer.parseInt(args[++i]);
+                // Sequential loads commit every N records (0 = once per file), recording their position
+                // in the checkpoint file; --checkpoint-tous is the former name of --commit-tous
+                case "--commit-tous", "--checkpoint-tous" -> config.commitTous = Integer.parseInt(args[++i]);
+                case "--checkpoint" -> config.fichierCheckpoint = args[++i];
+                case "--sans-checkpoint" -> config.fichierCheckpoint = null;
+                // Records of a failed chunk refused by the database go to the reject file (bisection);
+                // beyond --rejets-max the file's load stops. --sans-rejets: a failure stops it at once
+                case "--rejets" -> config.fichierRejets = args[++i];
+                case "--rejets-max" -> config.rejetsMax = Integer.parseInt(args[++i]);
+                case "--sans-rejets" -> config.fichierRejets = null;
+                // --resume : keep the schema and continue each file from its checkpoint
+                case "--resume" -> config.reprise = true;
+                // --delta : keep the schema, apply only the records whose fingerprint changed since the last load
+                case "--delta" -> config.delta = true;
+                // --empreintes fichier : fingerprint the loaded records (DeltaIndex) for a later --delta;
+                // off by default, it hashes every record and keeps every id in memory
+                case "--empreintes" -> config.fichierEmpreintes = args[++i];
+                // --contraintes-differees : create bare tables, build keys and references after the load
+                case "--contraintes-differees" -> config.contraintesDifferees = true;
+                // --novalidate : leave the deferred foreign keys ENABLE NOVALIDATE (orphans are still reported)
+                case "--novalidate" -> config.validerContraintes = false;
+                case "--parallele-index" -> config.paralleleIndex = Integer.parseInt(args[++i]);
+                // --connexions-ddl N : tables of one dependency level are dropped/created over N connections
+                case "--connexions-ddl" -> config.connexionsDdl = Integer.parseInt(args[++i]);
+                // --location-partitionnee : Location partitioned by month with local indexes (Enterprise Edition)
+                case "--location-partitionnee" -> config.locationPartitionnee = true;
+                // --index-fk : index the foreign key columns (Copie.idFilm, Role.idActeur, ...)
+                case "--index-fk" -> config.indexClesEtrangeres = true;
+                // --cles uuid|deterministe|temporel|sequence : keys of Role, BandeAnnonce, Scenariste (KeyGenerator)
+                case "--cles" -> config.strategieCles = KeyGenerator.Strategie.de(args[++i]);
+                // --bloc-sequence N : keys per NEXTVAL of the seq_* sequences (their INCREMENT BY)
+                case "--bloc-sequence" -> config.blocSequence = Integer.parseInt(args[++i]);
+                // --noeud N : node of the temporel keys, 0..1023, distinct for loaders running side by side
+                case "--noeud" -> config.noeudCles = Integer.parseInt(args[++i]);
+                // --cles-numeriques : NUMBER(19) instead of VARCHAR2(36) for those keys (not with --cles uuid)
+                case "--cles-numeriques" -> config.clesNumeriques = true;
+                default -> System.err.println("Option inconnue ignorée: " + args[i]);
+            }
+        }
+        return config;
+    }
+
+    public String getDonnees() {
+        return donnees;
+    }
+
+    public LoaderConfig setDonnees(String donnees) {
+        this.donnees = donnees;
+        return this;
+    }
+
+    /** Path of clients_latin1.xml, personnes_latin1.xml or films_latin1.xml in the data directory. */
+    public String fichierDonnees(String type) {
+        return donnees + "/" + type + "_latin1.xml";
+    }
+
+    public int getEcrivains() {
+        return ecrivains;
+    }
+
+    public LoaderConfig setEcrivains(int ecrivains) {
+        this.ecrivains = ecrivains;
+        return this;
+    }
+
+    public boolean isModeBulk() {
+        return modeBulk;
+    }
+
+    public LoaderConfig setModeBulk(boolean modeBulk) {
+        this.modeBulk = modeBulk;
+        return this;
+    }
+
+    public int getSeuilBulk() {
+        return seuilBulk;
+    }
+
+    public LoaderConfig setSeuilBulk(int seuilBulk) {
+        this.seuilBulk = seuilBulk;
+        return this;
+    }
+
+    public int getClobEnLigneMax() {
+        return clobEnLigneMax;
+    }
+
+    public LoaderConfig setClobEnLigneMax(int clobEnLigneMax) {
+        this.clobEnLigneMax = clobEnLigneMax;
+        return this;
+    }
+
+    /** Texts longer than this go to the LOB pass; 0 streams them in the insert instead. */
+    public int getClobDiffereMin() {
+        return clobDiffereMin;
+    }
+
+    public LoaderConfig setClobDiffereMin(int clobDiffereMin) {
+        this.clobDiffereMin = clobDiffereMin;
+        return this;
+    }
+
+    public boolean isDirectPath() {
+        return directPath;
+    }
+
+    public LoaderConfig setDirectPath(boolean directPath) {
+        this.directPath = directPath;
+        return this;
+    }
+
+    public long getLatenceCibleMs() {
+        return latenceCibleMs;
+    }
+
+    public LoaderConfig setLatenceCibleMs(long latenceCibleMs) {
+        this.latenceCibleMs = latenceCibleMs;
+        return this;
+    }
+
+    public long getBudgetBatchOctets() {
+        return budgetBatchOctets;
+    }
+
+    public LoaderConfig setBudgetBatchOctets(long budgetBatchOctets) {
+        this.budgetBatchOctets = budgetBatchOctets;
+        return this;
+    }
+
+    public String getTraceBatch() {
+        return traceBatch;
+    }
+
+    public LoaderConfig setTraceBatch(String traceBatch) {
+        this.traceBatch = traceBatch;
+        return this;
+    }
+
+    public String getFichierMetriques() {
+        return fichierMetriques;
+    }
+
+    public LoaderConfig setFichierMetriques(String fichierMetriques) {
+        this.fichierMetriques = fichierMetriques;
+        return this;
+    }
+
+    public int getTailleCacheDimensions() {
+        return tailleCacheDimensions;
+    }
+
+    public LoaderConfig setTailleCacheDimensions(int tailleCacheDimensions) {
+        this.tailleCacheDimensions = tailleCacheDimensions;
+        return this;
+    }
+
+    public int getPoolMin() {
+        return poolMin;
+    }
+
+    public LoaderConfig setPoolMin(int poolMin) {
+        this.poolMin = poolMin;
+        return this;
+    }
+
+    public int getPoolMax() {
+        return poolMax;
+    }
+
+    public LoaderConfig setPoolMax(int poolMax) {
+        this.poolMax = poolMax;
+        return this;
+    }
+
+    public int getTailleLot() {
+        return tailleLot;
+    }
+
+    public LoaderConfig setTailleLot(int tailleLot) {
+        this.tailleLot = tailleLot;
+        return this;
+    }
+
+    public boolean isLotFixe() {
+        return lotFixe;
+    }
+
+    public LoaderConfig setLotFixe(boolean lotFixe) {
+        this.lotFixe = lotFixe;
+        return this;
+    }
+
+    public boolean isDecodeurXmlPull() {
+        return decodeurXmlPull;
+    }
+
+    public LoaderConfig setDecodeurXmlPull(boolean decodeurXmlPull) {
+        this.decodeurXmlPull = decodeurXmlPull;
+        return this;
+    }
+
+    public int getMorceaux() {
+        return morceaux;
+    }
+
+    public LoaderConfig setMorceaux(int morceaux) {
+        this.morceaux = morceaux;
+        return this;
+    }
+
+    public boolean isFichiersSimultanes() {
+        return fichiersSimultanes;
+    }
+
+    public LoaderConfig setFichiersSimultanes(boolean fichiersSimultanes) {
+        this.fichiersSimultanes = fichiersSimultanes;
+        return this;
+    }
+
+    public boolean isStaging() {
+        return staging;
+    }
+
+    public LoaderConfig setStaging(boolean staging) {
+        this.staging = staging;
+        return this;
+    }
+
+    public long getStagingMemoireOctets() {
+        return stagingMemoireOctets;
+    }
+
+    public LoaderConfig setStagingMemoireOctets(long stagingMemoireOctets) {
+        this.stagingMemoireOctets = stagingMemoireOctets;
+        return this;
+    }
+
+    public String getStagingDossier() {
+        return stagingDossier;
+    }
+
+    public LoaderConfig setStagingDossier(String stagingDossier) {
+        this.stagingDossier = stagingDossier;
+        return this;
+    }
+
+    /** Checkpoint file of the sequential loader; null disables checkpointing. */
+    public String getFichierCheckpoint() {
+        return fichierCheckpoint;
+    }
+
+    public LoaderConfig setFichierCheckpoint(String fichierCheckpoint) {
+        this.fichierCheckpoint = fichierCheckpoint;
+        return this;
+    }
+
+    /** Records per transaction of the sequential loader; 0 commits once at the end of each file. */
+    public int getCommitTous() {
+        return commitTous;
+    }
+
+    public LoaderConfig setCommitTous(int commitTous) {
+        this.commitTous = commitTous;
+        return this;
+    }
+
+    /** Where records refused by the database are quarantined; null stops the file on the first error. */
+    public String getFichierRejets() {
+        return fichierRejets;
+    }
+
+    public LoaderConfig setFichierRejets(String fichierRejets) {
+        this.fichierRejets = fichierRejets;
+        return this;
+    }
+
+    public int getRejetsMax() {
+        return rejetsMax;
+    }
+
+    public LoaderConfig setRejetsMax(int rejetsMax) {
+        this.rejetsMax = rejetsMax;
+        return this;
+    }
+
+    public boolean isReprise() {
+        return reprise;
+    }
+
+    public LoaderConfig setReprise(boolean reprise) {
+        this.reprise = reprise;
+        return this;
+    }
+
+    /** Fingerprint file of the loaded records, null when not fingerprinted; --delta defaults to FICHIER_EMPREINTES_DEFAUT. */
+    public String getFichierEmpreintes() {
+        return fichierEmpreintes == null && delta ? FICHIER_EMPREINTES_DEFAUT : fichierEmpreintes;
+    }
+
+    public LoaderConfig setFichierEmpreintes(String fichierEmpreintes) {
+        this.fichierEmpreintes = fichierEmpreintes;
+        return this;
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /** Inserts skip rows whose key exists: records replayed by --resume, or re-applied by a --delta rerun. */
+    public boolean isInsertionsIdempotentes() {
+        return reprise || delta;
+    }
+
+    public LoaderConfig setDelta(boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    public boolean isContraintesDifferees() {
+        return contraintesDifferees;
+    }
+
+    public LoaderConfig setContraintesDifferees(boolean contraintesDifferees) {
+        this.contraintesDifferees = contraintesDifferees;
+        return this;
+    }
+
+    public boolean isValiderContraintes() {
+        return validerContraintes;
+    }
+
+    public LoaderConfig setValiderContraintes(boolean validerContraintes) {
+        this.validerContraintes = validerContraintes;
+        return this;
+    }
+
+    public int getParalleleIndex() {
+        return paralleleIndex;
+    }
+
+    public LoaderConfig setParalleleIndex(int paralleleIndex) {
+        this.paralleleIndex = paralleleIndex;
+        return this;
+    }
+
+    public int getConnexionsDdl() {
+        return connexionsDdl;
+    }
+
+    public LoaderConfig setConnexionsDdl(int connexionsDdl) {
+        this.connexionsDdl = connexionsDdl;
+        return this;
+    }
+
+    public boolean isLocationPartitionnee() {
+        return locationPartitionnee;
+    }
+
+    public LoaderConfig setLocationPartitionnee(boolean locationPartitionnee) {
+        this.locationPartitionnee = locationPartitionnee;
+        return this;
+    }
+
+    public boolean isIndexClesEtrangeres() {
+        return indexClesEtrangeres;
+    }
+
+    public LoaderConfig setIndexClesEtrangeres(boolean indexClesEtrangeres) {
+        this.indexClesEtrangeres = indexClesEtrangeres;
+        return this;
+    }
+
+    public KeyGenerator.Strategie getStrategieCles() {
+        return strategieCles;
+    }
+
+    public LoaderConfig setStrategieCles(KeyGenerator.Strategie strategieCles) {
+        this.strategieCles = strategieCles;
+        return this;
+    }
+
+    public int getBlocSequence() {
+        return blocSequence;
+    }
+
+    public LoaderConfig setBlocSequence(int blocSequence) {
+        this.blocSequence = blocSequence;
+        return this;
+    }
+
+    /** Node of the temporel keys; -1 derives it from the pid, which two loaders may share. */
+    public int getNoeudCles() {
+        return noeudCles;
+    }
+
+    public LoaderConfig setNoeudCles(int noeudCles) {
+        this.noeudCles = noeudCles;
+        return this;
+    }
+
+    public boolean isClesNumeriques() {
+        return clesNumeriques;
+    }
+
+    public LoaderConfig setClesNumeriques(boolean clesNumeriques) {
+        this.clesNumeriques = clesNumeriques;
+        return this;
+    }
+
+    /** Where LectureBD borrows its connections; null means the shared ConnectionPool. */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public LoaderConfig setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        return this;
+    }
+
+    /** Index every LectureBD of the run fingerprints its records into; null when not tracked. */
+    public DeltaIndex getIndexEmpreintes() {
+        return indexEmpreintes;
+    }
+
+    public LoaderConfig setIndexEmpreintes(DeltaIndex indexEmpreintes) {
+        this.indexEmpreintes = indexEmpreintes;
+        return this;
+    }
+
+    /** Called with the id of every film written, once its rows are committed (e.g. CatalogService::invalider). */
+    public Consumer<String> getInvalidationFilm() {
+        return invalidationFilm;
+    }
+
+    public LoaderConfig setInvalidationFilm(Consumer<String> invalidationFilm) {
+        this.invalidationFilm = invalidationFilm;
+        return this;
+    }
+
+    /** Called with every film written, once committed (e.g. SearchIndex::indexerFilm). */
+    public Consumer<FilmRecord> getIndexationFilm() {
+        return indexationFilm;
+    }
+
+    public LoaderConfig setIndexationFilm(Consumer<FilmRecord> indexationFilm) {
+        this.indexationFilm = indexationFilm;
+        return this;
+    }
+
+    public Consumer<PersonneRecord> getIndexationPersonne() {
+        return indexationPersonne;
+    }
+
+    public LoaderConfig setIndexationPersonne(Consumer<PersonneRecord> indexationPersonne) {
+        this.indexationPersonne = indexationPersonne;
+        return this;
+    }
+}
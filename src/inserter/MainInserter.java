@@ -1,31 +1,219 @@
 package inserter;
 
-import creator.MainCreator;
 import creator.TableCreator;
+import database.ConnectionPool;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 
 public class MainInserter {
     public static void main(String[] args) throws SQLException {
         System.out.println("Ready to insert data!");
         long startTime = System.currentTimeMillis();
-        TableCreator tableCreator = new TableCreator();
-        tableCreator.resetAndCreateTables();
-        LectureBD lectureBD = new LectureBD();
+        LoaderConfig config = LoaderConfig.fromArgs(args);
+        // Visible in jconsole/VisualVM while the load runs
+        LoadMetrics.global().enregistrerJmx();
+        if (config.isClesNumeriques() && !config.getStrategieCles().numerique()) {
+            System.err.println("--cles-numeriques demande des clés numériques: --cles deterministe, temporel ou sequence.");
+            return;
+        }
+        if (config.getNoeudCles() >= KeyGenerator.Temporel.NOEUDS) {
+            System.err.println("--noeud doit être entre 0 et " + (KeyGenerator.Temporel.NOEUDS - 1) + ".");
+            return;
+        }
+        if (config.isInsertionsIdempotentes() && !config.getStrategieCles().reproductible()) {
+            // Replayed rows would get new keys instead of hitting the ones already inserted
+            System.err.println("--resume et --delta demandent des clés reproductibles: --cles uuid ou deterministe.");
+            return;
+        }
+        DeltaIndex index = ouvrirEmpreintes(config);
+        if (config.isDelta() && index == null) {
+            return;
+        }
+        if (config.isDelta()) {
+            // A delta is applied through the sequential reader (or the orchestrator), without checkpoint
+            config.setEcrivains(0).setMorceaux(0).setFichierCheckpoint(null);
+        }
+        config.setIndexEmpreintes(index);
+        if (config.isReprise() && (config.getEcrivains() > 0 || config.getMorceaux() > 0)) {
+            // Checkpoints track the sequential reader's position; parallel writers commit out of order
+            System.err.println("--resume utilise le chargement séquentiel, --ecrivains/--morceaux ignorés.");
+            config.setEcrivains(0).setMorceaux(0);
+        }
+        // ParallelLoader and MappedChunkLoader hold a coordinator plus one connection per writer,
+        // the schema reset one connection plus one per concurrent DDL
+        int connexions = Math.max(Math.max(config.getEcrivains(), config.getMorceaux()), config.getConnexionsDdl()) + 1;
+        if (config.isFichiersSimultanes()) {
+            // LoadOrchestrator: one connection per input file
+            connexions = Math.max(connexions, 3);
+        }
+        ConnectionPool.configurer(config.getPoolMin(), Math.max(config.getPoolMax(), connexions));
 
-        try {
-            lectureBD.lectureClients("src/data/clients_latin1.xml");
-            lectureBD.lecturePersonnes("src/data/personnes_latin1.xml");
-            lectureBD.lectureFilms("src/data/films_latin1.xml");
-        } catch (Exception  e) {
-            System.err.println("An error occurred: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            lectureBD.closeAll();
+        if (config.isDelta()) {
+            System.out.println("Delta: schéma conservé, empreintes de " + config.getFichierEmpreintes());
+        } else if (config.isReprise()) {
+            System.out.println("Reprise: schéma conservé, chargement à partir du checkpoint " + config.getFichierCheckpoint());
+            if (config.isContraintesDifferees()) {
+                // The idempotent inserts of a resumed load rely on the primary key indexes
+                TableCreator tableCreator = new TableCreator(null, true, true, config.getParalleleIndex());
+                try {
+                    tableCreator.construireClesPrimaires();
+                } finally {
+                    tableCreator.close();
+                }
+            }
+        } else {
+            TableCreator tableCreator = new TableCreator(null, true, config.isContraintesDifferees(), 1)
+                    .setConnexionsDdl(config.getConnexionsDdl())
+                    .setPartitionnementLocation(config.isLocationPartitionnee())
+                    .setIndexClesEtrangeres(config.isIndexClesEtrangeres())
+                    .setClesNumeriques(config.isClesNumeriques())
+                    .setSequencesCles(config.getStrategieCles() == KeyGenerator.Strategie.SEQUENCE
+                            ? config.getBlocSequence() : 0);
+            try {
+                tableCreator.resetAndCreateTables();
+            } finally {
+                tableCreator.close();
+            }
+            if (config.getFichierCheckpoint() != null) {
+                try {
+                    new Checkpoint(config.getFichierCheckpoint()).effacer();
+                } catch (IOException e) {
+                    System.err.println("Impossible d'effacer le checkpoint: " + e.getMessage());
+                }
+            }
+        }
+        if (config.getTraceBatch() != null) {
+            try {
+                AdaptiveBatcher.activerTrace(config.getTraceBatch());
+            } catch (IOException e) {
+                System.err.println("Impossible d'ouvrir la trace des batchs: " + e.getMessage());
+            }
+        }
+
+        if (config.getMorceaux() > 0) {
+            MappedChunkLoader loader = new MappedChunkLoader(config);
+            try {
+                loader.lectureClients(config.fichierDonnees("clients"));
+                loader.lecturePersonnes(config.fichierDonnees("personnes"));
+                loader.lectureFilms(config.fichierDonnees("films"));
+            } finally {
+                loader.afficherStatistiquesBatch();
+                loader.closeAll();
+            }
+        } else if (config.getEcrivains() > 0) {
+            ParallelLoader loader = new ParallelLoader(config);
+            try {
+                loader.lectureClients(config.fichierDonnees("clients"));
+                loader.lecturePersonnes(config.fichierDonnees("personnes"));
+                loader.lectureFilms(config.fichierDonnees("films"));
+            } finally {
+                loader.afficherStatistiquesBatch();
+                loader.closeAll();
+            }
+        } else if (config.isFichiersSimultanes()) {
+            LoadOrchestrator orchestrateur = LoadOrchestrator.standard(config);
+            if (config.isDelta()) {
+                orchestrateur.suppressions();
+            }
+            orchestrateur.executer();
+        } else {
+            LectureBD lectureBD = new LectureBD(config);
+
+            try {
+                boolean clients = lectureBD.lectureClients(config.fichierDonnees("clients"));
+                boolean personnes = lectureBD.lecturePersonnes(config.fichierDonnees("personnes"));
+                boolean films = lectureBD.lectureFilms(config.fichierDonnees("films"));
+                // Films first: their Role and Film rows reference the personnes to delete
+                if (films) {
+                    lectureBD.suppressionFilms(config.fichierDonnees("films"));
+                }
+                if (personnes && films) {
+                    lectureBD.suppressionPersonnes(config.fichierDonnees("personnes"));
+                }
+                if (clients) {
+                    lectureBD.suppressionClients(config.fichierDonnees("clients"));
+                }
+            } catch (Exception  e) {
+                System.err.println("An error occurred: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                lectureBD.afficherStatistiquesBatch();
+                lectureBD.afficherStatistiquesDimensions();
+                lectureBD.closeAll();
+            }
+        }
+        AdaptiveBatcher.fermerTrace();
+        if (index != null) {
+            System.out.println(index.rapport());
+            try {
+                index.enregistrer();
+            } catch (IOException e) {
+                System.err.println("Impossible d'écrire les empreintes: " + e.getMessage());
+            }
+        }
+        System.out.println(LoadMetrics.global().rapport());
+        if (config.getFichierMetriques() != null) {
+            try {
+                LoadMetrics.global().ecrireJson(config.getFichierMetriques());
+            } catch (IOException e) {
+                System.err.println("Impossible d'écrire les métriques: " + e.getMessage());
+            }
+        }
+
+        if (config.isContraintesDifferees()) {
+            TableCreator tableCreator = new TableCreator(null, true, true, config.getParalleleIndex())
+                    .setPartitionnementLocation(config.isLocationPartitionnee())
+                    .setIndexClesEtrangeres(config.isIndexClesEtrangeres());
+            try {
+                tableCreator.construireContraintes(config.isValiderContraintes());
+            } catch (SQLException e) {
+                System.err.println("Construction des contraintes interrompue: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                tableCreator.close();
+            }
         }
+        ConnectionPool pool = ConnectionPool.getInstance();
+        System.out.println(pool.rapport());
+        pool.close();
 
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
         System.out.println("Total execution time: " + duration + " milliseconds");
     }
+
+    // The index of the previous load for --delta (null when there is none), a new one for a full
+    // load with --empreintes, null otherwise
+    private static DeltaIndex ouvrirEmpreintes(LoaderConfig config) {
+        String fichier = config.getFichierEmpreintes();
+        try {
+            if (fichier == null) {
+                // Not fingerprinted: the default index of an earlier load would no longer match the schema
+                Files.deleteIfExists(Paths.get(LoaderConfig.FICHIER_EMPREINTES_DEFAUT));
+                return null;
+            }
+            if (config.isDelta()) {
+                DeltaIndex index = DeltaIndex.ouvrir(fichier);
+                if (!index.estCharge()) {
+                    System.err.println("Pas d'empreintes dans " + fichier + ": faire d'abord un chargement complet avec --empreintes.");
+                    return null;
+                }
+                return index;
+            }
+            // The stale index must not outlive the schema reset, whatever becomes of this load
+            Files.deleteIfExists(Paths.get(fichier));
+            if (config.isReprise()) {
+                // Records skipped by the checkpoint would be missing from it
+                System.out.println("Reprise: pas d'empreintes, le prochain --delta demandera un chargement complet.");
+                return null;
+            }
+            return DeltaIndex.nouveau(fichier);
+        } catch (IOException e) {
+            System.err.println("Empreintes illisibles (" + fichier + "): " + e.getMessage());
+            return null;
+        }
+    }
 }
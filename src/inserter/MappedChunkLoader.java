@@ -0,0 +1,329 @@
+package inserter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loader for large input files: the file is memory-mapped, cut into N chunks at record
+ * boundaries (the byte offset of a "<film ", "<client " or "<personne " start tag) and
+ * every chunk is decoded by its own {@link RecordDecoder} on a fork-join pool, feeding
+ * its own LectureBD writer. The root element and prolog end up in the first and last
+ * chunks, where the decoder ignores them like any unknown tag.
+ *
+ * Latin1 maps one byte to one char, so a chunk decodes exactly as the same bytes would
+ * inside the whole file. Lookup tables are merged by one coordinator, as in
+ * {@link ParallelLoader}: every tailleLot records a chunk hands its keys to the
+ * coordinator, which merges and commits them before the writer inserts the records.
+ *
+ * Assumes no record start tag appears inside a comment or CDATA section.
+ */
+public class MappedChunkLoader {
+
+    // A single mapping is limited to Integer.MAX_VALUE bytes
+    private static final long MAPPAGE_MAX = Integer.MAX_VALUE;
+    private static final int FENETRE_RECHERCHE = 1 << 20;
+    private static final int TAILLE_LOT = 100;
+
+    private final int nombreMorceaux;
+    private final DimensionCaches caches;
+    private final LectureBD coordinateur;
+    private final List<LectureBD> ecrivains = new ArrayList<>();
+
+    public MappedChunkLoader(LoaderConfig config) {
+        nombreMorceaux = config.getMorceaux();
+        if (nombreMorceaux < 1) {
+            throw new IllegalArgumentException("Le nombre de morceaux doit être positif");
+        }
+        caches = new DimensionCaches(config.getTailleCacheDimensions());
+        coordinateur = new LectureBD(config, caches, true);
+        coordinateur.prechargerDimensions();
+        for (int i = 0; i < nombreMorceaux; i++) {
+            ecrivains.add(new LectureBD(config, caches, false));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Decodage<T> {
+        int lire(RecordDecoder decodeur, RecordSink<T> sink) throws Exception;
+    }
+
+    public void lectureClients(String nomFichier) {
+        charger(nomFichier, "clients", "<client ", RecordDecoder::lireClients,
+                coordinateur::ajouterDimensionsClient, LectureBD::ecrireClient, LectureBD::terminerClients);
+    }
+
+    public void lecturePersonnes(String nomFichier) {
+        charger(nomFichier, "personnes", "<personne ", RecordDecoder::lirePersonnes,
+                p -> { }, LectureBD::ecrirePersonne, LectureBD::terminerPersonnes);
+    }
+
+    public void lectureFilms(String nomFichier) {
+        // Records wait in a lot until their lookup keys are committed, so the reused FilmBuffer is frozen
+        Decodage<FilmRecord> decodage = (decodeur, sink) -> decodeur.lireFilms(f -> sink.accept(f.figer()));
+        charger(nomFichier, "films", "<film ", decodage,
+                coordinateur::ajouterDimensionsFilm, LectureBD::ecrireFilm, LectureBD::terminerFilms);
+    }
+
+    private long getAllersRetours() {
+        long total = coordinateur.getAllersRetours();
+        for (LectureBD ecrivain : ecrivains) {
+            total += ecrivain.getAllersRetours();
+        }
+        return total;
+    }
+
+    public void afficherStatistiquesBatch() {
+        for (int i = 0; i < ecrivains.size(); i++) {
+            System.out.println("Morceau " + i + ":");
+            ecrivains.get(i).afficherStatistiquesBatch();
+        }
+        System.out.println("Coordinateur:");
+        coordinateur.afficherStatistiquesBatch();
+        caches.afficherStatistiques();
+    }
+
+    public void closeAll() {
+        coordinateur.closeAll();
+        for (LectureBD ecrivain : ecrivains) {
+            ecrivain.closeAll();
+        }
+    }
+
+    private <T> void charger(String nomFichier, String marqueur, String balise, Decodage<T> decodage,
+                             ParallelLoader.Dimensions<T> dimensions, ParallelLoader.Ecriture<T> ecriture,
+                             ParallelLoader.Fin fin) {
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        long allersRetours = getAllersRetours();
+        long debut = System.nanoTime();
+        int lus = 0;
+        long[] bornes = new long[0];
+
+        ForkJoinPool pool = new ForkJoinPool(nombreMorceaux);
+        try (FileChannel canal = FileChannel.open(Paths.get(nomFichier), StandardOpenOption.READ)) {
+            verifierProlog(canal);
+            bornes = decouper(canal, balise.getBytes(StandardCharsets.ISO_8859_1), nombreMorceaux);
+
+            // A file over 2 GB has more chunks than writers: each writer takes every n-th chunk in turn
+            List<Future<Integer>> taches = new ArrayList<>();
+            long[] b = bornes;
+            for (int w = 0; w < nombreMorceaux && w + 1 < bornes.length; w++) {
+                LectureBD ecrivain = ecrivains.get(w);
+                int premier = w;
+                taches.add(pool.submit(() -> chargerMorceaux(nomFichier, canal, b, premier, ecrivain, decodage,
+                        dimensions, ecriture, fin, erreur)));
+            }
+            for (Future<Integer> tache : taches) {
+                try {
+                    lus += tache.get();
+                } catch (ExecutionException e) {
+                    erreur.compareAndSet(null, (Exception) e.getCause());
+                }
+            }
+        } catch (Exception e) {
+            erreur.compareAndSet(null, e);
+        } finally {
+            pool.shutdown();
+        }
+        // The chunks have added their reading, database and waiting times
+        LoadMetrics.global().fichier(nomFichier, lus, bornes.length > 0 ? bornes[bornes.length - 1] : 0,
+                System.nanoTime() - debut, 0, 0, 0);
+
+        Exception e = erreur.get();
+        if (e != null) {
+            System.out.println("Exception while loading " + nomFichier + ": " + e.getMessage());
+            e.printStackTrace();
+        } else {
+            System.out.println("Total " + marqueur + " inserted: " + lus + " (chunks: " + (bornes.length - 1)
+                    + ", round trips: " + (getAllersRetours() - allersRetours) + ")");
+        }
+    }
+
+    private <T> int chargerMorceaux(String nomFichier, FileChannel canal, long[] bornes, int premier,
+                                    LectureBD ecrivain, Decodage<T> decodage,
+                                    ParallelLoader.Dimensions<T> dimensions, ParallelLoader.Ecriture<T> ecriture,
+                                    ParallelLoader.Fin fin, AtomicReference<Exception> erreur) throws Exception {
+        List<T> lot = new ArrayList<>(TAILLE_LOT);
+        long debut = System.nanoTime();
+        long baseAvant = LoadMetrics.nanosBaseThread();
+        long[] attente = {0};
+        int lus = 0;
+        try {
+            for (int i = premier; i + 1 < bornes.length; i += nombreMorceaux) {
+                MappedByteBuffer morceau = canal.map(FileChannel.MapMode.READ_ONLY, bornes[i], bornes[i + 1] - bornes[i]);
+                try (RecordDecoder decodeur = new RecordDecoder(new ByteBufferInputStream(morceau))) {
+                    lus += decodage.lire(decodeur, record -> {
+                        lot.add(record);
+                        if (lot.size() == TAILLE_LOT) {
+                            ecrireLot(lot, ecrivain, dimensions, ecriture, erreur, attente);
+                        }
+                    });
+                }
+            }
+            ecrireLot(lot, ecrivain, dimensions, ecriture, erreur, attente);
+            fin.terminer(ecrivain);
+            // Decoding, the coordinator's merges and the writes all ran on this thread
+            long base = LoadMetrics.nanosBaseThread() - baseAvant;
+            LoadMetrics.global().fichier(nomFichier, 0, 0, 0, System.nanoTime() - debut - base - attente[0],
+                    base, attente[0]);
+            return lus;
+        } catch (Exception e) {
+            erreur.compareAndSet(null, e);
+            throw e;
+        }
+    }
+
+    private <T> void ecrireLot(List<T> lot, LectureBD ecrivain, ParallelLoader.Dimensions<T> dimensions,
+                               ParallelLoader.Ecriture<T> ecriture, AtomicReference<Exception> erreur,
+                               long[] attente) throws SQLException {
+        if (erreur.get() != null) {
+            throw new IllegalStateException("Chargement interrompu par un autre morceau", erreur.get());
+        }
+        if (lot.isEmpty()) {
+            return;
+        }
+        // One coordinator connection for every chunk: its merges and commits are serialized
+        long debut = System.nanoTime();
+        synchronized (coordinateur) {
+            attente[0] += System.nanoTime() - debut;
+            for (T record : lot) {
+                dimensions.ajouter(record);
+            }
+            coordinateur.validerDimensions();
+        }
+        for (T record : lot) {
+            ecriture.ecrire(ecrivain, record);
+        }
+        lot.clear();
+    }
+
+    // Chunks other than the first never see the XML declaration, so it is checked once up front
+    private static void verifierProlog(FileChannel canal) throws IOException {
+        ByteBuffer debut = ByteBuffer.allocate((int) Math.min(256, canal.size()));
+        canal.read(debut, 0);
+        String prolog = new String(debut.array(), 0, debut.position(), StandardCharsets.ISO_8859_1);
+        if (prolog.startsWith("<?")) {
+            int fin = prolog.indexOf("?>");
+            RecordDecoder.verifierEncodage(prolog.substring(2, fin < 0 ? prolog.length() : fin));
+        }
+    }
+
+    /**
+     * Offsets [0, b1, ..., size] splitting the file into n chunks, each b starting on a record
+     * start tag. A chunk never exceeds a single mapping: large files get more chunks than n.
+     */
+    public static long[] decouper(FileChannel canal, byte[] balise, int n) throws IOException {
+        return decouper(canal, balise, n, MAPPAGE_MAX);
+    }
+
+    static long[] decouper(FileChannel canal, byte[] balise, int n, long tailleMax) throws IOException {
+        long taille = canal.size();
+        List<Long> bornes = new ArrayList<>();
+        bornes.add(0L);
+        long debut = 0;
+        int i = 1;
+        while (taille - debut > tailleMax || i < n) {
+            // Next nominal cut past debut, pulled back to fit one mapping
+            while (i < n && taille * i / n <= debut) i++;
+            long cible = Math.min(i < n ? taille * i / n : taille, debut + tailleMax);
+            long borne = cible < taille ? chercher(canal, balise, cible) : -1;
+            if (borne < 0 || borne - debut > tailleMax) {
+                if (taille - debut <= tailleMax) {
+                    break;
+                }
+                // The tag after the cut is too far: cut at the last tag that still fits
+                borne = dernier(canal, balise, debut + 1, debut + tailleMax);
+                if (borne < 0) {
+                    throw new IOException("Enregistrement de plus de " + tailleMax + " octets, découpage impossible");
+                }
+            }
+            bornes.add(borne);
+            debut = borne;
+        }
+        bornes.add(taille);
+
+        long[] resultat = new long[bornes.size()];
+        for (int k = 0; k < resultat.length; k++) {
+            resultat[k] = bornes.get(k);
+        }
+        return resultat;
+    }
+
+    // Offset of the first occurrence of balise at or after depuis, or -1
+    private static long chercher(FileChannel canal, byte[] balise, long depuis) throws IOException {
+        long taille = canal.size();
+        for (long pos = depuis; pos + balise.length <= taille; pos += FENETRE_RECHERCHE - balise.length) {
+            int longueur = (int) Math.min(FENETRE_RECHERCHE, taille - pos);
+            MappedByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, pos, longueur);
+            for (int i = 0; i + balise.length <= longueur; i++) {
+                int j = 0;
+                while (j < balise.length && fenetre.get(i + j) == balise[j]) j++;
+                if (j == balise.length) {
+                    return pos + i;
+                }
+            }
+            if (pos + longueur >= taille) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    // Offset of the last occurrence of balise starting in [depuis, jusqua], or -1
+    private static long dernier(FileChannel canal, byte[] balise, long depuis, long jusqua) throws IOException {
+        long fin = Math.min(jusqua + balise.length, canal.size());
+        while (fin - depuis >= balise.length) {
+            long pos = Math.max(depuis, fin - FENETRE_RECHERCHE);
+            int longueur = (int) (fin - pos);
+            MappedByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, pos, longueur);
+            for (int i = longueur - balise.length; i >= 0; i--) {
+                int j = 0;
+                while (j < balise.length && fenetre.get(i + j) == balise[j]) j++;
+                if (j == balise.length) {
+                    return pos + i;
+                }
+            }
+            if (pos == depuis) {
+                break;
+            }
+            fin = pos + balise.length - 1;
+        }
+        return -1;
+    }
+
+    /** InputStream over a mapped chunk, so RecordDecoder copies it in 64 KB blocks. */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package inserter;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Producer/consumer variant of the loader. The calling thread parses the XML file and
+ * pushes chunks of records into a bounded queue; N writer threads, each owning its own
+ * LectureBD (connection + prepared statements), drain it.
+ *
+ * Lookup tables are merged by a separate coordinator connection and committed before a
+ * chunk is queued, so writers only ever insert rows whose parents are already visible.
+ * The DimensionCaches are shared: writers read the idScenariste the coordinator assigned.
+ * A full queue blocks the parser (backpressure); an empty chunk is the poison pill.
+ */
+public class ParallelLoader {
+
+    private static final List<Object> FIN = Collections.emptyList();
+    private static final long OFFER_TIMEOUT_MS = 200;
+
+    private final int nombreEcrivains;
+    private final int capaciteFile;
+    private final int tailleLot;
+    private final boolean decodeurXmlPull;
+
+    private final DimensionCaches caches;
+    private final LectureBD coordinateur;
+    private final List<LectureBD> ecrivains = new ArrayList<>();
+
+    public ParallelLoader(LoaderConfig config) {
+        this(config, 4 * config.getEcrivains(), 100);
+    }
+
+    public ParallelLoader(LoaderConfig config, int capaciteFile, int tailleLot) {
+        int nombreEcrivains = config.getEcrivains();
+        if (nombreEcrivains < 1 || capaciteFile < 1 || tailleLot < 1) {
+            throw new IllegalArgumentException("nombreEcrivains, capaciteFile et tailleLot doivent être positifs");
+        }
+        this.nombreEcrivains = nombreEcrivains;
+        this.capaciteFile = capaciteFile;
+        this.tailleLot = tailleLot;
+        this.decodeurXmlPull = config.isDecodeurXmlPull();
+
+        caches = new DimensionCaches(config.getTailleCacheDimensions());
+        coordinateur = new LectureBD(config, caches, true);
+        coordinateur.prechargerDimensions();
+        for (int i = 0; i < nombreEcrivains; i++) {
+            ecrivains.add(new LectureBD(config, caches, false));
+        }
+    }
+
+    public void lectureClients(String nomFichier) {
+        charger(nomFichier, "clients", decodeurXmlPull ? LectureXml::lireClients : RecordDecoder::lireClients,
+                coordinateur::ajouterDimensionsClient, LectureBD::ecrireClient, LectureBD::terminerClients);
+    }
+
+    public void lecturePersonnes(String nomFichier) {
+        charger(nomFichier, "personnes", decodeurXmlPull ? LectureXml::lirePersonnes : RecordDecoder::lirePersonnes,
+                p -> { }, LectureBD::ecrirePersonne, LectureBD::terminerPersonnes);
+    }
+
+    public void lectureFilms(String nomFichier) {
+        // Records cross threads here, so the decoder's reused FilmBuffer is frozen into a FilmRecord
+        Lecteur<FilmRecord> lecteur = decodeurXmlPull ? LectureXml::lireFilms
+                : (fichier, sink) -> RecordDecoder.lireFilms(fichier, f -> sink.accept(f.figer()));
+        charger(nomFichier, "films", lecteur,
+                coordinateur::ajouterDimensionsFilm, LectureBD::ecrireFilm, LectureBD::terminerFilms);
+    }
+
+    // Read after the writer threads have been joined
+    private long getAllersRetours() {
+        long total = coordinateur.getAllersRetours();
+        for (LectureBD ecrivain : ecrivains) {
+            total += ecrivain.getAllersRetours();
+        }
+        return total;
+    }
+
+    public void afficherStatistiquesBatch() {
+        for (int i = 0; i < ecrivains.size(); i++) {
+            System.out.println("Ecrivain " + i + ":");
+            ecrivains.get(i).afficherStatistiquesBatch();
+        }
+        System.out.println("Coordinateur:");
+        coordinateur.afficherStatistiquesBatch();
+        caches.afficherStatistiques();
+    }
+
+    public void closeAll() {
+        coordinateur.closeAll();
+        for (LectureBD ecrivain : ecrivains) {
+            ecrivain.closeAll();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lecteur<T> {
+        int lire(String nomFichier, RecordSink<T> sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Dimensions<T> {
+        void ajouter(T record) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Ecriture<T> {
+        void ecrire(LectureBD ecrivain, T record) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Fin {
+        void terminer(LectureBD ecrivain) throws SQLException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void charger(String nomFichier, String nom, Lecteur<T> lecteur, Dimensions<T> dimensions,
+                             Ecriture<T> ecriture, Fin fin) {
+        BlockingQueue<List<T>> file = new ArrayBlockingQueue<>(capaciteFile);
+        List<T> pill = (List<T>) FIN;
+        AtomicReference<Exception> erreur = new AtomicReference<>();
+        AtomicInteger ecrits = new AtomicInteger();
+        long allersRetours = getAllersRetours();
+        long debut = System.nanoTime();
+        long baseAvant = LoadMetrics.global().nanosBase();
+        long baseLecteurAvant = LoadMetrics.nanosBaseThread();
+        long[] attente = {0};
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nombreEcrivains; i++) {
+            LectureBD ecrivain = ecrivains.get(i);
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        List<T> lot = file.take();
+                        if (lot == pill || erreur.get() != null) {
+                            break;
+                        }
+                        for (T record : lot) {
+                            ecriture.ecrire(ecrivain, record);
+                        }
+                        ecrits.addAndGet(lot.size());
+                    }
+                    if (erreur.get() == null) {
+                        fin.terminer(ecrivain);
+                    }
+                } catch (Exception e) {
+                    erreur.compareAndSet(null, e);
+                }
+            }, "ecrivain-" + nom + "-" + i);
+            threads.add(t);
+            t.start();
+        }
+
+        int lus = 0;
+        try {
+            // The lot being filled, replaced by the sink once deposited
+            List<List<T>> courant = new ArrayList<>(1);
+            courant.add(new ArrayList<>(tailleLot));
+            lus = lecteur.lire(nomFichier, record -> {
+                dimensions.ajouter(record);
+                courant.get(0).add(record);
+                if (courant.get(0).size() == tailleLot) {
+                    coordinateur.validerDimensions();
+                    deposer(file, courant.get(0), erreur, attente);
+                    courant.set(0, new ArrayList<>(tailleLot));
+                }
+            });
+            if (!courant.get(0).isEmpty()) {
+                coordinateur.validerDimensions();
+                deposer(file, courant.get(0), erreur, attente);
+            }
+        } catch (Exception e) {
+            erreur.compareAndSet(null, e);
+        }
+        // The coordinator's merges run on this thread too: reading is what remains
+        long lecture = System.nanoTime() - debut - attente[0] - (LoadMetrics.nanosBaseThread() - baseLecteurAvant);
+
+        // One pill per writer; a writer that already failed no longer drains, so give up once an error is set
+        try {
+            for (int i = 0; i < nombreEcrivains; i++) {
+                deposer(file, pill, erreur, attente);
+            }
+        } catch (Exception e) {
+            erreur.compareAndSet(null, e);
+            file.clear();
+            for (int i = 0; i < nombreEcrivains; i++) {
+                file.offer(pill);
+            }
+        }
+
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                erreur.compareAndSet(null, e);
+            }
+        }
+
+        LoadMetrics.global().fichier(nomFichier, ecrits.get(), new File(nomFichier).length(), System.nanoTime() - debut,
+                lecture, LoadMetrics.global().nanosBase() - baseAvant, attente[0]);
+
+        Exception e = erreur.get();
+        if (e != null) {
+            System.out.println("Exception while loading " + nomFichier + ": " + e.getMessage());
+            e.printStackTrace();
+        } else {
+            System.out.println("Total " + nom + " inserted: " + ecrits.get() + " (parsed: " + lus
+                    + ", writers: " + nombreEcrivains
+                    + ", round trips: " + (getAllersRetours() - allersRetours) + ")");
+        }
+    }
+
+    // attente[0] accumulates the time the reader is blocked by a full queue
+    private static <T> void deposer(BlockingQueue<List<T>> file, List<T> lot, AtomicReference<Exception> erreur,
+                                    long[] attente) throws InterruptedException {
+        long debut = System.nanoTime();
+        try {
+            while (!file.offer(lot, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (erreur.get() != null) {
+                    throw new IllegalStateException("Chargement interrompu par un écrivain", erreur.get());
+                }
+            }
+        } finally {
+            attente[0] += System.nanoTime() - debut;
+        }
+    }
+}
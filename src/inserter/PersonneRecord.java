@@ -0,0 +1,8 @@
+package inserter;
+
+/**
+ * Immutable snapshot of one <personne> element, as emitted by the XML reader.
+ */
+public record PersonneRecord(String id, String nom, String anniversaire, String lieu,
+                             String photo, String bio) {
+}
@@ -0,0 +1,617 @@
+package inserter;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Allocation-light replacement for the XmlPullParser loops of {@link LectureXml}, for the
+ * loader's own latin1 files. Bytes are decoded straight into a reused char buffer (one
+ * latin1 byte is one char), tag names are matched against a table of known byte
+ * sequences and resolved to int codes, integers are parsed from the buffer, and
+ * whitespace between elements never becomes a String. Films are delivered through a
+ * reused {@link FilmBuffer}; clients and personnes have no nested lists and are still
+ * emitted as records.
+ *
+ * Supported: elements, attributes, the five predefined entities and character
+ * references, CDATA, comments and processing instructions. A prolog declaring an
+ * encoding other than latin1/ASCII is rejected (use --xmlpull for those files).
+ */
+public final class RecordDecoder implements Closeable {
+
+    // Events
+    static final int FIN_DOCUMENT = 0;
+    static final int DEBUT = 1;
+    static final int FIN = 2;
+    static final int TEXTE = 3;
+
+    // Tag codes, index into NOMS
+    static final int AUTRE = 0;
+    static final int FILM = 1, TITRE = 2, ANNEE = 3, PAYS = 4, LANGUE = 5, DUREE = 6, RESUME = 7,
+            GENRE = 8, REALISATEUR = 9, SCENARISTE = 10, ROLE = 11, ACTEUR = 12, PERSONNAGE = 13,
+            POSTER = 14, ANNONCE = 15;
+    static final int PERSONNE = 16, NOM = 17, ANNIVERSAIRE = 18, LIEU = 19, PHOTO = 20, BIO = 21;
+    static final int CLIENT = 22, NOM_FAMILLE = 23, PRENOM = 24, COURRIEL = 25, TEL = 26, ADRESSE = 27,
+            VILLE = 28, PROVINCE = 29, CODE_POSTAL = 30, CARTE = 31, NO = 32, EXP_MOIS = 33,
+            EXP_ANNEE = 34, MOT_DE_PASSE = 35, FORFAIT = 36;
+
+    private static final String[] NOMS = {null,
+            "film", "titre", "annee", "pays", "langue", "duree", "resume", "genre", "realisateur",
+            "scenariste", "role", "acteur", "personnage", "poster", "annonce",
+            "personne", "nom", "anniversaire", "lieu", "photo", "bio",
+            "client", "nom-famille", "prenom", "courriel", "tel", "adresse", "ville", "province",
+            "code-postal", "carte", "no", "exp-mois", "exp-annee", "mot-de-passe", "forfait"};
+
+    // Known names bucketed by length, so a tag is compared against a handful of candidates
+    private static final int[][] CODES_PAR_LONGUEUR;
+    private static final byte[][] OCTETS;
+
+    static {
+        OCTETS = new byte[NOMS.length][];
+        int max = 0;
+        for (int code = 1; code < NOMS.length; code++) {
+            OCTETS[code] = NOMS[code].getBytes(StandardCharsets.ISO_8859_1);
+            max = Math.max(max, OCTETS[code].length);
+        }
+        CODES_PAR_LONGUEUR = new int[max + 1][];
+        for (int longueur = 0; longueur <= max; longueur++) {
+            int n = 0;
+            for (int code = 1; code < NOMS.length; code++) {
+                if (OCTETS[code].length == longueur) n++;
+            }
+            CODES_PAR_LONGUEUR[longueur] = new int[n];
+            n = 0;
+            for (int code = 1; code < NOMS.length; code++) {
+                if (OCTETS[code].length == longueur) CODES_PAR_LONGUEUR[longueur][n++] = code;
+            }
+        }
+    }
+
+    private static final int TAILLE_PARTAGEES = 1024;
+
+    private final InputStream in;
+    private final byte[] octets = new byte[64 * 1024];
+    private int pos = 0;
+    private int limite = 0;
+    private int remis = -1;
+    // Offset in the file of octets[0]
+    private long debutTampon;
+
+    // Text of the current TEXTE event
+    private char[] texte = new char[512];
+    private int longueur = 0;
+
+    // Name of the current tag
+    private final byte[] nom = new byte[128];
+    private int longueurNom = 0;
+    private int tag = AUTRE;
+    private int attributId = -1;
+
+    // Byte following a '<' already consumed while scanning text, or -1
+    private int balise = -1;
+    // The last DEBUT was an empty element (<x/>): its FIN is due next
+    private boolean elementVide = false;
+
+    // Deduplicated values that repeat across records (genres, countries, ...)
+    private final String[] partagees = new String[TAILLE_PARTAGEES];
+
+    public RecordDecoder(InputStream in) {
+        this(in, 0);
+    }
+
+    // debut: offset in the file of the first byte of in, as reported by position()
+    private RecordDecoder(InputStream in, long debut) {
+        this.in = in;
+        this.debutTampon = debut;
+    }
+
+    /** Decoder over nomFichier starting at byte offset depuis, which must lie between two records. */
+    public static RecordDecoder ouvrir(String nomFichier, long depuis) throws IOException {
+        FileInputStream fis = new FileInputStream(nomFichier);
+        fis.getChannel().position(depuis);
+        return new RecordDecoder(fis, depuis);
+    }
+
+    /** Offset in the file of the next byte to decode; inside a sink, just past the record's end tag. */
+    public long position() {
+        return debutTampon + pos - (remis >= 0 ? 1 : 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Record readers, same contract as the LectureXml methods of the same name
+
+    public static int lireFilms(String nomFichier, RecordSink<FilmBuffer> sink) throws Exception {
+        try (RecordDecoder d = new RecordDecoder(new FileInputStream(nomFichier))) {
+            return d.lireFilms(sink);
+        }
+    }
+
+    public static int lireClients(String nomFichier, RecordSink<ClientRecord> sink) throws Exception {
+        try (RecordDecoder d = new RecordDecoder(new FileInputStream(nomFichier))) {
+            return d.lireClients(sink);
+        }
+    }
+
+    public static int lirePersonnes(String nomFichier, RecordSink<PersonneRecord> sink) throws Exception {
+        try (RecordDecoder d = new RecordDecoder(new FileInputStream(nomFichier))) {
+            return d.lirePersonnes(sink);
+        }
+    }
+
+    public int lireFilms(RecordSink<FilmBuffer> sink) throws Exception {
+        FilmBuffer f = new FilmBuffer();
+        int filmCount = 0, id = -1, champ = AUTRE, roleId = -1;
+        String roleNom = null, rolePersonnage = null;
+
+        for (int evenement = suivant(); evenement != FIN_DOCUMENT; evenement = suivant()) {
+            switch (evenement) {
+                case DEBUT -> {
+                    champ = tag;
+                    if (tag == FILM && attributId >= 0) {
+                        id = attributId;
+                        f.id = Integer.toString(id);
+                    } else if (tag == REALISATEUR && attributId >= 0) {
+                        f.realisateurId = attributId;
+                    } else if (tag == ACTEUR && attributId >= 0) {
+                        roleId = attributId;
+                    }
+                }
+                case FIN -> {
+                    champ = AUTRE;
+                    if (tag == FILM && id >= 0) {
+                        sink.accept(f);
+                        filmCount++;
+                        f.vider();
+                        id = -1;
+                    } else if (tag == ROLE && roleId >= 0) {
+                        f.ajouterRole(roleId, roleNom, rolePersonnage);
+                        roleId = -1;
+                        roleNom = null;
+                        rolePersonnage = null;
+                    }
+                }
+                case TEXTE -> {
+                    if (id < 0) break;
+                    switch (champ) {
+                        case TITRE -> f.titre = chaine();
+                        case ANNEE -> f.annee = entier();
+                        case PAYS -> f.pays.add(chainePartagee());
+                        case LANGUE -> f.langue = chainePartagee();
+                        case DUREE -> f.duree = entier();
+                        case RESUME -> f.resume = chaine();
+                        case GENRE -> f.genres.add(chainePartagee());
+                        case REALISATEUR -> f.realisateurNom = chaine(); // Name, ID is from attribute
+                        case SCENARISTE -> f.scenaristes.add(chainePartagee());
+                        case ACTEUR -> roleNom = chaine(); // Name, ID is from attribute
+                        case PERSONNAGE -> rolePersonnage = chaine();
+                        case POSTER -> f.poster = chaine();
+                        case ANNONCE -> f.annonces.add(chaine());
+                        default -> { }
+                    }
+                }
+                default -> { }
+            }
+        }
+        return filmCount;
+    }
+
+    public int lireClients(RecordSink<ClientRecord> sink) throws Exception {
+        int count = 0, id = -1, champ = AUTRE, expMois = -1, expAnnee = -1;
+        String nomFamille = null, prenom = null, courriel = null, tel = null, anniv = null, adresse = null,
+                ville = null, province = null, codePostal = null, carte = null, noCarte = null,
+                motDePasse = null, forfait = null;
+
+        for (int evenement = suivant(); evenement != FIN_DOCUMENT; evenement = suivant()) {
+            if (evenement == DEBUT) {
+                champ = tag;
+                if (tag == CLIENT && attributId >= 0) id = attributId;
+            } else if (evenement == FIN) {
+                champ = AUTRE;
+                if (tag == CLIENT && id >= 0) {
+                    sink.accept(new ClientRecord(Integer.toString(id), nomFamille, prenom, courriel, tel,
+                            anniv, adresse, ville, province, codePostal, carte, noCarte,
+                            expMois, expAnnee, motDePasse, forfait));
+                    count++;
+
+                    id = -1;
+                    nomFamille = prenom = courriel = tel = anniv = adresse = ville = province = null;
+                    codePostal = carte = noCarte = motDePasse = forfait = null;
+                    expMois = -1;
+                    expAnnee = -1;
+                }
+            } else if (evenement == TEXTE && id >= 0) {
+                // Client values are trimmed, as in LectureXml
+                switch (champ) {
+                    case NOM_FAMILLE -> nomFamille = chaineSansBlancs(false);
+                    case PRENOM -> prenom = chaineSansBlancs(false);
+                    case COURRIEL -> courriel = chaineSansBlancs(false);
+                    case TEL -> tel = chaineSansBlancs(false);
+                    case ANNIVERSAIRE -> anniv = chaineSansBlancs(false);
+                    case ADRESSE -> adresse = chaineSansBlancs(false);
+                    case VILLE -> ville = chaineSansBlancs(true);
+                    case PROVINCE -> province = chaineSansBlancs(true);
+                    case CODE_POSTAL -> codePostal = chaineSansBlancs(false);
+                    case CARTE -> carte = chaineSansBlancs(true);
+                    case NO -> noCarte = chaineSansBlancs(false);
+                    case EXP_MOIS -> expMois = estBlanc() ? expMois : entier();
+                    case EXP_ANNEE -> expAnnee = estBlanc() ? expAnnee : entier();
+                    case MOT_DE_PASSE -> motDePasse = chaineSansBlancs(false);
+                    case FORFAIT -> forfait = chaineSansBlancs(true);
+                    default -> { }
+                }
+            }
+        }
+        return count;
+    }
+
+    public int lirePersonnes(RecordSink<PersonneRecord> sink) throws Exception {
+        int count = 0, id = -1, champ = AUTRE;
+        String nom = null, anniversaire = null, lieu = null, photo = null, bio = null;
+
+        for (int evenement = suivant(); evenement != FIN_DOCUMENT; evenement = suivant()) {
+            if (evenement == DEBUT) {
+                champ = tag;
+                if (tag == PERSONNE && attributId >= 0) id = attributId;
+            } else if (evenement == FIN) {
+                champ = AUTRE;
+                if (tag == PERSONNE && id >= 0) {
+                    sink.accept(new PersonneRecord(Integer.toString(id), nom, anniversaire, lieu, photo, bio));
+                    count++;
+
+                    id = -1;
+                    nom = anniversaire = lieu = photo = bio = null;
+                }
+            } else if (evenement == TEXTE && id >= 0) {
+                switch (champ) {
+                    case NOM -> nom = chaine();
+                    case ANNIVERSAIRE -> anniversaire = chaine();
+                    case LIEU -> lieu = chainePartagee();
+                    case PHOTO -> photo = chaine();
+                    case BIO -> bio = chaine();
+                    default -> { }
+                }
+            }
+        }
+        return count;
+    }
+
+    // Event source
+
+    /**
+     * Advances to the next event. After DEBUT and FIN, {@link #tag} holds the tag code
+     * (AUTRE for unknown names) and, after DEBUT, {@link #attributId} the id="..." value
+     * or -1. After TEXTE the text is in the char buffer until the next call.
+     */
+    int suivant() throws IOException {
+        if (elementVide) {
+            elementVide = false;
+            return FIN;
+        }
+        int c = balise;
+        balise = -1;
+        if (c < 0) {
+            longueur = 0;
+            c = lireTexte();
+            if (c < 0) {
+                return FIN_DOCUMENT;
+            }
+            if (longueur > 0) {
+                balise = c;
+                return TEXTE;
+            }
+        }
+        if (c == '/') {
+            lireNom(lire());
+            tag = identifier();
+            sauterJusqua('>');
+            return FIN;
+        }
+        lireNom(c);
+        tag = identifier();
+        attributId = -1;
+        lireAttributs();
+        return DEBUT;
+    }
+
+    // Accumulates text up to the next element markup; returns the byte after its '<', or -1 at the end
+    private int lireTexte() throws IOException {
+        while (true) {
+            int c = lire();
+            if (c < 0) {
+                return -1;
+            }
+            if (c == '<') {
+                int suivant = lire();
+                if (suivant == '!') {
+                    lireDeclaration();
+                } else if (suivant == '?') {
+                    lireInstruction();
+                } else {
+                    return suivant;
+                }
+            } else if (c == '&') {
+                lireEntite();
+            } else if (c == '\r') {
+                // Line ends are normalized to \n as XML requires
+                ajouter('\n');
+                int suivant = lire();
+                if (suivant != '\n') remettre(suivant);
+            } else {
+                ajouter((char) c);
+            }
+        }
+    }
+
+    private void lireNom(int c) throws IOException {
+        longueurNom = 0;
+        while (c > ' ' && c != '>' && c != '/' && c != '=') {
+            if (longueurNom < nom.length) nom[longueurNom] = (byte) c;
+            longueurNom++;
+            c = lire();
+        }
+        remettre(c);
+    }
+
+    private int identifier() {
+        if (longueurNom >= CODES_PAR_LONGUEUR.length) {
+            return AUTRE;
+        }
+        for (int code : CODES_PAR_LONGUEUR[longueurNom]) {
+            byte[] candidat = OCTETS[code];
+            int i = 0;
+            while (i < longueurNom && candidat[i] == nom[i]) i++;
+            if (i == longueurNom) {
+                return code;
+            }
+        }
+        return AUTRE;
+    }
+
+    private void lireAttributs() throws IOException {
+        while (true) {
+            int c = lire();
+            if (c < 0 || c == '>') {
+                return;
+            }
+            if (c == '/') {
+                sauterJusqua('>');
+                elementVide = true;
+                return;
+            }
+            if (c <= ' ') {
+                continue;
+            }
+            lireNom(c);
+            boolean estId = longueurNom == 2 && nom[0] == 'i' && nom[1] == 'd';
+            int guillemet;
+            do {
+                guillemet = lire();
+            } while (guillemet != '"' && guillemet != '\'' && guillemet >= 0);
+            int valeur = 0;
+            boolean numerique = true;
+            for (c = lire(); c != guillemet && c >= 0; c = lire()) {
+                if (c >= '0' && c <= '9' && valeur < Integer.MAX_VALUE / 10) {
+                    valeur = valeur * 10 + (c - '0');
+                } else {
+                    numerique = false;
+                }
+            }
+            if (estId) {
+                if (!numerique) {
+                    throw new NumberFormatException("Attribut id non numérique");
+                }
+                attributId = valeur;
+            }
+        }
+    }
+
+    // After "<!": comment, CDATA section (appended to the text) or DOCTYPE
+    private void lireDeclaration() throws IOException {
+        int c = lire();
+        if (c == '-') {
+            lire();
+            int tirets = 0;
+            for (c = lire(); c >= 0 && !(c == '>' && tirets >= 2); c = lire()) {
+                tirets = c == '-' ? tirets + 1 : 0;
+            }
+        } else if (c == '[') {
+            for (int i = 0; i < 6; i++) lire(); // CDATA[
+            int crochets = 0;
+            for (c = lire(); c >= 0; c = lire()) {
+                if (c == '>' && crochets >= 2) {
+                    longueur -= 2;
+                    return;
+                }
+                crochets = c == ']' ? crochets + 1 : 0;
+                ajouter((char) c);
+            }
+        } else {
+            sauterJusqua('>');
+        }
+    }
+
+    // After "<?": the XML declaration is checked for its encoding, other instructions are skipped
+    private void lireInstruction() throws IOException {
+        StringBuilder contenu = new StringBuilder();
+        int precedent = 0;
+        for (int c = lire(); c >= 0 && !(c == '>' && precedent == '?'); c = lire()) {
+            contenu.append((char) c);
+            precedent = c;
+        }
+        verifierEncodage(contenu.toString());
+    }
+
+    /** Rejects an XML declaration whose encoding is not a single-byte one this decoder reads. */
+    static void verifierEncodage(String instruction) throws IOException {
+        int i = instruction.indexOf("encoding");
+        if (instruction.startsWith("xml") && i >= 0) {
+            int debut = i + "encoding".length();
+            while (debut < instruction.length() && "= \"'".indexOf(instruction.charAt(debut)) >= 0) debut++;
+            int fin = debut;
+            while (fin < instruction.length() && "\"' ?".indexOf(instruction.charAt(fin)) < 0) fin++;
+            String encodage = instruction.substring(debut, fin).toUpperCase();
+            if (!encodage.equals("ISO-8859-1") && !encodage.equals("LATIN1") && !encodage.equals("ISO8859-1")
+                    && !encodage.equals("US-ASCII")) {
+                throw new IOException("Encodage non supporté par RecordDecoder: " + encodage + " (utiliser --xmlpull)");
+            }
+        }
+    }
+
+    private void lireEntite() throws IOException {
+        int debut = longueur;
+        int c = lire();
+        while (c >= 0 && c != ';' && longueur - debut < 10) {
+            ajouter((char) c);
+            c = lire();
+        }
+        if (c != ';') remettre(c);
+        int n = longueur - debut;
+        char resolu = 0;
+        if (n > 1 && texte[debut] == '#') {
+            int base = texte[debut + 1] == 'x' ? 16 : 10;
+            int valeur = 0;
+            for (int i = debut + (base == 16 ? 2 : 1); i < longueur; i++) {
+                valeur = valeur * base + Character.digit(texte[i], base);
+            }
+            resolu = (char) valeur;
+        } else if (egal(debut, "amp")) {
+            resolu = '&';
+        } else if (egal(debut, "lt")) {
+            resolu = '<';
+        } else if (egal(debut, "gt")) {
+            resolu = '>';
+        } else if (egal(debut, "quot")) {
+            resolu = '"';
+        } else if (egal(debut, "apos")) {
+            resolu = '\'';
+        }
+        if (resolu != 0) {
+            longueur = debut;
+            ajouter(resolu);
+        } else {
+            // Unknown entity: kept verbatim
+            String brut = new String(texte, debut, n);
+            longueur = debut;
+            ajouter('&');
+            for (int i = 0; i < n; i++) ajouter(brut.charAt(i));
+            if (c == ';') ajouter(';');
+        }
+    }
+
+    private boolean egal(int debut, String entite) {
+        if (longueur - debut != entite.length()) return false;
+        for (int i = 0; i < entite.length(); i++) {
+            if (texte[debut + i] != entite.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private void sauterJusqua(int fin) throws IOException {
+        int c;
+        do {
+            c = lire();
+        } while (c != fin && c >= 0);
+    }
+
+    private int lire() throws IOException {
+        if (remis >= 0) {
+            int c = remis;
+            remis = -1;
+            return c;
+        }
+        if (pos == limite) {
+            debutTampon += limite;
+            limite = 0;
+            pos = 0;
+            int n = in.read(octets, 0, octets.length);
+            if (n <= 0) {
+                return -1;
+            }
+            limite = n;
+        }
+        return octets[pos++] & 0xFF;
+    }
+
+    // One byte of look-back, for the scanner that reads one byte too far
+    private void remettre(int c) {
+        remis = c;
+    }
+
+    private void ajouter(char c) {
+        if (longueur == texte.length) {
+            char[] plusGrand = new char[2 * texte.length];
+            System.arraycopy(texte, 0, plusGrand, 0, longueur);
+            texte = plusGrand;
+        }
+        texte[longueur++] = c;
+    }
+
+    // Accessors on the current TEXTE event
+
+    String chaine() {
+        return new String(texte, 0, longueur);
+    }
+
+    boolean estBlanc() {
+        for (int i = 0; i < longueur; i++) {
+            if (texte[i] > ' ') return false;
+        }
+        return true;
+    }
+
+    /** Trimmed text; repeated values come from a per-decoder table when partagee is true. */
+    String chaineSansBlancs(boolean partagee) {
+        int debut = 0, fin = longueur;
+        while (debut < fin && texte[debut] <= ' ') debut++;
+        while (fin > debut && texte[fin - 1] <= ' ') fin--;
+        return partagee ? partagee(debut, fin) : new String(texte, debut, fin - debut);
+    }
+
+    String chainePartagee() {
+        return partagee(0, longueur);
+    }
+
+    private String partagee(int debut, int fin) {
+        int h = 0;
+        for (int i = debut; i < fin; i++) h = 31 * h + texte[i];
+        int index = (h ^ (h >>> 16)) & (TAILLE_PARTAGEES - 1);
+        String existante = partagees[index];
+        if (existante != null && existante.length() == fin - debut) {
+            int i = 0;
+            while (i < fin - debut && existante.charAt(i) == texte[debut + i]) i++;
+            if (i == fin - debut) {
+                return existante;
+            }
+        }
+        String s = new String(texte, debut, fin - debut);
+        partagees[index] = s;
+        return s;
+    }
+
+    /** Integer value of the text, surrounding blanks allowed; NumberFormatException otherwise. */
+    int entier() {
+        int debut = 0, fin = longueur;
+        while (debut < fin && texte[debut] <= ' ') debut++;
+        while (fin > debut && texte[fin - 1] <= ' ') fin--;
+        boolean negatif = debut < fin && texte[debut] == '-';
+        if (negatif) debut++;
+        if (debut == fin) {
+            throw new NumberFormatException("Entier attendu: \"" + chaine() + "\"");
+        }
+        long valeur = 0;
+        for (int i = debut; i < fin; i++) {
+            char c = texte[i];
+            if (c < '0' || c > '9' || valeur > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Entier attendu: \"" + chaine() + "\"");
+            }
+            valeur = valeur * 10 + (c - '0');
+        }
+        return (int) (negatif ? -valeur : valeur);
+    }
+}
@@ -0,0 +1,9 @@
+package inserter;
+
+/**
+ * Receives the records produced by {@link LectureXml}, one at a time and in file order.
+ */
+@FunctionalInterface
+public interface RecordSink<T> {
+    void accept(T record) throws Exception;
+}
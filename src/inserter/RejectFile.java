@@ -0,0 +1,68 @@
+package inserter;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Quarantine of the records the database refused. When a chunk of LectureBD fails, the
+ * chunk is rolled back and replayed by halves until the failing records are isolated;
+ * each one lands here as one tab-separated line: input file, record id, Oracle error
+ * code, SQLState, first line of the message, then the record itself (its toString(),
+ * which ClientRecord redacts).
+ *
+ * The file is opened on the first reject, in append mode, so a clean load leaves nothing
+ * behind and a resumed one adds to the previous rejects. Past rejetsMax rejects of one
+ * input file rejeter() throws: so many bad records point to a mapping or schema problem,
+ * not to bad data. The other files sharing the reject file keep their own count.
+ */
+public class RejectFile implements AutoCloseable {
+
+    private final String chemin;
+    private final int rejetsMax;
+    private PrintWriter out;
+    // Rejects per input file
+    private final Map<String, Integer> rejets = new HashMap<>();
+    private int ecrits = 0;
+
+    public RejectFile(String chemin, int rejetsMax) {
+        this.chemin = chemin;
+        this.rejetsMax = rejetsMax;
+    }
+
+    public synchronized void rejeter(String fichier, String id, Object record, SQLException e) throws SQLException {
+        if (rejets.merge(fichier, 1, Integer::sum) > rejetsMax) {
+            throw new SQLException("Plus de " + rejetsMax + " enregistrements rejetés dans " + fichier
+                    + " (voir " + chemin + ")", e);
+        }
+        try {
+            if (out == null) {
+                out = new PrintWriter(new FileWriter(chemin, true));
+            }
+        } catch (IOException io) {
+            throw new SQLException("Impossible d'ouvrir le fichier de rejets " + chemin, io);
+        }
+        String message = String.valueOf(e.getMessage()).lines().findFirst().orElse("");
+        out.println(String.join("\t", fichier, String.valueOf(id), Integer.toString(e.getErrorCode()),
+                String.valueOf(e.getSQLState()), message, String.valueOf(record).replace('\t', ' ').replace('\n', ' ')));
+        out.flush();
+        ecrits++;
+        System.err.println("Rejeté: " + id + " de " + fichier + " (" + message + ")");
+    }
+
+    /** Records written to the reject file, all input files together. */
+    public synchronized int getRejets() {
+        return ecrits;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package inserter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed records parked outside the Java heap until they can be written: LoadOrchestrator
+ * parses the films while the personnes they reference are still loading, then replays
+ * them into LectureBD. A million films kept as FilmRecord would be tens of millions of
+ * small objects for the collector to trace; here each is a few hundred bytes in a
+ * direct buffer the collector never looks into.
+ *
+ * Records are appended in a compact binary form: a length prefix, then the record as
+ * written by its Codec (ints for the numeric fields, varint-prefixed latin1 or UTF-8
+ * strings, varint-counted lists). They fill segments of TAILLE_SEGMENT bytes, direct
+ * buffers until budgetMemoire is reached, then pages of a temporary file mapped in
+ * memory: past the budget the OS writes them back to disk instead of the JVM growing.
+ * The file is deleted by close().
+ *
+ * Not thread-safe: one thread appends, then one thread replays with relire(), in order,
+ * as many times as needed. Direct and mapped memory is released once the store is
+ * closed and collected.
+ */
+public final class StagingStore<T> implements AutoCloseable {
+
+    static final int TAILLE_SEGMENT = 8 << 20;
+
+    /** Binary form of one record type; lire() may return the same object every time. */
+    public interface Codec<T> {
+        void ecrire(T record, Sortie out);
+
+        T lire(Entree in);
+    }
+
+    private final Codec<T> codec;
+    private final long budgetMemoire;
+    private final Path dossier;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer courant;
+    private final Sortie sortie = new Sortie();
+    private long memoire = 0;
+    private Path fichier;
+    private FileChannel canal;
+    private long octetsFichier = 0;
+    private int segmentsDeverses = 0;
+    private long nombre = 0;
+    private long octets = 0;
+
+    public StagingStore(Codec<T> codec, long budgetMemoire, Path dossier) {
+        this.codec = codec;
+        this.budgetMemoire = budgetMemoire;
+        this.dossier = dossier;
+    }
+
+    public static StagingStore<FilmData> films(long budgetMemoire, Path dossier) {
+        return new StagingStore<>(new CodecFilm(), budgetMemoire, dossier);
+    }
+
+    // Also the canonical form DeltaIndex fingerprints; lire() is never called on this one
+    static Codec<FilmData> codecFilm() {
+        return new CodecFilm();
+    }
+
+    public void ajouter(T record) throws IOException {
+        sortie.vider();
+        codec.ecrire(record, sortie);
+        ByteBuffer encode = sortie.tampon.flip();
+        int taille = Integer.BYTES + encode.remaining();
+        if (courant == null || courant.remaining() < taille) {
+            courant = nouveauSegment(Math.max(TAILLE_SEGMENT, taille));
+            segments.add(courant);
+        }
+        courant.putInt(encode.remaining()).put(encode);
+        nombre++;
+        octets += taille;
+    }
+
+    private ByteBuffer nouveauSegment(int taille) throws IOException {
+        if (memoire + taille <= budgetMemoire) {
+            memoire += taille;
+            return ByteBuffer.allocateDirect(taille);
+        }
+        if (canal == null) {
+            fichier = Files.createTempFile(dossier, "staging-", ".bin");
+            fichier.toFile().deleteOnExit();
+            canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        ByteBuffer segment = canal.map(FileChannel.MapMode.READ_WRITE, octetsFichier, taille);
+        octetsFichier += taille;
+        segmentsDeverses++;
+        return segment;
+    }
+
+    /** Hands every record to sink, in the order they were added. */
+    public void relire(RecordSink<? super T> sink) throws Exception {
+        Entree entree = new Entree();
+        for (ByteBuffer segment : segments) {
+            ByteBuffer lecture = segment.duplicate().flip();
+            while (lecture.hasRemaining()) {
+                int taille = lecture.getInt();
+                int fin = lecture.position() + taille;
+                entree.tampon = lecture;
+                sink.accept(codec.lire(entree));
+                lecture.position(fin);
+            }
+        }
+    }
+
+    public long nombre() {
+        return nombre;
+    }
+
+    /** Bytes taken by the records, length prefixes included. */
+    public long octets() {
+        return octets;
+    }
+
+    /** Bytes of segments mapped on the temporary file rather than allocated in memory. */
+    public long octetsDeverses() {
+        return octetsFichier;
+    }
+
+    public String rapport() {
+        return String.format("%d enregistrements, %.1f Mo (%d segments en mémoire, %.1f Mo déversés sur disque)",
+                nombre, octets / (double) (1 << 20), segments.size() - segmentsDeverses,
+                octetsFichier / (double) (1 << 20));
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+        courant = null;
+        if (canal != null) {
+            try {
+                canal.close();
+                Files.deleteIfExists(fichier);
+            } catch (IOException e) {
+                System.err.println("Impossible de supprimer " + fichier + ": " + e.getMessage());
+            }
+            canal = null;
+        }
+    }
+
+    /** Encoding side of a Codec: a heap buffer reused for every record, grown as needed. */
+    public static final class Sortie {
+        private ByteBuffer tampon = ByteBuffer.allocate(4096);
+
+        void vider() {
+            tampon.clear();
+        }
+
+        // 64-bit FNV-1a of what was written since vider(), with a final avalanche (MurmurHash3 fmix64)
+        long empreinte() {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < tampon.position(); i++) {
+                h = (h ^ (tampon.get(i) & 0xFF)) * 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+
+        private void reserver(int n) {
+            if (tampon.remaining() < n) {
+                ByteBuffer plus = ByteBuffer.allocate(Math.max(2 * tampon.capacity(), tampon.position() + n));
+                tampon = plus.put(tampon.flip());
+            }
+        }
+
+        public void entier(int valeur) {
+            reserver(Integer.BYTES);
+            tampon.putInt(valeur);
+        }
+
+        public void varint(int valeur) {
+            reserver(5);
+            while ((valeur & ~0x7F) != 0) {
+                tampon.put((byte) ((valeur & 0x7F) | 0x80));
+                valeur >>>= 7;
+            }
+            tampon.put((byte) valeur);
+        }
+
+        // Header: 0 for null, else ((length << 1) | latin1) + 1; latin1 strings take a byte per char
+        public void chaine(String s) {
+            if (s == null) {
+                varint(0);
+                return;
+            }
+            boolean latin1 = true;
+            for (int i = 0; i < s.length() && latin1; i++) {
+                latin1 = s.charAt(i) < 256;
+            }
+            if (latin1) {
+                varint((s.length() << 1 | 1) + 1);
+                reserver(s.length());
+                for (int i = 0; i < s.length(); i++) {
+                    tampon.put((byte) s.charAt(i));
+                }
+            } else {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                varint((utf8.length << 1) + 1);
+                reserver(utf8.length);
+                tampon.put(utf8);
+            }
+        }
+
+        public void liste(List<String> valeurs) {
+            varint(valeurs.size());
+            for (String valeur : valeurs) {
+                chaine(valeur);
+            }
+        }
+    }
+
+    /** Decoding side of a Codec, positioned on the current record. */
+    public static final class Entree {
+        private ByteBuffer tampon;
+        private byte[] octets = new byte[256];
+
+        public int entier() {
+            return tampon.getInt();
+        }
+
+        public int varint() {
+            int valeur = 0;
+            for (int decalage = 0; ; decalage += 7) {
+                byte b = tampon.get();
+                valeur |= (b & 0x7F) << decalage;
+                if (b >= 0) {
+                    return valeur;
+                }
+            }
+        }
+
+        public String chaine() {
+            int entete = varint();
+            if (entete == 0) {
+                return null;
+            }
+            int longueur = (entete - 1) >>> 1;
+            if (octets.length < longueur) {
+                octets = new byte[Math.max(longueur, 2 * octets.length)];
+            }
+            tampon.get(octets, 0, longueur);
+            return new String(octets, 0, longueur,
+                    ((entete - 1) & 1) != 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        }
+
+        void liste(List<String> valeurs) {
+            int n = varint();
+            for (int i = 0; i < n; i++) {
+                valeurs.add(chaine());
+            }
+        }
+
+        public List<String> liste() {
+            List<String> valeurs = new ArrayList<>();
+            liste(valeurs);
+            return valeurs;
+        }
+    }
+
+    // Replays into one FilmBuffer, as RecordDecoder does: LectureBD copies what it keeps
+    private static final class CodecFilm implements Codec<FilmData> {
+        private final FilmBuffer film = new FilmBuffer();
+
+        @Override
+        public void ecrire(FilmData f, Sortie out) {
+            out.chaine(f.id());
+            out.chaine(f.titre());
+            out.entier(f.annee());
+            out.liste(f.pays());
+            out.chaine(f.langue());
+            out.entier(f.duree());
+            out.chaine(f.resume());
+            out.liste(f.genres());
+            out.chaine(f.realisateurNom());
+            out.entier(f.realisateurId());
+            out.liste(f.scenaristes());
+            out.varint(f.nombreRoles());
+            for (int i = 0; i < f.nombreRoles(); i++) {
+                out.entier(f.roleId(i));
+                out.chaine(f.roleNom(i));
+                out.chaine(f.rolePersonnage(i));
+            }
+            out.chaine(f.poster());
+            out.liste(f.annonces());
+        }
+
+        @Override
+        public FilmData lire(Entree in) {
+            film.vider();
+            film.id = in.chaine();
+            film.titre = in.chaine();
+            film.annee = in.entier();
+            in.liste(film.pays);
+            film.langue = in.chaine();
+            film.duree = in.entier();
+            film.resume = in.chaine();
+            in.liste(film.genres);
+            film.realisateurNom = in.chaine();
+            film.realisateurId = in.entier();
+            in.liste(film.scenaristes);
+            int roles = in.varint();
+            for (int i = 0; i < roles; i++) {
+                film.ajouterRole(in.entier(), in.chaine(), in.chaine());
+            }
+            film.poster = in.chaine();
+            in.liste(film.annonces);
+            return film;
+        }
+    }
+
+    // Personnes and clients are not staged: these codecs give DeltaIndex their canonical form
+    static final Codec<PersonneRecord> CODEC_PERSONNE = new Codec<>() {
+        @Override
+        public void ecrire(PersonneRecord p, Sortie out) {
+            out.chaine(p.id());
+            out.chaine(p.nom());
+            out.chaine(p.anniversaire());
+            out.chaine(p.lieu());
+            out.chaine(p.photo());
+            out.chaine(p.bio());
+        }
+
+        @Override
+        public PersonneRecord lire(Entree in) {
+            return new PersonneRecord(in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine());
+        }
+    };
+
+    static final Codec<ClientRecord> CODEC_CLIENT = new Codec<>() {
+        @Override
+        public void ecrire(ClientRecord c, Sortie out) {
+            out.chaine(c.id());
+            out.chaine(c.nomFamille());
+            out.chaine(c.prenom());
+            out.chaine(c.courriel());
+            out.chaine(c.tel());
+            out.chaine(c.anniv());
+            out.chaine(c.adresse());
+            out.chaine(c.ville());
+            out.chaine(c.province());
+            out.chaine(c.codePostal());
+            out.chaine(c.carte());
+            out.chaine(c.noCarte());
+            out.entier(c.expMois());
+            out.entier(c.expAnnee());
+            out.chaine(c.motDePasse());
+            out.chaine(c.forfait());
+        }
+
+        @Override
+        public ClientRecord lire(Entree in) {
+            return new ClientRecord(in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine(),
+                    in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine(), in.chaine(),
+                    in.entier(), in.entier(), in.chaine(), in.chaine());
+        }
+    };
+}
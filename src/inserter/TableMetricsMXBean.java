@@ -0,0 +1,19 @@
+package inserter;
+
+/** JMX view of one statement batcher (ObjectName inserter:type=Table,name=...), see LoadMetrics. */
+public interface TableMetricsMXBean {
+
+    long getLignes();
+
+    long getBatches();
+
+    long getOctets();
+
+    double getLatenceMoyenneMs();
+
+    double getLatenceP50Ms();
+
+    double getLatenceP99Ms();
+
+    double getLatenceMaxMs();
+}
@@ -0,0 +1,289 @@
+package rental;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inventory of the copies that can be rented, per film. Copy codes are
+ * CP_<idFilm>_<nnn> (see LectureBD), so a copy is identified by its film and its ordinal
+ * nnn - 1: each film gets a slot in an open-addressing long -> int map keyed by the
+ * numeric idFilm, and one BitSet over the ordinals of its copies (bit set = available).
+ *
+ * reserver() and liberer() are O(1): one map probe and one bit flip under a lock striped
+ * by slot. New films grow the arrays under the write lock; everything else holds the read
+ * lock, so it never writes into an array that is being copied.
+ */
+public class AvailabilityIndex {
+
+    private static final int VERROUS = 64;
+    private static final long VIDE = Long.MIN_VALUE;
+
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final Object[] verrous = new Object[VERROUS];
+
+    // Open addressing, linear probing; capacity is a power of two, load kept under 1/2
+    private long[] cles = new long[1024];
+    private int[] slots = new int[1024];
+
+    private int films = 0;
+    private BitSet[] disponibles = new BitSet[256];
+    private int[] nombreDisponibles = new int[256];
+
+    private final AtomicLong copies = new AtomicLong();
+    private final AtomicLong horsFormat = new AtomicLong();
+
+    public AvailabilityIndex() {
+        Arrays.fill(cles, VIDE);
+        for (int i = 0; i < VERROUS; i++) {
+            verrous[i] = new Object();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database: every copy, available when its etat is
+     * "Disponible" and no Location of it is still open. One scan of Copie and Location.
+     */
+    public static AvailabilityIndex charger(Connection conn) throws SQLException {
+        long debut = System.currentTimeMillis();
+        AvailabilityIndex index = new AvailabilityIndex();
+        String sql = "SELECT c.\"code\", CASE WHEN c.\"etat\" = ? AND NOT EXISTS (SELECT 1 FROM \"Location\" l"
+                + " WHERE l.\"idCopie\" = c.\"code\" AND l.\"dateRetourEffectif\" IS NULL) THEN 1 ELSE 0 END"
+                + " FROM \"Copie\" c";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(10_000);
+            stmt.setString(1, RentalService.ETAT_DISPONIBLE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    index.ajouter(rs.getString(1), rs.getInt(2) == 1);
+                }
+            }
+        }
+        System.out.println("Index des copies: " + index.copies.get() + " copies de " + index.films + " films, "
+                + index.disponibles() + " disponibles, chargé en " + (System.currentTimeMillis() - debut) + " ms"
+                + (index.horsFormat.get() > 0 ? " (" + index.horsFormat.get() + " codes hors format ignorés)" : ""));
+        return index;
+    }
+
+    /** Registers a copy; false when its code is not CP_<idFilm>_<nnn> with a numeric idFilm. */
+    public boolean ajouter(String codeCopie, boolean disponible) {
+        String idFilm = film(codeCopie);
+        int ordinal = idFilm == null ? -1 : ordinal(codeCopie);
+        if (ordinal < 0) {
+            horsFormat.incrementAndGet();
+            return false;
+        }
+        copies.incrementAndGet();
+        if (disponible) {
+            liberer(idFilm, ordinal);
+        } else {
+            creerSlot(cleFilm(idFilm, 0, idFilm.length()));
+        }
+        return true;
+    }
+
+    /** Takes one available copy of idFilm out of the index; its ordinal, or -1 when none is left. */
+    public int reserver(String idFilm) {
+        long cle = cleFilm(idFilm, 0, idFilm.length());
+        structure.readLock().lock();
+        try {
+            int slot = cle == VIDE ? -1 : chercher(cle);
+            if (slot < 0) {
+                return -1;
+            }
+            synchronized (verrou(slot)) {
+                int ordinal = disponibles[slot].nextSetBit(0);
+                if (ordinal >= 0) {
+                    disponibles[slot].clear(ordinal);
+                    nombreDisponibles[slot]--;
+                }
+                return ordinal;
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /** Puts a copy back (returned, or reserved by a checkout that failed). */
+    public void liberer(String idFilm, int ordinal) {
+        long cle = cleFilm(idFilm, 0, idFilm.length());
+        if (cle == VIDE) {
+            throw new IllegalArgumentException("idFilm non numérique: " + idFilm);
+        }
+        while (true) {
+            structure.readLock().lock();
+            try {
+                int slot = chercher(cle);
+                if (slot >= 0) {
+                    synchronized (verrou(slot)) {
+                        if (!disponibles[slot].get(ordinal)) {
+                            disponibles[slot].set(ordinal);
+                            nombreDisponibles[slot]++;
+                        }
+                    }
+                    return;
+                }
+            } finally {
+                structure.readLock().unlock();
+            }
+            creerSlot(cle);
+        }
+    }
+
+    public boolean estDisponible(String idFilm) {
+        return disponibles(idFilm) > 0;
+    }
+
+    public int disponibles(String idFilm) {
+        long cle = cleFilm(idFilm, 0, idFilm.length());
+        structure.readLock().lock();
+        try {
+            int slot = cle == VIDE ? -1 : chercher(cle);
+            if (slot < 0) {
+                return 0;
+            }
+            synchronized (verrou(slot)) {
+                return nombreDisponibles[slot];
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    public long disponibles() {
+        structure.readLock().lock();
+        try {
+            long total = 0;
+            for (int i = 0; i < films; i++) {
+                synchronized (verrou(i)) {
+                    total += nombreDisponibles[i];
+                }
+            }
+            return total;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    public int nombreFilms() {
+        return films;
+    }
+
+    // Copy codes
+
+    public static String code(String idFilm, int ordinal) {
+        return "CP_" + idFilm + "_" + String.format("%03d", ordinal + 1);
+    }
+
+    /** idFilm of CP_<idFilm>_<nnn>, or null. */
+    public static String film(String codeCopie) {
+        int fin = codeCopie.lastIndexOf('_');
+        if (!codeCopie.startsWith("CP_") || fin <= 3 || cleFilm(codeCopie, 3, fin) == VIDE) {
+            return null;
+        }
+        return codeCopie.substring(3, fin);
+    }
+
+    /** nnn - 1 of CP_<idFilm>_<nnn>, or -1. */
+    public static int ordinal(String codeCopie) {
+        int debut = codeCopie.lastIndexOf('_') + 1;
+        if (debut == 0 || debut == codeCopie.length() || codeCopie.length() - debut > 9) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = debut; i < codeCopie.length(); i++) {
+            char c = codeCopie.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n - 1;
+    }
+
+    private static long cleFilm(String s, int debut, int fin) {
+        if (fin - debut < 1 || fin - debut > 18) {
+            return VIDE;
+        }
+        long n = 0;
+        for (int i = debut; i < fin; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return VIDE;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    // Slots
+
+    private Object verrou(int slot) {
+        return verrous[slot & (VERROUS - 1)];
+    }
+
+    private void creerSlot(long cle) {
+        structure.writeLock().lock();
+        try {
+            if (chercher(cle) >= 0) {
+                return;
+            }
+            if (films == disponibles.length) {
+                disponibles = Arrays.copyOf(disponibles, films * 2);
+                nombreDisponibles = Arrays.copyOf(nombreDisponibles, films * 2);
+            }
+            if (2 * (films + 1) > cles.length) {
+                agrandir();
+            }
+            disponibles[films] = new BitSet();
+            inserer(cles, slots, cle, films++);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    private int chercher(long cle) {
+        int masque = cles.length - 1;
+        for (int i = melanger(cle) & masque; ; i = (i + 1) & masque) {
+            if (cles[i] == cle) {
+                return slots[i];
+            }
+            if (cles[i] == VIDE) {
+                return -1;
+            }
+        }
+    }
+
+    private void agrandir() {
+        long[] nouvellesCles = new long[cles.length * 2];
+        int[] nouveauxSlots = new int[cles.length * 2];
+        Arrays.fill(nouvellesCles, VIDE);
+        for (int i = 0; i < cles.length; i++) {
+            if (cles[i] != VIDE) {
+                inserer(nouvellesCles, nouveauxSlots, cles[i], slots[i]);
+            }
+        }
+        cles = nouvellesCles;
+        slots = nouveauxSlots;
+    }
+
+    private static void inserer(long[] cles, int[] slots, long cle, int slot) {
+        int masque = cles.length - 1;
+        int i = melanger(cle) & masque;
+        while (cles[i] != VIDE) {
+            i = (i + 1) & masque;
+        }
+        cles[i] = cle;
+        slots[i] = slot;
+    }
+
+    private static int melanger(long cle) {
+        long h = cle * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,24 @@
+package rental;
+
+/** Thrown by a checkout when the client already has locationsMax rentals open. */
+public class QuotaExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String idClient;
+    private final int locationsMax;
+
+    public QuotaExceededException(String idClient, int locationsMax) {
+        super("Le client " + idClient + " a déjà " + locationsMax + " location(s) en cours");
+        this.idClient = idClient;
+        this.locationsMax = locationsMax;
+    }
+
+    public String getIdClient() {
+        return idClient;
+    }
+
+    public int getLocationsMax() {
+        return locationsMax;
+    }
+}
@@ -0,0 +1,226 @@
+package rental;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Enforces the Forfait of each client (locationsMax open rentals, dureeMaxJours per rental)
+ * without asking the database on every checkout. Each client has one AtomicLong packing
+ * two counters: rentals committed (high 32 bits) and checkouts in flight (low 32 bits).
+ * reserver() admits a checkout with a single compare-and-set when committed + in flight
+ * is below locationsMax, so concurrent attempts never wait on a lock or on the database.
+ *
+ * Counts are seeded from the open Locations and reconciled periodically: reconcilier()
+ * replaces the committed half with the count in Location (rentals written by another
+ * process, or lost by a crash, are caught there) and leaves the in-flight half alone. It
+ * is called by the RentalService writer between two transactions, when no commit of this
+ * service is in progress.
+ *
+ * The copy held by each open rental is also kept, so a return knows whose quota to credit.
+ */
+public class QuotaManager {
+
+    private static final String REQUETE = "SELECT c.\"idUser\", f.\"locationsMax\", f.\"dureeMaxJours\", NVL(a.n, 0)"
+            + " FROM \"Client\" c JOIN \"Forfait\" f ON f.\"codeForfait\" = c.\"codeForfait\""
+            + " LEFT JOIN (SELECT \"idClient\", COUNT(*) n FROM \"Location\" WHERE \"dateRetourEffectif\" IS NULL"
+            + " GROUP BY \"idClient\") a ON a.\"idClient\" = c.\"idUser\"";
+
+    private static final long UN_ENGAGE = 1L << 32;
+    private static final long MASQUE_EN_VOL = 0xFFFF_FFFFL;
+
+    static final class Compteur {
+        final AtomicLong etat = new AtomicLong();
+        volatile int locationsMax;
+        volatile int dureeMaxJours;
+
+        Compteur(int locationsMax, int dureeMaxJours) {
+            this.locationsMax = locationsMax;
+            this.dureeMaxJours = dureeMaxJours;
+        }
+
+        int engagees() {
+            return (int) (etat.get() >>> 32);
+        }
+
+        int enVol() {
+            return (int) (etat.get() & MASQUE_EN_VOL);
+        }
+    }
+
+    private final DataSource dataSource;
+    private final ConcurrentHashMap<String, Compteur> clients = new ConcurrentHashMap<>();
+    // codeCopie -> idClient of every open rental
+    private final ConcurrentHashMap<String, String> locationsOuvertes = new ConcurrentHashMap<>();
+    private final long periodeReconciliationMs;
+    private volatile long derniereReconciliation = System.currentTimeMillis();
+
+    // Metrics
+    private final AtomicLong admis = new AtomicLong();
+    private final AtomicLong refuses = new AtomicLong();
+    private final AtomicLong reconciliations = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+
+    /** dataSource is used to look up clients created after the start; null disables it. */
+    public QuotaManager(DataSource dataSource, long periodeReconciliationMs) {
+        this.dataSource = dataSource;
+        this.periodeReconciliationMs = periodeReconciliationMs;
+    }
+
+    /** Seeds every client's limits and open rentals from Client, Forfait and Location. */
+    public static QuotaManager charger(DataSource dataSource, long periodeReconciliationMs) throws SQLException {
+        long debut = System.currentTimeMillis();
+        QuotaManager quotas = new QuotaManager(dataSource, periodeReconciliationMs);
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(REQUETE)) {
+                ps.setFetchSize(10_000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Compteur c = new Compteur(rs.getInt(2), rs.getInt(3));
+                        c.etat.set(rs.getInt(4) * UN_ENGAGE);
+                        quotas.clients.put(rs.getString(1), c);
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT \"idCopie\", \"idClient\" FROM \"Location\" WHERE \"dateRetourEffectif\" IS NULL")) {
+                ps.setFetchSize(10_000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        quotas.locationsOuvertes.put(rs.getString(1), rs.getString(2));
+                    }
+                }
+            }
+        }
+        System.out.println("Quotas: " + quotas.clients.size() + " clients, " + quotas.locationsOuvertes.size()
+                + " locations ouvertes, chargés en " + (System.currentTimeMillis() - debut) + " ms");
+        return quotas;
+    }
+
+    /** Limits of a client not read from the database (tests, benchmarks). */
+    public void definir(String idClient, int locationsMax, int dureeMaxJours) {
+        clients.put(idClient, new Compteur(locationsMax, dureeMaxJours));
+    }
+
+    /**
+     * Admits one more checkout for idClient, or throws QuotaExceededException when its
+     * Forfait is already used up. Returns the longest rental allowed, in days.
+     */
+    public int reserver(String idClient) throws SQLException {
+        Compteur c = compteur(idClient);
+        while (true) {
+            long etat = c.etat.get();
+            int total = (int) (etat >>> 32) + (int) (etat & MASQUE_EN_VOL);
+            if (total >= c.locationsMax) {
+                refuses.incrementAndGet();
+                throw new QuotaExceededException(idClient, c.locationsMax);
+            }
+            if (c.etat.compareAndSet(etat, etat + 1)) {
+                admis.incrementAndGet();
+                return c.dureeMaxJours;
+            }
+        }
+    }
+
+    /** The checkout admitted by reserver() was written: in flight becomes committed. */
+    void confirmer(String idClient, String codeCopie) {
+        Compteur c = clients.get(idClient);
+        if (c != null) {
+            c.etat.addAndGet(UN_ENGAGE - 1);
+        }
+        locationsOuvertes.put(codeCopie, idClient);
+    }
+
+    /** The checkout admitted by reserver() did not happen. */
+    void annuler(String idClient) {
+        Compteur c = clients.get(idClient);
+        if (c != null) {
+            c.etat.decrementAndGet();
+        }
+    }
+
+    /** A return of codeCopie was written; credits the client who held it. */
+    void liberer(String codeCopie) {
+        String idClient = locationsOuvertes.remove(codeCopie);
+        Compteur c = idClient == null ? null : clients.get(idClient);
+        if (c != null) {
+            c.etat.updateAndGet(e -> e >= UN_ENGAGE ? e - UN_ENGAGE : e);
+        }
+    }
+
+    public int actives(String idClient) {
+        Compteur c = clients.get(idClient);
+        return c == null ? 0 : c.engagees() + c.enVol();
+    }
+
+    boolean reconciliationDue() {
+        return dataSource != null && System.currentTimeMillis() - derniereReconciliation >= periodeReconciliationMs;
+    }
+
+    /**
+     * Resets the committed count of every client to the open Locations in the database, and
+     * picks up Forfait changes. Run it when no commit of this service is in progress.
+     */
+    void reconcilier(Connection conn) throws SQLException {
+        derniereReconciliation = System.currentTimeMillis();
+        Map<String, int[]> base = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(REQUETE)) {
+            ps.setFetchSize(10_000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    base.put(rs.getString(1), new int[]{rs.getInt(2), rs.getInt(3), rs.getInt(4)});
+                }
+            }
+        }
+        int ecarts = 0;
+        for (Map.Entry<String, int[]> e : base.entrySet()) {
+            int[] v = e.getValue();
+            Compteur c = clients.computeIfAbsent(e.getKey(), k -> new Compteur(v[0], v[1]));
+            c.locationsMax = v[0];
+            c.dureeMaxJours = v[1];
+            long avant = c.etat.getAndUpdate(etat -> v[2] * UN_ENGAGE + (etat & MASQUE_EN_VOL));
+            if ((int) (avant >>> 32) != v[2]) {
+                ecarts++;
+            }
+        }
+        reconciliations.incrementAndGet();
+        corrections.addAndGet(ecarts);
+        if (ecarts > 0) {
+            System.err.println("Quotas: " + ecarts + " client(s) corrigé(s) par la réconciliation");
+        }
+    }
+
+    private Compteur compteur(String idClient) throws SQLException {
+        Compteur c = clients.get(idClient);
+        if (c != null) {
+            return c;
+        }
+        if (dataSource != null) {
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement ps = conn.prepareStatement(REQUETE + " WHERE c.\"idUser\" = ?")) {
+                ps.setString(1, idClient);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        Compteur nouveau = new Compteur(rs.getInt(2), rs.getInt(3));
+                        nouveau.etat.set(rs.getInt(4) * UN_ENGAGE);
+                        c = clients.putIfAbsent(idClient, nouveau);
+                        return c != null ? c : nouveau;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Client inconnu: " + idClient);
+    }
+
+    public String rapport() {
+        return "Quotas: " + admis.get() + " admis, " + refuses.get() + " refusés, " + reconciliations.get()
+                + " réconciliations (" + corrections.get() + " corrections)";
+    }
+}
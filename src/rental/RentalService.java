@@ -0,0 +1,352 @@
+package rental;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * Checkout and return of copies on top of Copie and Location. Availability is answered by
+ * an {@link AvailabilityIndex} instead of the tables, and the writes are group-committed:
+ * callers hand their operation to one writer thread, which drains whatever is queued (up
+ * to tailleLot operations), sends it as JDBC batches in one transaction and then wakes the
+ * callers. A caller returns once its own operation is committed.
+ *
+ * A checkout takes its copy out of the index before the write and puts it back if the
+ * transaction fails; a return puts the copy back only after its commit, so a copy is never
+ * lent again before its return is durable. When a group fails, its operations are retried
+ * one transaction each so one bad operation does not fail the others.
+ *
+ * With a {@link QuotaManager}, a checkout is first admitted against the client's Forfait
+ * (at most locationsMax open rentals, rental length capped at dureeMaxJours), and the
+ * writer reconciles the quota counts with Location between two groups.
+ */
+public class RentalService implements AutoCloseable {
+
+    static final String ETAT_DISPONIBLE = "Disponible";
+    static final String ETAT_LOUEE = "Louée";
+
+    public record Location(String idLocation, String codeCopie, String idClient, LocalDate dateDebut, LocalDate dateFin) {
+    }
+
+    private record Operation(boolean emprunt, String idFilm, int ordinal, Location location,
+                             CompletableFuture<Void> fait) {
+    }
+
+    private static final long RECONCILIATION_MS = 60_000;
+
+    private static final Operation FIN = new Operation(false, null, -1, null, null);
+
+    private final AvailabilityIndex index;
+    private final QuotaManager quotas;
+    private final int tailleLot;
+    private final Connection conn;
+    private final PreparedStatement psLocation;
+    private final PreparedStatement psRetour;
+    private final PreparedStatement psEtat;
+    private final AtomicLong prochainId;
+    private final BlockingQueue<Operation> file = new LinkedBlockingQueue<>();
+    private final Thread ecrivain;
+    // Set by the writer on its way out, before it fails what is left in the file
+    private volatile boolean ferme = false;
+
+    // Metrics
+    private final AtomicLong emprunts = new AtomicLong();
+    private final AtomicLong refus = new AtomicLong();
+    private final AtomicLong retours = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+
+    /** Loads the index and the quotas from the database, then starts the writer. */
+    public static RentalService demarrer(DataSource dataSource, int tailleLot) throws SQLException {
+        AvailabilityIndex index;
+        try (Connection conn = dataSource.getConnection()) {
+            index = AvailabilityIndex.charger(conn);
+        }
+        return new RentalService(dataSource, index, QuotaManager.charger(dataSource, RECONCILIATION_MS), tailleLot);
+    }
+
+    public RentalService(DataSource dataSource, AvailabilityIndex index, int tailleLot) throws SQLException {
+        this(dataSource, index, null, tailleLot);
+    }
+
+    /** quotas may be null: no Forfait is enforced then. */
+    public RentalService(DataSource dataSource, AvailabilityIndex index, QuotaManager quotas, int tailleLot)
+            throws SQLException {
+        if (tailleLot < 1) {
+            throw new IllegalArgumentException("tailleLot doit être positif");
+        }
+        this.index = index;
+        this.quotas = quotas;
+        this.tailleLot = tailleLot;
+        conn = dataSource.getConnection();
+        conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement("MERGE INTO \"DomaineCopie\" target USING (SELECT ? AS etat FROM dual) source"
+                + " ON (target.\"etat\" = source.etat) WHEN NOT MATCHED THEN INSERT (\"etat\") VALUES (source.etat)")) {
+            for (String etat : new String[]{ETAT_DISPONIBLE, ETAT_LOUEE}) {
+                ps.setString(1, etat);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        prochainId = new AtomicLong(dernierId());
+        conn.commit();
+
+        psLocation = conn.prepareStatement("INSERT INTO \"Location\" (\"idLocation\", \"dateDebut\", \"dateFin\", \"idClient\", \"idCopie\") VALUES (?, ?, ?, ?, ?)");
+        psRetour = conn.prepareStatement("UPDATE \"Location\" SET \"dateRetourEffectif\" = ? WHERE \"idCopie\" = ? AND \"dateRetourEffectif\" IS NULL");
+        psEtat = conn.prepareStatement("UPDATE \"Copie\" SET \"etat\" = ? WHERE \"code\" = ?");
+
+        ecrivain = new Thread(this::ecrire, "rental-ecrivain");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    // Location ids are L<n>; continue after the highest one already in the table
+    private long dernierId() throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MAX(TO_NUMBER(SUBSTR(\"idLocation\", 2))) FROM \"Location\""
+                + " WHERE REGEXP_LIKE(\"idLocation\", '^L[0-9]{1,9}$')");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public AvailabilityIndex getIndex() {
+        return index;
+    }
+
+    public boolean estDisponible(String idFilm) {
+        return index.estDisponible(idFilm);
+    }
+
+    /**
+     * Lends any available copy of idFilm to idClient for dureeJours days (at most the
+     * dureeMaxJours of the client's Forfait). Returns the committed Location, or null when no
+     * copy of the film is available; throws QuotaExceededException when the client already
+     * has locationsMax rentals open.
+     */
+    public Location emprunter(String idFilm, String idClient, int dureeJours) throws SQLException {
+        if (quotas != null) {
+            dureeJours = Math.min(dureeJours, quotas.reserver(idClient));
+        }
+        int ordinal = index.reserver(idFilm);
+        if (ordinal < 0) {
+            if (quotas != null) quotas.annuler(idClient);
+            refus.incrementAndGet();
+            return null;
+        }
+        LocalDate aujourdhui = LocalDate.now();
+        Location location = new Location("L" + prochainId.incrementAndGet(), AvailabilityIndex.code(idFilm, ordinal),
+                idClient, aujourdhui, aujourdhui.plusDays(dureeJours));
+        soumettre(new Operation(true, idFilm, ordinal, location, new CompletableFuture<>()));
+        emprunts.incrementAndGet();
+        return location;
+    }
+
+    /** Closes the open Location of codeCopie and makes the copy available again. */
+    public void retourner(String codeCopie) throws SQLException {
+        String idFilm = AvailabilityIndex.film(codeCopie);
+        int ordinal = AvailabilityIndex.ordinal(codeCopie);
+        if (idFilm == null || ordinal < 0) {
+            throw new IllegalArgumentException("Code de copie invalide: " + codeCopie);
+        }
+        Location location = new Location(null, codeCopie, null, LocalDate.now(), null);
+        soumettre(new Operation(false, idFilm, ordinal, location, new CompletableFuture<>()));
+        retours.incrementAndGet();
+    }
+
+    private void soumettre(Operation operation) throws SQLException {
+        if (ferme) {
+            refuser(operation);
+        }
+        file.add(operation);
+        // The writer may have drained the file between the check and the add: whoever
+        // takes the operation out of the file completes it
+        if (ferme && file.remove(operation)) {
+            refuser(operation);
+        }
+        try {
+            operation.fait().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException se ? se : new SQLException(e.getCause());
+        } catch (InterruptedException e) {
+            // The operation stays queued and will still be written
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente interrompue", e);
+        }
+    }
+
+    private void refuser(Operation operation) throws SQLException {
+        if (operation.emprunt()) {
+            index.liberer(operation.idFilm(), operation.ordinal());
+            if (quotas != null) quotas.annuler(operation.location().idClient());
+        }
+        throw new SQLException("Service de location fermé");
+    }
+
+    // Writer thread: one transaction per group of queued operations
+    private void ecrire() {
+        try {
+            boucleEcriture();
+        } finally {
+            // Operations queued after FIN, or left by an interrupt, would wait forever
+            ferme = true;
+            List<Operation> restantes = new ArrayList<>();
+            file.drainTo(restantes);
+            restantes.removeIf(operation -> operation == FIN);
+            terminer(restantes, new SQLException("Service de location fermé"));
+        }
+    }
+
+    private void boucleEcriture() {
+        List<Operation> lot = new ArrayList<>(tailleLot);
+        boolean fin = false;
+        while (!fin) {
+            try {
+                Operation premiere = file.poll(1, TimeUnit.SECONDS);
+                if (premiere == null) {
+                    reconcilierSiDu();
+                    continue;
+                }
+                lot.add(premiere);
+            } catch (InterruptedException e) {
+                break;
+            }
+            file.drainTo(lot, tailleLot - 1);
+            fin = lot.remove(FIN);
+            if (!lot.isEmpty()) {
+                try {
+                    ecrireLot(lot);
+                    terminer(lot, null);
+                } catch (SQLException e) {
+                    annuler();
+                    // Isolate the failing operation(s)
+                    for (Operation operation : lot) {
+                        try {
+                            ecrireLot(List.of(operation));
+                            terminer(List.of(operation), null);
+                        } catch (SQLException erreur) {
+                            annuler();
+                            echecs.incrementAndGet();
+                            terminer(List.of(operation), erreur);
+                        }
+                    }
+                }
+            }
+            lot.clear();
+            reconcilierSiDu();
+        }
+    }
+
+    // Between two groups: nothing of this service is being committed
+    private void reconcilierSiDu() {
+        if (quotas == null || !quotas.reconciliationDue()) {
+            return;
+        }
+        try {
+            quotas.reconcilier(conn);
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println("Réconciliation des quotas impossible: " + e.getMessage());
+        }
+    }
+
+    private void ecrireLot(List<Operation> lot) throws SQLException {
+        boolean retoursEnAttente = false, empruntsEnAttente = false;
+        for (Operation operation : lot) {
+            Location l = operation.location();
+            if (operation.emprunt()) {
+                psLocation.setString(1, l.idLocation());
+                psLocation.setDate(2, Date.valueOf(l.dateDebut()));
+                psLocation.setDate(3, Date.valueOf(l.dateFin()));
+                psLocation.setString(4, l.idClient());
+                psLocation.setString(5, l.codeCopie());
+                psLocation.addBatch();
+                empruntsEnAttente = true;
+            } else {
+                psRetour.setDate(1, Date.valueOf(l.dateDebut()));
+                psRetour.setString(2, l.codeCopie());
+                psRetour.addBatch();
+                retoursEnAttente = true;
+            }
+            psEtat.setString(1, operation.emprunt() ? ETAT_LOUEE : ETAT_DISPONIBLE);
+            psEtat.setString(2, l.codeCopie());
+            psEtat.addBatch();
+        }
+        // A copy is re-lent only after its return commits, so returns and checkouts of one group never overlap
+        if (retoursEnAttente) psRetour.executeBatch();
+        if (empruntsEnAttente) psLocation.executeBatch();
+        psEtat.executeBatch();
+        conn.commit();
+        transactions.incrementAndGet();
+    }
+
+    private void annuler() {
+        try {
+            psLocation.clearBatch();
+            psRetour.clearBatch();
+            psEtat.clearBatch();
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println("Rollback impossible: " + e.getMessage());
+        }
+    }
+
+    private void terminer(List<Operation> operations, SQLException erreur) {
+        for (Operation operation : operations) {
+            if (erreur == null) {
+                if (!operation.emprunt()) {
+                    index.liberer(operation.idFilm(), operation.ordinal());
+                    if (quotas != null) quotas.liberer(operation.location().codeCopie());
+                } else if (quotas != null) {
+                    quotas.confirmer(operation.location().idClient(), operation.location().codeCopie());
+                }
+                operation.fait().complete(null);
+            } else {
+                if (operation.emprunt()) {
+                    index.liberer(operation.idFilm(), operation.ordinal());
+                    if (quotas != null) quotas.annuler(operation.location().idClient());
+                }
+                operation.fait().completeExceptionally(erreur);
+            }
+        }
+    }
+
+    public String rapport() {
+        long n = transactions.get();
+        return String.format("Locations: %d emprunts, %d refus (aucune copie), %d retours, %d échecs, %d transactions"
+                        + " (%.1f opérations/transaction)", emprunts.get(), refus.get(), retours.get(), echecs.get(), n,
+                n == 0 ? 0.0 : (emprunts.get() + retours.get()) / (double) n)
+                + (quotas != null ? ". " + quotas.rapport() : "");
+    }
+
+    /** Writes what is still queued, then returns the connection; later operations fail. */
+    @Override
+    public void close() {
+        file.add(FIN);
+        try {
+            ecrivain.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            psLocation.close();
+            psRetour.close();
+            psEtat.close();
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Erreur lors de la fermeture du service de location: " + e.getMessage());
+        }
+    }
+}
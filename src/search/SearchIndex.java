@@ -0,0 +1,630 @@
+package search;
+
+import inserter.FilmData;
+import inserter.PersonneRecord;
+import inserter.RecordDecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index over Film (titre, resume) and Personne (nom, biographie), so a
+ * search does not need a LIKE '%...%' scan of the CLOBs. Terms come from the Tokenizer;
+ * a word of the titre or nom counts POIDS_LIBELLE times. Results are ranked with BM25,
+ * and the last word of a query is also matched as a prefix ("matr" finds "matrix") by a
+ * range scan of the sorted dictionary, which is what n-grams would buy for type-ahead
+ * without multiplying the postings.
+ *
+ * Two segments: the one written by sauvegarder(), memory mapped and read in place (only
+ * the document lengths are copied to the heap on ouvrir()), and a delta in memory for
+ * the documents added since. Re-adding a document marks its old version deleted; the
+ * deleted ones are dropped and both segments merged on the next sauvegarder().
+ *
+ * File layout (big endian): header (magic, docs, terms, total length, positions of the
+ * two offset tables), then per document its type, length, id and libelle, then per term
+ * the term, its df and its postings as varint (doc gap, weighted tf) pairs, then the
+ * document and term offset tables. Terms are in String order so lookups binary search
+ * the mapped table. Offsets are ints: one file stays under 2 GB. Each save writes a new
+ * generation "<fichier>.<n>"; fichier itself only names the current one.
+ *
+ * Searches hold the read lock; adds and sauvegarder() the write lock.
+ */
+public class SearchIndex {
+
+    public enum Type { FILM, PERSONNE }
+
+    public record Resultat(Type type, String id, String libelle, double score) {
+    }
+
+    private static final int MAGIC = 0x46545331; // "FTS1"
+    private static final int TAILLE_ENTETE = 28;
+    private static final int POIDS_LIBELLE = 3, POIDS_TEXTE = 1;
+    private static final double K1 = 1.2, B = 0.75;
+    private static final int PREFIXE_MIN = 3;
+    private static final int EXPANSIONS_MAX = 64;
+
+    private record Doc(Type type, String id, String libelle, int longueur) {
+    }
+
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] tfs = new int[4];
+        int n = 0;
+
+        void ajouter(int doc, int tf) {
+            if (n == docs.length) {
+                docs = Arrays.copyOf(docs, n * 2);
+                tfs = Arrays.copyOf(tfs, n * 2);
+            }
+            docs[n] = doc;
+            tfs[n++] = tf;
+        }
+    }
+
+    private interface Visiteur {
+        void visiter(int doc, int tf);
+    }
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    // Mapped segment; docsBase == 0 and base == null until a file is opened or saved
+    private MappedByteBuffer base = null;
+    private int docsBase = 0, termesBase = 0;
+    private int debutDocs, debutTermes;
+    private int[] longueursBase = new int[0];
+
+    // Delta segment: doc ids continue after docsBase, so its postings stay sorted
+    private final List<Doc> docsDelta = new ArrayList<>();
+    private final TreeMap<String, Postings> termesDelta = new TreeMap<>();
+
+    private final BitSet supprimes = new BitSet();
+    private Map<String, Integer> parCle = null; // built on the first add
+    private long longueurTotale = 0;
+    private int vivants = 0;
+
+    private boolean prefixes = true;
+
+    public SearchIndex() {
+    }
+
+    /** Maps an index written by sauvegarder(); nothing but the document lengths is read. */
+    public static SearchIndex ouvrir(Path fichier) throws IOException {
+        long debut = System.currentTimeMillis();
+        SearchIndex index = new SearchIndex();
+        index.mapper(generationCourante(fichier));
+        System.out.println("Index de recherche: " + index.docsBase + " documents, " + index.termesBase
+                + " termes, ouvert en " + (System.currentTimeMillis() - debut) + " ms");
+        return index;
+    }
+
+    /** Builds the index from the Film and Personne tables, one scan of each. */
+    public static SearchIndex construire(Connection conn) throws SQLException {
+        long debut = System.currentTimeMillis();
+        SearchIndex index = new SearchIndex();
+        int films = index.parcourir(conn, "SELECT \"idFilm\", \"titre\", \"resume\" FROM \"Film\"", Type.FILM);
+        int personnes = index.parcourir(conn,
+                "SELECT \"idPersonne\", \"nom\", \"biographie\" FROM \"Personne\"", Type.PERSONNE);
+        System.out.println("Index de recherche: " + films + " films et " + personnes + " personnes, "
+                + index.nombreTermes() + " termes, construit en " + (System.currentTimeMillis() - debut) + " ms");
+        return index;
+    }
+
+    private int parcourir(Connection conn, String sql, Type type) throws SQLException {
+        int n = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setFetchSize(500);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ajouter(type, rs.getString(1), rs.getString(2), rs.getString(3));
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Indexes the films of an XML file (same format as the loader's), without a database. */
+    public int indexerFilms(String fichier) throws Exception {
+        return RecordDecoder.lireFilms(fichier, this::indexerFilm);
+    }
+
+    public int indexerPersonnes(String fichier) throws Exception {
+        return RecordDecoder.lirePersonnes(fichier, this::indexerPersonne);
+    }
+
+    /** Adds or replaces a film; usable as LoaderConfig.setIndexationFilm(index::indexerFilm). */
+    public void indexerFilm(FilmData f) {
+        ajouter(Type.FILM, f.id(), f.titre(), f.resume());
+    }
+
+    public void indexerPersonne(PersonneRecord p) {
+        ajouter(Type.PERSONNE, p.id(), p.nom(), p.bio());
+    }
+
+    public void ajouter(Type type, String id, String libelle, String texte) {
+        // Tokenize outside the lock
+        Map<String, Integer> frequences = new HashMap<>();
+        for (String terme : Tokenizer.termes(libelle)) {
+            frequences.merge(terme, POIDS_LIBELLE, Integer::sum);
+        }
+        for (String terme : Tokenizer.termes(texte)) {
+            frequences.merge(terme, POIDS_TEXTE, Integer::sum);
+        }
+        int longueur = 0;
+        for (int tf : frequences.values()) {
+            longueur += tf;
+        }
+        verrou.writeLock().lock();
+        try {
+            supprimerVerrouille(type, id);
+            int doc = docsBase + docsDelta.size();
+            docsDelta.add(new Doc(type, id, libelle, longueur));
+            parCle.put(cle(type, id), doc);
+            for (Map.Entry<String, Integer> e : frequences.entrySet()) {
+                termesDelta.computeIfAbsent(e.getKey(), k -> new Postings()).ajouter(doc, e.getValue());
+            }
+            longueurTotale += longueur;
+            vivants++;
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /** False when the document is not in the index. */
+    public boolean supprimer(Type type, String id) {
+        verrou.writeLock().lock();
+        try {
+            return supprimerVerrouille(type, id);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private boolean supprimerVerrouille(Type type, String id) {
+        if (parCle == null) {
+            parCle = new HashMap<>(Math.max(16, docsBase * 2));
+            for (int n = 0; n < docsBase; n++) {
+                parCle.put(cle(typeDoc(n), docBase(n).id()), n);
+            }
+        }
+        Integer ancien = parCle.remove(cle(type, id));
+        if (ancien == null) {
+            return false;
+        }
+        supprimes.set(ancien);
+        longueurTotale -= longueur(ancien);
+        vivants--;
+        return true;
+    }
+
+    private static String cle(Type type, String id) {
+        return type.ordinal() + "/" + id;
+    }
+
+    /** Whether the last word of a query is also matched as a prefix (default true). */
+    public SearchIndex setPrefixes(boolean prefixes) {
+        this.prefixes = prefixes;
+        return this;
+    }
+
+    /**
+     * The max best documents for the query, best first; type null searches films and
+     * personnes together. Words are OR-ed, BM25 favours documents having more of them.
+     */
+    public List<Resultat> chercher(String requete, Type type, int max) {
+        verrou.readLock().lock();
+        try {
+            int total = docsBase + docsDelta.size();
+            double[] scores = new double[total];
+            double moyenne = vivants == 0 ? 1 : (double) longueurTotale / vivants;
+
+            String prefixe = prefixes ? prefixe(requete) : null;
+            List<String> exacts = Tokenizer.termes(requete);
+            if (prefixe != null && !exacts.isEmpty() && exacts.get(exacts.size() - 1).equals(prefixe)) {
+                exacts.remove(exacts.size() - 1);
+            }
+            for (String terme : new LinkedHashSet<>(exacts)) {
+                scorer(terme, moyenne, scores, false);
+            }
+            if (prefixe != null) {
+                // A document counts once for the prefix, with its best expansion
+                double[] meilleurs = new double[total];
+                for (String terme : expansions(prefixe)) {
+                    scorer(terme, moyenne, meilleurs, true);
+                }
+                for (int doc = 0; doc < total; doc++) {
+                    scores[doc] += meilleurs[doc];
+                }
+            }
+
+            PriorityQueue<Integer> meilleurs = new PriorityQueue<>(
+                    (a, b) -> Double.compare(scores[a], scores[b]));
+            for (int doc = 0; doc < total; doc++) {
+                if (scores[doc] > 0 && (type == null || typeDoc(doc) == type)) {
+                    if (meilleurs.size() < max) {
+                        meilleurs.add(doc);
+                    } else if (max > 0 && scores[doc] > scores[meilleurs.peek()]) {
+                        meilleurs.poll();
+                        meilleurs.add(doc);
+                    }
+                }
+            }
+            Resultat[] resultats = new Resultat[meilleurs.size()];
+            for (int i = resultats.length - 1; i >= 0; i--) {
+                int doc = meilleurs.poll();
+                Doc d = doc(doc);
+                resultats[i] = new Resultat(d.type(), d.id(), d.libelle(), scores[doc]);
+            }
+            return Arrays.asList(resultats);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // The folded last word when the query ends inside a word long enough to expand
+    private static String prefixe(String requete) {
+        String plie = Tokenizer.plier(requete);
+        int fin = plie.length();
+        if (fin == 0 || !Character.isLetterOrDigit(plie.charAt(fin - 1))) {
+            return null;
+        }
+        int debut = fin;
+        while (debut > 0 && Character.isLetterOrDigit(plie.charAt(debut - 1))) {
+            debut--;
+        }
+        return fin - debut >= PREFIXE_MIN ? plie.substring(debut, fin) : null;
+    }
+
+    private List<String> expansions(String prefixe) {
+        LinkedHashSet<String> termes = new LinkedHashSet<>();
+        int i = indexBase(prefixe);
+        for (i = i >= 0 ? i : -i - 1; i < termesBase && termes.size() < EXPANSIONS_MAX; i++) {
+            String terme = termeBase(i);
+            if (!terme.startsWith(prefixe)) {
+                break;
+            }
+            termes.add(terme);
+        }
+        for (String terme : termesDelta.tailMap(prefixe, true).keySet()) {
+            if (!terme.startsWith(prefixe) || termes.size() >= EXPANSIONS_MAX) {
+                break;
+            }
+            termes.add(terme);
+        }
+        return new ArrayList<>(termes);
+    }
+
+    private void scorer(String terme, double moyenne, double[] scores, boolean maximum) {
+        int i = indexBase(terme);
+        Postings delta = termesDelta.get(terme);
+        // df counts the deleted versions until the next merge, as most engines do
+        int df = (i >= 0 ? dfBase(i) : 0) + (delta == null ? 0 : delta.n);
+        if (df == 0) {
+            return;
+        }
+        double idf = Math.log(1 + (vivants - df + 0.5) / (df + 0.5));
+        Visiteur v = (doc, tf) -> {
+            if (supprimes.get(doc)) {
+                return;
+            }
+            double s = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * longueur(doc) / moyenne));
+            scores[doc] = maximum ? Math.max(scores[doc], s) : scores[doc] + s;
+        };
+        if (i >= 0) {
+            visiterBase(i, v);
+        }
+        if (delta != null) {
+            for (int k = 0; k < delta.n; k++) {
+                v.visiter(delta.docs[k], delta.tfs[k]);
+            }
+        }
+    }
+
+    // Documents of either segment
+
+    private Doc doc(int doc) {
+        return doc < docsBase ? docBase(doc) : docsDelta.get(doc - docsBase);
+    }
+
+    private int longueur(int doc) {
+        return doc < docsBase ? longueursBase[doc] : docsDelta.get(doc - docsBase).longueur();
+    }
+
+    private Type typeDoc(int doc) {
+        return doc < docsBase ? Type.values()[base.get(base.getInt(debutDocs + 4 * doc))]
+                : docsDelta.get(doc - docsBase).type();
+    }
+
+    // Mapped segment
+
+    private void mapper(Path fichier) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ)) {
+            MappedByteBuffer b = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (canal.size() < TAILLE_ENTETE || b.getInt(0) != MAGIC) {
+                throw new IOException(fichier + " n'est pas un index de recherche");
+            }
+            base = b;
+        }
+        docsBase = base.getInt(4);
+        termesBase = base.getInt(8);
+        longueurTotale = base.getLong(12);
+        debutDocs = base.getInt(20);
+        debutTermes = base.getInt(24);
+        longueursBase = new int[docsBase];
+        for (int n = 0; n < docsBase; n++) {
+            longueursBase[n] = base.getInt(base.getInt(debutDocs + 4 * n) + 1);
+        }
+        vivants = docsBase;
+    }
+
+    private Doc docBase(int n) {
+        int pos = base.getInt(debutDocs + 4 * n);
+        String id = chaine(pos + 5);
+        String libelle = chaine(pos + 5 + 2 + Short.toUnsignedInt(base.getShort(pos + 5)));
+        return new Doc(Type.values()[base.get(pos)], id, libelle, base.getInt(pos + 1));
+    }
+
+    private String chaine(int pos) {
+        byte[] octets = new byte[Short.toUnsignedInt(base.getShort(pos))];
+        base.get(pos + 2, octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    private String termeBase(int i) {
+        return chaine(base.getInt(debutTermes + 4 * i));
+    }
+
+    private int dfBase(int i) {
+        int pos = base.getInt(debutTermes + 4 * i);
+        return base.getInt(pos + 2 + Short.toUnsignedInt(base.getShort(pos)));
+    }
+
+    // Same contract as Arrays.binarySearch
+    private int indexBase(String terme) {
+        int bas = 0, haut = termesBase - 1;
+        while (bas <= haut) {
+            int milieu = (bas + haut) >>> 1;
+            int c = termeBase(milieu).compareTo(terme);
+            if (c < 0) {
+                bas = milieu + 1;
+            } else if (c > 0) {
+                haut = milieu - 1;
+            } else {
+                return milieu;
+            }
+        }
+        return -(bas + 1);
+    }
+
+    private void visiterBase(int i, Visiteur v) {
+        int pos = base.getInt(debutTermes + 4 * i);
+        pos += 2 + Short.toUnsignedInt(base.getShort(pos));
+        int df = base.getInt(pos);
+        pos += 4;
+        int doc = 0;
+        for (int k = 0; k < df; k++) {
+            int valeur = 0, decalage = 0, octet;
+            do {
+                octet = base.get(pos++);
+                valeur |= (octet & 0x7F) << decalage;
+                decalage += 7;
+            } while ((octet & 0x80) != 0);
+            doc += valeur;
+            int tf = 0;
+            decalage = 0;
+            do {
+                octet = base.get(pos++);
+                tf |= (octet & 0x7F) << decalage;
+                decalage += 7;
+            } while ((octet & 0x80) != 0);
+            v.visiter(doc, tf);
+        }
+    }
+
+    /**
+     * Merges both segments without the deleted documents into a new generation file next to
+     * fichier, switches fichier to it and maps the result. A file still mapped (by this index
+     * or another reader) is never written over nor renamed over: Windows refuses both.
+     */
+    public void sauvegarder(Path fichier) throws IOException {
+        long debut = System.currentTimeMillis();
+        verrou.writeLock().lock();
+        try {
+            int total = docsBase + docsDelta.size();
+            int[] nouveaux = new int[total];
+            int n = 0;
+            for (int doc = 0; doc < total; doc++) {
+                nouveaux[doc] = supprimes.get(doc) ? -1 : n++;
+            }
+            Path donnees = fichier.resolveSibling(fichier.getFileName() + "." + (generation(fichier) + 1));
+            int termes = 0;
+            try (FileChannel canal = FileChannel.open(donnees, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+                out.write(new byte[TAILLE_ENTETE]);
+
+                int[] offsetsDocs = new int[n];
+                for (int doc = 0; doc < total; doc++) {
+                    if (nouveaux[doc] >= 0) {
+                        Doc d = doc(doc);
+                        offsetsDocs[nouveaux[doc]] = out.size();
+                        out.writeByte(d.type().ordinal());
+                        out.writeInt(d.longueur());
+                        ecrireChaine(out, d.id());
+                        ecrireChaine(out, d.libelle() == null ? "" : d.libelle());
+                    }
+                }
+
+                // Both term lists are sorted: merge them
+                int[] offsetsTermes = new int[Math.max(16, termesBase + termesDelta.size())];
+                int i = 0;
+                var iterateur = termesDelta.entrySet().iterator();
+                Map.Entry<String, Postings> delta = iterateur.hasNext() ? iterateur.next() : null;
+                while (i < termesBase || delta != null) {
+                    String terme = i < termesBase ? termeBase(i) : null;
+                    int c = terme == null ? 1 : delta == null ? -1 : terme.compareTo(delta.getKey());
+                    Postings fusion = new Postings();
+                    Visiteur v = (doc, tf) -> {
+                        if (nouveaux[doc] >= 0) {
+                            fusion.ajouter(nouveaux[doc], tf);
+                        }
+                    };
+                    if (c <= 0) {
+                        visiterBase(i++, v);
+                    }
+                    if (c >= 0) {
+                        terme = delta.getKey();
+                        Postings p = delta.getValue();
+                        for (int k = 0; k < p.n; k++) {
+                            v.visiter(p.docs[k], p.tfs[k]);
+                        }
+                        delta = iterateur.hasNext() ? iterateur.next() : null;
+                    }
+                    if (fusion.n == 0) {
+                        continue;
+                    }
+                    offsetsTermes[termes++] = out.size();
+                    ecrireChaine(out, terme);
+                    out.writeInt(fusion.n);
+                    int precedent = 0;
+                    for (int k = 0; k < fusion.n; k++) {
+                        ecrireVarint(out, fusion.docs[k] - precedent);
+                        ecrireVarint(out, fusion.tfs[k]);
+                        precedent = fusion.docs[k];
+                    }
+                }
+
+                int tableDocs = out.size();
+                for (int offset : offsetsDocs) {
+                    out.writeInt(offset);
+                }
+                int tableTermes = out.size();
+                for (int k = 0; k < termes; k++) {
+                    out.writeInt(offsetsTermes[k]);
+                }
+                out.flush();
+
+                ByteBuffer entete = ByteBuffer.allocate(TAILLE_ENTETE);
+                entete.putInt(MAGIC).putInt(n).putInt(termes).putLong(longueurTotale)
+                        .putInt(tableDocs).putInt(tableTermes).flip();
+                canal.write(entete, 0);
+                canal.force(true);
+            }
+            // Only the small pointer file is replaced, and nobody maps it
+            Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+            Files.writeString(temporaire, donnees.getFileName().toString(), StandardCharsets.UTF_8);
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            docsDelta.clear();
+            termesDelta.clear();
+            supprimes.clear();
+            parCle = null;
+            mapper(donnees);
+            supprimerAnciennes(fichier, donnees);
+            System.out.println("Index de recherche: " + n + " documents, " + termes + " termes, "
+                    + Files.size(donnees) / 1024 + " Ko écrits dans " + donnees + " en "
+                    + (System.currentTimeMillis() - debut) + " ms");
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // Generations: fichier holds the name of the current "<fichier>.<n>" data file
+
+    private static Path generationCourante(Path fichier) throws IOException {
+        String nom = Files.readString(fichier, StandardCharsets.UTF_8).trim();
+        return fichier.resolveSibling(nom);
+    }
+
+    // n of the current generation, 0 when fichier does not exist yet
+    private static long generation(Path fichier) throws IOException {
+        if (!Files.exists(fichier)) {
+            return 0;
+        }
+        String nom = generationCourante(fichier).getFileName().toString();
+        try {
+            return Long.parseLong(nom.substring(nom.lastIndexOf('.') + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException(fichier + " n'est pas un index de recherche", e);
+        }
+    }
+
+    // Older generations still mapped somewhere cannot be deleted on Windows: the next save retries
+    private static void supprimerAnciennes(Path fichier, Path courante) throws IOException {
+        String prefixe = fichier.getFileName() + ".";
+        Path dossier = fichier.toAbsolutePath().getParent();
+        try (var fichiers = Files.list(dossier)) {
+            for (Path p : fichiers.toList()) {
+                String nom = p.getFileName().toString();
+                if (nom.startsWith(prefixe) && nom.substring(prefixe.length()).matches("[0-9]+")
+                        && !nom.equals(courante.getFileName().toString())) {
+                    try {
+                        Files.deleteIfExists(p);
+                    } catch (IOException e) {
+                        // still mapped
+                    }
+                }
+            }
+        }
+    }
+
+    private static void ecrireChaine(DataOutputStream out, String s) throws IOException {
+        byte[] octets = s.getBytes(StandardCharsets.UTF_8);
+        if (octets.length > 0xFFFF) {
+            octets = Arrays.copyOf(octets, 0xFFFF);
+        }
+        out.writeShort(octets.length);
+        out.write(octets);
+    }
+
+    private static void ecrireVarint(DataOutputStream out, int valeur) throws IOException {
+        while ((valeur & ~0x7F) != 0) {
+            out.writeByte((valeur & 0x7F) | 0x80);
+            valeur >>>= 7;
+        }
+        out.writeByte(valeur);
+    }
+
+    public int nombreDocuments() {
+        verrou.readLock().lock();
+        try {
+            return vivants;
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    /** Distinct terms, counting a term present in both segments twice until the next merge. */
+    public int nombreTermes() {
+        verrou.readLock().lock();
+        try {
+            return termesBase + termesDelta.size();
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits text into index terms: lower case, accents folded (é -> e, œ -> oe) so a query
+ * typed without accents finds the French titles and biographies, letters and digits
+ * only, one-letter words and the most common French/English stop words dropped.
+ */
+public final class Tokenizer {
+
+    private static final Set<String> MOTS_VIDES = Set.of(
+            "le", "la", "les", "de", "des", "du", "un", "une", "et", "en", "au", "aux", "ou", "par", "pour",
+            "sur", "dans", "que", "qui", "il", "elle", "ils", "se", "sa", "son", "ses", "ce", "est",
+            "the", "of", "and", "an", "in", "on", "to", "is", "it", "his", "her", "by", "for", "with");
+
+    private Tokenizer() {
+    }
+
+    public static List<String> termes(String texte) {
+        List<String> termes = new ArrayList<>();
+        if (texte == null || texte.isEmpty()) {
+            return termes;
+        }
+        String plie = plier(texte);
+        int debut = -1;
+        for (int i = 0; i <= plie.length(); i++) {
+            boolean lettre = i < plie.length() && Character.isLetterOrDigit(plie.charAt(i));
+            if (lettre && debut < 0) {
+                debut = i;
+            } else if (!lettre && debut >= 0) {
+                String terme = plie.substring(debut, i);
+                if (terme.length() > 1 && !MOTS_VIDES.contains(terme)) {
+                    termes.add(terme);
+                }
+                debut = -1;
+            }
+        }
+        return termes;
+    }
+
+    /** Lower case without diacritics; also used on query prefixes. */
+    public static String plier(String texte) {
+        String s = texte.toLowerCase();
+        boolean ascii = true;
+        for (int i = 0; i < s.length() && ascii; i++) {
+            ascii = s.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return s;
+        }
+        s = s.replace("œ", "oe").replace("æ", "ae").replace("ß", "ss");
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c : Normalizer.normalize(s, Normalizer.Form.NFD).toCharArray()) {
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}